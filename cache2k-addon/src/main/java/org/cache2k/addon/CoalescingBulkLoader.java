@@ -21,23 +21,32 @@ package org.cache2k.addon;
  */
 
 import org.cache2k.Cache;
+import org.cache2k.CacheException;
 import org.cache2k.DataAware;
 import org.cache2k.io.AsyncBulkCacheLoader;
+import org.cache2k.operation.Scheduler;
 import org.cache2k.operation.TimeReference;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -54,6 +63,17 @@ import java.util.concurrent.atomic.AtomicLong;
  * via the parameter {@code refreshOnly}. Requests that are not refresh ahead are
  * client issued and executed immediately, together with any pending refresh ahead requests.
  *
+ * <p>Adaptive mode: The maximum delay and batch size become upper bounds. The delay
+ * follows the observed latency of the bulk loads, since delaying a request longer than
+ * a load takes, adds more latency than it saves. The batch size grows when requests
+ * queue up and shrinks when the timer only finds small batches. The delay does not drop
+ * below the minimum delay, otherwise a fast loader would disable coalescing completely.
+ *
+ * <p>Monitoring: If created via {@link CoalescingBulkLoaderSupport} and monitoring is not
+ * disabled for the cache, the loader registers itself as JMX bean with the name
+ * {@code org.cache2k:type=CoalescingBulkLoader,manager=<manager>,name=<cache>}, see
+ * {@link CoalescingBulkLoaderMXBean}.
+ *
  * <p>Usage: Either use the constructor
  * {@link CoalescingBulkLoader#CoalescingBulkLoader(AsyncBulkCacheLoader, long, int, boolean)}
  * and wrap a loader explicitly, or use the declarative configuration with
@@ -61,16 +81,32 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  * @author Jens Wilke
  */
-public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, AutoCloseable {
+public class CoalescingBulkLoader<K, V>
+  implements AsyncBulkCacheLoader<K, V>, CoalescingBulkLoaderMXBean, AutoCloseable {
 
+  /**
+   * Weight of the previous value in the latency average, in 1/4.
+   */
+  private static final int LATENCY_HISTORY_WEIGHT = 3;
+
+  private final long minDelayMillis;
   private final long maxDelayMillis;
   private final int maxBatchSize;
   private final boolean refreshOnly;
+  private final boolean adaptive;
   private final AsyncBulkCacheLoader<K, V> forwardingLoader;
   private final TimeReference timeReference;
-  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+  private final Scheduler scheduler;
+  private final ScheduledExecutorService ownTimer;
   private final AtomicLong queueSize = new AtomicLong();
   private final Queue<Request<K, V>> pending = new ConcurrentLinkedQueue<>();
+  private volatile long delayMillis;
+  private volatile int batchSize;
+  /** Average load latency, -1 if no load completed yet. Guarded by pending */
+  private long latencyMillis = -1;
+  private long batchCount;
+  private long keyCount;
+  private volatile ObjectName registeredName;
 
   /**
    * Constructor using the default time reference {@link TimeReference#DEFAULT}
@@ -92,21 +128,61 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
   public CoalescingBulkLoader(AsyncBulkCacheLoader<K, V> forwardingLoader,
                               TimeReference timeReference, long maxDelayMillis, int maxBatchSize,
                               boolean refreshOnly) {
+    this(forwardingLoader, timeReference, null, 0, maxDelayMillis, maxBatchSize, refreshOnly,
+      false);
+  }
+
+  /**
+   * Constructor with all parameters.
+   *
+   * @param scheduler scheduler for the delayed requests, usually the scheduler of the cache.
+   *                  The scheduler is closed together with this loader if it implements
+   *                  {@link AutoCloseable}. If {@code null} a separate thread is started.
+   * @param minDelayMillis see {@link CoalescingBulkLoaderConfig.Builder#minDelay(long, TimeUnit)}
+   * @param adaptive see {@link CoalescingBulkLoaderConfig.Builder#adaptive(boolean)}
+   */
+  public CoalescingBulkLoader(AsyncBulkCacheLoader<K, V> forwardingLoader,
+                              TimeReference timeReference, Scheduler scheduler,
+                              long minDelayMillis, long maxDelayMillis, int maxBatchSize,
+                              boolean refreshOnly, boolean adaptive) {
     Objects.requireNonNull(forwardingLoader, "forwardingLoader");
+    this.minDelayMillis = Math.min(minDelayMillis, maxDelayMillis);
     this.maxDelayMillis = maxDelayMillis;
     this.maxBatchSize = maxBatchSize;
     this.forwardingLoader = forwardingLoader;
     this.timeReference = timeReference;
     this.refreshOnly = refreshOnly;
+    this.adaptive = adaptive;
+    delayMillis = maxDelayMillis;
+    batchSize = maxBatchSize;
+    if (scheduler == null) {
+      ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+      ownTimer = timer;
+      this.scheduler = new Scheduler() {
+        @Override
+        public void schedule(Runnable runnable, long delayMillis) {
+          timer.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+        }
+        @Override
+        public void execute(Runnable command) {
+          timer.execute(command);
+        }
+      };
+    } else {
+      ownTimer = null;
+      this.scheduler = scheduler;
+    }
   }
 
   @Override
   public void loadAll(Set<K> keys, BulkLoadContext<K, V> context, BulkCallback<K, V> callback) {
     boolean flush = false;
+    Map<K, Context<K, V>> contextMap = context.getContextMap();
     for (K key : keys) {
       Request<K, V> rq = new Request<>();
       rq.key = key;
       rq.context = context;
+      rq.keyContext = contextMap.get(key);
       pending.add(rq);
       flush |= !context.isRefreshAhead();
     }
@@ -114,7 +190,7 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
     long totalSize = queueSize.addAndGet(sizeToAdd);
     if (refreshOnly && flush) {
       flush();
-    } else if (totalSize >= maxBatchSize) {
+    } else if (totalSize >= batchSize) {
       instantLoadAndScheduleTimer();
     } else if (totalSize == sizeToAdd) {
       startDelay();
@@ -122,16 +198,28 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
   }
 
   private static class Request<K, V> implements DataAware<K, V> {
+    @SuppressWarnings("rawtypes")
+    static final AtomicIntegerFieldUpdater<Request> COMPLETED =
+      AtomicIntegerFieldUpdater.newUpdater(Request.class, "completed");
     K key;
     BulkLoadContext<K, V> context;
+    Context<K, V> keyContext;
+    volatile int completed;
+
+    /**
+     * True if called the first time.
+     */
+    boolean complete() {
+      return COMPLETED.compareAndSet(this, 0, 1);
+    }
   }
 
   /**
    * Send requests to the loader
    *
-   * @param requestMap concurrent map used to keep track during callbacks
+   * @param requestMap map used to keep track during callbacks, not modified after the start
    */
-  private void startLoad(ConcurrentMap<K, BulkLoadContext<K, V>> requestMap) {
+  private void startLoad(Map<K, Request<K, V>> requestMap) {
     BulkLoadContext<K, V> context = createMergedContext(requestMap);
     try {
       forwardingLoader.loadAll(context.getKeys(), context, context.getCallback());
@@ -140,22 +228,26 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
     }
   }
 
-  private BulkLoadContext<K, V> createMergedContext(ConcurrentMap<K, BulkLoadContext<K, V>> requestMap) {
+  /**
+   * Create a context for the merged requests. Key set and context map are views
+   * on the request map, so no per key copying and rehashing is needed.
+   */
+  private BulkLoadContext<K, V> createMergedContext(Map<K, Request<K, V>> requestMap) {
     long startTime = Long.MAX_VALUE;
-    Set<K> keys = new HashSet<>();
-    Map<K, Context<K, V>> contextMap = new HashMap<>();
     BulkLoadContext<K, V> firstContext = null;
-    for (Map.Entry<K, BulkLoadContext<K, V>> e : requestMap.entrySet()) {
+    for (Request<K, V> rq : requestMap.values()) {
       if (firstContext == null) {
-        firstContext = e.getValue();
+        firstContext = rq.context;
       }
-      startTime = Math.min(startTime, e.getValue().getStartTime());
-      keys.add(e.getKey());
-      contextMap.put(e.getKey(), e.getValue().getContextMap().get(e.getKey()));
+      startTime = Math.min(startTime, rq.context.getStartTime());
     }
+    Set<K> keys = Collections.unmodifiableSet(requestMap.keySet());
+    Map<K, Context<K, V>> contextMap = new ContextMapView<>(requestMap);
     long finalStartTime = startTime;
     BulkLoadContext<K, V> finalFirstContext = firstContext;
+    long startNanos = System.nanoTime();
     BulkCallback<K, V> callback = new BulkCallback<K, V>() {
+      private int remaining = requestMap.size();
       @Override
       public void onLoadSuccess(Map<? extends K, ? extends V> data) {
         for (Map.Entry<? extends K, ? extends V> e : data.entrySet()) {
@@ -164,24 +256,37 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
       }
       @Override
       public void onLoadSuccess(K key, V value) {
-        BulkLoadContext<K, V> ctx = requestMap.remove(key);
-        if (ctx == null) {
+        Request<K, V> rq = requestMap.get(key);
+        if (rq == null || !rq.complete()) {
           throw new IllegalStateException("unexpected callback for this key");
         }
-        ctx.getCallback().onLoadSuccess(key, value);
+        rq.context.getCallback().onLoadSuccess(key, value);
+        completed();
       }
       @Override
       public void onLoadFailure(Throwable exception) {
-        for (Map.Entry<K, BulkLoadContext<K, V>> entry : requestMap.entrySet()) {
-          entry.getValue().getCallback().onLoadFailure(entry.getKey(), exception);
+        for (Request<K, V> rq : requestMap.values()) {
+          if (rq.complete()) {
+            rq.context.getCallback().onLoadFailure(rq.key, exception);
+            completed();
+          }
         }
-        requestMap.clear();
       }
       @Override
       public void onLoadFailure(K key, Throwable exception) {
-        BulkLoadContext<K, V> ctx = requestMap.remove(key);
-        if (ctx != null) {
-          ctx.getCallback().onLoadFailure(key, exception);
+        Request<K, V> rq = requestMap.get(key);
+        if (rq != null && rq.complete()) {
+          rq.context.getCallback().onLoadFailure(key, exception);
+          completed();
+        }
+      }
+      private void completed() {
+        boolean last;
+        synchronized (this) {
+          last = --remaining == 0;
+        }
+        if (last) {
+          batchCompleted(System.nanoTime() - startNanos);
         }
       }
     };
@@ -201,12 +306,102 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
     return context;
   }
 
+  /**
+   * Read only view of the individual contexts of the merged requests.
+   */
+  private static class ContextMapView<K, V> extends AbstractMap<K, Context<K, V>> {
+
+    private final Map<K, Request<K, V>> requestMap;
+
+    ContextMapView(Map<K, Request<K, V>> requestMap) {
+      this.requestMap = requestMap;
+    }
+
+    @Override
+    public Context<K, V> get(Object key) {
+      Request<K, V> rq = requestMap.get(key);
+      return rq != null ? rq.keyContext : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return requestMap.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return requestMap.size();
+    }
+
+    @Override
+    public Set<Entry<K, Context<K, V>>> entrySet() {
+      return new AbstractSet<Entry<K, Context<K, V>>>() {
+        @Override
+        public Iterator<Entry<K, Context<K, V>>> iterator() {
+          Iterator<Request<K, V>> it = requestMap.values().iterator();
+          return new Iterator<Entry<K, Context<K, V>>>() {
+            @Override
+            public boolean hasNext() {
+              return it.hasNext();
+            }
+            @Override
+            public Entry<K, Context<K, V>> next() {
+              Request<K, V> rq = it.next();
+              return new SimpleImmutableEntry<>(rq.key, rq.keyContext);
+            }
+          };
+        }
+        @Override
+        public int size() {
+          return requestMap.size();
+        }
+      };
+    }
+
+  }
+
+  /**
+   * All keys of a bulk load completed, update the latency and adapt the delay.
+   * The delay follows the load latency, bounded by the minimum and maximum delay.
+   */
+  private void batchCompleted(long nanos) {
+    if (!adaptive) {
+      return;
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    synchronized (pending) {
+      if (latencyMillis < 0) {
+        latencyMillis = millis;
+      } else {
+        latencyMillis = (latencyMillis * LATENCY_HISTORY_WEIGHT + millis) / 4;
+      }
+      delayMillis = Math.max(minDelayMillis, Math.min(maxDelayMillis, latencyMillis));
+    }
+  }
+
+  /**
+   * Adapt the batch size after a batch was taken from the queue. Double when requests
+   * are still queued, halve when the timer finds less than half of a batch.
+   * Called within the lock.
+   */
+  private void adaptBatchSize(boolean timerEvent, int size, long sizeRemaining) {
+    if (!adaptive) {
+      return;
+    }
+    int current = batchSize;
+    if (sizeRemaining >= current) {
+      batchSize = (int) Math.min(maxBatchSize, current * 2L);
+    } else if (timerEvent && size < current / 2) {
+      batchSize = Math.max(size, current / 2);
+    }
+  }
+
   private void startDelay() {
-    scheduleTimer(maxDelayMillis);
+    scheduleTimer(delayMillis);
   }
 
   private void scheduleTimer(long millis) {
-    timer.schedule(this::timerEvent, millis, TimeUnit.MILLISECONDS);
+    scheduler.schedule(this::timerEvent, millis);
   }
 
   /**
@@ -232,14 +427,14 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
   private void instantLoadAndScheduleTimer() {
     do {
       forwardRequests(false, true);
-    } while (queueSize.get() >= maxBatchSize);
+    } while (queueSize.get() >= batchSize);
     Request<K, V> next = pending.peek();
     if (next == null) {
       return;
     }
     long startTime = timeReference.ticksToMillisCeiling(next.context.getStartTime());
     long now = timeReference.ticksToMillisCeiling(timeReference.ticks());
-    scheduleTimer(startTime + maxDelayMillis - now);
+    scheduleTimer(startTime + delayMillis - now);
   }
 
   /**
@@ -261,9 +456,10 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
   public boolean forwardRequests(boolean timerEvent, boolean onlyWhenFull) {
     long sizeRemaining;
     do {
-      ConcurrentMap<K, BulkLoadContext<K, V>> requestMap;
+      Map<K, Request<K, V>> requestMap;
       synchronized (pending) {
-        if (onlyWhenFull && queueSize.get() < maxBatchSize) {
+        int maxSize = batchSize;
+        if (onlyWhenFull && queueSize.get() < maxSize) {
           return false;
         }
         if (timerEvent) {
@@ -271,29 +467,36 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
           if (next == null) {
             return false;
           }
-          if (queueSize.get() < maxBatchSize) {
+          if (queueSize.get() < maxSize) {
             long startTime = timeReference.ticksToMillisCeiling(next.context.getStartTime());
             long now = timeReference.ticksToMillisCeiling(timeReference.ticks());
-            if (now - startTime < maxDelayMillis) {
-              scheduleTimer(startTime + maxDelayMillis - now);
+            long delay = delayMillis;
+            if (now - startTime < delay) {
+              scheduleTimer(startTime + delay - now);
               return false;
             }
           }
         }
-        requestMap = new ConcurrentHashMap<>();
-        for (int i = 0; i < maxBatchSize; i++) {
+        long size = Math.min(maxSize, queueSize.get());
+        requestMap = new HashMap<>((int) (size * 4 / 3) + 1);
+        for (int i = 0; i < maxSize; i++) {
           Request<K, V> rq = pending.poll();
           if (rq == null) {
             break;
           }
-          requestMap.put(rq.key, rq.context);
+          requestMap.put(rq.key, rq);
         }
         sizeRemaining = queueSize.addAndGet(-requestMap.size());
+        if (!requestMap.isEmpty()) {
+          batchCount++;
+          keyCount += requestMap.size();
+          adaptBatchSize(timerEvent, requestMap.size(), sizeRemaining);
+        }
       }
       if (!requestMap.isEmpty()) {
         startLoad(requestMap);
       }
-    } while (sizeRemaining >= maxBatchSize);
+    } while (sizeRemaining >= batchSize);
     return true;
   }
 
@@ -305,15 +508,113 @@ public class CoalescingBulkLoader<K, V> implements AsyncBulkCacheLoader<K, V>, A
     while (forwardRequests(true, false)) { }
   }
 
+  @Override
   public long getQueueSize() {
     return queueSize.get();
   }
 
+  /**
+   * Number of bulk requests sent to the loader.
+   */
+  @Override
+  public long getBatchCount() {
+    synchronized (pending) {
+      return batchCount;
+    }
+  }
+
+  /**
+   * Number of keys sent to the loader.
+   */
+  @Override
+  public long getKeyCount() {
+    synchronized (pending) {
+      return keyCount;
+    }
+  }
+
+  /**
+   * Current batch size. Identical to the configured maximum batch size, if not adaptive.
+   */
+  @Override
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Current delay. Identical to the configured maximum delay, if not adaptive.
+   */
+  @Override
+  public long getDelayMillis() {
+    return delayMillis;
+  }
+
+  /**
+   * Average latency of the bulk loads, or -1 if not known. Only recorded in adaptive mode.
+   */
+  @Override
+  public long getLatencyMillis() {
+    synchronized (pending) {
+      return latencyMillis;
+    }
+  }
+
+  /**
+   * Register as JMX bean. Fails silently if the name is already registered,
+   * which may happen if cache managers in different class loaders have the same name.
+   */
+  void registerMXBean(String managerName, String cacheName) {
+    try {
+      ObjectName name = new ObjectName("org.cache2k:type=CoalescingBulkLoader" +
+        ",manager=" + quoteIfNeeded(managerName) + ",name=" + quoteIfNeeded(cacheName));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+      registeredName = name;
+    } catch (InstanceAlreadyExistsException ignore) {
+    } catch (JMException ex) {
+      throw new CacheException("register JMX bean", ex);
+    }
+  }
+
+  private void unregisterMXBean() throws JMException {
+    ObjectName name = registeredName;
+    if (name != null) {
+      registeredName = null;
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      } catch (InstanceNotFoundException ignore) {
+      }
+    }
+  }
+
+  /**
+   * Names may contain a comma, which needs quoting as JMX value.
+   */
+  private static String quoteIfNeeded(String s) {
+    return s.indexOf(',') >= 0 ? ObjectName.quote(s) : s;
+  }
+
   @Override
   public void close() throws Exception {
+    unregisterMXBean();
     queueSize.set(Long.MIN_VALUE);
-    timer.shutdown();
+    if (ownTimer != null) {
+      ownTimer.shutdown();
+    } else if (scheduler instanceof AutoCloseable) {
+      ((AutoCloseable) scheduler).close();
+    }
     pending.clear();
   }
 
+  @Override
+  public String toString() {
+    synchronized (pending) {
+      return "CoalescingBulkLoader(queueSize=" + queueSize.get() +
+        ", batchCount=" + batchCount +
+        ", keyCount=" + keyCount +
+        ", batchSize=" + batchSize +
+        ", delayMillis=" + delayMillis +
+        ", latencyMillis=" + latencyMillis + ")";
+    }
+  }
+
 }
@@ -34,9 +34,24 @@ import java.util.concurrent.TimeUnit;
 public class CoalescingBulkLoaderConfig
   implements ConfigSection<CoalescingBulkLoaderConfig, CoalescingBulkLoaderConfig.Builder> {
 
+  private long minDelay = 5;
   private long maxDelay = 100;
   private int maxBatchSize = 100;
   private boolean refreshOnly = true;
+  private boolean adaptive = false;
+
+  public long getMinDelay() {
+    return minDelay;
+  }
+
+  /**
+   * Delay in milliseconds.
+   *
+   * @see Builder#minDelay(long, TimeUnit)
+   */
+  public void setMinDelay(long minDelay) {
+    this.minDelay = minDelay;
+  }
 
   public long getMaxDelay() {
     return maxDelay;
@@ -67,6 +82,17 @@ public class CoalescingBulkLoaderConfig
     this.refreshOnly = refreshOnly;
   }
 
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /**
+   * @see Builder#adaptive(boolean)
+   */
+  public void setAdaptive(boolean adaptive) {
+    this.adaptive = adaptive;
+  }
+
   @Override
   public Builder builder() {
     return new Builder(this);
@@ -89,6 +115,17 @@ public class CoalescingBulkLoaderConfig
       return this;
     }
 
+    /**
+     * Lower bound of the delay in adaptive mode. The delay follows the load latency, which
+     * may be close to zero, so requests would not be coalesced at all. If the minimum is
+     * above the maximum delay, the maximum delay is used.
+     * Default is 5 milliseconds.
+     */
+    public Builder minDelay(long duration, TimeUnit unit) {
+      config.setMinDelay(unit.toMillis(duration));
+      return this;
+    }
+
     /**
      * If the number of entries waiting for sending to the loader is reached the
      * loader will be called even the delay timespan is not reached yet.
@@ -108,6 +145,16 @@ public class CoalescingBulkLoaderConfig
       return this;
     }
 
+    /**
+     * Adapt batch size and delay to the observed load latency and the number of
+     * queued requests. Maximum delay and maximum batch size are used as upper bounds.
+     * Default is {@code false}.
+     */
+    public Builder adaptive(boolean v) {
+      config.setAdaptive(v);
+      return this;
+    }
+
     @Override
     public CoalescingBulkLoaderConfig config() {
       return config;
@@ -0,0 +1,63 @@
+package org.cache2k.addon;
+
+/*-
+ * #%L
+ * cache2k addon
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * Batching metrics of a {@link CoalescingBulkLoader}, exported via JMX.
+ *
+ * @author Jens Wilke
+ */
+public interface CoalescingBulkLoaderMXBean {
+
+  /**
+   * Number of keys waiting to be sent to the loader.
+   */
+  long getQueueSize();
+
+  /**
+   * Number of bulk requests sent to the loader.
+   */
+  long getBatchCount();
+
+  /**
+   * Number of keys sent to the loader.
+   */
+  long getKeyCount();
+
+  /**
+   * Current batch size. Identical to the configured maximum batch size, if not adaptive.
+   */
+  int getBatchSize();
+
+  /**
+   * Current delay in milliseconds. Identical to the configured maximum delay,
+   * if not adaptive.
+   */
+  long getDelayMillis();
+
+  /**
+   * Average latency of the bulk loads in milliseconds, or -1 if not known.
+   * Only recorded in adaptive mode.
+   */
+  long getLatencyMillis();
+
+}
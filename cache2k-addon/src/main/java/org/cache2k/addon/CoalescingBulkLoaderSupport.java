@@ -21,12 +21,14 @@ package org.cache2k.addon;
  */
 
 import org.cache2k.Cache2kBuilder;
+import org.cache2k.annotation.Nullable;
 import org.cache2k.config.CacheBuildContext;
 import org.cache2k.config.CustomizationSupplier;
 import org.cache2k.config.ToggleFeature;
 import org.cache2k.config.WithSection;
 import org.cache2k.io.AsyncBulkCacheLoader;
 import org.cache2k.io.AsyncCacheLoader;
+import org.cache2k.operation.Scheduler;
 
 /**
  * Wraps a configured {@link AsyncBulkCacheLoader} with a {@link CoalescingBulkLoader}
@@ -62,12 +64,32 @@ public class CoalescingBulkLoaderSupport extends ToggleFeature
       }
       CoalescingBulkLoaderConfig config =
         ctx.getConfig().getSections().getSection(CoalescingBulkLoaderConfig.class, DEFAULT_CONFIG);
-      return new CoalescingBulkLoader<K, V>((AsyncBulkCacheLoader<K, V>) loader, buildContext.getTimeReference(),
-        config.getMaxDelay(), config.getMaxBatchSize(), config.isRefreshOnly());
+      CoalescingBulkLoader<K, V> coalescingLoader =
+        new CoalescingBulkLoader<K, V>((AsyncBulkCacheLoader<K, V>) loader,
+          buildContext.getTimeReference(), createSchedulerIfSupported(buildContext),
+          config.getMinDelay(), config.getMaxDelay(), config.getMaxBatchSize(),
+          config.isRefreshOnly(), config.isAdaptive());
+      if (!buildContext.getConfig().isDisableMonitoring()) {
+        coalescingLoader.registerMXBean(buildContext.getCacheManager().getName(),
+          buildContext.getName());
+      }
+      return coalescingLoader;
     };
     ctx.getConfig().setAsyncLoader(xy);
   }
 
+  /**
+   * Scheduler of the cache, or {@code null} if the build context does not support it,
+   * so the coalescing loader or writer starts its own timer thread.
+   */
+  static @Nullable Scheduler createSchedulerIfSupported(CacheBuildContext<?, ?> buildContext) {
+    try {
+      return buildContext.createScheduler();
+    } catch (UnsupportedOperationException ex) {
+      return null;
+    }
+  }
+
   private void bulkLoaderNeeded() {
     throw new IllegalArgumentException(this.getClass().getName()
       + " requires a configured bulk loader");
@@ -0,0 +1,503 @@
+package org.cache2k.addon;
+
+/*-
+ * #%L
+ * cache2k addon
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.io.AsyncBulkCacheWriter;
+import org.cache2k.io.CacheWriter;
+import org.cache2k.io.CacheWriterException;
+import org.cache2k.operation.Scheduler;
+import org.cache2k.operation.TimeReference;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write behind: Wraps a {@link AsyncBulkCacheWriter} and combines single writes and
+ * deletes of the cache into bulk requests. The cache operation returns after queueing the
+ * request, so a mutation does not wait for the backend. Repeated writes of the same key
+ * are collapsed while waiting, only the last value or delete is sent.
+ *
+ * <p>Parameters: You may specify how long requests are being delayed and a maximum
+ * of keys coalesced into one batch. A batch is sent when the maximum batch size is reached
+ * or when the oldest queued request reaches the maximum delay.
+ *
+ * <p>Back pressure: The number of queued keys is limited. If the queue is full, a write
+ * or delete of a key that is not queued yet blocks until requests are sent to the writer.
+ *
+ * <p>Ordering: A key is only contained in one bulk request at a time. Writes to a key,
+ * that is currently written, are held back until the running request completes.
+ *
+ * <p>Failures: Since the cache operation is already completed, a failed write cannot
+ * be propagated to the cache client. Failures are passed to a {@link FailureHandler}.
+ * The default handler passes the exception to the uncaught exception handler of the
+ * current thread.
+ *
+ * <p>Usage: Either use the constructor and wrap a writer explicitly, or use the declarative
+ * configuration with {@link CoalescingBulkWriterSupport}.
+ *
+ * @author Jens Wilke
+ * @see CoalescingBulkLoader
+ */
+public class CoalescingBulkWriter<K, V> implements CacheWriter<K, V>, AutoCloseable {
+
+  /**
+   * Passes the exception to the uncaught exception handler of the current thread.
+   */
+  public static final FailureHandler<Object> DEFAULT_FAILURE_HANDLER = (key, exception) -> {
+    Thread t = Thread.currentThread();
+    t.getUncaughtExceptionHandler().uncaughtException(t, exception);
+  };
+
+  /**
+   * Queue size limit as multiple of the batch size, if not specified.
+   */
+  public static final int DEFAULT_QUEUE_SIZE_FACTOR = 10;
+
+  private final long maxDelayMillis;
+  private final int maxBatchSize;
+  private final int maxQueueSize;
+  private final AsyncBulkCacheWriter<K, V> forwardingWriter;
+  private final FailureHandler<? super K> failureHandler;
+  private final TimeReference timeReference;
+  private final Scheduler scheduler;
+  private final ScheduledExecutorService ownTimer;
+  /** Queued requests in the order of arrival, guarded by itself */
+  private final Map<K, Request<V>> pending = new LinkedHashMap<>();
+  /** Keys of requests that are sent to the writer and not completed yet */
+  private final Set<K> inFlight = new HashSet<>();
+  private boolean timerScheduled;
+  private boolean closed;
+  private long coalescedCount;
+  private long batchCount;
+  private long failureCount;
+
+  /**
+   * Constructor using the default time reference {@link TimeReference#DEFAULT}
+   * and the {@link #DEFAULT_FAILURE_HANDLER}.
+   *
+   * @param forwardingWriter requests are forwarded to this writer
+   * @param maxDelayMillis see {@link CoalescingBulkWriterConfig.Builder#maxDelay(long, TimeUnit)}
+   * @param maxBatchSize see {@link CoalescingBulkWriterConfig.Builder#maxBatchSize(int)}
+   */
+  public CoalescingBulkWriter(AsyncBulkCacheWriter<K, V> forwardingWriter, long maxDelayMillis,
+                              int maxBatchSize) {
+    this(forwardingWriter, TimeReference.DEFAULT, maxDelayMillis, maxBatchSize,
+      DEFAULT_FAILURE_HANDLER);
+  }
+
+  /**
+   * Constructor using the specified time reference instance and a separate timer thread.
+   *
+   * @param timeReference if the cache is using a different time reference, the instance is
+   *                      used to translate to milli seconds via {@link TimeReference#ticksToMillisCeiling(long)}
+   * @param failureHandler receives keys which could not be written or deleted
+   */
+  public CoalescingBulkWriter(AsyncBulkCacheWriter<K, V> forwardingWriter,
+                              TimeReference timeReference, long maxDelayMillis, int maxBatchSize,
+                              FailureHandler<? super K> failureHandler) {
+    this(forwardingWriter, timeReference, null, maxDelayMillis, maxBatchSize, 0,
+      failureHandler);
+  }
+
+  /**
+   * Constructor with all parameters.
+   *
+   * @param scheduler scheduler for the delayed requests, usually the scheduler of the cache.
+   *                  The scheduler is closed together with this writer if it implements
+   *                  {@link AutoCloseable}. If {@code null} a separate daemon thread is started.
+   * @param maxQueueSize see {@link CoalescingBulkWriterConfig.Builder#maxQueueSize(int)},
+   *                     {@code 0} for {@value #DEFAULT_QUEUE_SIZE_FACTOR} times the batch size
+   */
+  public CoalescingBulkWriter(AsyncBulkCacheWriter<K, V> forwardingWriter,
+                              TimeReference timeReference, Scheduler scheduler,
+                              long maxDelayMillis, int maxBatchSize, int maxQueueSize,
+                              FailureHandler<? super K> failureHandler) {
+    Objects.requireNonNull(forwardingWriter, "forwardingWriter");
+    Objects.requireNonNull(failureHandler, "failureHandler");
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize must be positive");
+    }
+    if (maxQueueSize == 0) {
+      maxQueueSize = (int) Math.min(Integer.MAX_VALUE,
+        (long) maxBatchSize * DEFAULT_QUEUE_SIZE_FACTOR);
+    }
+    if (maxQueueSize < maxBatchSize) {
+      throw new IllegalArgumentException("maxQueueSize must not be less than maxBatchSize");
+    }
+    this.maxDelayMillis = maxDelayMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.maxQueueSize = maxQueueSize;
+    this.forwardingWriter = forwardingWriter;
+    this.timeReference = timeReference;
+    this.failureHandler = failureHandler;
+    if (scheduler == null) {
+      ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "cache2k-coalescing-writer");
+        t.setDaemon(true);
+        return t;
+      });
+      ownTimer = timer;
+      this.scheduler = new Scheduler() {
+        @Override
+        public void schedule(Runnable runnable, long delayMillis) {
+          timer.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+        }
+        @Override
+        public void execute(Runnable command) {
+          timer.execute(command);
+        }
+      };
+    } else {
+      ownTimer = null;
+      this.scheduler = scheduler;
+    }
+  }
+
+  @Override
+  public void write(K key, V value) {
+    queue(key, value, false);
+  }
+
+  @Override
+  public void delete(K key) {
+    queue(key, null, true);
+  }
+
+  private void queue(K key, V value, boolean delete) {
+    boolean full;
+    synchronized (pending) {
+      Request<V> rq;
+      while (true) {
+        if (closed) {
+          throw new IllegalStateException("writer closed");
+        }
+        rq = pending.get(key);
+        if (rq != null || pending.size() < maxQueueSize) {
+          break;
+        }
+        try {
+          pending.wait();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new CacheWriterException(ex);
+        }
+      }
+      if (rq != null) {
+        coalescedCount++;
+      } else {
+        rq = new Request<>();
+        rq.startTime = now();
+        pending.put(key, rq);
+      }
+      rq.value = value;
+      rq.delete = delete;
+      full = pending.size() >= maxBatchSize;
+      if (!full) {
+        scheduleTimer(maxDelayMillis);
+      }
+    }
+    if (full) {
+      forwardRequests(false);
+    }
+  }
+
+  private static class Request<V> {
+    long startTime;
+    V value;
+    boolean delete;
+  }
+
+  private long now() {
+    return timeReference.ticksToMillisCeiling(timeReference.ticks());
+  }
+
+  /**
+   * Schedule the timer, if not scheduled already. Called within the lock.
+   */
+  private void scheduleTimer(long millis) {
+    if (timerScheduled || closed) {
+      return;
+    }
+    timerScheduled = true;
+    scheduler.schedule(this::timerEvent, millis);
+  }
+
+  private void timerEvent() {
+    synchronized (pending) {
+      timerScheduled = false;
+    }
+    try {
+      forwardRequests(false);
+    } catch (Throwable t) {
+      t.printStackTrace();
+    }
+  }
+
+  /**
+   * Send all queued requests to the writer, except keys that are currently written.
+   * Completion of the requests is not awaited.
+   */
+  public void flush() {
+    forwardRequests(true);
+  }
+
+  /**
+   * Gather requests up to max batch size and forward to the writer, as long as
+   * batches are complete or due.
+   *
+   * @param all send everything that is queued, also when not due
+   */
+  private void forwardRequests(boolean all) {
+    Batch batch;
+    do {
+      synchronized (pending) {
+        batch = collectBatch(all || closed);
+      }
+      if (batch != null) {
+        startWrite(batch);
+      }
+    } while (batch != null);
+  }
+
+  /**
+   * Take requests from the queue, skipping keys currently written. Returns {@code null}
+   * if no requests are due and schedules the timer for the oldest request.
+   */
+  private Batch collectBatch(boolean all) {
+    Iterator<Map.Entry<K, Request<V>>> it = pending.entrySet().iterator();
+    if (!all && pending.size() < maxBatchSize) {
+      Request<V> oldest = null;
+      while (it.hasNext()) {
+        Map.Entry<K, Request<V>> e = it.next();
+        if (!inFlight.contains(e.getKey())) {
+          oldest = e.getValue();
+          break;
+        }
+      }
+      if (oldest == null) {
+        return null;
+      }
+      long delay = oldest.startTime + maxDelayMillis - now();
+      if (delay > 0) {
+        scheduleTimer(delay);
+        return null;
+      }
+      it = pending.entrySet().iterator();
+    }
+    Batch batch = new Batch();
+    while (it.hasNext() && batch.keys.size() < maxBatchSize) {
+      Map.Entry<K, Request<V>> e = it.next();
+      K key = e.getKey();
+      if (inFlight.contains(key)) {
+        continue;
+      }
+      Request<V> rq = e.getValue();
+      if (rq.delete) {
+        batch.deletes.add(key);
+      } else {
+        batch.writes.put(key, rq.value);
+      }
+      batch.keys.add(key);
+      inFlight.add(key);
+      it.remove();
+    }
+    if (batch.keys.isEmpty()) {
+      return null;
+    }
+    pending.notifyAll();
+    batchCount++;
+    return batch;
+  }
+
+  private void startWrite(Batch batch) {
+    try {
+      forwardingWriter.writeAll(batch.writes, batch.deletes, batch);
+    } catch (Throwable t) {
+      batch.onWriteFailure(t);
+    }
+  }
+
+  /**
+   * Release the keys of a completed batch and send requests that were held back.
+   */
+  private void batchCompleted(Batch batch, int failures) {
+    boolean more;
+    synchronized (pending) {
+      inFlight.removeAll(batch.keys);
+      failureCount += failures;
+      more = !pending.isEmpty();
+    }
+    if (more) {
+      forwardRequests(false);
+    }
+  }
+
+  /**
+   * Number of keys waiting to be sent to the writer.
+   */
+  public int getQueueSize() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  /**
+   * Maximum number of keys waiting to be sent to the writer. Writes of further keys block.
+   */
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  /**
+   * Number of keys sent to the writer and not completed yet.
+   */
+  public int getInFlightCount() {
+    synchronized (pending) {
+      return inFlight.size();
+    }
+  }
+
+  /**
+   * Number of writes or deletes that replaced a queued request for the same key.
+   */
+  public long getCoalescedCount() {
+    synchronized (pending) {
+      return coalescedCount;
+    }
+  }
+
+  public long getBatchCount() {
+    synchronized (pending) {
+      return batchCount;
+    }
+  }
+
+  public long getFailureCount() {
+    synchronized (pending) {
+      return failureCount;
+    }
+  }
+
+  /**
+   * Send the remaining requests to the writer and stop the timer. Requests held back
+   * because of a running write are sent when that write completes.
+   */
+  @Override
+  public void close() throws Exception {
+    synchronized (pending) {
+      closed = true;
+      pending.notifyAll();
+    }
+    flush();
+    if (ownTimer != null) {
+      ownTimer.shutdown();
+    } else if (scheduler instanceof AutoCloseable) {
+      ((AutoCloseable) scheduler).close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (pending) {
+      return "CoalescingBulkWriter(queueSize=" + pending.size() +
+        ", inFlight=" + inFlight.size() +
+        ", batchCount=" + batchCount +
+        ", coalescedCount=" + coalescedCount +
+        ", failureCount=" + failureCount + ")";
+    }
+  }
+
+  /**
+   * Receives the keys that could not be written or deleted.
+   */
+  @FunctionalInterface
+  public interface FailureHandler<K> {
+
+    void onWriteFailure(K key, Throwable exception);
+
+  }
+
+  private class Batch implements AsyncBulkCacheWriter.BulkWriteCallback<K> {
+
+    final Map<K, V> writes = new HashMap<>();
+    final Set<K> deletes = new HashSet<>();
+    final List<K> keys = new ArrayList<>();
+    private final Set<K> failedKeys = new HashSet<>();
+    private boolean completed;
+
+    @Override
+    public void onWriteSuccess() {
+      int failures;
+      synchronized (this) {
+        if (completed) {
+          return;
+        }
+        completed = true;
+        failures = failedKeys.size();
+      }
+      batchCompleted(this, failures);
+    }
+
+    @Override
+    public void onWriteFailure(Throwable exception) {
+      List<K> failed = new ArrayList<>();
+      int failures;
+      synchronized (this) {
+        if (completed) {
+          return;
+        }
+        completed = true;
+        for (K key : keys) {
+          if (failedKeys.add(key)) {
+            failed.add(key);
+          }
+        }
+        failures = failedKeys.size();
+      }
+      for (K key : failed) {
+        failureHandler.onWriteFailure(key, exception);
+      }
+      batchCompleted(this, failures);
+    }
+
+    @Override
+    public void onWriteFailure(K key, Throwable exception) {
+      synchronized (this) {
+        if (completed || !failedKeys.add(key)) {
+          return;
+        }
+      }
+      failureHandler.onWriteFailure(key, exception);
+    }
+
+  }
+
+}
@@ -0,0 +1,139 @@
+package org.cache2k.addon;
+
+/*-
+ * #%L
+ * cache2k addon
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.config.ConfigSection;
+import org.cache2k.config.SectionBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration options for {@link CoalescingBulkWriterSupport}.
+ *
+ * @author Jens Wilke
+ */
+public class CoalescingBulkWriterConfig
+  implements ConfigSection<CoalescingBulkWriterConfig, CoalescingBulkWriterConfig.Builder> {
+
+  private long maxDelay = 100;
+  private int maxBatchSize = 100;
+  private int maxQueueSize = 0;
+  private CoalescingBulkWriter.FailureHandler<Object> failureHandler =
+    CoalescingBulkWriter.DEFAULT_FAILURE_HANDLER;
+
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  /**
+   * Delay in milliseconds.
+   *
+   * @see Builder#maxDelay(long, TimeUnit)
+   */
+  public void setMaxDelay(long maxDelay) {
+    this.maxDelay = maxDelay;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  /**
+   * @see Builder#maxQueueSize(int)
+   */
+  public void setMaxQueueSize(int maxQueueSize) {
+    this.maxQueueSize = maxQueueSize;
+  }
+
+  public CoalescingBulkWriter.FailureHandler<Object> getFailureHandler() {
+    return failureHandler;
+  }
+
+  public void setFailureHandler(CoalescingBulkWriter.FailureHandler<Object> failureHandler) {
+    this.failureHandler = failureHandler;
+  }
+
+  @Override
+  public Builder builder() {
+    return new Builder(this);
+  }
+
+  public static class Builder implements SectionBuilder<Builder, CoalescingBulkWriterConfig> {
+
+    private final CoalescingBulkWriterConfig config;
+
+    public Builder(CoalescingBulkWriterConfig config) {
+      this.config = config;
+    }
+
+    /**
+     * Maximum timespan a write request may be delayed before its sent to the writer.
+     * Default is 100 milliseconds.
+     */
+    public Builder maxDelay(long duration, TimeUnit unit) {
+      config.setMaxDelay(unit.toMillis(duration));
+      return this;
+    }
+
+    /**
+     * If the number of keys waiting for sending to the writer is reached the
+     * writer will be called even the delay timespan is not reached yet.
+     * Default is 100.
+     */
+    public Builder maxBatchSize(int v) {
+      config.setMaxBatchSize(v);
+      return this;
+    }
+
+    /**
+     * Maximum number of keys waiting for sending to the writer. When reached, a write or
+     * delete of another key blocks until requests are sent. Must not be less than
+     * the maximum batch size. Default is ten times the maximum batch size.
+     */
+    public Builder maxQueueSize(int v) {
+      config.setMaxQueueSize(v);
+      return this;
+    }
+
+    /**
+     * Handler for keys that could not be written or deleted.
+     * Default is {@link CoalescingBulkWriter#DEFAULT_FAILURE_HANDLER}.
+     */
+    public Builder failureHandler(CoalescingBulkWriter.FailureHandler<Object> v) {
+      config.setFailureHandler(v);
+      return this;
+    }
+
+    @Override
+    public CoalescingBulkWriterConfig config() {
+      return config;
+    }
+  }
+
+}
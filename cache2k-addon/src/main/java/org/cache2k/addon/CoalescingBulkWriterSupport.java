@@ -0,0 +1,84 @@
+package org.cache2k.addon;
+
+/*-
+ * #%L
+ * cache2k addon
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.config.CacheBuildContext;
+import org.cache2k.config.CustomizationSupplier;
+import org.cache2k.config.ToggleFeature;
+import org.cache2k.config.WithSection;
+import org.cache2k.io.AsyncBulkCacheWriter;
+import org.cache2k.io.CacheWriter;
+
+/**
+ * Wraps a configured {@link AsyncBulkCacheWriter} with a {@link CoalescingBulkWriter}
+ * and configures it with {@link CoalescingBulkWriterConfig}.
+ *
+ * @author Jens Wilke
+ */
+public class CoalescingBulkWriterSupport extends ToggleFeature
+  implements WithSection<CoalescingBulkWriterConfig, CoalescingBulkWriterConfig.Builder>  {
+
+  private static final CoalescingBulkWriterConfig DEFAULT_CONFIG = new CoalescingBulkWriterConfig();
+
+  public static CoalescingBulkWriterSupport enable(Cache2kBuilder<?, ?> b) {
+    return ToggleFeature.enable(b, CoalescingBulkWriterSupport.class);
+  }
+
+  public static void disable(Cache2kBuilder<?, ?> b) {
+    b.disable(CoalescingBulkWriterSupport.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  protected <K, V> void doEnlist(CacheBuildContext<K, V> ctx) {
+    CustomizationSupplier<? extends CacheWriter<K, V>> originalWriterSupplier =
+      ctx.getConfig().getWriter();
+    if (originalWriterSupplier == null) {
+      bulkWriterNeeded();
+    }
+    CustomizationSupplier<CacheWriter<K, V>> supplier = buildContext -> {
+      CacheWriter<K, V> writer = buildContext.createCustomization(originalWriterSupplier);
+      if (!(writer instanceof AsyncBulkCacheWriter)) {
+        bulkWriterNeeded();
+      }
+      CoalescingBulkWriterConfig config =
+        ctx.getConfig().getSections().getSection(CoalescingBulkWriterConfig.class, DEFAULT_CONFIG);
+      return new CoalescingBulkWriter<K, V>((AsyncBulkCacheWriter<K, V>) writer,
+        buildContext.getTimeReference(),
+        CoalescingBulkLoaderSupport.createSchedulerIfSupported(buildContext),
+        config.getMaxDelay(), config.getMaxBatchSize(), config.getMaxQueueSize(),
+        config.getFailureHandler());
+    };
+    ctx.getConfig().setWriter(supplier);
+  }
+
+  private void bulkWriterNeeded() {
+    throw new IllegalArgumentException(this.getClass().getName()
+      + " requires a configured bulk writer");
+  }
+
+  @Override
+  public Class<CoalescingBulkWriterConfig> getConfigClass() {
+    return CoalescingBulkWriterConfig.class;
+  }
+
+}
@@ -22,13 +22,20 @@ package org.cache2k.addon;
 
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
+import org.cache2k.CacheManager;
 import org.cache2k.CustomizationException;
+import org.cache2k.config.Cache2kConfig;
+import org.cache2k.config.CacheBuildContext;
+import org.cache2k.config.CustomizationSupplier;
 import org.cache2k.io.AsyncBulkCacheLoader;
 import org.cache2k.io.AsyncCacheLoader;
 import org.cache2k.operation.TimeReference;
 import org.cache2k.pinpoint.ExpectedException;
 import org.junit.jupiter.api.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,6 +45,7 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -429,4 +437,118 @@ public class CoalescingBulkLoaderTest {
       .isTrue();
   }
 
+  @Test
+  public void adaptiveDelay() throws Exception {
+    CoalescingBulkLoader<Integer, Integer> coalescingLoader = new CoalescingBulkLoader<>(
+      new IdentBulkLoader(), DEFAULT, null, 0, 10_000, 100, false, true);
+    Cache<Integer, Integer> cache = of(Integer.class, Integer.class)
+      .bulkLoader(coalescingLoader)
+      .build();
+    CompletableFuture<Void> req = cache.loadAll(integerRange(0, 10));
+    assertThat(coalescingLoader.getLatencyMillis()).isEqualTo(-1);
+    coalescingLoader.flush();
+    req.get();
+    assertThat(coalescingLoader.getBatchCount()).isEqualTo(1);
+    assertThat(coalescingLoader.getKeyCount()).isEqualTo(10);
+    assertThat(coalescingLoader.getLatencyMillis()).isBetween(0L, 10_000L);
+    assertThat(coalescingLoader.getDelayMillis())
+      .as("delay follows load latency")
+      .isLessThan(10_000);
+    cache.close();
+  }
+
+  /**
+   * Batch size shrinks when the timer only sends single requests and
+   * grows when requests queue up.
+   */
+  @Test
+  public void adaptiveBatchSize() throws Exception {
+    int maxBatchSize = 64;
+    IdentBulkLoader bulkLoader = new IdentBulkLoader();
+    CoalescingBulkLoader<Integer, Integer> coalescingLoader = new CoalescingBulkLoader<>(
+      bulkLoader, DEFAULT, null, 0, 0, maxBatchSize, false, true);
+    Cache<Integer, Integer> cache = of(Integer.class, Integer.class)
+      .bulkLoader(coalescingLoader)
+      .build();
+    for (int i = 0; i < 10; i++) {
+      cache.loadAll(asList(i)).get();
+    }
+    int shrunk = coalescingLoader.getBatchSize();
+    assertThat(shrunk).isLessThan(maxBatchSize);
+    cache.loadAll(integerRange(100, 100 + maxBatchSize * 4)).get();
+    assertThat(coalescingLoader.getBatchSize()).isGreaterThan(shrunk);
+    assertThat(bulkLoader.getMaxBulkRequestSize()).isLessThanOrEqualTo(maxBatchSize);
+    cache.close();
+  }
+
+  /**
+   * A fast loader does not reduce the delay below the minimum.
+   */
+  @Test
+  public void adaptiveMinDelay() throws Exception {
+    CoalescingBulkLoader<Integer, Integer> coalescingLoader = new CoalescingBulkLoader<>(
+      new IdentBulkLoader(), DEFAULT, null, 50, 10_000, 100, false, true);
+    Cache<Integer, Integer> cache = of(Integer.class, Integer.class)
+      .bulkLoader(coalescingLoader)
+      .build();
+    CompletableFuture<Void> req = cache.loadAll(integerRange(0, 10));
+    coalescingLoader.flush();
+    req.get();
+    assertThat(coalescingLoader.getDelayMillis()).isGreaterThanOrEqualTo(50);
+    cache.close();
+  }
+
+  /**
+   * Batching metrics are exported via JMX and the bean is removed when the cache is closed.
+   */
+  @Test
+  public void mxBean() throws Exception {
+    Cache<Integer, Integer> cache = of(Integer.class, Integer.class)
+      .name(CoalescingBulkLoaderTest.class, "mxBean")
+      .bulkLoader(new IdentBulkLoader())
+      .enableWith(CoalescingBulkLoaderSupport.class, b -> b
+        .maxDelay(0, MILLISECONDS)
+        .refreshOnly(false))
+      .build();
+    cache.loadAll(integerRange(0, 10)).get();
+    MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("org.cache2k:type=CoalescingBulkLoader" +
+      ",manager=" + cache.getCacheManager().getName() + ",name=" + cache.getName());
+    assertThat((Long) mbs.getAttribute(name, "KeyCount")).isEqualTo(10);
+    assertThat((Long) mbs.getAttribute(name, "BatchCount")).isGreaterThan(0);
+    cache.close();
+    assertThat(mbs.isRegistered(name)).isFalse();
+  }
+
+  @Test
+  public void adaptiveConfig() {
+    CoalescingBulkLoaderConfig cfg = new CoalescingBulkLoaderConfig();
+    assertThat(cfg.isAdaptive()).isFalse();
+    cfg.builder().adaptive(true);
+    assertThat(cfg.isAdaptive()).isTrue();
+  }
+
+  /**
+   * A build context outside of cache2k core may not support creating a scheduler.
+   * The coalescing loader and writer start their own timer thread then.
+   */
+  @Test
+  public void schedulerNotSupported() {
+    CacheBuildContext<Integer, Integer> ctx = new CacheBuildContext<Integer, Integer>() {
+      @Override
+      public CacheManager getCacheManager() { return null; }
+      @Override
+      public String getName() { return "test"; }
+      @Override
+      public TimeReference getTimeReference() { return DEFAULT; }
+      @Override
+      public Executor getExecutor() { return Runnable::run; }
+      @Override
+      public Cache2kConfig<Integer, Integer> getConfig() { return null; }
+      @Override
+      public <T> T createCustomization(CustomizationSupplier<T> supplier) { return null; }
+    };
+    assertThat(CoalescingBulkLoaderSupport.createSchedulerIfSupported(ctx)).isNull();
+  }
+
 }
@@ -0,0 +1,291 @@
+package org.cache2k.addon;
+
+/*-
+ * #%L
+ * cache2k addon
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.io.AsyncBulkCacheWriter;
+import org.cache2k.io.CacheWriterException;
+import org.cache2k.operation.Scheduler;
+import org.cache2k.operation.TimeReference;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * Tests for coalescing bulk writer
+ *
+ * @author Jens Wilke
+ */
+public class CoalescingBulkWriterTest {
+
+  /**
+   * Records the requests, completion is triggered by the test.
+   */
+  static class RecordingWriter implements AsyncBulkCacheWriter<Integer, Integer> {
+
+    final List<Map<Integer, Integer>> writes = new ArrayList<>();
+    final List<Set<Integer>> deletes = new ArrayList<>();
+    final List<BulkWriteCallback<Integer>> callbacks = new ArrayList<>();
+
+    @Override
+    public synchronized void writeAll(Map<Integer, Integer> writes, Set<Integer> deletes,
+                                      BulkWriteCallback<Integer> callback) {
+      this.writes.add(new HashMap<>(writes));
+      this.deletes.add(new HashSet<>(deletes));
+      callbacks.add(callback);
+    }
+
+    synchronized int requestCount() {
+      return callbacks.size();
+    }
+
+  }
+
+  @Test
+  public void missingBulkWriter() {
+    assertThatCode(() -> {
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .setup(CoalescingBulkWriterSupport::enable).build();
+    }).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void coalesceAndFlushOnSize() {
+    RecordingWriter bulkWriter = new RecordingWriter();
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .writer(bulkWriter)
+      .enableWith(CoalescingBulkWriterSupport.class, b -> b
+        .maxBatchSize(3)
+        .maxDelay(1, TimeUnit.HOURS))
+      .build();
+    cache.put(1, 1);
+    cache.put(1, 2);
+    cache.put(2, 2);
+    cache.remove(2);
+    assertThat(bulkWriter.requestCount()).isEqualTo(0);
+    cache.put(3, 3);
+    assertThat(bulkWriter.requestCount()).isEqualTo(1);
+    assertThat(bulkWriter.writes.get(0)).containsEntry(1, 2).containsEntry(3, 3).hasSize(2);
+    assertThat(bulkWriter.deletes.get(0)).containsExactly(2);
+    bulkWriter.callbacks.get(0).onWriteSuccess();
+    cache.close();
+  }
+
+  /**
+   * A key that is written is not part of another request until the write completes.
+   */
+  @Test
+  public void holdBackWhileWriting() throws Exception {
+    RecordingWriter bulkWriter = new RecordingWriter();
+    CoalescingBulkWriter<Integer, Integer> writer =
+      new CoalescingBulkWriter<>(bulkWriter, Long.MAX_VALUE, 2);
+    writer.write(1, 1);
+    writer.write(2, 2);
+    assertThat(bulkWriter.requestCount()).isEqualTo(1);
+    writer.write(1, 3);
+    writer.flush();
+    assertThat(bulkWriter.requestCount()).isEqualTo(1);
+    assertThat(writer.getQueueSize()).isEqualTo(1);
+    assertThat(writer.getInFlightCount()).isEqualTo(2);
+    bulkWriter.callbacks.get(0).onWriteSuccess();
+    writer.flush();
+    assertThat(bulkWriter.requestCount()).isEqualTo(2);
+    assertThat(bulkWriter.writes.get(1)).containsEntry(1, 3).hasSize(1);
+    bulkWriter.callbacks.get(1).onWriteSuccess();
+    assertThat(writer.getInFlightCount()).isEqualTo(0);
+    assertThat(writer.getBatchCount()).isEqualTo(2);
+    writer.close();
+  }
+
+  @Test
+  public void failures() throws Exception {
+    Map<Integer, Throwable> failed = new ConcurrentHashMap<>();
+    RecordingWriter bulkWriter = new RecordingWriter();
+    CoalescingBulkWriter<Integer, Integer> writer = new CoalescingBulkWriter<>(
+      bulkWriter, TimeReference.DEFAULT, Long.MAX_VALUE, 3, failed::put);
+    writer.write(1, 1);
+    writer.write(2, 2);
+    writer.delete(3);
+    Exception ex = new Exception("ouch");
+    bulkWriter.callbacks.get(0).onWriteFailure(2, ex);
+    bulkWriter.callbacks.get(0).onWriteFailure(ex);
+    assertThat(failed).containsOnlyKeys(1, 2, 3);
+    assertThat(writer.getFailureCount()).isEqualTo(3);
+    bulkWriter.callbacks.get(0).onWriteSuccess();
+    assertThat(writer.getFailureCount()).isEqualTo(3);
+    writer.close();
+  }
+
+  @Test
+  public void exceptionWhenStarting() throws Exception {
+    Map<Integer, Throwable> failed = new ConcurrentHashMap<>();
+    CoalescingBulkWriter<Integer, Integer> writer = new CoalescingBulkWriter<>(
+      (writes, deletes, callback) -> { throw new IllegalStateException(); },
+      TimeReference.DEFAULT, Long.MAX_VALUE, 1, failed::put);
+    writer.write(1, 1);
+    assertThat(failed.get(1)).isInstanceOf(IllegalStateException.class);
+    assertThat(writer.getInFlightCount()).isEqualTo(0);
+    writer.close();
+  }
+
+  @Test
+  public void flushOnDelay() throws Exception {
+    Map<Integer, Integer> backend = new ConcurrentHashMap<>();
+    AsyncBulkCacheWriter<Integer, Integer> bulkWriter = (writes, deletes, callback) -> {
+      backend.putAll(writes);
+      deletes.forEach(backend::remove);
+      callback.onWriteSuccess();
+    };
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .writer(bulkWriter)
+      .enableWith(CoalescingBulkWriterSupport.class, b -> b
+        .maxBatchSize(100)
+        .maxDelay(10, MILLISECONDS))
+      .build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+    }
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (backend.size() < 10 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(backend).hasSize(10);
+    cache.close();
+  }
+
+  @Test
+  public void closeFlushes() throws Exception {
+    RecordingWriter bulkWriter = new RecordingWriter();
+    CoalescingBulkWriter<Integer, Integer> writer =
+      new CoalescingBulkWriter<>(bulkWriter, Long.MAX_VALUE, 100);
+    writer.write(1, 1);
+    writer.close();
+    assertThat(bulkWriter.requestCount()).isEqualTo(1);
+    assertThatCode(() -> writer.write(2, 2)).isInstanceOf(IllegalStateException.class);
+  }
+
+  /**
+   * A write of a new key blocks while the queue is full, a write to a queued key does not.
+   */
+  @Test
+  public void blockWhenQueueFull() throws Exception {
+    RecordingWriter bulkWriter = new RecordingWriter();
+    CoalescingBulkWriter<Integer, Integer> writer = new CoalescingBulkWriter<>(
+      bulkWriter, TimeReference.DEFAULT, null, Long.MAX_VALUE, 1, 1,
+      CoalescingBulkWriter.DEFAULT_FAILURE_HANDLER);
+    writer.write(1, 1);
+    writer.write(1, 2);
+    writer.write(1, 3);
+    assertThat(writer.getQueueSize()).isEqualTo(1);
+    Thread t = new Thread(() -> writer.write(2, 2));
+    t.start();
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (t.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(t.getState()).isEqualTo(Thread.State.WAITING);
+    bulkWriter.callbacks.get(0).onWriteSuccess();
+    t.join();
+    assertThat(bulkWriter.requestCount()).isEqualTo(3);
+    assertThat(bulkWriter.writes.subList(1, 3))
+      .as("held back write and blocked write, sent by different threads")
+      .containsExactlyInAnyOrder(singletonMap(1, 3), singletonMap(2, 2));
+    writer.close();
+  }
+
+  @Test
+  public void illegalQueueSize() {
+    assertThatCode(() -> new CoalescingBulkWriter<>(new RecordingWriter(),
+      TimeReference.DEFAULT, null, 100, 10, 5, CoalescingBulkWriter.DEFAULT_FAILURE_HANDLER))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /**
+   * The writer schedules its timer on the scheduler of the cache.
+   */
+  @Test
+  public void useCacheScheduler() {
+    List<Long> delays = new ArrayList<>();
+    Scheduler scheduler = new Scheduler() {
+      @Override
+      public synchronized void schedule(Runnable runnable, long delayMillis) {
+        delays.add(delayMillis);
+      }
+      @Override
+      public void execute(Runnable command) {
+        command.run();
+      }
+    };
+    RecordingWriter bulkWriter = new RecordingWriter();
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .writer(bulkWriter)
+      .scheduler(scheduler)
+      .enableWith(CoalescingBulkWriterSupport.class, b -> b
+        .maxBatchSize(100)
+        .maxDelay(123, MILLISECONDS))
+      .build();
+    cache.put(1, 1);
+    synchronized (scheduler) {
+      assertThat(delays).contains(123L);
+    }
+    cache.close();
+    assertThat(bulkWriter.requestCount()).isEqualTo(1);
+  }
+
+  /**
+   * Direct use of a bulk writer, waits for the completion and propagates the exception.
+   */
+  @Test
+  public void bulkWriterSingleWrites() {
+    Map<Integer, Integer> backend = new HashMap<>();
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .writer((AsyncBulkCacheWriter<Integer, Integer>) (writes, deletes, callback) -> {
+        if (writes.containsKey(99)) {
+          callback.onWriteFailure(new Exception("ouch"));
+          return;
+        }
+        backend.putAll(writes);
+        deletes.forEach(backend::remove);
+        callback.onWriteSuccess();
+      })
+      .build();
+    cache.put(1, 1);
+    cache.put(2, 2);
+    cache.remove(1);
+    assertThat(backend).containsOnlyKeys(2);
+    assertThatCode(() -> cache.put(99, 1)).isInstanceOf(CacheWriterException.class);
+    cache.close();
+  }
+
+}
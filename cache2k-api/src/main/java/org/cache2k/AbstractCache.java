@@ -175,6 +175,16 @@ public class AbstractCache<K, V> implements Cache<K, V> {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public int getAll(K[] keys, @Nullable V[] values) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int peekAll(K[] keys, @Nullable V[] values) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void putAll(Map<? extends K, ? extends V> valueMap) {
     throw new UnsupportedOperationException();
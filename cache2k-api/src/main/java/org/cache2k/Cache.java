@@ -35,11 +35,13 @@ import org.cache2k.processor.EntryProcessingResult;
 import org.cache2k.processor.MutableCacheEntry;
 
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /* Credits
@@ -782,6 +784,65 @@ public interface Cache<K, V> extends DataAware<K, V>, KeyValueSource<K, V>, Auto
    */
   Map<K, V> peekAll(Iterable<? extends K> keys);
 
+  /**
+   * Bulk version of {@link #get(Object)}, storing the values into a caller provided array
+   * instead of returning a map. This is intended for batch readers that request many keys
+   * at once and want to avoid the allocation of the result map.
+   *
+   * <p>The value for {@code keys[i]} is stored into {@code values[i]}. If no mapping
+   * is present, {@code null} is stored. In contrast to {@link #getAll(Iterable)}
+   * a loader exception is thrown immediately, like in {@link #get(Object)}.
+   *
+   * <p>The operation is not performed atomically.
+   *
+   * @param keys the requested keys
+   * @param values array receiving the values, at least as long as the key array
+   * @return number of keys with a mapping present
+   * @throws NullPointerException if one of the specified keys is null
+   * @throws IllegalArgumentException if the value array is shorter than the key array
+   * @throws CacheLoaderException if the loading produced an exception
+   */
+  default int getAll(K[] keys, @Nullable V[] values) {
+    if (values.length < keys.length) {
+      throw new IllegalArgumentException("value array too short");
+    }
+    Map<K, V> map = getAll(Arrays.asList(keys));
+    int count = 0;
+    for (int i = 0; i < keys.length; i++) {
+      values[i] = map.get(keys[i]);
+      if (values[i] != null || map.containsKey(keys[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Bulk version of {@link #peek(Object)}, storing the values into a caller provided array.
+   * See {@link #getAll(Object[], Object[])}.
+   *
+   * @param keys the requested keys
+   * @param values array receiving the values, at least as long as the key array
+   * @return number of keys with a mapping present
+   * @throws NullPointerException if one of the specified keys is null
+   * @throws IllegalArgumentException if the value array is shorter than the key array
+   * @throws CacheLoaderException if the loading produced an exception
+   */
+  default int peekAll(K[] keys, @Nullable V[] values) {
+    if (values.length < keys.length) {
+      throw new IllegalArgumentException("value array too short");
+    }
+    Map<K, V> map = peekAll(Arrays.asList(keys));
+    int count = 0;
+    for (int i = 0; i < keys.length; i++) {
+      values[i] = map.get(keys[i]);
+      if (values[i] != null || map.containsKey(keys[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   /**
    * Insert all elements of the map into the cache.
    *
@@ -828,6 +889,23 @@ public interface Cache<K, V> extends DataAware<K, V>, KeyValueSource<K, V>, Auto
    */
   Set<CacheEntry<K, V>> entries();
 
+  /**
+   * Performs the action for every entry in the cache. The entries are processed in
+   * parallel in the common fork join pool, so the action needs to be thread safe.
+   * The iteration contract is identical to {@link #keys()}. If the cache is cleared while
+   * the operation is running, it stops.
+   *
+   * <p>This is identical to {@code entries().parallelStream().forEach(action)}.
+   * The entries are split between the workers based on the internal hash table,
+   * which scales scanning large caches with the available cores.
+   *
+   * @param action the action performed for each entry
+   * @throws CacheClosedException if the cache is closed during the operation
+   */
+  default void forEachParallel(Consumer<? super CacheEntry<K, V>> action) {
+    entries().parallelStream().forEach(action);
+  }
+
   /**
    * Removes all cache contents. This has the same semantics of calling
    * remove to every key, except that the cache is trying to optimize the
@@ -373,6 +373,22 @@ public class Cache2kBuilder<K, V>
     return this;
   }
 
+  /**
+   * Number of entries the cache is expected to hold. The internal data structures are
+   * allocated for that size when the cache is built, so filling the cache up to
+   * the expected number of entries, e.g. by a bulk preload at startup, does not need
+   * to grow the data structures. This is only a sizing hint, it does not limit the
+   * number of entries the cache may hold.
+   *
+   * <p>By default, the data structures start small and grow on demand.
+   *
+   * @see #entryCapacity(long)
+   */
+  public final Cache2kBuilder<K, V> expectedEntryCount(long v) {
+    cfg().setExpectedEntryCount(v);
+    return this;
+  }
+
   /**
    * When set to {@code true}, cached values do not expire and do not need refreshing.
    * Entries will need to be removed from the cache explicitly, will be evicted if capacity
@@ -765,6 +781,36 @@ public class Cache2kBuilder<K, V>
     return this;
   }
 
+  /**
+   * When {@code true}, loads, refreshes and asynchronous listener calls run on virtual threads,
+   * one thread per task, instead of the default platform thread pool. This is useful for
+   * loaders that block on slow backends, since a waiting load does not occupy a platform
+   * thread and the number of concurrent loads is not limited by {@link #loaderThreadCount(int)}.
+   * Default is {@code false}.
+   *
+   * <p>Requires Java 21 or newer, building the cache fails with an
+   * {@link IllegalArgumentException} otherwise. An explicitly configured executor via
+   * {@link #loaderExecutor(Executor)}, {@link #refreshExecutor(Executor)} or
+   * {@link #asyncListenerExecutor(Executor)} takes precedence.
+   */
+  public final Cache2kBuilder<K, V> virtualThreads(boolean f) {
+    cfg().setVirtualThreads(f);
+    return this;
+  }
+
+  /**
+   * When {@code true}, entries are locked via compare and swap on a state field instead
+   * of synchronizing on the entry object. Threads waiting for an entry that is locked or
+   * that is being loaded block on a striped table of locks instead of the Java monitor
+   * of the entry. This avoids pinning virtual threads to their carrier threads while
+   * waiting. Default is {@code false}. The option is enabled implicitly by
+   * {@link #virtualThreads(boolean)}.
+   */
+  public final Cache2kBuilder<K, V> stripedEntryLocks(boolean f) {
+    cfg().setStripedEntryLocks(f);
+    return this;
+  }
+
   /**
    * Disables reporting of cache metrics to monitoring systems or management.
    * This should be set, e.g. if a cache is created dynamically and
@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
@@ -183,6 +184,16 @@ public abstract class ForwardingCache<K, V> implements Cache<K, V> {
     return delegate().peekAll(keys);
   }
 
+  @Override
+  public int getAll(K[] keys, @Nullable V[] values) {
+    return delegate().getAll(keys, values);
+  }
+
+  @Override
+  public int peekAll(K[] keys, @Nullable V[] values) {
+    return delegate().peekAll(keys, values);
+  }
+
   @Override
   public void putAll(Map<? extends K, ? extends V> valueMap) {
     delegate().putAll(valueMap);
@@ -198,6 +209,11 @@ public abstract class ForwardingCache<K, V> implements Cache<K, V> {
     return delegate().entries();
   }
 
+  @Override
+  public void forEachParallel(Consumer<? super CacheEntry<K, V>> action) {
+    delegate().forEachParallel(action);
+  }
+
   @Override
   public void removeAll() {
     delegate().removeAll();
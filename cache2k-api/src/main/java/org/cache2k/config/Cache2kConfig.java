@@ -99,6 +99,7 @@ public class Cache2kConfig<K, V> implements ConfigBean<Cache2kConfig<K, V>, Cach
   private @Nullable CacheType<K> keyType;
   private @Nullable CacheType<V> valueType;
   private long entryCapacity = UNSET_LONG;
+  private long expectedEntryCount = UNSET_LONG;
   private @Nullable Duration expireAfterWrite = null;
   private @Nullable Duration idleScanTime = null;
   private @Nullable Duration timerLag = null;
@@ -113,6 +114,8 @@ public class Cache2kConfig<K, V> implements ConfigBean<Cache2kConfig<K, V>, Cach
   private boolean permitNullValues = false;
   private boolean recordModificationTime = false;
   private boolean boostConcurrency = false;
+  private boolean virtualThreads = false;
+  private boolean stripedEntryLocks = false;
 
   private boolean disableStatistics = false;
   private boolean disableMonitoring = false;
@@ -211,6 +214,20 @@ public class Cache2kConfig<K, V> implements ConfigBean<Cache2kConfig<K, V>, Cach
     this.entryCapacity = v;
   }
 
+  /**
+   * @see Cache2kBuilder#expectedEntryCount(long)
+   */
+  public long getExpectedEntryCount() {
+    return expectedEntryCount;
+  }
+
+  /**
+   * @see Cache2kBuilder#expectedEntryCount(long)
+   */
+  public void setExpectedEntryCount(long v) {
+    this.expectedEntryCount = v;
+  }
+
   /**
    * @see Cache2kBuilder#refreshAhead(boolean)
    */
@@ -726,6 +743,28 @@ public class Cache2kConfig<K, V> implements ConfigBean<Cache2kConfig<K, V>, Cach
     boostConcurrency = v;
   }
 
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /**
+   * @see Cache2kBuilder#virtualThreads(boolean)
+   */
+  public void setVirtualThreads(boolean v) {
+    virtualThreads = v;
+  }
+
+  public boolean isStripedEntryLocks() {
+    return stripedEntryLocks;
+  }
+
+  /**
+   * @see Cache2kBuilder#stripedEntryLocks(boolean)
+   */
+  public void setStripedEntryLocks(boolean v) {
+    stripedEntryLocks = v;
+  }
+
   public boolean isDisableMonitoring() {
     return disableMonitoring;
   }
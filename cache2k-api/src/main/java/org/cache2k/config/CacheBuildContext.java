@@ -21,6 +21,7 @@ package org.cache2k.config;
  */
 
 import org.cache2k.CacheManager;
+import org.cache2k.operation.Scheduler;
 import org.cache2k.operation.TimeReference;
 
 import java.util.concurrent.Executor;
@@ -60,6 +61,23 @@ public interface CacheBuildContext<K, V> {
    */
   Executor getExecutor();
 
+  /**
+   * Create a new scheduler instance, which uses the scheduler configured for the cache.
+   * The instance must be closed, if it implements {@link AutoCloseable}. This allows
+   * customizations to share the timer threads of the cache.
+   *
+   * <p>The default implementation throws an exception, so existing implementations
+   * outside of cache2k stay compatible. The build context of the cache2k core
+   * implementation supports it. Callers should fall back to their own timer thread
+   * if not supported.
+   *
+   * @throws UnsupportedOperationException if not supported by the implementation
+   * @see Cache2kConfig#getScheduler()
+   */
+  default Scheduler createScheduler() {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * The effective cache configuration. The data is only valid within the call.
    * Customizations must copy the relevant configuration parameters and not hold a
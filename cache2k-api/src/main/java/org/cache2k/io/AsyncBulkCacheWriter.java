@@ -0,0 +1,106 @@
+package org.cache2k.io;
+
+/*-
+ * #%L
+ * cache2k API
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Extension of {@link CacheWriter} that writes and deletes multiple keys in one
+ * request and completes asynchronously. This interface is meant for implementations that
+ * defer and combine writes, e.g. {@code org.cache2k.addon.CoalescingBulkWriter}, which
+ * is configured as cache writer and forwards the collected writes to a bulk writer.
+ *
+ * <p>If configured directly as writer, every cache mutation is passed on
+ * as a single bulk request via the default methods {@link #write} and {@link #delete},
+ * which wait for the completion.
+ *
+ * @author Jens Wilke
+ * @see AsyncBulkCacheLoader
+ */
+@FunctionalInterface
+public interface AsyncBulkCacheWriter<K, V> extends CacheWriter<K, V> {
+
+  /**
+   * Write and delete the specified keys. A key is either contained in the writes or
+   * in the deletes. The order in which the keys are processed is not relevant.
+   *
+   * <p><b>Calling cache operations:</b> It is illegal to call any
+   * cache methods from this method.
+   *
+   * @param writes keys and values to write, may contain null values if null is permitted
+   * @param deletes keys to delete
+   * @param callback callback to report the completion of the request
+   * @throws Exception An exception, if the request cannot be started. The exception
+   *                   will be treated as failure for all keys of the request.
+   */
+  void writeAll(Map<K, V> writes, Set<K> deletes, BulkWriteCallback<K> callback)
+    throws Exception;
+
+  /**
+   * Write a single value via {@link #writeAll} and wait for the completion.
+   *
+   * @see CacheWriter#write
+   */
+  @Override
+  default void write(K key, V value) throws Exception {
+    SingleWriteCallback<K> callback = new SingleWriteCallback<>();
+    writeAll(Collections.singletonMap(key, value), Collections.emptySet(), callback);
+    callback.await();
+  }
+
+  /**
+   * Delete a single key via {@link #writeAll} and wait for the completion.
+   *
+   * @see CacheWriter#delete
+   */
+  @Override
+  default void delete(K key) throws Exception {
+    SingleWriteCallback<K> callback = new SingleWriteCallback<>();
+    writeAll(Collections.emptyMap(), Collections.singleton(key), callback);
+    callback.await();
+  }
+
+  interface BulkWriteCallback<K> {
+
+    /**
+     * The request is completed. All keys that were not reported as failed
+     * via {@link #onWriteFailure(Object, Throwable)} are written successfully.
+     * Completes the request, subsequent calls have no effect.
+     */
+    void onWriteSuccess();
+
+    /**
+     * The request failed for all keys, that were not reported individually before.
+     * Completes the request, subsequent calls have no effect.
+     */
+    void onWriteFailure(Throwable exception);
+
+    /**
+     * Report a failure for a single key. The request is completed by calling
+     * {@link #onWriteSuccess()} or {@link #onWriteFailure(Throwable)} afterwards.
+     */
+    void onWriteFailure(K key, Throwable exception);
+
+  }
+
+}
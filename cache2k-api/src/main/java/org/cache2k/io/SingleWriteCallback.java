@@ -0,0 +1,65 @@
+package org.cache2k.io;
+
+/*-
+ * #%L
+ * cache2k API
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Callback for a bulk write request with a single key. Used by the default methods of
+ * {@link AsyncBulkCacheWriter} to wait for the completion.
+ *
+ * @author Jens Wilke
+ */
+final class SingleWriteCallback<K> extends CompletableFuture<Void>
+  implements AsyncBulkCacheWriter.BulkWriteCallback<K> {
+
+  @Override
+  public void onWriteSuccess() {
+    complete(null);
+  }
+
+  @Override
+  public void onWriteFailure(Throwable exception) {
+    completeExceptionally(exception);
+  }
+
+  @Override
+  public void onWriteFailure(K key, Throwable exception) {
+    completeExceptionally(exception);
+  }
+
+  /**
+   * Wait for the completion and rethrow a reported failure.
+   */
+  void await() throws Exception {
+    try {
+      get();
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw ex;
+    }
+  }
+
+}
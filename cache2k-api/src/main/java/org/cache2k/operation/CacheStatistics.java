@@ -84,6 +84,42 @@ public interface CacheStatistics {
    */
   long getTotalLoadMillis();
 
+  /**
+   * Duration in milliseconds below which the given percentage of the loads completed,
+   * e.g. {@code getLoadMillisPercentile(99)} for the 99th percentile. Counts loads
+   * triggered by a read through or an explicit load, but not refreshes. The durations
+   * are recorded in a histogram with a relative error of at most 12.5%, the value
+   * returned is the upper bound.
+   *
+   * <p>The default implementation returns 0, for implementations that do not
+   * record load durations.
+   *
+   * @param percentile percentile between 0 and 100
+   * @return the duration, or 0 if there was no load
+   */
+  default double getLoadMillisPercentile(double percentile) {
+    return 0;
+  }
+
+  /**
+   * Duration percentile of the loads for a refresh.
+   *
+   * @see #getLoadMillisPercentile(double)
+   */
+  default double getRefreshMillisPercentile(double percentile) {
+    return 0;
+  }
+
+  /**
+   * Duration percentile of the requests to a bulk loader. One request loads
+   * multiple entries.
+   *
+   * @see #getLoadMillisPercentile(double)
+   */
+  default double getBulkLoadMillisPercentile(double percentile) {
+    return 0;
+  }
+
   /**
    * Refreshed entries counter.
    */
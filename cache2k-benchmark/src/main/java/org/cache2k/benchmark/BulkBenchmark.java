@@ -0,0 +1,145 @@
+package org.cache2k.benchmark;
+
+/*-
+ * #%L
+ * cache2k benchmark
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.processor.EntryProcessingResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk operations on a cache with loader that holds the whole key space. Each operation
+ * requests a batch of keys taken from the generated key sequence.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class BulkBenchmark {
+
+  @Param({"UNIFORM", "ZIPFIAN"})
+  public KeyDistribution distribution;
+
+  @Param("100000")
+  public int keySpace;
+
+  @Param({"10", "100"})
+  public int batchSize;
+
+  private Cache<Integer, Integer> cache;
+  private Integer[] keys;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    keys = distribution.generateObjects(keySpace, KeySequence.LENGTH + batchSize, 1802);
+    cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(keySpace)
+      .loader(key -> key)
+      .build();
+    for (int i = 0; i < keySpace; i++) {
+      cache.put(i, i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    cache.close();
+  }
+
+  private List<Integer> nextBatch(KeySequence sequence) {
+    int start = sequence.next();
+    return Arrays.asList(keys).subList(start, start + batchSize);
+  }
+
+  @Benchmark
+  public Map<Integer, Integer> getAll(KeySequence sequence) {
+    return cache.getAll(nextBatch(sequence));
+  }
+
+  /**
+   * Array based variant, which does not construct a result map.
+   */
+  @Benchmark
+  public Integer[] getAllArray(KeySequence sequence, BatchArrays arrays) {
+    Integer[] batch = arrays.keys(batchSize);
+    System.arraycopy(keys, sequence.next(), batch, 0, batchSize);
+    Integer[] values = arrays.values(batchSize);
+    cache.getAll(batch, values);
+    return values;
+  }
+
+  @Benchmark
+  public Map<Integer, EntryProcessingResult<Integer>> invokeAll(KeySequence sequence) {
+    return cache.invokeAll(nextBatch(sequence), entry -> entry.getValue());
+  }
+
+  /**
+   * Key and result arrays per thread, so only the cache operation is measured.
+   */
+  @State(Scope.Thread)
+  public static class BatchArrays {
+
+    private Integer[] keys = new Integer[0];
+    private Integer[] values = new Integer[0];
+
+    Integer[] keys(int size) {
+      if (keys.length != size) {
+        keys = new Integer[size];
+      }
+      return keys;
+    }
+
+    Integer[] values(int size) {
+      if (values.length != size) {
+        values = new Integer[size];
+      }
+      return values;
+    }
+
+  }
+
+  @Threads(Threads.MAX)
+  public static class MultiThreaded extends BulkBenchmark { }
+
+}
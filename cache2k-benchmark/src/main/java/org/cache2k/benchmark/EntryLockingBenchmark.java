@@ -0,0 +1,109 @@
+package org.cache2k.benchmark;
+
+/*-
+ * #%L
+ * cache2k benchmark
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Mutations with the default entry locking, which synchronizes on the entry, compared
+ * to the striped entry locking enabled by {@code stripedEntryLocks}. A small key space
+ * lets the threads contend on the same entries.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class EntryLockingBenchmark {
+
+  @Param({"false", "true"})
+  public boolean stripedEntryLocks;
+
+  @Param({"16", "100000"})
+  public int keySpace;
+
+  private Cache<Integer, Integer> cache;
+  private Integer[] keys;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    keys = KeyDistribution.UNIFORM.generateObjects(keySpace, KeySequence.LENGTH, 1802);
+    cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(keySpace)
+      .stripedEntryLocks(stripedEntryLocks)
+      .build();
+    for (int i = 0; i < keySpace; i++) {
+      cache.put(i, i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    cache.close();
+  }
+
+  @Benchmark
+  public void put(KeySequence sequence) {
+    Integer key = keys[sequence.next()];
+    cache.put(key, key);
+  }
+
+  @Benchmark
+  public Integer computeIfAbsent(KeySequence sequence) {
+    return cache.computeIfAbsent(keys[sequence.next()], Function.identity());
+  }
+
+  @Benchmark
+  public Integer peekAndReplace(KeySequence sequence) {
+    Integer key = keys[sequence.next()];
+    return cache.peekAndReplace(key, key);
+  }
+
+  /**
+   * Identical operations in a single thread, showing the uncontended lock overhead.
+   */
+  @Threads(1)
+  public static class SingleThreaded extends EntryLockingBenchmark { }
+
+}
@@ -0,0 +1,136 @@
+package org.cache2k.benchmark;
+
+/*-
+ * #%L
+ * cache2k benchmark
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.core.eviction.EvictionPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts into a full cache, so every insert of a new key causes an eviction.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class EvictionBenchmark {
+
+  @Param({"CLOCK_PRO_PLUS", "TINY_LFU"})
+  public EvictionPolicy policy;
+
+  @Param({"UNIFORM", "ZIPFIAN"})
+  public KeyDistribution distribution;
+
+  @Param("10000")
+  public int entryCapacity;
+
+  /**
+   * Eviction write buffer size, 0 disables the buffer.
+   */
+  @Param({"0", "64"})
+  public int evictionWriteBuffer;
+
+  private Cache<Integer, Integer> cache;
+  private Integer[] keys;
+
+  /**
+   * The key space is ten times the capacity, so a mix of updates and
+   * inserts with eviction happens.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    keys = distribution.generateObjects(entryCapacity * 10, KeySequence.LENGTH, 1802);
+    cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(entryCapacity)
+      .with(InternalConfig.class, b -> b
+        .evictionPolicy(policy)
+        .evictionWriteBuffer(evictionWriteBuffer))
+      .build();
+    for (int i = 0; i < entryCapacity; i++) {
+      cache.put(i, i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    cache.close();
+  }
+
+  /**
+   * Keys from the generated distribution.
+   */
+  @Benchmark
+  public void put(KeySequence sequence) {
+    Integer key = keys[sequence.next()];
+    cache.put(key, key);
+  }
+
+  /**
+   * Insert storm, every put inserts a key not seen before and evicts another entry.
+   */
+  @Benchmark
+  public void putNewKey(NewKeys newKeys) {
+    int key = newKeys.next();
+    cache.put(key, key);
+  }
+
+  /**
+   * Counts up from a random start per thread. The threads may collide after
+   * 2^32 / thread count inserts, which is sufficiently rare.
+   */
+  @State(Scope.Thread)
+  public static class NewKeys {
+
+    private int key = ThreadLocalRandom.current().nextInt();
+
+    int next() {
+      return key++;
+    }
+
+  }
+
+  @Threads(Threads.MAX)
+  public static class MultiThreaded extends EvictionBenchmark { }
+
+}
@@ -0,0 +1,134 @@
+package org.cache2k.benchmark;
+
+/*-
+ * #%L
+ * cache2k benchmark
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Operations on a cache without loader and listeners, which is a plain {@code HeapCache}.
+ * With {@code Integer} as key type the cache builder creates an {@code IntHeapCache},
+ * which stores the key in the entry hash code field, with {@code Long} a
+ * {@code LongHeapCache}. The parameter {@code openAddressing} compares the open addressing
+ * hash table with the default chained one. The cache holds the whole key space,
+ * so every request is a hit.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class HeapCacheBenchmark {
+
+  @Param({"UNIFORM", "ZIPFIAN"})
+  public KeyDistribution distribution;
+
+  /**
+   * Key type of the cache, {@code Object} yields a {@code HeapCache},
+   * {@code Integer} an {@code IntHeapCache} and {@code Long} a {@code LongHeapCache}.
+   */
+  @Param({"Object", "Integer", "Long"})
+  public String keyType;
+
+  /**
+   * @see InternalConfig.Builder#openAddressingHash(boolean)
+   */
+  @Param({"false", "true"})
+  public boolean openAddressing;
+
+  @Param("100000")
+  public int keySpace;
+
+  private Cache<Object, Object> cache;
+  private Object[] keys;
+
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    Integer[] integers = distribution.generateObjects(keySpace, KeySequence.LENGTH, 1802);
+    boolean longKeys = "Long".equals(keyType);
+    keys = new Object[integers.length];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = longKeys ? (Object) integers[i].longValue() : integers[i];
+    }
+    Class<?> type =
+      longKeys ? Long.class : "Integer".equals(keyType) ? Integer.class : Object.class;
+    cache = (Cache<Object, Object>)
+      Cache2kBuilder.of(type, Object.class)
+        .entryCapacity(keySpace)
+        .with(InternalConfig.class, b -> b.openAddressingHash(openAddressing))
+        .build();
+    for (int i = 0; i < keySpace; i++) {
+      Object key = longKeys ? (Object) (long) i : i;
+      cache.put(key, key);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    cache.close();
+  }
+
+  @Benchmark
+  public Object get(KeySequence sequence) {
+    return cache.get(keys[sequence.next()]);
+  }
+
+  @Benchmark
+  public void put(KeySequence sequence) {
+    Object key = keys[sequence.next()];
+    cache.put(key, key);
+  }
+
+  @Benchmark
+  public Object computeIfAbsent(KeySequence sequence) {
+    return cache.computeIfAbsent(keys[sequence.next()], Function.identity());
+  }
+
+  /**
+   * Identical operations with one thread per available processor.
+   */
+  @Threads(Threads.MAX)
+  public static class MultiThreaded extends HeapCacheBenchmark { }
+
+}
@@ -0,0 +1,93 @@
+package org.cache2k.benchmark;
+
+/*-
+ * #%L
+ * cache2k benchmark
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates the sequence of requested keys for a benchmark. The sequence is generated
+ * before the measurement with a fixed seed, so all runs request identical keys.
+ *
+ * @author Jens Wilke
+ */
+public enum KeyDistribution {
+
+  /**
+   * Every key in the key space is requested with the same probability.
+   */
+  UNIFORM {
+    @Override
+    public int[] generate(int keySpace, int count, long seed) {
+      Random random = new Random(seed);
+      int[] keys = new int[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = random.nextInt(keySpace);
+      }
+      return keys;
+    }
+  },
+
+  /**
+   * Key {@code k} is requested with a probability proportional to
+   * {@code 1 / (k + 1) ^ }{@value #ZIPF_EXPONENT}, which is the typical skew of web and
+   * database workloads. Key {@code 0} is the most popular one. There is no need to scramble
+   * the popular keys, since the cache spreads the hash codes.
+   */
+  ZIPFIAN {
+    @Override
+    public int[] generate(int keySpace, int count, long seed) {
+      double[] cumulative = new double[keySpace];
+      double sum = 0;
+      for (int i = 0; i < keySpace; i++) {
+        sum += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+        cumulative[i] = sum;
+      }
+      Random random = new Random(seed);
+      int[] keys = new int[count];
+      for (int i = 0; i < count; i++) {
+        int idx = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+        keys[i] = Math.min(keySpace - 1, idx >= 0 ? idx : -idx - 1);
+      }
+      return keys;
+    }
+  };
+
+  public static final double ZIPF_EXPONENT = 0.99;
+
+  /**
+   * Generate a sequence of requested keys in the range {@code 0} to {@code keySpace - 1}.
+   */
+  public abstract int[] generate(int keySpace, int count, long seed);
+
+  /**
+   * Generate the key sequence as boxed integers, so boxing is not part of the measurement.
+   */
+  public Integer[] generateObjects(int keySpace, int count, long seed) {
+    int[] keys = generate(keySpace, count, seed);
+    Integer[] objects = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      objects[i] = keys[i];
+    }
+    return objects;
+  }
+
+}
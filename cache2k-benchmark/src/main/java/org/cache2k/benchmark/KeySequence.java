@@ -0,0 +1,53 @@
+package org.cache2k.benchmark;
+
+/*-
+ * #%L
+ * cache2k benchmark
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Position of a benchmark thread within the generated key sequence. Each thread starts
+ * at a random position, so the threads do not request the same keys in lock step.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Thread)
+public class KeySequence {
+
+  /**
+   * Length of the generated key sequence. Must be power of two.
+   */
+  public static final int LENGTH = 1 << 20;
+
+  public static final int MASK = LENGTH - 1;
+
+  private int index = ThreadLocalRandom.current().nextInt();
+
+  /**
+   * Index of the next key within the sequence.
+   */
+  public int next() {
+    return index++ & MASK;
+  }
+
+}
@@ -0,0 +1,122 @@
+package org.cache2k.benchmark;
+
+/*-
+ * #%L
+ * cache2k benchmark
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.timing.DefaultTimer;
+import org.cache2k.core.timing.TimerTask;
+import org.cache2k.operation.Scheduler;
+import org.cache2k.operation.TimeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling and cancelling of timer tasks in the {@link DefaultTimer}, as done for every
+ * entry with expiry. The scheduler never wakes the timer up, so no task executes and only
+ * the timer structure and the lock are measured.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class TimerBenchmark {
+
+  /**
+   * Maximum time in the future a task is scheduled for, in milliseconds.
+   */
+  @Param({"1000", "600000"})
+  public long maximumDelay;
+
+  private DefaultTimer timer;
+  private long now;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    timer = new DefaultTimer(TimeReference.DEFAULT, new Scheduler() {
+      @Override
+      public void schedule(Runnable runnable, long delayMillis) { }
+
+      @Override
+      public void execute(Runnable command) { }
+    });
+    now = TimeReference.DEFAULT.ticks();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    timer.cancelAll();
+  }
+
+  /**
+   * Schedule with a random delay and cancel again, as happens for an entry
+   * with expiry that gets removed or updated.
+   */
+  @Benchmark
+  public TimerTask scheduleAndCancel() {
+    TimerTask task = new NoopTask();
+    timer.schedule(task, now + 1 + ThreadLocalRandom.current().nextLong(maximumDelay));
+    timer.cancel(task);
+    return task;
+  }
+
+  /**
+   * Schedule without cancel, the timer structure fills up during the iteration.
+   */
+  @Benchmark
+  public TimerTask schedule() {
+    TimerTask task = new NoopTask();
+    timer.schedule(task, now + 1 + ThreadLocalRandom.current().nextLong(maximumDelay));
+    return task;
+  }
+
+  @TearDown(Level.Iteration)
+  public void cancelAll() {
+    timer.cancelAll();
+  }
+
+  static class NoopTask extends TimerTask {
+    @Override
+    protected void action() { }
+  }
+
+  @Threads(Threads.MAX)
+  public static class MultiThreaded extends TimerBenchmark { }
+
+}
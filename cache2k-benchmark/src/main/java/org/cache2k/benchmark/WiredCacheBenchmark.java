@@ -0,0 +1,112 @@
+package org.cache2k.benchmark;
+
+/*-
+ * #%L
+ * cache2k benchmark
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.event.CacheEntryCreatedListener;
+import org.cache2k.event.CacheEntryUpdatedListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operations on a cache with loader and listeners, which is a {@code WiredCache}
+ * in front of the {@code HeapCache}. The capacity is half of the key space, so reads
+ * are a mix of hits and loads and inserts cause evictions.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class WiredCacheBenchmark {
+
+  @Param({"UNIFORM", "ZIPFIAN"})
+  public KeyDistribution distribution;
+
+  @Param("100000")
+  public int keySpace;
+
+  private final LongAdder eventCount = new LongAdder();
+  private Cache<Integer, Integer> cache;
+  private Integer[] keys;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    keys = distribution.generateObjects(keySpace, KeySequence.LENGTH, 1802);
+    cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(keySpace / 2)
+      .loader(key -> key)
+      .addListener((CacheEntryCreatedListener<Integer, Integer>) (c, entry) ->
+        eventCount.increment())
+      .addListener((CacheEntryUpdatedListener<Integer, Integer>) (c, entry, newEntry) ->
+        eventCount.increment())
+      .build();
+    for (int i = 0; i < keySpace; i++) {
+      cache.get(i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    cache.close();
+  }
+
+  /**
+   * Get with read through on a miss.
+   */
+  @Benchmark
+  public Integer get(KeySequence sequence) {
+    return cache.get(keys[sequence.next()]);
+  }
+
+  /**
+   * Put sending a created or updated event to the listeners.
+   */
+  @Benchmark
+  public void put(KeySequence sequence) {
+    Integer key = keys[sequence.next()];
+    cache.put(key, key);
+  }
+
+  @Threads(Threads.MAX)
+  public static class MultiThreaded extends WiredCacheBenchmark { }
+
+}
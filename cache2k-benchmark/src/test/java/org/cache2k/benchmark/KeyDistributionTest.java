@@ -0,0 +1,74 @@
+package org.cache2k.benchmark;
+
+/*-
+ * #%L
+ * cache2k benchmark
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+public class KeyDistributionTest {
+
+  @Test
+  public void keysWithinKeySpace() {
+    for (KeyDistribution distribution : KeyDistribution.values()) {
+      int[] keys = distribution.generate(100, 10000, 1802);
+      assertThat(keys).hasSize(10000);
+      for (int k : keys) {
+        assertThat(k).isBetween(0, 99);
+      }
+    }
+  }
+
+  @Test
+  public void sameSeedSameSequence() {
+    assertThat(KeyDistribution.ZIPFIAN.generate(1000, 100, 4711))
+      .isEqualTo(KeyDistribution.ZIPFIAN.generate(1000, 100, 4711));
+  }
+
+  /**
+   * With an exponent close to one, the most popular key gets requested roughly with
+   * a probability of {@code 1 / ln(keySpace)}, the uniform distribution requests
+   * each key with probability {@code 1 / keySpace}.
+   */
+  @Test
+  public void zipfianIsSkewed() {
+    int keySpace = 1000;
+    int count = 100000;
+    assertThat(countKey(KeyDistribution.ZIPFIAN.generate(keySpace, count, 1802), 0))
+      .isGreaterThan(count / 10);
+    assertThat(countKey(KeyDistribution.UNIFORM.generate(keySpace, count, 1802), 0))
+      .isLessThan(count / 100 * 2);
+  }
+
+  private static int countKey(int[] keys, int key) {
+    int count = 0;
+    for (int k : keys) {
+      if (k == key) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+}
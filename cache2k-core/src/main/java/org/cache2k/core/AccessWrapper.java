@@ -75,11 +75,7 @@ public class AccessWrapper<V> extends ValueWrapper<V> {
   public V getValueOrException() {
     int countResult = UPDATER.decrementAndGet(this);
     if (countResult <= 0) {
-      synchronized (entry) {
-        if (entry.getValueOrWrapper() == this) {
-          entry.setValueOrWrapper(value);
-        }
-      }
+      entry.compareAndSetValueOrWrapper(this, value);
     }
     return value;
   }
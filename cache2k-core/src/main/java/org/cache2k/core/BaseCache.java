@@ -42,6 +42,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 
@@ -80,6 +81,11 @@ public abstract class BaseCache<K, V> implements InternalCache<K, V> {
 
   protected abstract Iterator<CacheEntry<K, V>> iterator();
 
+  /**
+   * Spliterator for the entries, supporting parallel streams.
+   */
+  protected abstract Spliterator<CacheEntry<K, V>> spliterator();
+
   /**
    * Key iteration on top of normal iterator.
    */
@@ -96,6 +102,11 @@ public abstract class BaseCache<K, V> implements InternalCache<K, V> {
         return BaseCache.this.iterator();
       }
 
+      @Override
+      public Spliterator<CacheEntry<K, V>> spliterator() {
+        return BaseCache.this.spliterator();
+      }
+
       @Override
       public int size() {
         return (int) getTotalEntryCount();
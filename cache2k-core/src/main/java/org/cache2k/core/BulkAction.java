@@ -72,6 +72,11 @@ public abstract class BulkAction<K, V, R> implements
   private final Set<K> toLoad;
   private final AsyncCacheLoader<K, V> loader;
   private Collection<EntryAction<K, V, R>> toStart;
+  /**
+   * Pending bulk load request of each key, to record the bulk load duration.
+   * Only used with statistics enabled.
+   */
+  private Map<K, MyBulkLoadContext> key2bulkRequest;
   private int completedCount = 0;
   /** For debugging to check complete is called once. */
   private boolean completedCalled = false;
@@ -246,8 +251,12 @@ public abstract class BulkAction<K, V, R> implements
   private void startLoadingBulk() {
     AsyncBulkCacheLoader<K, V> bulkLoader = (AsyncBulkCacheLoader<K, V>) loader;
     Set<K> keysCopy = Collections.unmodifiableSet(new HashSet<K>(toLoad));
+    MyBulkLoadContext ctx = new MyBulkLoadContext(keysCopy, this);
+    if (!heapCache.metrics.isDisabled()) {
+      recordBulkLoadStart(ctx);
+    }
     try {
-      bulkLoader.loadAll(keysCopy, new MyBulkLoadContext(keysCopy, this), this);
+      bulkLoader.loadAll(keysCopy, ctx, this);
     } catch (Throwable ouch) {
       onLoadFailure(ouch);
     }
@@ -268,6 +277,7 @@ public abstract class BulkAction<K, V, R> implements
   private void onLoadSuccessInternal(K key, V value) {
     synchronized (this) {
       expectKey(key);
+      bulkLoadCompleted(key);
     }
     EntryAction<K, V, R> action = key2action.get(key);
     action.onLoadSuccess(value);
@@ -283,6 +293,9 @@ public abstract class BulkAction<K, V, R> implements
     synchronized (this) {
       toLoadCopy = new HashSet<>(toLoad);
       toLoad.clear();
+      for (K key : toLoadCopy) {
+        bulkLoadCompleted(key);
+      }
     }
     for (K key : toLoadCopy) {
       EntryAction<K, V, R> action = key2action.get(key);
@@ -295,7 +308,10 @@ public abstract class BulkAction<K, V, R> implements
     Set<K> copy = new HashSet<>();
     synchronized (this) {
       for (K key : keys) {
-        if (toLoad.remove(key)) { copy.add(key); }
+        if (toLoad.remove(key)) {
+          copy.add(key);
+          bulkLoadCompleted(key);
+        }
       }
     }
     for (K key : copy) {
@@ -304,6 +320,31 @@ public abstract class BulkAction<K, V, R> implements
     }
   }
 
+  private synchronized void recordBulkLoadStart(MyBulkLoadContext ctx) {
+    if (key2bulkRequest == null) {
+      key2bulkRequest = new HashMap<>(ctx.keys.size());
+    }
+    ctx.startTicks = heapCache.getClock().ticks();
+    ctx.remaining = ctx.keys.size();
+    for (K key : ctx.keys) {
+      key2bulkRequest.put(key, ctx);
+    }
+  }
+
+  /**
+   * Record the bulk load duration, when the last key of the request completed.
+   * Assumes the lock on this.
+   */
+  private void bulkLoadCompleted(K key) {
+    if (key2bulkRequest == null) {
+      return;
+    }
+    MyBulkLoadContext ctx = key2bulkRequest.remove(key);
+    if (ctx != null && --ctx.remaining == 0) {
+      heapCache.metrics.bulkLoad(heapCache.getClock().ticks() - ctx.startTicks);
+    }
+  }
+
   public void expectKey(K key) {
     boolean present = toLoad.remove(key);
     if (!present) {
@@ -316,6 +357,9 @@ public abstract class BulkAction<K, V, R> implements
     boolean present;
     synchronized (this) {
       present = toLoad.remove(key);
+      if (present) {
+        bulkLoadCompleted(key);
+      }
     }
     if (!present) { return; }
     EntryAction<K, V, R> action = key2action.get(key);
@@ -408,6 +452,10 @@ public abstract class BulkAction<K, V, R> implements
     private final Set<K> keys;
     private final AsyncBulkCacheLoader.BulkCallback<K, V> callback;
     private Map<K, Context<K, V>> contextMap;
+    /** Start of the bulk load, if statistics are enabled */
+    private long startTicks;
+    /** Keys not yet completed, if statistics are enabled */
+    private int remaining;
 
     MyBulkLoadContext(Set<K> keys, AsyncBulkCacheLoader.BulkCallback<K, V> callback) {
       this.keys = keys;
@@ -24,6 +24,7 @@ import org.cache2k.core.api.CommonMetrics;
 import org.cache2k.core.api.InternalCache;
 import org.cache2k.core.api.InternalCacheInfo;
 import org.cache2k.core.eviction.EvictionMetrics;
+import org.cache2k.core.util.LatencyHistogram;
 import org.cache2k.core.util.Util;
 
 import java.text.DecimalFormat;
@@ -189,6 +190,21 @@ class CacheBaseInfo implements InternalCacheInfo {
     return cache.getClock().ticksToMillisCeiling(metrics.getLoadTicks());
   }
   @Override
+  public double getLoadMillisPercentile(double percentile) {
+    return histogramMillis(metrics.getLoadHistogram(), percentile);
+  }
+  @Override
+  public double getRefreshMillisPercentile(double percentile) {
+    return histogramMillis(metrics.getRefreshHistogram(), percentile);
+  }
+  @Override
+  public double getBulkLoadMillisPercentile(double percentile) {
+    return histogramMillis(metrics.getBulkLoadHistogram(), percentile);
+  }
+  private double histogramMillis(LatencyHistogram histogram, double percentile) {
+    return cache.getClock().ticksToMillisCeiling(histogram.getValueAtPercentile(percentile));
+  }
+  @Override
   public boolean isIntegrityFailure() {
     return integrityState.isFailure();
   }
@@ -258,6 +274,8 @@ class CacheBaseInfo implements InternalCacheInfo {
       .append("goneSpin=").append(getGoneSpinCount()).append(", ")
       .append("hitRate=").append(getHitRateString()).append(", ")
       .append("msecs/load=").append(formatMillisPerLoad(getMillisPerLoad())).append(", ")
+      .append("msecs/load99=").append(formatMillisPerLoad(getLoadMillisPercentile(99)))
+      .append(", ")
       .append("created=").append(timestampToString(getStartedTime())).append(", ")
       .append("cleared=").append(timestampToString(getClearedTime())).append(", ")
       .append("infoCreated=").append(timestampToString(getInfoCreatedTime())).append(", ")
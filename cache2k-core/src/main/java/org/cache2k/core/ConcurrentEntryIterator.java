@@ -35,6 +35,9 @@ import java.util.NoSuchElementException;
  * entry is only iterated once, the iterator has an internal bookkeeping, what was previously
  * iterated.
  *
+ * <p>The same applies to the open addressing hash, if a removal moved entries within
+ * its table, see {@link StampedHash#getRelocationCount()}.
+ *
  * <p>Clear: A clear operation stops current iterations.
  *
  * <p>Close: A close operation will stop the iteration and yield a {@link CacheClosedException}
@@ -47,8 +50,12 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
   private Entry<K, V> lastEntry = null;
   private Entry<K, V> nextEntry = null;
   private long clearCount;
+  private long relocationCount;
   private StampedHash<K, V> hash;
+  private Entry<K, V>[][] tables;
   private Entry<K, V>[] hashArray;
+  private int tableIndex;
+  private int slotIndex;
   private HashMap<K, K> seen = new HashMap<>();
 
   public ConcurrentEntryIterator(HeapCache<K, V> cache) {
@@ -111,7 +118,6 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
       clearOutReferences();
       return null;
     }
-    int idx = 0;
     if (lastEntry != null) {
       e = lastEntry.another;
       if (e != null) {
@@ -121,16 +127,22 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
           return e;
         }
       }
-      idx = (cache.spreadHashFromEntry(lastEntry) & (hashArray.length - 1)) + 1;
+      slotIndex++;
     }
     for (;;) {
-      if (idx >= hashArray.length) {
-        if (switchAndCheckAbort()) {
-          return null;
+      if (slotIndex >= hashArray.length) {
+        slotIndex = 0;
+        tableIndex++;
+        if (tableIndex >= tables.length) {
+          if (switchAndCheckAbort()) {
+            return null;
+          }
+          tableIndex = 0;
         }
-        idx = 0;
+        hashArray = tables[tableIndex];
+        continue;
       }
-      e = hashArray[idx];
+      e = hashArray[slotIndex];
       if (e != null) {
         e = checkIteratedOrNext(e);
         if (e != null) {
@@ -138,7 +150,7 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
           return e;
         }
       }
-      idx++;
+      slotIndex++;
     }
   }
 
@@ -181,13 +193,21 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
       clearOutReferences();
       return true;
     }
-    hashArray = hash.getEntries();
+    int count = hash.getTableCount();
+    tables = new Entry[count][];
+    for (int i = 0; i < count; i++) {
+      tables[i] = hash.getTable(i);
+    }
     clearCount = hash.getClearOrCloseCount();
-    boolean cacheClosed = hashArray == null;
+    relocationCount = hash.getRelocationCount();
+    boolean cacheClosed = tables[0] == null;
     if (cacheClosed) {
       clearOutReferences();
       throw new CacheClosedException(cache);
     }
+    hashArray = tables[0];
+    tableIndex = 0;
+    slotIndex = 0;
     return false;
   }
 
@@ -198,6 +218,7 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
    */
   private void clearOutReferences() {
     hash = null;
+    tables = null;
     hashArray = null;
     seen = null;
   }
@@ -207,7 +228,15 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
    * scan over the hash tables. True also before first run.
    */
   private boolean hasExpansionOccurred() {
-    return hashArray != hash.getEntries();
+    if (tables == null || relocationCount != hash.getRelocationCount()) {
+      return true;
+    }
+    for (int i = 0; i < tables.length; i++) {
+      if (tables[i] != hash.getTable(i)) {
+        return true;
+      }
+    }
+    return false;
   }
 
 }
@@ -0,0 +1,312 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.CacheClosedException;
+
+import java.util.HashMap;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over all cache entries, to process the entries in parallel.
+ *
+ * <p>Split: The hash tables are split by their index, which is possible with the open
+ * addressing hash that has a table per segment. The single table of the chained hash
+ * is split by bucket ranges. A bucket range refers to the table length at the start,
+ * after an expansion a spliterator covers all buckets that have the same index
+ * in the original table. This way the entries of the spliterators stay disjoint
+ * if a hash table expansion occurs.
+ *
+ * <p>Hash expansion and clear: Identical to the {@link ConcurrentEntryIterator}. A spliterator
+ * rescans its range, if the tables have changed, and keeps track of what was
+ * previously iterated. A clear operation stops the iteration, a close
+ * yields a {@link CacheClosedException}.
+ *
+ * <p>A spliterator can only be split before the traversal starts.
+ *
+ * @author Jens Wilke
+ * @see ConcurrentEntryIterator
+ */
+public class ConcurrentEntrySpliterator<K, V> implements Spliterator<Entry<K, V>> {
+
+  /**
+   * Minimum number of buckets of the chained hash a split covers.
+   */
+  static final int MINIMUM_SPLIT_BUCKETS = 16;
+
+  private final HeapCache<K, V> cache;
+  private StampedHash<K, V> hash;
+  private long clearCount;
+  private long relocationCount;
+  private Entry<K, V>[][] tables;
+  private int tableFrom;
+  private int tableTo;
+  /** Length of the single table at the start, or 0 if the hash has more tables */
+  private int baseLength;
+  private int bucketFrom;
+  private int bucketTo;
+  private long estimatedSize;
+  private boolean started;
+  private Entry<K, V> lastEntry;
+  private int tableIndex;
+  private int position;
+  private HashMap<K, K> seen = new HashMap<>();
+
+  public ConcurrentEntrySpliterator(HeapCache<K, V> cache) {
+    this.cache = cache;
+    hash = cache.hash;
+    switchAndCheckAbort();
+    tableTo = tables.length;
+    if (tables.length == 1) {
+      baseLength = tables[0].length;
+      bucketTo = baseLength;
+    }
+    estimatedSize = hash.getSize();
+  }
+
+  private ConcurrentEntrySpliterator(ConcurrentEntrySpliterator<K, V> parent,
+                                     int tableFrom, int tableTo, int bucketFrom, int bucketTo) {
+    cache = parent.cache;
+    hash = parent.hash;
+    clearCount = parent.clearCount;
+    relocationCount = parent.relocationCount;
+    tables = parent.tables;
+    baseLength = parent.baseLength;
+    this.tableFrom = tableIndex = tableFrom;
+    this.tableTo = tableTo;
+    this.bucketFrom = bucketFrom;
+    this.bucketTo = bucketTo;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Entry<K, V>> action) {
+    Entry<K, V> e = nextEntry();
+    if (e == null) {
+      return false;
+    }
+    action.accept(e);
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super Entry<K, V>> action) {
+    Entry<K, V> e;
+    while ((e = nextEntry()) != null) {
+      action.accept(e);
+    }
+  }
+
+  /**
+   * Split off the upper half of the tables or buckets.
+   */
+  @Override
+  public Spliterator<Entry<K, V>> trySplit() {
+    if (started || tables == null) {
+      return null;
+    }
+    ConcurrentEntrySpliterator<K, V> split;
+    if (tableTo - tableFrom > 1) {
+      int mid = (tableFrom + tableTo) >>> 1;
+      split = new ConcurrentEntrySpliterator<>(this, mid, tableTo, bucketFrom, bucketTo);
+      tableTo = mid;
+    } else if (baseLength > 0 && bucketTo - bucketFrom >= MINIMUM_SPLIT_BUCKETS * 2) {
+      int mid = (bucketFrom + bucketTo) >>> 1;
+      split = new ConcurrentEntrySpliterator<>(this, tableFrom, tableTo, mid, bucketTo);
+      bucketTo = mid;
+    } else {
+      return null;
+    }
+    estimatedSize = estimatedSize >>> 1;
+    split.estimatedSize = estimatedSize;
+    return split;
+  }
+
+  @Override
+  public long estimateSize() {
+    return estimatedSize;
+  }
+
+  @Override
+  public int characteristics() {
+    return CONCURRENT | DISTINCT | NONNULL;
+  }
+
+  /**
+   * Number of positions to scan within a table.
+   */
+  private int positionCount(Entry<K, V>[] table) {
+    if (baseLength == 0) {
+      return table.length;
+    }
+    return (bucketTo - bucketFrom) * (table.length / baseLength);
+  }
+
+  /**
+   * Table slot for the scan position. For the chained hash the slots with the same
+   * index in the table at the start are scanned.
+   */
+  private int slot(int position) {
+    if (baseLength == 0) {
+      return position;
+    }
+    int width = bucketTo - bucketFrom;
+    return (position / width) * baseLength + bucketFrom + position % width;
+  }
+
+  private Entry<K, V> nextEntry() {
+    Entry<K, V> e;
+    if (tables == null) {
+      return null;
+    }
+    if (needsAbort()) {
+      if (cache.isClosed()) {
+        clearOutReferences();
+        throw new CacheClosedException(cache);
+      }
+      clearOutReferences();
+      return null;
+    }
+    started = true;
+    if (lastEntry != null) {
+      e = lastEntry.another;
+      lastEntry = null;
+      if (e != null) {
+        e = checkIteratedOrNext(e);
+        if (e != null) {
+          lastEntry = e;
+          return e;
+        }
+      }
+      position++;
+    }
+    for (;;) {
+      Entry<K, V>[] table = tables[tableIndex];
+      if (position >= positionCount(table)) {
+        position = 0;
+        tableIndex++;
+        if (tableIndex >= tableTo) {
+          if (switchAndCheckAbort()) {
+            return null;
+          }
+          tableIndex = tableFrom;
+        }
+        continue;
+      }
+      e = table[slot(position)];
+      if (e != null) {
+        e = checkIteratedOrNext(e);
+        if (e != null) {
+          lastEntry = e;
+          return e;
+        }
+      }
+      position++;
+    }
+  }
+
+  private boolean needsAbort() {
+    return clearCount != hash.getClearOrCloseCount();
+  }
+
+  private Entry<K, V> checkIteratedOrNext(Entry<K, V> e) {
+    do {
+      K key = cache.keyObjFromEntry(e);
+      if (!seen.containsKey(key)) {
+        seen.put(key, key);
+        return e;
+      }
+      e = e.another;
+    } while (e != null);
+    return null;
+  }
+
+  /**
+   * Check for expansion and abort criteria.
+   *
+   * @return true, if iteration should abort
+   */
+  private boolean switchAndCheckAbort() {
+    if (Thread.holdsLock(cache.lock)) {
+      return switchCheckAndAbortLocked();
+    }
+    return cache.executeWithGlobalLock(this::switchCheckAndAbortLocked);
+  }
+
+  /**
+   * Take a new snapshot of the tables, if there was a change.
+   *
+   * @return true, if iteration should abort
+   */
+  @SuppressWarnings("unchecked")
+  private Boolean switchCheckAndAbortLocked() {
+    if (!hasExpansionOccurred()) {
+      clearOutReferences();
+      return true;
+    }
+    if (tables != null && clearCount != hash.getClearOrCloseCount()) {
+      clearOutReferences();
+      return true;
+    }
+    int count = hash.getTableCount();
+    Entry<K, V>[][] newTables = new Entry[count][];
+    for (int i = 0; i < count; i++) {
+      newTables[i] = hash.getTable(i);
+    }
+    clearCount = hash.getClearOrCloseCount();
+    relocationCount = hash.getRelocationCount();
+    boolean cacheClosed = newTables[0] == null;
+    if (cacheClosed) {
+      clearOutReferences();
+      throw new CacheClosedException(cache);
+    }
+    tables = newTables;
+    return false;
+  }
+
+  /**
+   * At the end or at an iteration abort, clear the references.
+   *
+   * @see ConcurrentEntryIterator
+   */
+  private void clearOutReferences() {
+    hash = null;
+    tables = null;
+    seen = null;
+    lastEntry = null;
+  }
+
+  /**
+   * True if a table covered by this spliterator has changed. True also before first run.
+   */
+  private boolean hasExpansionOccurred() {
+    if (tables == null || relocationCount != hash.getRelocationCount()) {
+      return true;
+    }
+    for (int i = tableFrom; i < tableTo; i++) {
+      if (tables[i] != hash.getTable(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -33,9 +33,11 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.StreamSupport;
 
 /**
  * ConcurrentMap interface wrapper on top of a cache. The map interface does not cause calls to
@@ -204,6 +206,12 @@ public class ConcurrentMapWrapper<K, V> extends AbstractMap<K, V> implements Con
         };
       }
 
+      @Override
+      public Spliterator<K> spliterator() {
+        return StreamSupport.stream(cache.entries().spliterator(), false)
+          .map(CacheEntry::getKey).spliterator();
+      }
+
       @Override
       public boolean contains(Object o) {
         return containsKey(o);
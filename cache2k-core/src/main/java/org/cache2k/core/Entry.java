@@ -26,10 +26,12 @@ import org.cache2k.operation.TimeReference;
 import org.cache2k.core.timing.TimerTask;
 import org.cache2k.expiry.ExpiryPolicy;
 import org.cache2k.core.operation.ExaminationEntry;
+import org.cache2k.core.offheap.OffHeapValue;
 import org.cache2k.expiry.ExpiryTimeValues;
 import org.cache2k.io.LoadExceptionInfo;
 
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Separate with relevant fields for read access only for optimizing the object layout.
@@ -38,6 +40,10 @@ import java.util.concurrent.atomic.AtomicLongFieldUpdater;
  */
 class CompactEntry<K, V> implements CacheEntry<K, V> {
 
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<CompactEntry, Object> VALUE_UPDATER =
+    AtomicReferenceFieldUpdater.newUpdater(CompactEntry.class, Object.class, "valueOrWrapper");
+
   private static class InitialValueInEntryNeverReturned { }
 
   protected static final InitialValueInEntryNeverReturned INITIAL_VALUE =
@@ -121,6 +127,9 @@ class CompactEntry<K, V> implements CacheEntry<K, V> {
     if (v instanceof AccessWrapper) {
       return ((AccessWrapper<?>) v).getValueOrException();
     }
+    if (v instanceof OffHeapValue) {
+      return ((OffHeapValue<?>) v).getValueOrException();
+    }
     return v;
   }
 
@@ -128,6 +137,13 @@ class CompactEntry<K, V> implements CacheEntry<K, V> {
     return valueOrWrapper;
   }
 
+  /**
+   * Replace the value or wrapper if it was not changed concurrently.
+   */
+  public boolean compareAndSetValueOrWrapper(Object expect, Object update) {
+    return VALUE_UPDATER.compareAndSet(this, expect, update);
+  }
+
   @SuppressWarnings("unchecked")
   public K getKey() {
     if (key == null) {
@@ -137,7 +153,8 @@ class CompactEntry<K, V> implements CacheEntry<K, V> {
   }
 
   /**
-   * Get the raw object reference. Is {@code null} for the {@link IntHeapCache}.
+   * Get the raw object reference. Is {@code null} for the {@link IntHeapCache}
+   * and the {@link LongHeapCache}.
    */
   public K getKeyObj() {
     return key;
@@ -158,6 +175,10 @@ class CompactEntry<K, V> implements CacheEntry<K, V> {
  * application when it is locked and the values are stable, that is for example
  * when the loader is called.
  *
+ * <p>This class has no slot for timer tasks and additional information, which is only
+ * needed with expiry, a loader or a wired cache. Caches using any of these features
+ * use {@link FullEntry}, which implements {@link MiscSlot}.
+ *
  * @author Jens Wilke
  */
 @SuppressWarnings("unchecked")
@@ -199,12 +220,6 @@ public class Entry<K, V> extends CompactEntry<K, V>
   public static final int GONE = 8;
   public static final int GONE_OTHER = 15;
 
-  /**
-   * Usually this contains the reference to the timer task. In some cases, like when exceptions
-   * happen we will link to the PiggyBack object to add more information as needed.
-   */
-  private Object misc;
-
   /**
    * Time the entry was last updated by put or by fetching it from the cache loader.
    * The time is the time in millis times 2. A set bit 1 means the entry is fetched from
@@ -263,9 +278,16 @@ public class Entry<K, V> extends CompactEntry<K, V>
    * storage attachment. Not used at the moment.
    */
   public void setModificationTime(long t) {
-    modificationTimeAndState =
-      modificationTimeAndState & ~MODIFICATION_TIME_MASK |
-        ((((t - MODIFICATION_TIME_BASE) << MODIFICATION_TIME_SHIFT)) & MODIFICATION_TIME_MASK);
+    long bits =
+      (((t - MODIFICATION_TIME_BASE) << MODIFICATION_TIME_SHIFT)) & MODIFICATION_TIME_MASK;
+    long v = modificationTimeAndState;
+    if ((v & STRIPED) == 0) {
+      modificationTimeAndState = v & ~MODIFICATION_TIME_MASK | bits;
+      return;
+    }
+    while (!STATE_UPDATER.compareAndSet(this, v, v & ~MODIFICATION_TIME_MASK | bits)) {
+      v = modificationTimeAndState;
+    }
   }
 
   @Override
@@ -333,8 +355,15 @@ public class Entry<K, V> extends CompactEntry<K, V>
     return (int) ((modificationTimeAndState >> PS_POS) & PS_MASK);
   }
 
-  private void setProcessingState(int v) {
-    modificationTimeAndState = withState(modificationTimeAndState, v);
+  private void setProcessingState(int ps) {
+    long v = modificationTimeAndState;
+    if ((v & STRIPED) == 0) {
+      modificationTimeAndState = withState(v, ps);
+      return;
+    }
+    while (!STATE_UPDATER.compareAndSet(this, v, withState(v, ps))) {
+      v = modificationTimeAndState;
+    }
   }
 
   private long withState(long refreshTimeAndState, long state) {
@@ -345,10 +374,90 @@ public class Entry<K, V> extends CompactEntry<K, V>
    * Check and switch the processing state atomically.
    */
   public boolean checkAndSwitchProcessingState(int ps0, int ps) {
-    long rt = modificationTimeAndState;
-    long expect = withState(rt, ps0);
-    long update = withState(rt, ps);
-    return STATE_UPDATER.compareAndSet(this, expect, update);
+    long v;
+    do {
+      v = modificationTimeAndState;
+      if (((v >> PS_POS) & PS_MASK) != ps0) {
+        return false;
+      }
+    } while (!STATE_UPDATER.compareAndSet(this, v, withState(v, ps)));
+    return true;
+  }
+
+  /**
+   * Lock bits within {@link #modificationTimeAndState}, following the processing state.
+   * Only used by the {@link StripedEntryLocking}. The lock bits share the word with
+   * the modification time and processing state. The {@code STRIPED} bit marks entries
+   * of a cache with striped locking, for these every update of the word is atomic.
+   * With the default locking via the entry monitor the bits stay zero and the word
+   * is updated with a plain volatile write.
+   */
+  private static final long STRIPED = 1L << 60;
+  private static final long WAITING = 1L << 61;
+  private static final long LOCKED = 1L << 62;
+
+  /**
+   * Mark the entry for locking via {@link StripedEntryLocking}. Needs to be called
+   * before the entry is visible to other threads.
+   */
+  void enableStripedLocking() {
+    modificationTimeAndState |= STRIPED;
+  }
+
+  /**
+   * Set the lock bit, if not locked.
+   */
+  boolean tryLock() {
+    long v;
+    while (((v = modificationTimeAndState) & LOCKED) == 0) {
+      if (STATE_UPDATER.compareAndSet(this, v, v | LOCKED)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reset the lock and waiting bit.
+   *
+   * @return {@code true} if threads are waiting and need a signal
+   */
+  boolean unlock() {
+    long v;
+    do {
+      v = modificationTimeAndState;
+    } while (!STATE_UPDATER.compareAndSet(this, v, v & ~(LOCKED | WAITING)));
+    return (v & WAITING) != 0;
+  }
+
+  /**
+   * Set the waiting bit if locked, so the thread unlocking sends a signal.
+   *
+   * @return {@code false} if the entry is not locked any more
+   */
+  boolean markWaitingIfLocked() {
+    long v;
+    do {
+      v = modificationTimeAndState;
+      if ((v & LOCKED) == 0) {
+        return false;
+      }
+      if ((v & WAITING) != 0) {
+        return true;
+      }
+    } while (!STATE_UPDATER.compareAndSet(this, v, v | WAITING));
+    return true;
+  }
+
+  /**
+   * Reset the lock bit and set the waiting bit, so the next thread unlocking the entry
+   * sends a signal. Used when waiting for the processing to complete.
+   */
+  void unlockAndMarkWaiting() {
+    long v;
+    do {
+      v = modificationTimeAndState;
+    } while (!STATE_UPDATER.compareAndSet(this, v, v & ~LOCKED | WAITING));
   }
 
   /**
@@ -356,8 +465,8 @@ public class Entry<K, V> extends CompactEntry<K, V>
    */
   public void startProcessing(int ps, EntryAction action) {
     setProcessingState(ps);
-    if (action != null) {
-      setEntryAction(action);
+    if (action != null && this instanceof MiscSlot) {
+      ((MiscSlot) this).setEntryAction(action);
     }
   }
 
@@ -378,8 +487,18 @@ public class Entry<K, V> extends CompactEntry<K, V>
 
   public void processingDone() {
     notifyAll();
+    processingDoneWithoutNotify();
+  }
+
+  /**
+   * Set processing state to done. Used with the {@link StripedEntryLocking}, which signals
+   * waiting threads when the entry is unlocked.
+   */
+  public void processingDoneWithoutNotify() {
     setProcessingState(ProcessingState.DONE);
-    resetEntryAction();
+    if (this instanceof MiscSlot) {
+      ((MiscSlot) this).resetEntryAction();
+    }
   }
 
   /**
@@ -422,6 +541,27 @@ public class Entry<K, V> extends CompactEntry<K, V>
     }
   }
 
+  /**
+   * Same as {@link #ensureAbort(boolean)}, if entries are locked by the
+   * {@link StripedEntryLocking}.
+   */
+  public void ensureAbort(boolean finished, StripedEntryLocking locking) {
+    if (finished) {
+      return;
+    }
+    locking.lock(this);
+    try {
+      if (isVirgin()) {
+        rawExpiry = ABORTED;
+      }
+      if (isProcessing()) {
+        processingDoneWithoutNotify();
+      }
+    } finally {
+      locking.unlock(this);
+    }
+  }
+
   public boolean isProcessing() {
     return getProcessingState() != ProcessingState.DONE;
   }
@@ -548,6 +688,14 @@ public class Entry<K, V> extends CompactEntry<K, V>
     return nrt >= GONE && nrt <= GONE_OTHER;
   }
 
+  /**
+   * The expiry time is reached, if kept as a point in time that needs a time check.
+   */
+  public boolean isExpiryTimeReached(long now) {
+    long expiry = rawExpiry;
+    return needsTimeCheck(expiry) && -expiry <= now;
+  }
+
   public static boolean needsTimeCheck(long rawExpiry) {
     return rawExpiry < 0;
   }
@@ -563,6 +711,20 @@ public class Entry<K, V> extends CompactEntry<K, V>
     }
   }
 
+  /**
+   * Second marker for eviction algorithms that keep more than two lists.
+   * Used by the TinyLFU eviction for the protected clock.
+   */
+  public boolean isProtected() { return (hotAndWeight & 0x40000000) != 0; }
+
+  public void setProtected(boolean f) {
+    if (f) {
+      hotAndWeight = hotAndWeight | 0x40000000;
+    } else {
+      hotAndWeight = hotAndWeight & ~0x40000000;
+    }
+  }
+
   /**
    * Store weight as 16 bit floating point number.
    */
@@ -593,7 +755,7 @@ public class Entry<K, V> extends CompactEntry<K, V>
     sb.append(", key=");
     Object key = getKeyObj();
     if (key == null) {
-      sb.append(hashCode);
+      sb.append(getKey());
     } else {
       sb.append(key);
       if (c != null && (HeapCache.spreadHash(key.hashCode()) != hashCode)) {
@@ -624,8 +786,9 @@ public class Entry<K, V> extends CompactEntry<K, V>
       sb.append(", state=").append(nrt);
     }
     if (Thread.holdsLock(this)) {
-      if (getTask() != null) {
-        sb.append(", timerState=").append(getTask());
+      TimerTask task = MiscSlot.taskOf(this);
+      if (task != null) {
+        sb.append(", timerState=").append(task);
       } else {
         sb.append(", noTimer");
       }
@@ -649,133 +812,6 @@ public class Entry<K, V> extends CompactEntry<K, V>
     return toString(null);
   }
 
-  public TimerTask getTask() {
-    if (misc instanceof TimerTask) {
-      return (TimerTask) misc;
-    }
-    TaskPiggyBack pb = getPiggyBack(TaskPiggyBack.class);
-    if (pb != null) {
-      return pb.task;
-    }
-    return null;
-  }
-
-  public <X> X getPiggyBack(Class<X> type) {
-    Object obj = misc;
-    if (!(obj instanceof PiggyBack)) {
-      return null;
-    }
-    PiggyBack pb = (PiggyBack) obj;
-    do {
-      if (pb.getClass() == type) {
-        return (X) pb;
-      }
-      pb = pb.next;
-    } while (pb != null);
-    return null;
-  }
-
-  public void setTask(TimerTask v) {
-    if (misc == null || misc instanceof TimerTask) {
-      misc = v;
-      return;
-    }
-    TaskPiggyBack pb = getPiggyBack(TaskPiggyBack.class);
-    if (pb != null) {
-      pb.task = v;
-      return;
-    }
-    misc = new TaskPiggyBack(v, (PiggyBack) misc);
-  }
-
-  public void setEntryAction(EntryAction action) {
-    action.next = existingPiggyBackForInserting();
-    misc = action;
-  }
-
-  public EntryAction getEntryAction() {
-    if (!(misc instanceof PiggyBack)) {
-      return null;
-    }
-    PiggyBack at = ((PiggyBack) misc);
-    while (at != null) {
-      if (at instanceof EntryAction) {
-        return (EntryAction) at;
-      }
-      at = at.next;
-    }
-    return null;
-  }
-
-  public void resetEntryAction() {
-    if (!(misc instanceof PiggyBack)) {
-      return;
-    }
-    if (misc instanceof EntryAction) {
-      misc = ((PiggyBack) misc).next;
-      return;
-    }
-    PiggyBack at = ((PiggyBack) misc);
-    while (at != null) {
-      PiggyBack next = at.next;
-      if (next instanceof EntryAction) {
-        at.next = next.next;
-        return;
-      }
-      at = next;
-    }
-  }
-
-  /**
-   * We want to add a new piggy back. Check for timer task and convert it to
-   * piggy back.
-   */
-  private PiggyBack existingPiggyBackForInserting() {
-    Object misc = this.misc;
-    if (misc instanceof TimerTask) {
-      return new TaskPiggyBack((TimerTask) misc, null);
-    }
-    return (PiggyBack) misc;
-  }
-
-  public void setSuppressedLoadExceptionInformation(LoadExceptionInfo w) {
-    LoadExceptionPiggyBack inf = getPiggyBack(LoadExceptionPiggyBack.class);
-    if (inf != null) {
-      inf.info = w;
-      return;
-    }
-    misc = new LoadExceptionPiggyBack(w, existingPiggyBackForInserting());
-  }
-
-  /**
-   * If the entry carries information about a suppressed exception, clear it.
-   */
-  public void resetSuppressedLoadExceptionInformation() {
-    LoadExceptionPiggyBack inf = getPiggyBack(LoadExceptionPiggyBack.class);
-    if (inf != null) {
-      inf.info = null;
-    }
-  }
-
-  public LoadExceptionInfo getSuppressedLoadExceptionInformation() {
-    LoadExceptionPiggyBack inf = getPiggyBack(LoadExceptionPiggyBack.class);
-    return inf != null ? inf.info : null;
-  }
-
-  public void setRefreshPolicyData(Object v) {
-    RefreshProbationPiggyBack inf = getPiggyBack(RefreshProbationPiggyBack.class);
-    if (inf != null) {
-      inf.policyData = v;
-      return;
-    }
-    misc = new RefreshProbationPiggyBack(v, existingPiggyBackForInserting());
-  }
-
-  public Object getRefreshPolicyData() {
-    RefreshProbationPiggyBack inf = getPiggyBack(RefreshProbationPiggyBack.class);
-    return inf != null ? inf.policyData : null;
-  }
-
   static class PiggyBack {
     PiggyBack next;
 
@@ -30,6 +30,8 @@ import org.cache2k.event.CacheEventListenerException;
 import org.cache2k.expiry.RefreshAheadPolicy;
 import org.cache2k.operation.TimeReference;
 import org.cache2k.core.timing.Timing;
+import org.cache2k.core.offheap.OffHeapStore;
+import org.cache2k.core.offheap.OffHeapValue;
 import org.cache2k.event.CacheEntryExpiredListener;
 import org.cache2k.expiry.ExpiryTimeValues;
 import org.cache2k.io.AdvancedCacheLoader;
@@ -100,6 +102,12 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
   boolean expiredImmediately;
   long expiry = 0;
   long refreshTime = 0;
+  /**
+   * New value or wrapper for the entry, set by {@link #storeValue()}. The off heap
+   * reference, if values are stored off heap.
+   */
+  Object storedValueOrException;
+  boolean valueStored;
   /**
    * We locked the entry, don't lock it again.
    */
@@ -470,9 +478,70 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
   public void examine() {
     int callbackCount = semanticCallback;
     mutationStartTime = 0;
+    if (!entryLocked && heapOrLoadedEntry == heapEntry &&
+      heapEntry.getValueOrWrapper() instanceof OffHeapValue) {
+      examineOffHeapValue();
+      return;
+    }
     operation.examine(key, this, heapOrLoadedEntry);
   }
 
+  /**
+   * Examine without the entry lock while the value is stored off heap. The value is pinned,
+   * so it cannot be freed while the operation reads it. If the entry was removed
+   * concurrently, start over with a new lookup. If the value was released by a clear,
+   * continue as a miss. A lookup during the clear may return the same entry again.
+   */
+  private void examineOffHeapValue() {
+    Entry<K, V> e = heapEntry;
+    OffHeapValue<V> pinned = ((OffHeapValue<V>) e.getValueOrWrapper()).pin();
+    if (pinned == null) {
+      if (e.getValueOrWrapper() instanceof OffHeapValue) {
+        heapHit = false;
+        heapEntry = (Entry<K, V>) NON_FRESH_DUMMY;
+        if (e.isGone()) {
+          retrieveDataFromHeap();
+        } else {
+          heapMiss();
+        }
+      } else {
+        operation.examine(key, this, heapOrLoadedEntry);
+      }
+      return;
+    }
+    heapOrLoadedEntry = new ExaminationEntry<K, V>() {
+      @Override
+      public K getKey() {
+        return e.getKey();
+      }
+
+      @Override
+      public Object getValueOrException() {
+        return pinned.getValueOrException();
+      }
+
+      @Override
+      public Object getValueOrWrapper() {
+        return pinned;
+      }
+
+      @Override
+      public long getModificationTime() {
+        return e.getModificationTime();
+      }
+
+      @Override
+      public long getExpiryTime() {
+        return e.getExpiryTime();
+      }
+    };
+    try {
+      operation.examine(key, this, heapOrLoadedEntry);
+    } finally {
+      pinned.unpin();
+    }
+  }
+
   @Override
   public void noMutation() {
     semanticCallback++;
@@ -506,6 +575,9 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
     countMiss = false;
     heapOrLoadedEntry = heapEntry;
     mutationStartTime = 0;
+    if (heapCache.isOffHeapValueDroppedByClear(heapEntry)) {
+      heapEntry.setRawExpiry(Entry.EXPIRED);
+    }
     examine();
   }
 
@@ -533,20 +605,30 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
     }
     long millis = getMutationStartTime();
     if (millis >= -currentExpiry) {
-      boolean justExpired = false;
-      synchronized (heapEntry) {
-        justExpired = true;
-        heapEntry.setRawExpiry(timing().stopStartTimer(heapEntry, ExpiryTimeValues.NOW, 0));
-        heapDataValid = false;
-      }
-      if (justExpired) {
-        existingEntryExpiredBeforeMutationSendExpiryEvents();
-        return;
+      StripedEntryLocking locking = heapCache.stripedLocking;
+      if (locking == null) {
+        synchronized (heapEntry) {
+          expireBeforeMutation();
+        }
+      } else {
+        locking.lock(heapEntry);
+        try {
+          expireBeforeMutation();
+        } finally {
+          locking.unlock(heapEntry);
+        }
       }
+      existingEntryExpiredBeforeMutationSendExpiryEvents();
+      return;
     }
     continueWithMutation();
   }
 
+  private void expireBeforeMutation() {
+    heapEntry.setRawExpiry(timing().stopStartTimer(heapEntry, ExpiryTimeValues.NOW, 0));
+    heapDataValid = false;
+  }
+
   /**
    * The entry logically expired before the mutation. Send expiry event.
    * Example: A get() triggers a load().
@@ -645,22 +727,46 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
     if (e == NON_FRESH_DUMMY) {
       e = heapCache.lookupOrNewEntryNoHitRecord(key);
     }
+    StripedEntryLocking locking = heapCache.stripedLocking;
     for (;;) {
-      synchronized (e) {
-        if (bulkMode && e.isProcessing()) {
-          throw new AbortWhenProcessingException();
-        }
-        if (tryEnqueueOperationInCurrentlyProcessing(e)) {
-          return true;
+      int state;
+      if (locking == null) {
+        synchronized (e) {
+          state = lockForNoHitWithinLock(ps, e);
         }
-        if (waitForConcurrentProcessingOrStop(ps, e)) {
-          return false;
+      } else {
+        locking.lock(e);
+        try {
+          state = lockForNoHitWithinLock(ps, e);
+        } finally {
+          locking.unlock(e);
         }
       }
+      if (state != NO_HIT_ENTRY_GONE) {
+        return state == NO_HIT_ENQUEUED;
+      }
       e = heapCache.lookupOrNewEntryNoHitRecord(key);
     }
   }
 
+  /** Result of {@link #lockForNoHitWithinLock(int, Entry)} */
+  private static final int NO_HIT_ENQUEUED = 0;
+  private static final int NO_HIT_LOCKED = 1;
+  private static final int NO_HIT_ENTRY_GONE = 2;
+
+  private int lockForNoHitWithinLock(int ps, Entry<K, V> e) {
+    if (bulkMode && e.isProcessing()) {
+      throw new AbortWhenProcessingException();
+    }
+    if (tryEnqueueOperationInCurrentlyProcessing(e)) {
+      return NO_HIT_ENQUEUED;
+    }
+    if (waitForConcurrentProcessingOrStop(ps, e)) {
+      return NO_HIT_LOCKED;
+    }
+    return NO_HIT_ENTRY_GONE;
+  }
+
   /**
    * If entry is currently processing, and this is an async request, we can
    * enqueue this operation in a wait list that gets executed when
@@ -671,7 +777,8 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
   @SuppressWarnings("rawtypes")
   private boolean tryEnqueueOperationInCurrentlyProcessing(Entry e) {
     if (e.isProcessing() && completedCallback != null) {
-      EntryAction runningAction = e.getEntryAction();
+      EntryAction runningAction =
+        e instanceof MiscSlot ? ((MiscSlot) e).getEntryAction() : null;
       if (runningAction != null) {
         runningAction.enqueueToExecute(this);
         return true;
@@ -688,7 +795,7 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
    */
   @SuppressWarnings("rawtypes")
   private boolean waitForConcurrentProcessingOrStop(int ps, Entry e) {
-    e.waitForProcessing();
+    heapCache.waitForProcessing(e);
     if (!e.isGone()) {
       e.startProcessing(ps, this);
       entryLocked = true;
@@ -741,10 +848,24 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
    * so we are sure its there.
    */
   private void checkEntryStateOnLoadCallback() {
-    synchronized (heapEntry) {
-      if (!heapEntry.checkAndSwitchProcessingState(LOAD_ASYNC, LOAD_COMPLETE) || completed) {
-        throw new IllegalStateException("async callback on wrong entry state. duplicate callback?");
+    StripedEntryLocking locking = heapCache.stripedLocking;
+    if (locking == null) {
+      synchronized (heapEntry) {
+        checkEntryStateOnLoadCallbackWithinLock();
       }
+      return;
+    }
+    locking.lock(heapEntry);
+    try {
+      checkEntryStateOnLoadCallbackWithinLock();
+    } finally {
+      locking.unlock(heapEntry);
+    }
+  }
+
+  private void checkEntryStateOnLoadCallbackWithinLock() {
+    if (!heapEntry.checkAndSwitchProcessingState(LOAD_ASYNC, LOAD_COMPLETE) || completed) {
+      throw new IllegalStateException("async callback on wrong entry state. duplicate callback?");
     }
   }
 
@@ -867,7 +988,7 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
           newValueOrException = heapEntry.getValueOrException();
           modificationTime = heapEntry.getModificationTime();
           metrics().suppressedException();
-          heapEntry.setSuppressedLoadExceptionInformation(ew);
+          ((MiscSlot) heapEntry).setSuppressedLoadExceptionInformation(ew);
         } else {
           if (valueDefinitelyLoaded) {
             metrics().loadException();
@@ -899,7 +1020,9 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
           return;
         }
         refreshTime = timing().calculateRefreshTime(this);
-        heapEntry.resetSuppressedLoadExceptionInformation();
+        if (heapEntry instanceof MiscSlot) {
+          ((MiscSlot) heapEntry).resetSuppressedLoadExceptionInformation();
+        }
       } catch (Throwable ex) {
         if (valueDefinitelyLoaded) {
           decideForLoaderExceptionAfterExpiryCalculation(new ExpiryPolicyException(ex));
@@ -969,6 +1092,9 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
       checkKeepOrRemove();
       return;
     } else {
+      if (!storeValue()) {
+        return;
+      }
       if (expiry > 0 || expiry == -1 || (expiry < 0 && -expiry > loadStartedTime)) {
         if (heapEntry.isVirgin()) {
           metrics().putNewEntry();
@@ -1070,12 +1196,37 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
     checkKeepOrRemove();
   }
 
+  /**
+   * Store the new value off heap, before the writer and the listeners are called.
+   * If this fails, e.g. the value cannot be serialized, the operation is aborted and
+   * the entry keeps its previous value. Nothing is stored, if the entry is removed.
+   *
+   * @return {@code false} if the operation was aborted
+   */
+  private boolean storeValue() {
+    if (valueStored || remove ||
+      (expiry == ExpiryTimeValues.NOW && !heapCache.isKeepAfterExpired())) {
+      return true;
+    }
+    try {
+      storedValueOrException = heapCache.storeValue(heapEntry, newValueOrException);
+    } catch (RuntimeException ex) {
+      mutationAbort(ex);
+      return false;
+    }
+    valueStored = true;
+    return true;
+  }
+
   /**
    * In case we have an expiry of 0, this means that the entry should
    * not be cached. If there is a valid entry, we remove it if we do not
    * keep the data.
    */
   public void checkKeepOrRemove() {
+    if (!storeValue()) {
+      return;
+    }
     boolean hasKeepAfterExpired = heapCache.isKeepAfterExpired();
     boolean expired = expiry == ExpiryTimeValues.NOW;
     if (!expired || remove) {
@@ -1210,50 +1361,22 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
    * Entry mutation and start of expiry has to be done atomically to avoid races.
    */
   public void mutationReleaseLockAndStartTimer() {
-    boolean justExpired = false;
-    boolean evictionHint = false;
-    synchronized (heapEntry) {
-      if (heapCache.isRecordModificationTime()) {
-        heapEntry.setModificationTime(modificationTime);
-      }
-      if (remove) {
-        if (expiredImmediately) {
-          heapEntry.setRawExpiry(Entry.EXPIRED);
-          heapEntry.setValueOrWrapper(newValueOrException);
-        } else {
-          if (!heapEntry.isVirgin()) {
-            heapEntry.setRawExpiry(Entry.REMOVE_PENDING);
-          }
-        }
-      } else {
-        heapEntry.setValueOrWrapper(
-          timing().wrapLoadValueForRefresh(this, heapEntry, newValueOrException));
-        evictionHint = heapCache.eviction.updateWeight(heapEntry);
-      }
-      if (remove) {
-        heapCache.removeEntry(heapEntry);
-      } else {
-        try {
-          heapEntry.setRawExpiry(timing().stopStartTimer(heapEntry, expiry, refreshTime));
-          boolean entryExpired = heapEntry.isExpiredState();
-          if (!expiredImmediately && entryExpired) {
-            justExpired = true;
-          }
-        } catch (RuntimeException ex) {
-          exceptionToPropagate = ex;
-        }
-      }
-      if (valueLoaded) {
-        if (!remove ||
-          !(heapEntry.getValueOrException() == null && heapCache.isRejectNullValues())) {
-          operation.loaded(key, this, heapEntry);
-        }
+    int result;
+    StripedEntryLocking locking = heapCache.stripedLocking;
+    if (locking == null) {
+      synchronized (heapEntry) {
+        result = mutationWithinLock();
       }
-      if (!justExpired) {
-        heapEntry.processingDone(this);
-        entryLocked = false;
+    } else {
+      locking.lock(heapEntry);
+      try {
+        result = mutationWithinLock();
+      } finally {
+        locking.unlock(heapEntry);
       }
-    } // synchronized
+    }
+    boolean justExpired = (result & MUTATION_JUST_EXPIRED) != 0;
+    boolean evictionHint = (result & MUTATION_EVICTION_HINT) != 0;
     if (justExpired) {
       expiredAtEndOfOperationStartOver();
       return;
@@ -1265,6 +1388,72 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
     mutationDone();
   }
 
+  /** Flags in the result of {@link #mutationWithinLock()} */
+  private static final int MUTATION_JUST_EXPIRED = 1;
+  private static final int MUTATION_EVICTION_HINT = 2;
+
+  /**
+   * Update the entry with the mutation result and restart the timer.
+   *
+   * @return {@link #MUTATION_JUST_EXPIRED} and {@link #MUTATION_EVICTION_HINT} flags
+   */
+  private int mutationWithinLock() {
+    boolean justExpired = false;
+    boolean evictionHint = false;
+    Object previousValueOrWrapper = heapEntry.getValueOrWrapper();
+    if (heapCache.isRecordModificationTime()) {
+      heapEntry.setModificationTime(modificationTime);
+    }
+    if (remove) {
+      if (expiredImmediately) {
+        heapEntry.setRawExpiry(Entry.EXPIRED);
+        heapEntry.setValueOrWrapper(newValueOrException);
+      } else {
+        if (!heapEntry.isVirgin()) {
+          heapEntry.setRawExpiry(Entry.REMOVE_PENDING);
+        }
+      }
+    } else {
+      heapEntry.setValueOrWrapper(
+        timing().wrapLoadValueForRefresh(this, heapEntry, storedValueOrException));
+      evictionHint = heapCache.eviction.updateWeight(heapEntry);
+    }
+    if (heapEntry.getValueOrWrapper() != previousValueOrWrapper) {
+      OffHeapStore.release(previousValueOrWrapper);
+    }
+    if (remove) {
+      OffHeapStore.release(storedValueOrException);
+    }
+    if (remove) {
+      heapCache.removeEntry(heapEntry);
+    } else {
+      try {
+        heapEntry.setRawExpiry(timing().stopStartTimer(heapEntry, expiry, refreshTime));
+        boolean entryExpired = heapEntry.isExpiredState();
+        if (!expiredImmediately && entryExpired) {
+          justExpired = true;
+        }
+      } catch (RuntimeException ex) {
+        exceptionToPropagate = ex;
+      }
+    }
+    if (valueLoaded) {
+      if (!remove ||
+        !(heapEntry.getValueOrException() == null && heapCache.isRejectNullValues())) {
+        operation.loaded(key, this, heapEntry);
+      }
+    }
+    if (!remove) {
+      heapCache.releaseOffHeapValueIfCleared(heapEntry);
+    }
+    if (!justExpired) {
+      heapCache.processingDone(heapEntry);
+      entryLocked = false;
+    }
+    return (justExpired ? MUTATION_JUST_EXPIRED : 0) |
+      (evictionHint ? MUTATION_EVICTION_HINT : 0);
+  }
+
   /**
    * Entry expired during progress of the action, reenter at a previous processing
    * state to call listeners and update heap.
@@ -1363,16 +1552,33 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
    * operation.
    */
   public void abortReleaseLock() {
-    synchronized (heapEntry) {
-      heapEntry.processingDone(this);
-      if (heapEntry.isVirgin()) {
-        heapCache.removeEntry(heapEntry);
+    StripedEntryLocking locking = heapCache.stripedLocking;
+    if (locking == null) {
+      synchronized (heapEntry) {
+        abortWithinLock();
+      }
+    } else {
+      locking.lock(heapEntry);
+      try {
+        abortWithinLock();
+      } finally {
+        locking.unlock(heapEntry);
       }
-      entryLocked = false;
     }
     abortFinalize();
   }
 
+  private void abortWithinLock() {
+    if (storedValueOrException != heapEntry.getValueOrWrapper()) {
+      OffHeapStore.release(storedValueOrException);
+    }
+    heapCache.processingDone(heapEntry);
+    if (heapEntry.isVirgin()) {
+      heapCache.removeEntry(heapEntry);
+    }
+    entryLocked = false;
+  }
+
   public void abortFinalize() {
     updateReadStatisticsNoTailCall();
     completeProcessCallbacks();
@@ -1431,8 +1637,18 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
    */
   private void asyncExecutionStartedWaitIfSynchronousCall() {
     if (!bulkMode && syncThread == Thread.currentThread()) {
-      synchronized (heapEntry) {
-        heapEntry.waitForProcessing();
+      StripedEntryLocking locking = heapCache.stripedLocking;
+      if (locking == null) {
+        synchronized (heapEntry) {
+          heapEntry.waitForProcessing();
+        }
+        return;
+      }
+      locking.lock(heapEntry);
+      try {
+        locking.waitForProcessing(heapEntry);
+      } finally {
+        locking.unlock(heapEntry);
       }
     }
   }
@@ -77,7 +77,7 @@ public class ExceptionWrapper<K, V> extends ValueWrapper<V> implements LoadExcep
     this(key, exception, loadTime,
       (e.getValueOrException() instanceof ExceptionWrapper) ?
         (LoadExceptionInfo) e.getValueOrException() :
-        e.getSuppressedLoadExceptionInformation(),
+        e instanceof MiscSlot ? ((MiscSlot) e).getSuppressedLoadExceptionInformation() : null,
       p);
   }
 
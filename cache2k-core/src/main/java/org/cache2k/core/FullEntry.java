@@ -0,0 +1,50 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Cache entry with the additional slot for the timer task and piggy backs, which is needed
+ * for caches with expiry, a loader or when wired.
+ *
+ * @author Jens Wilke
+ * @see HeapCache#setSlimEntries(boolean)
+ */
+public class FullEntry<K, V> extends Entry<K, V> implements MiscSlot {
+
+  private Object misc;
+
+  public FullEntry(K key, int hashCode) {
+    super(key, hashCode);
+  }
+
+  public FullEntry() { this(null, 0); }
+
+  @Override
+  public Object getMisc() {
+    return misc;
+  }
+
+  @Override
+  public void setMisc(Object v) {
+    misc = v;
+  }
+
+}
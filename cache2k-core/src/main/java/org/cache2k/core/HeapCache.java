@@ -28,6 +28,7 @@ import org.cache2k.annotation.Nullable;
 import org.cache2k.config.Cache2kConfig;
 import org.cache2k.config.CacheType;
 import org.cache2k.core.api.InternalCacheBuildContext;
+import org.cache2k.core.api.InternalConfig;
 import org.cache2k.core.api.CommonMetrics;
 import org.cache2k.core.api.InternalCache;
 import org.cache2k.core.api.InternalCacheInfo;
@@ -38,9 +39,13 @@ import org.cache2k.core.operation.ExaminationEntry;
 import org.cache2k.core.operation.Semantic;
 import org.cache2k.core.operation.Operations;
 import org.cache2k.core.concurrency.ThreadFactoryProvider;
+import org.cache2k.core.concurrency.VirtualThreads;
 
 import org.cache2k.core.timing.TimeAgnosticTiming;
 import org.cache2k.core.timing.Timing;
+import org.cache2k.core.offheap.OffHeapStore;
+import org.cache2k.core.offheap.OffHeapValue;
+import org.cache2k.core.offheap.ValueSerializer;
 import org.cache2k.core.util.Util;
 import org.cache2k.expiry.RefreshAheadPolicy;
 import org.cache2k.io.CacheLoader;
@@ -51,6 +56,8 @@ import org.cache2k.io.AdvancedCacheLoader;
 import org.cache2k.io.ExceptionPropagator;
 import org.cache2k.io.LoadExceptionInfo;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -59,14 +66,17 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -115,6 +125,9 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
 
   final CommonMetrics.Updater metrics;
 
+  /** Sampling rate minus one for hits, or 0 if every hit is recorded */
+  private final int hitSampleMask;
+
   /**
    * Counts the number of key mutations. The count is not guarded and racy, but does not need
    * to be exact. We don't put it to the metrics, because we do not want to have this disabled.
@@ -141,6 +154,22 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
 
   private final Executor executor;
 
+  /**
+   * Locks the entries instead of synchronizing on the entry object, which is the default.
+   * {@code null} if not selected.
+   */
+  final @Nullable StripedEntryLocking stripedLocking;
+
+  /**
+   * Limits concurrent refreshes, {@code null} if not limited.
+   */
+  final @Nullable RefreshPipeline refreshPipeline;
+
+  /**
+   * Stores the values off heap, {@code null} if values are kept on the heap.
+   */
+  final @Nullable OffHeapStore<V> offHeapStore;
+
   private volatile Executor loaderExecutor = new LazyLoaderExecutor();
 
   private volatile boolean disabled;
@@ -202,6 +231,10 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
   private static final int BACKGROUND_REFRESH = 16;
   private static final int MODIFICATION_TIME_NEEDED = 32;
   private static final int RECORD_MODIFICATION_TIME = 64;
+  private static final int SLIM_ENTRIES = 128;
+
+  /** Number of entries processed at once by {@link #putAll(Map)} */
+  private static final int BULK_PUT_CHUNK_SIZE = 4096;
 
   private final ThreadFactoryProvider threadFactoryProvider;
 
@@ -225,6 +258,8 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
 
   protected final boolean isRecordModificationTime() { return (featureBits & RECORD_MODIFICATION_TIME) > 0; }
 
+  protected final boolean isSlimEntries() { return (featureBits & SLIM_ENTRIES) > 0; }
+
   private static int featureBit(int bitmask, boolean flag) {
     return flag ? bitmask : 0;
   }
@@ -250,7 +285,17 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     keyType = cfg.getKeyType();
     name = cfg.getName();
     manager = (CacheManagerImpl) ctx.getCacheManager();
-    hash = createHashTable();
+    hash = createHashTable(ctx.internalConfig().isOpenAddressingHash());
+    hash.setIncrementalExpansion(ctx.internalConfig().isIncrementalHashExpansion());
+    long expectedEntryCount = cfg.getExpectedEntryCount();
+    if (cfg.getWeigher() == null && cfg.getEntryCapacity() > 0) {
+      expectedEntryCount = Math.min(expectedEntryCount, cfg.getEntryCapacity());
+    }
+    if (expectedEntryCount > 0) {
+      hash.presize(expectedEntryCount);
+    }
+    int hitSampling = ctx.internalConfig().getHitSampling();
+    hitSampleMask = hitSampling > 1 ? Integer.highestOneBit(hitSampling - 1) * 2 - 1 : 0;
     clock = ctx.getTimeReference();
     featureBits =
       featureBit(KEEP_AFTER_EXPIRED, cfg.isKeepDataAfterExpired()) |
@@ -277,6 +322,8 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
         ctx.internalConfig().getThreadFactoryProvider());
     if (cfg.getLoaderExecutor() != null) {
       loaderExecutor = ctx.createCustomization(cfg.getLoaderExecutor());
+    } else if (cfg.isVirtualThreads()) {
+      loaderExecutor = VirtualThreads.newExecutor(getThreadNamePrefix());
     } else {
       if (cfg.getLoaderThreadCount() > 0) {
         loaderExecutor = provideDefaultLoaderExecutor(cfg.getLoaderThreadCount());
@@ -285,6 +332,27 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     refreshExecutor =
       ctx.createCustomization(cfg.getRefreshExecutor(), new LazyRefreshExecutor());
     executor = ctx.getExecutor();
+    stripedLocking = cfg.isStripedEntryLocks() || cfg.isVirtualThreads() ?
+      new StripedEntryLocking() : null;
+    refreshPipeline = ctx.internalConfig().getMaximumRefreshConcurrency() > 0 ?
+      new RefreshPipeline(command -> refreshExecutor.execute(command),
+        ctx.internalConfig().getMaximumRefreshConcurrency(),
+        ctx.internalConfig().getRefreshQueueCapacity()) : null;
+    ValueSerializer<V> serializer = (ValueSerializer<V>) ctx.internalConfig().getOffHeapSerializer();
+    offHeapStore = serializer != null ?
+      new OffHeapStore<>(serializer, ctx.internalConfig().getOffHeapSlabSize(),
+        cfg.getMaximumWeight()) : null;
+  }
+
+  /**
+   * Value or wrapper to store in the entry, which is a reference to the off heap memory
+   * when values are stored off heap.
+   */
+  Object storeValue(Entry<K, V> e, Object valueOrException) {
+    if (offHeapStore == null) {
+      return valueOrException;
+    }
+    return offHeapStore.store(e, valueOrException);
   }
 
   String getThreadNamePrefix() {
@@ -307,6 +375,15 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     }
   }
 
+  /**
+   * Use the plain {@link Entry} without the slot for timer tasks and additional information,
+   * instead of the {@link FullEntry}. Only allowed if no expiry timer, no loader and no
+   * wired cache is used. Set by the builder before the cache is initialized.
+   */
+  public void setSlimEntries(boolean f) {
+    featureBits = featureBits & ~SLIM_ENTRIES | featureBit(SLIM_ENTRIES, f);
+  }
+
   @Override
   public String getName() {
     return name;
@@ -349,10 +426,63 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     clearRemovedCnt += removed;
     clearCnt++;
     timing.cancelAll();
+    if (offHeapStore != null) {
+      releaseOffHeapValues();
+    }
     hash.clearWhenLocked();
     clearedTime = clock.ticks();
   }
 
+  /**
+   * Release the off heap values of all entries before the hash is cleared, same
+   * as a remove does. A chunk is reused after concurrent readers are finished with it.
+   * Expects the total lock.
+   */
+  private void releaseOffHeapValues() {
+    offHeapStore.releaseClearedAfterProcessing();
+    for (int i = 0; i < hash.getTableCount(); i++) {
+      Entry<K, V>[] table = hash.getTable(i);
+      for (Entry<K, V> e : table) {
+        for (; e != null; e = e.another) {
+          offHeapStore.releaseCleared(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * An operation running concurrently to a clear may store a value in an entry that
+   * the clear has dropped already. Release the off heap memory of the value, since
+   * the entry is not removed or evicted any more. Called with the entry lock held,
+   * after the value is set and read for the result, before the processing is done.
+   */
+  void releaseOffHeapValueIfCleared(Entry<K, V> e) {
+    if (offHeapStore != null && !isInHash(e)) {
+      OffHeapStore.release(e.getValueOrWrapper());
+    }
+  }
+
+  /**
+   * True if the value of the entry is stored off heap and was released by a clear.
+   * Called by an operation after it has locked the entry. Only a clear drops an entry
+   * from the hash without the entry lock. The check is done within the segment lock,
+   * so a clear running after it sees the entry in processing and keeps the value.
+   */
+  boolean isOffHeapValueDroppedByClear(Entry<K, V> e) {
+    return e.getValueOrWrapper() instanceof OffHeapValue && !isInHash(e);
+  }
+
+  private boolean isInHash(Entry<K, V> e) {
+    int hc = spreadHashFromEntry(e);
+    StampedLock l = hash.getSegmentLock(hc);
+    long stamp = l.readLock();
+    try {
+      return hash.containsWithinLock(e, hc);
+    } finally {
+      l.unlockRead(stamp);
+    }
+  }
+
   /**
    * Preparation for shutdown. Cancel all pending timer jobs e.g. for
    * expiry/refresh or flushing the storage.
@@ -377,6 +507,9 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       return null;
     });
     closeCustomization(loaderExecutor, "loaderExecutor");
+    if (refreshPipeline != null) {
+      refreshPipeline.close();
+    }
     cancelTimerJobs();
   }
 
@@ -395,6 +528,9 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       eviction.close(HeapCache.this);
       timing.close(HeapCache.this);
       hash.close();
+      if (offHeapStore != null) {
+        offHeapStore.close();
+      }
       closeCustomization(loader, "loader");
       closeCustomization(clock, "timeReference");
       for (CacheClosedListener s : cacheClosedListeners) {
@@ -412,6 +548,77 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return new IteratorFilterEntry2Entry(this, iterateAllHeapEntries(), true);
   }
 
+  @Override
+  public Spliterator<CacheEntry<K, V>> spliterator() {
+    return new SpliteratorFilterEntry2Entry<>(this, spliterateAllHeapEntries());
+  }
+
+  /**
+   * Filter out non valid entries and wrap each entry with a cache entry object.
+   * Same as {@link IteratorFilterEntry2Entry} for parallel streams.
+   */
+  static class SpliteratorFilterEntry2Entry<K, V>
+    implements Spliterator<CacheEntry<K, V>>, Consumer<Entry<K, V>> {
+
+    final HeapCache<K, V> cache;
+    final Spliterator<Entry<K, V>> spliterator;
+    Entry<K, V> entry;
+
+    SpliteratorFilterEntry2Entry(HeapCache<K, V> c, Spliterator<Entry<K, V>> spliterator) {
+      cache = c;
+      this.spliterator = spliterator;
+    }
+
+    /**
+     * Receives the next entry from the heap spliterator within {@link #tryAdvance(Consumer)}
+     */
+    @Override
+    public void accept(Entry<K, V> e) {
+      if (e.hasFreshData(cache.getClock())) {
+        entry = e;
+      }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super CacheEntry<K, V>> action) {
+      while (spliterator.tryAdvance(this)) {
+        if (entry != null) {
+          Entry<K, V> e = entry;
+          entry = null;
+          action.accept(cache.returnEntry(e));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super CacheEntry<K, V>> action) {
+      spliterator.forEachRemaining(e -> {
+        if (e.hasFreshData(cache.getClock())) {
+          action.accept(cache.returnEntry(e));
+        }
+      });
+    }
+
+    @Override
+    public Spliterator<CacheEntry<K, V>> trySplit() {
+      Spliterator<Entry<K, V>> split = spliterator.trySplit();
+      return split != null ? new SpliteratorFilterEntry2Entry<>(cache, split) : null;
+    }
+
+    @Override
+    public long estimateSize() {
+      return spliterator.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+      return spliterator.characteristics();
+    }
+
+  }
+
   /**
    * Filter out non valid entries and wrap each entry with a cache
    * entry object.
@@ -496,12 +703,35 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
    *
    * <p>Using a 64 bit counter per entry is basically a big waste of memory. When reducing
    * to a 32 bit value is has approximately a negative performance impact of 30%.
+   *
+   * <p>With hit sampling enabled, see {@link InternalConfig.Builder#hitSampling(int)},
+   * the counter is only written for a sample of the hits.
    */
   protected void recordHit(Entry e) {
+    if (hitSampleMask != 0) {
+      recordSampledHit(e);
+      return;
+    }
     e.hitCnt++;
     metrics.heapHit();
   }
 
+  /**
+   * The first hit on an entry is always recorded, so the eviction sees the difference
+   * between accessed and not accessed entries exactly. Further hits are recorded
+   * randomly with the sampling probability and counted with the sampling
+   * rate, so the expected counter value stays the same. A frequently read entry gets
+   * written less often, which reduces the cache line transfers between CPU cores.
+   */
+  private void recordSampledHit(Entry e) {
+    if (e.hitCnt == 0) {
+      e.hitCnt = 1;
+    } else if ((ThreadLocalRandom.current().nextInt() & hitSampleMask) == 0) {
+      e.hitCnt += hitSampleMask + 1;
+    }
+    metrics.heapHit();
+  }
+
   @Override
   public @Nullable V get(K key) {
     int hc = spreadHash(key.hashCode());
@@ -516,19 +746,16 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       if (e.hasFreshData(clock)) {
         return e.getValue();
       }
-      synchronized (e) {
-        e.waitForProcessing();
-        if (e.hasFreshData(clock)) {
-          return e.getValue();
-        }
-        if (e.isGone()) {
-          metrics.heapHitButNoRead();
-          metrics.goneSpin();
-          continue;
-        }
-        e.startProcessing(Entry.ProcessingState.LOAD, null);
-        break;
+      int state = startProcessingIfNotFresh(e, Entry.ProcessingState.LOAD);
+      if (state == FRESH) {
+        return e.getValue();
       }
+      if (state == GONE) {
+        metrics.heapHitButNoRead();
+        metrics.goneSpin();
+        continue;
+      }
+      break;
     }
     boolean finished = false;
     Object loadedValueOrException;
@@ -536,11 +763,83 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       loadedValueOrException = load(e);
       finished = true;
     } finally {
-      e.ensureAbort(finished);
+      ensureAbort(e, finished);
     }
     return returnValue(loadedValueOrException);
   }
 
+  /** Result of {@link #startProcessingIfNotFresh(Entry, int)} */
+  private static final int FRESH = 0;
+  private static final int GONE = 1;
+  private static final int STARTED = 2;
+
+  /**
+   * Lock the entry, wait for concurrent processing and start the processing,
+   * if the entry has no fresh data.
+   *
+   * @return {@link #FRESH}, {@link #GONE} or {@link #STARTED}
+   */
+  private int startProcessingIfNotFresh(Entry<K, V> e, int ps) {
+    if (stripedLocking == null) {
+      synchronized (e) {
+        return startProcessingIfNotFreshWithinLock(e, ps);
+      }
+    }
+    stripedLocking.lock(e);
+    try {
+      return startProcessingIfNotFreshWithinLock(e, ps);
+    } finally {
+      stripedLocking.unlock(e);
+    }
+  }
+
+  private int startProcessingIfNotFreshWithinLock(Entry<K, V> e, int ps) {
+    waitForProcessing(e);
+    if (e.hasFreshData(clock)) {
+      return FRESH;
+    }
+    if (e.isGone()) {
+      return GONE;
+    }
+    e.startProcessing(ps, null);
+    return STARTED;
+  }
+
+  /**
+   * Wait until the processing of the entry is complete. The entry is locked by the
+   * current thread and unlocked while waiting.
+   */
+  final void waitForProcessing(Entry<K, V> e) {
+    if (stripedLocking == null) {
+      e.waitForProcessing();
+    } else {
+      stripedLocking.waitForProcessing(e);
+    }
+  }
+
+  /**
+   * Set the processing state to done and wake up threads waiting for the processing.
+   * The entry is locked by the current thread.
+   */
+  final void processingDone(Entry<K, V> e) {
+    if (stripedLocking == null) {
+      e.processingDone();
+    } else {
+      e.processingDoneWithoutNotify();
+    }
+  }
+
+  /**
+   * @see Entry#ensureAbort(boolean)
+   */
+  final void ensureAbort(Entry<K, V> e, boolean finished) {
+    if (stripedLocking == null) {
+      e.ensureAbort(finished);
+    } else {
+      e.ensureAbort(finished, stripedLocking);
+    }
+  }
+
   /**
    * Wrap entry in a separate object instance. We can return the entry directly, however we lock on
    * the entry object.
@@ -558,8 +857,16 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     if (e == null) {
       return null;
     }
-    synchronized (e) {
+    if (stripedLocking == null) {
+      synchronized (e) {
+        return e.toString(this);
+      }
+    }
+    stripedLocking.lock(e);
+    try {
       return e.toString(this);
+    } finally {
+      stripedLocking.unlock(e);
     }
   }
 
@@ -626,26 +933,23 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       if (e.hasFreshData(clock)) {
         return e;
       }
-      synchronized (e) {
-        e.waitForProcessing();
-        if (e.hasFreshData(clock)) {
-          return e;
-        }
-        if (e.isGone()) {
-          metrics.heapHitButNoRead();
-          metrics.goneSpin();
-          continue;
-        }
-        e.startProcessing(Entry.ProcessingState.LOAD, null);
-        break;
+      int state = startProcessingIfNotFresh(e, Entry.ProcessingState.LOAD);
+      if (state == FRESH) {
+        return e;
+      }
+      if (state == GONE) {
+        metrics.heapHitButNoRead();
+        metrics.goneSpin();
+        continue;
       }
+      break;
     }
     boolean finished = false;
     try {
       load(e);
       finished = true;
     } finally {
-      e.ensureAbort(finished);
+      ensureAbort(e, finished);
     }
     if (e.getValueOrException() == null && isRejectNullValues()) {
       return null;
@@ -655,7 +959,7 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
 
   protected void finishLoadOrEviction(Entry<K, V> e, long expiryTime, long refreshTime) {
     restartTimer(e, expiryTime, refreshTime);
-    e.processingDone();
+    processingDone(e);
   }
 
   private void restartTimer(Entry<K, V> e, long expiryTime, long refreshTime) {
@@ -692,6 +996,7 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     }
     checkForHashCodeChange(e);
     timing.cancelExpiryTimer(e);
+    OffHeapStore.release(e.getValueOrWrapper());
     return removed;
   }
 
@@ -699,57 +1004,110 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
   public @Nullable V peekAndPut(K key, V value) {
     int hc = spreadHash(key.hashCode());
     int val = toStoredHashCodeOrKey(key, hc);
-    boolean hasFreshData;
-    Object previousValue = null;
-    Entry<K, V> e;
     for (;;) {
-      e = lookupOrNewEntry(key, hc, val);
-      synchronized (e) {
-        e.waitForProcessing();
-        if (e.isGone()) {
-          metrics.goneSpin();
-          continue;
+      Entry<K, V> e = lookupOrNewEntry(key, hc, val);
+      Object previousValue;
+      if (stripedLocking == null) {
+        synchronized (e) {
+          previousValue = peekAndPutWithinLock(e, value);
         }
-        hasFreshData = e.hasFreshData(clock);
-        if (hasFreshData) {
-          previousValue = e.getValueOrException();
-        } else {
-          if (e.isVirgin()) {
-            metrics.peekMiss();
-          } else {
-            metrics.peekHitNotFresh();
-          }
+      } else {
+        stripedLocking.lock(e);
+        try {
+          previousValue = peekAndPutWithinLock(e, value);
+        } finally {
+          stripedLocking.unlock(e);
         }
-        putValue(e, value);
+      }
+      if (previousValue == GONE_ENTRY) {
+        metrics.goneSpin();
+        continue;
       }
       return returnValue(previousValue);
     }
   }
 
+  /**
+   * Returned instead of a value, if the entry was removed concurrently and the
+   * operation needs to start over with a new entry.
+   */
+  private static final Object GONE_ENTRY = new Object();
+
+  /**
+   * @return previous value or {@link #GONE_ENTRY}
+   */
+  private Object peekAndPutWithinLock(Entry<K, V> e, V value) {
+    waitForProcessing(e);
+    if (e.isGone()) {
+      return GONE_ENTRY;
+    }
+    Object previousValue = null;
+    if (e.hasFreshData(clock)) {
+      previousValue = e.getValueOrException();
+    } else {
+      if (e.isVirgin()) {
+        metrics.peekMiss();
+      } else {
+        metrics.peekHitNotFresh();
+      }
+    }
+    putValue(e, value);
+    return previousValue;
+  }
+
   @Override
   public @Nullable V peekAndReplace(K key, V value) {
     Entry<K, V> e;
     for (;;) {
       e = lookupEntry(key);
       if (e == null) { break; }
-      synchronized (e) {
-        e.waitForProcessing();
-        if (e.isGone()) {
-          metrics.goneSpin();
-          continue;
+      Object previousValue;
+      if (stripedLocking == null) {
+        synchronized (e) {
+          previousValue = peekAndReplaceWithinLock(e, value);
         }
-        if (e.hasFreshData(clock)) {
-          Object previousValue = e.getValueOrException();
-          putValue(e, value);
-          return returnValue(previousValue);
+      } else {
+        stripedLocking.lock(e);
+        try {
+          previousValue = peekAndReplaceWithinLock(e, value);
+        } finally {
+          stripedLocking.unlock(e);
         }
-        break;
       }
+      if (previousValue == GONE_ENTRY) {
+        metrics.goneSpin();
+        continue;
+      }
+      if (previousValue != NO_FRESH_DATA) {
+        return returnValue(previousValue);
+      }
+      break;
     }
     metrics.peekMiss();
     return null;
   }
 
+  /**
+   * Returned instead of a value, if the entry has no fresh data.
+   */
+  private static final Object NO_FRESH_DATA = new Object();
+
+  /**
+   * @return previous value, {@link #GONE_ENTRY} or {@link #NO_FRESH_DATA}
+   */
+  private Object peekAndReplaceWithinLock(Entry<K, V> e, V value) {
+    waitForProcessing(e);
+    if (e.isGone()) {
+      return GONE_ENTRY;
+    }
+    if (e.hasFreshData(clock)) {
+      Object previousValue = e.getValueOrException();
+      putValue(e, value);
+      return previousValue;
+    }
+    return NO_FRESH_DATA;
+  }
+
   /**
    * Update the value directly within entry lock. Since we did not start
    * entry processing we do not need to notify any waiting threads.
@@ -782,16 +1140,28 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       metrics.peekMiss();
       return false;
     }
-    synchronized (e) {
-      e.waitForProcessing();
-      if (e.isGone() || !e.hasFreshData(clock)) {
-        return false;
-      }
-      if (compare && !e.equalsValue(oldValue)) {
-        return false;
+    if (stripedLocking == null) {
+      synchronized (e) {
+        return replaceWithinLock(e, compare, oldValue, newValue);
       }
-      putValue(e, newValue);
     }
+    stripedLocking.lock(e);
+    try {
+      return replaceWithinLock(e, compare, oldValue, newValue);
+    } finally {
+      stripedLocking.unlock(e);
+    }
+  }
+
+  private boolean replaceWithinLock(Entry<K, V> e, boolean compare, V oldValue, V newValue) {
+    waitForProcessing(e);
+    if (e.isGone() || !e.hasFreshData(clock)) {
+      return false;
+    }
+    if (compare && !e.equalsValue(oldValue)) {
+      return false;
+    }
+    putValue(e, newValue);
     return true;
   }
 
@@ -856,18 +1226,15 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       if (e.hasFreshData(clock)) {
         return returnValue(e);
       }
-      synchronized (e) {
-        e.waitForProcessing();
-        if (e.hasFreshData(clock)) {
-          return returnValue(e);
-        }
-        if (e.isGone()) {
-          metrics.goneSpin();
-          continue;
-        }
-        e.startProcessing(Entry.ProcessingState.COMPUTE, null);
-        break;
+      int state = startProcessingIfNotFresh(e, Entry.ProcessingState.COMPUTE);
+      if (state == FRESH) {
+        return returnValue(e);
       }
+      if (state == GONE) {
+        metrics.goneSpin();
+        continue;
+      }
+      break;
     }
     metrics.peekMiss();
     boolean finished = false;
@@ -883,13 +1250,23 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
           t = clock.ticks();
         }
       }
-      synchronized (e) {
-        insertOrUpdateAndCalculateExpiry(e, value, t0, t, false);
-        e.processingDone();
+      if (stripedLocking == null) {
+        synchronized (e) {
+          insertOrUpdateAndCalculateExpiry(e, value, t0, t, false);
+          e.processingDone();
+        }
+      } else {
+        stripedLocking.lock(e);
+        try {
+          insertOrUpdateAndCalculateExpiry(e, value, t0, t, false);
+          e.processingDoneWithoutNotify();
+        } finally {
+          stripedLocking.unlock(e);
+        }
       }
       finished = true;
     } finally {
-      e.ensureAbort(finished);
+      ensureAbort(e, finished);
     }
     return returnValue(e);
   }
@@ -898,39 +1275,84 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
   public boolean putIfAbsent(K key, V value) {
     for (;;) {
       Entry<K, V> e = lookupOrNewEntry(key);
-      synchronized (e) {
-        e.waitForProcessing();
-        if (e.isGone()) {
-          metrics.goneSpin();
-          continue;
+      int state;
+      if (stripedLocking == null) {
+        synchronized (e) {
+          state = putIfAbsentWithinLock(e, value);
         }
-        if (e.hasFreshData(clock)) {
-          return false;
+      } else {
+        stripedLocking.lock(e);
+        try {
+          state = putIfAbsentWithinLock(e, value);
+        } finally {
+          stripedLocking.unlock(e);
         }
-        metrics.peekMiss();
-        putValue(e, value);
-        return true;
       }
+      if (state == GONE) {
+        metrics.goneSpin();
+        continue;
+      }
+      return state != FRESH;
+    }
+  }
+
+  /**
+   * @return {@link #FRESH}, {@link #GONE} or {@link #STARTED}, if the value was put
+   */
+  private int putIfAbsentWithinLock(Entry<K, V> e, V value) {
+    waitForProcessing(e);
+    if (e.isGone()) {
+      return GONE;
     }
+    if (e.hasFreshData(clock)) {
+      return FRESH;
+    }
+    metrics.peekMiss();
+    putValue(e, value);
+    return STARTED;
   }
 
   @Override
   public void put(K key, V value) {
     for (;;) {
       Entry<K, V> e = lookupOrNewEntry(key);
+      if (putIfNotGone(e, value)) {
+        return;
+      }
+      metrics.goneSpin();
+    }
+  }
+
+  /**
+   * Lock the entry and put the value.
+   *
+   * @return {@code false}, if the entry was removed concurrently and the put needs
+   *         to start over with a new entry
+   */
+  protected final boolean putIfNotGone(Entry<K, V> e, V value) {
+    if (stripedLocking == null) {
       synchronized (e) {
-        e.waitForProcessing();
-        if (e.isGone()) {
-          metrics.goneSpin();
-          continue;
-        }
-        if (!e.isVirgin()) {
-          metrics.heapHitButNoRead();
-        }
-        putValue(e, value);
+        return putIfNotGoneWithinLock(e, value);
       }
-      return;
     }
+    stripedLocking.lock(e);
+    try {
+      return putIfNotGoneWithinLock(e, value);
+    } finally {
+      stripedLocking.unlock(e);
+    }
+  }
+
+  private boolean putIfNotGoneWithinLock(Entry<K, V> e, V value) {
+    waitForProcessing(e);
+    if (e.isGone()) {
+      return false;
+    }
+    if (!e.isVirgin()) {
+      metrics.heapHitButNoRead();
+    }
+    putValue(e, value);
+    return true;
   }
 
   @Override
@@ -939,15 +1361,27 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     if (e == null) {
       return false;
     }
-    synchronized (e) {
-      e.waitForProcessing();
-      if (e.isGone()) {
-        return false;
+    if (stripedLocking == null) {
+      synchronized (e) {
+        return containsAndRemoveWithinLock(e);
       }
-      boolean f = e.hasFreshData(clock);
-      removeEntry(e);
-      return f;
     }
+    stripedLocking.lock(e);
+    try {
+      return containsAndRemoveWithinLock(e);
+    } finally {
+      stripedLocking.unlock(e);
+    }
+  }
+
+  private boolean containsAndRemoveWithinLock(Entry<K, V> e) {
+    waitForProcessing(e);
+    if (e.isGone()) {
+      return false;
+    }
+    boolean f = e.hasFreshData(clock);
+    removeEntry(e);
+    return f;
   }
 
   /**
@@ -960,24 +1394,36 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       metrics.peekMiss();
       return false;
     }
-    synchronized (e) {
-      e.waitForProcessing();
-      if (e.isGone()) {
-        metrics.peekMiss();
-        return false;
+    if (stripedLocking == null) {
+      synchronized (e) {
+        return removeIfEqualsWithinLock(e, value);
       }
-      boolean f = e.hasFreshData(clock);
-      if (f) {
-        if (!e.equalsValue(value)) {
-          return false;
-        }
-      } else {
-        metrics.peekHitNotFresh();
+    }
+    stripedLocking.lock(e);
+    try {
+      return removeIfEqualsWithinLock(e, value);
+    } finally {
+      stripedLocking.unlock(e);
+    }
+  }
+
+  private boolean removeIfEqualsWithinLock(Entry<K, V> e, V value) {
+    waitForProcessing(e);
+    if (e.isGone()) {
+      metrics.peekMiss();
+      return false;
+    }
+    boolean f = e.hasFreshData(clock);
+    if (f) {
+      if (!e.equalsValue(value)) {
         return false;
       }
-      removeEntry(e);
-      return true;
+    } else {
+      metrics.peekHitNotFresh();
+      return false;
     }
+    removeEntry(e);
+    return true;
   }
 
   @Override
@@ -991,22 +1437,37 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       metrics.peekMiss();
       return null;
     }
-    synchronized (e) {
-      e.waitForProcessing();
-      if (e.isGone()) {
-        metrics.peekMiss();
-        return null;
+    Object value;
+    if (stripedLocking == null) {
+      synchronized (e) {
+        value = peekAndRemoveWithinLock(e);
       }
-      Object value = null;
-      boolean f = e.hasFreshData(clock);
-      if (f) {
-        value = e.getValueOrException();
-      } else {
-        metrics.peekHitNotFresh();
+    } else {
+      stripedLocking.lock(e);
+      try {
+        value = peekAndRemoveWithinLock(e);
+      } finally {
+        stripedLocking.unlock(e);
       }
-      removeEntry(e);
-      return returnValue(value);
     }
+    return returnValue(value);
+  }
+
+  private Object peekAndRemoveWithinLock(Entry<K, V> e) {
+    waitForProcessing(e);
+    if (e.isGone()) {
+      metrics.peekMiss();
+      return null;
+    }
+    Object value = null;
+    boolean f = e.hasFreshData(clock);
+    if (f) {
+      value = e.getValueOrException();
+    } else {
+      metrics.peekHitNotFresh();
+    }
+    removeEntry(e);
+    return value;
   }
 
   public Executor getRefreshExecutor() {
@@ -1109,6 +1570,32 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return keysToLoad;
   }
 
+  /**
+   * @return {@code false}, if the entry was removed concurrently
+   */
+  private boolean startLoadIfNotGone(Entry<K, V> e) {
+    if (stripedLocking == null) {
+      synchronized (e) {
+        return startLoadIfNotGoneWithinLock(e);
+      }
+    }
+    stripedLocking.lock(e);
+    try {
+      return startLoadIfNotGoneWithinLock(e);
+    } finally {
+      stripedLocking.unlock(e);
+    }
+  }
+
+  private boolean startLoadIfNotGoneWithinLock(Entry<K, V> e) {
+    waitForProcessing(e);
+    if (e.isGone()) {
+      return false;
+    }
+    e.startProcessing(Entry.ProcessingState.LOAD, null);
+    return true;
+  }
+
   /**
    * Always fetch the value from the source. That is a copy of getEntryInternal
    * without freshness checks.
@@ -1117,22 +1604,17 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     Entry<K, V> e;
     for (;;) {
       e = lookupOrNewEntry(key);
-      synchronized (e) {
-        e.waitForProcessing();
-        if (e.isGone()) {
-          metrics.goneSpin();
-          continue;
-        }
-        e.startProcessing(Entry.ProcessingState.LOAD, null);
+      if (startLoadIfNotGone(e)) {
         break;
       }
+      metrics.goneSpin();
     }
     boolean finished = false;
     try {
       load(e);
       finished = true;
     } finally {
-      e.ensureAbort(finished);
+      ensureAbort(e, finished);
     }
     return e;
   }
@@ -1208,8 +1690,24 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
    * needs to be done under the same lock, to allow a check of the consistency.
    */
   protected Entry<K, V> insertNewEntry(K key, int hc, int val) {
-    Entry<K, V> e = new Entry<>(toEntryKey(key), val);
+    return insertNewEntry(createEntry(key, val), hc, val);
+  }
+
+  /**
+   * Create a new entry object, not yet inserted.
+   */
+  protected Entry<K, V> createEntry(K key, int val) {
+    if (isSlimEntries()) {
+      return new Entry<>(toEntryKey(key), val);
+    }
+    return new FullEntry<>(toEntryKey(key), val);
+  }
+
+  protected final Entry<K, V> insertNewEntry(Entry<K, V> e, int hc, int val) {
     Entry<K, V> e2;
+    if (stripedLocking != null) {
+      e.enableStripedLocking();
+    }
     eviction.evictEventuallyBeforeInsertOnSegment(hc);
     StampedLock l = hash.getSegmentLock(hc);
     long stamp = l.writeLock();
@@ -1230,6 +1728,11 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return hash.getEntries();
   }
 
+  @Override
+  public @Nullable StripedEntryLocking getStripedEntryLocking() {
+    return stripedLocking;
+  }
+
   /**
    * Remove the entry from the hash table. The entry is already removed from the replacement list.
    * Stop the timer, if needed. The remove races with a clear. The clear
@@ -1244,6 +1747,7 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     checkForHashCodeChange(e);
     timing.cancelExpiryTimer(e);
     e.setGone();
+    OffHeapStore.release(e.getValueOrWrapper());
   }
 
   /**
@@ -1334,21 +1838,43 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     if (expiry != 0) {
       wrappedValue = timing.wrapLoadValueForRefresh(refreshCtx, e, exceptionWrapper);
     }
+    if (stripedLocking == null) {
+      synchronized (e) {
+        return finishLoadException(e, t0, t, exceptionWrapper, wrappedValue, expiry,
+          refreshTime, suppressException);
+      }
+    }
+    stripedLocking.lock(e);
+    try {
+      return finishLoadException(e, t0, t, exceptionWrapper, wrappedValue, expiry,
+        refreshTime, suppressException);
+    } finally {
+      stripedLocking.unlock(e);
+    }
+  }
+
+  /**
+   * Store the exception or keep the value, if the exception is suppressed.
+   * Called within the entry lock.
+   */
+  @SuppressWarnings("unchecked")
+  private Object finishLoadException(Entry<K, V> e, long t0, long t,
+                                     ExceptionWrapper<K, V> exceptionWrapper,
+                                     Object wrappedValue, long expiry, long refreshTime,
+                                     boolean suppressException) {
     Object loadResult;
-    synchronized (e) {
-      insertUpdateStats(e, (V) wrappedValue, t0, t, true, expiry, suppressException);
-      if (suppressException) {
-        e.setSuppressedLoadExceptionInformation(exceptionWrapper);
-        loadResult = e.getValueOrException();
-      } else {
-        if (isRecordModificationTime()) {
-          e.setModificationTime(t0);
-        }
-        e.setValueOrWrapper(exceptionWrapper);
-        loadResult = exceptionWrapper;
+    insertUpdateStats(e, (V) wrappedValue, t0, t, true, expiry, suppressException);
+    if (suppressException) {
+      ((MiscSlot) e).setSuppressedLoadExceptionInformation(exceptionWrapper);
+      loadResult = e.getValueOrException();
+    } else {
+      if (isRecordModificationTime()) {
+        e.setModificationTime(t0);
       }
-      finishLoadOrEviction(e, expiry, refreshTime);
+      e.setValueOrWrapper(exceptionWrapper);
+      loadResult = exceptionWrapper;
     }
+    finishLoadOrEviction(e, expiry, refreshTime);
     return loadResult;
   }
 
@@ -1484,15 +2010,17 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       if (valueOrException == null && isRejectNullValues() && expiry != 0) {
         return loadGotException(e, t0, t, returnNullValueDetectedException());
       }
-      synchronized (e) {
-        if (isRecordModificationTime()) {
-          e.setModificationTime(t0);
+      if (stripedLocking == null) {
+        synchronized (e) {
+          finishLoad(e, valueOrException, t0, t, expiry, refreshTime, refreshCtx);
+        }
+      } else {
+        stripedLocking.lock(e);
+        try {
+          finishLoad(e, valueOrException, t0, t, expiry, refreshTime, refreshCtx);
+        } finally {
+          stripedLocking.unlock(e);
         }
-        insertUpdateStats(e, valueOrException, t0, t, load, expiry, false);
-        Object wrappedValue = timing.wrapLoadValueForRefresh(refreshCtx, e, valueOrException);
-        e.setValueOrWrapper(wrappedValue);
-        e.resetSuppressedLoadExceptionInformation();
-        finishLoadOrEviction(e, expiry, refreshTime);
       }
     } else {
       if (valueOrException == null && isRejectNullValues()) {
@@ -1502,13 +2030,31 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
         e.setModificationTime(t0);
       }
       e.setValueOrWrapper(valueOrException);
-      e.resetSuppressedLoadExceptionInformation();
+      if (e instanceof MiscSlot) {
+        ((MiscSlot) e).resetSuppressedLoadExceptionInformation();
+      }
       insertUpdateStats(e, valueOrException, t0, t, load, expiry, false);
       restartTimer(e, expiry, refreshTime);
     }
     return valueOrException;
   }
 
+  /**
+   * Store the loaded value. Called within the entry lock.
+   */
+  private void finishLoad(Entry<K, V> e, Object valueOrException, long t0, long t,
+                          long expiry, long refreshTime,
+                          RefreshAheadPolicy.Context<Object> refreshCtx) {
+    if (isRecordModificationTime()) {
+      e.setModificationTime(t0);
+    }
+    insertUpdateStats(e, valueOrException, t0, t, true, expiry, false);
+    Object wrappedValue = timing.wrapLoadValueForRefresh(refreshCtx, e, valueOrException);
+    e.setValueOrWrapper(wrappedValue);
+    ((MiscSlot) e).resetSuppressedLoadExceptionInformation();
+    finishLoadOrEviction(e, expiry, refreshTime);
+  }
+
   private void insertUpdateStats(Entry<K, V> e, Object valueOrException, long t0, long t, boolean load,
                                  long expiryTime, boolean suppressException) {
     if (load) {
@@ -1540,26 +2086,70 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
   @Override
   public void timerEventRefresh(Entry<K, V> e, Object task) {
     metrics.timerEvent();
-    synchronized (e) {
-      if (e.getTask() != task) { return; }
+    if (!isCurrentTask(e, task)) { return; }
+    if (refreshPipeline == null) {
       try {
         refreshExecutor.execute(createFireAndForgetAction(e, Operations.SINGLETON.refresh));
       } catch (RejectedExecutionException ex) {
-        metrics.refreshRejected();
-        expireOrScheduleFinalExpireEvent(e);
+        refreshRejected(e, task);
+      }
+      return;
+    }
+    refreshPipeline.submit(e, createFireAndForgetAction(e, Operations.SINGLETON.refresh),
+      () -> refreshRejected(e, task));
+  }
+
+  /**
+   * Refresh was dropped by the {@link RefreshPipeline} or rejected by the refresh executor.
+   * Expire the entry, if not modified meanwhile.
+   */
+  private void refreshRejected(Entry<K, V> e, Object task) {
+    if (stripedLocking == null) {
+      synchronized (e) {
+        refreshRejectedWithinLock(e, task);
       }
+      return;
+    }
+    stripedLocking.lock(e);
+    try {
+      refreshRejectedWithinLock(e, task);
+    } finally {
+      stripedLocking.unlock(e);
     }
   }
 
+  private void refreshRejectedWithinLock(Entry<K, V> e, Object task) {
+    if (MiscSlot.taskOf(e) != task) { return; }
+    metrics.refreshRejected();
+    expireOrScheduleFinalExpireEvent(e);
+  }
+
+  public @Nullable RefreshPipeline getRefreshPipeline() {
+    return refreshPipeline;
+  }
+
   @Override
   public void timerEventProbationTerminated(Entry<K, V> e, Object task) {
     metrics.timerEvent();
-    synchronized (e) {
-      if (e.getTask() != task) { return; }
-      expireEntry(e);
+    if (stripedLocking == null) {
+      synchronized (e) {
+        expireEntryIfTaskMatches(e, task);
+      }
+      return;
+    }
+    stripedLocking.lock(e);
+    try {
+      expireEntryIfTaskMatches(e, task);
+    } finally {
+      stripedLocking.unlock(e);
     }
   }
 
+  private void expireEntryIfTaskMatches(Entry<K, V> e, Object task) {
+    if (MiscSlot.taskOf(e) != task) { return; }
+    expireEntry(e);
+  }
+
   @Override
   public void logAndCountInternalException(String text, Throwable exception) {
     synchronized (lock) {
@@ -1571,12 +2161,66 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
   @Override
   public void timerEventExpireEntry(Entry<K, V> e, Object task) {
     metrics.timerEvent();
-    synchronized (e) {
-      if (e.getTask() != task) { return; }
-      expireOrScheduleFinalExpireEvent(e);
+    if (stripedLocking == null) {
+      synchronized (e) {
+        expireOrScheduleFinalExpireEventIfTaskMatches(e, task);
+      }
+      return;
+    }
+    stripedLocking.lock(e);
+    try {
+      expireOrScheduleFinalExpireEventIfTaskMatches(e, task);
+    } finally {
+      stripedLocking.unlock(e);
     }
   }
 
+  /**
+   * Check within the entry lock, whether the timer task is still valid.
+   */
+  final boolean isCurrentTask(Entry<K, V> e, Object task) {
+    if (stripedLocking == null) {
+      synchronized (e) {
+        return MiscSlot.taskOf(e) == task;
+      }
+    }
+    stripedLocking.lock(e);
+    try {
+      return MiscSlot.taskOf(e) == task;
+    } finally {
+      stripedLocking.unlock(e);
+    }
+  }
+
+  private void expireOrScheduleFinalExpireEventIfTaskMatches(Entry<K, V> e, Object task) {
+    if (MiscSlot.taskOf(e) != task) { return; }
+    expireOrScheduleFinalExpireEvent(e);
+  }
+
+  @Override
+  public boolean timerEventSweepExpired(Entry<K, V> e, long now) {
+    if (stripedLocking == null) {
+      synchronized (e) {
+        return sweepExpiredWithinLock(e, now);
+      }
+    }
+    stripedLocking.lock(e);
+    try {
+      return sweepExpiredWithinLock(e, now);
+    } finally {
+      stripedLocking.unlock(e);
+    }
+  }
+
+  private boolean sweepExpiredWithinLock(Entry<K, V> e, long now) {
+    if (!e.isExpiryTimeReached(now)) {
+      return false;
+    }
+    metrics.timerEvent();
+    expireOrScheduleFinalExpireEvent(e);
+    return true;
+  }
+
   private void expireOrScheduleFinalExpireEvent(Entry<K, V> e) {
     try {
       expireEntry(e);
@@ -1627,6 +2271,13 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return new ConcurrentEntryIterator<>(this);
   }
 
+  /**
+   * Spliterator over all heap entries, used for parallel streams.
+   */
+  public final ConcurrentEntrySpliterator<K, V> spliterateAllHeapEntries() {
+    return new ConcurrentEntrySpliterator<>(this);
+  }
+
   /**
    * JSR107 bulk interface. The behaviour is compatible to the JSR107 TCK. We also need
    * to be compatible to the exception handling policy, which says that the exception
@@ -1634,14 +2285,103 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
    * which has produced an exception is requested from the map.
    */
   public Map<K, V> getAll(Iterable<? extends K> inputKeys) {
-    Map<K, Object> map = new HashMap<>();
-    for (K k : inputKeys) {
-      Entry<K, V> e = getEntryInternal(k);
-      if (e != null) {
-        map.put(keyObjFromEntry(e), e.getValueOrException());
+    K[] keys = toKeyArray(inputKeys);
+    Map<K, Object> map = new HashMap<>(keys.length * 4 / 3 + 1);
+    bulkLookup(keys, true, (i, e) -> map.put(keyObjFromEntry(e), e.getValueOrException()));
+    return convertValueMap(map);
+  }
+
+  /**
+   * Bulk get without intermediate map. Exceptions are thrown immediately.
+   */
+  @Override
+  public int getAll(K[] keys, @Nullable V[] values) {
+    return bulkLookupIntoArray(keys, values, true);
+  }
+
+  @Override
+  public int peekAll(K[] keys, @Nullable V[] values) {
+    return bulkLookupIntoArray(keys, values, false);
+  }
+
+  private int bulkLookupIntoArray(K[] keys, @Nullable V[] values, boolean load) {
+    if (values.length < keys.length) {
+      throw new IllegalArgumentException("value array too short");
+    }
+    Arrays.fill(values, 0, keys.length, null);
+    int[] count = new int[1];
+    bulkLookup(keys, load, (i, e) -> {
+      values[i] = returnValue(e.getValueOrException());
+      count[0]++;
+    });
+    return count[0];
+  }
+
+  @SuppressWarnings("unchecked")
+  private K[] toKeyArray(Iterable<? extends K> keys) {
+    if (keys instanceof Collection) {
+      return (K[]) ((Collection<? extends K>) keys).toArray();
+    }
+    ArrayList<K> list = new ArrayList<>();
+    for (K k : keys) {
+      list.add(k);
+    }
+    return (K[]) list.toArray();
+  }
+
+  /**
+   * Receives the entries found by a bulk lookup.
+   */
+  @FunctionalInterface
+  interface BulkLookupSink<K, V> {
+
+    /**
+     * Entry with data for the key at the index. Not called for keys without mapping.
+     */
+    void accept(int index, Entry<K, V> e);
+
+  }
+
+  /**
+   * Lookup all keys in the hash table with one optimistic read per segment, see
+   * {@link StampedHash#lookupAll}. Keys without fresh data are processed individually,
+   * which means loading, if requested and a loader is present.
+   *
+   * @param load load missing or expired values if a loader is present
+   */
+  protected void bulkLookup(K[] keys, boolean load, BulkLookupSink<K, V> sink) {
+    int n = keys.length;
+    int[] hashes = new int[n];
+    int[] keyValues = new int[n];
+    for (int i = 0; i < n; i++) {
+      K key = keys[i];
+      int hc = spreadHash(key.hashCode());
+      hashes[i] = hc;
+      keyValues[i] = toStoredHashCodeOrKey(key, hc);
+    }
+    Entry<K, V>[] entries = new Entry[n];
+    hash.lookupAll(keys, hashes, keyValues, entries);
+    for (int i = 0; i < n; i++) {
+      Entry<K, V> e = entries[i];
+      if (e != null && e.hasFreshData(clock)) {
+        recordHit(e);
+        sink.accept(i, e);
+        continue;
+      }
+      if (load && loader != null) {
+        e = getEntryInternal(keys[i], hashes[i], keyValues[i]);
+        if (e != null) {
+          sink.accept(i, e);
+        }
+        continue;
+      }
+      if (e == null) {
+        metrics.peekMiss();
+      } else {
+        recordHit(e);
+        metrics.peekHitNotFresh();
       }
     }
-    return convertValueMap(map);
   }
 
   public Map<K, V> convertValueMap(Map<K, Object> map) {
@@ -1663,20 +2403,183 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
   }
 
   public Map<K, V> peekAll(Iterable<? extends K> inputKeys) {
-    Map<K, Object> map = new HashMap<>();
-    for (K k : inputKeys) {
-      ExaminationEntry<K, V> e = peekEntryInternal(k);
-      if (e != null) {
-        map.put(k, e.getValueOrException());
-      }
-    }
+    K[] keys = toKeyArray(inputKeys);
+    Map<K, Object> map = new HashMap<>(keys.length * 4 / 3 + 1);
+    bulkLookup(keys, false, (i, e) -> map.put(keys[i], e.getValueOrException()));
     return convertValueMap(map);
   }
 
+  /**
+   * Processes the entries in chunks. Existing entries are found via the bulk lookup.
+   * Missing entries are grouped by hash segment, each group is inserted with one
+   * segment lock and submitted to the eviction at once. The values are stored with the
+   * entry lock held, same as {@link #put(Object, Object)}.
+   */
   public void putAll(Map<? extends K, ? extends V> valueMap) {
+    int size = valueMap.size();
+    if (size <= 1) {
+      for (Map.Entry<? extends K, ? extends V> e : valueMap.entrySet()) {
+        put(e.getKey(), e.getValue());
+      }
+      return;
+    }
+    int chunkSize = Math.min(size, BULK_PUT_CHUNK_SIZE);
+    BulkPutChunk<K, V> chunk = new BulkPutChunk<>(chunkSize);
+    int n = 0;
     for (Map.Entry<? extends K, ? extends V> e : valueMap.entrySet()) {
-      put(e.getKey(), e.getValue());
+      chunk.keys[n] = e.getKey();
+      chunk.values[n] = e.getValue();
+      if (++n == chunkSize) {
+        putChunk(chunk, n);
+        n = 0;
+      }
+    }
+    if (n > 0) {
+      putChunk(chunk, n);
+    }
+  }
+
+  /**
+   * Arrays for one chunk of a bulk put, reused for all chunks.
+   */
+  private static final class BulkPutChunk<K, V> {
+
+    final K[] keys;
+    final V[] values;
+    final int[] hashes;
+    final int[] keyValues;
+    final Entry<K, V>[] entries;
+
+    @SuppressWarnings("unchecked")
+    BulkPutChunk(int size) {
+      keys = (K[]) new Object[size];
+      values = (V[]) new Object[size];
+      hashes = new int[size];
+      keyValues = new int[size];
+      entries = new Entry[size];
     }
+
+  }
+
+  private void putChunk(BulkPutChunk<K, V> chunk, int n) {
+    K[] keys = chunk.keys;
+    Entry<K, V>[] entries = chunk.entries;
+    for (int i = 0; i < n; i++) {
+      int hc = spreadHash(keys[i].hashCode());
+      chunk.hashes[i] = hc;
+      chunk.keyValues[i] = toStoredHashCodeOrKey(keys[i], hc);
+    }
+    hash.lookupAll(keys, chunk.hashes, chunk.keyValues, entries, n);
+    int missing = 0;
+    for (int i = 0; i < n; i++) {
+      if (entries[i] == null) {
+        missing++;
+      } else {
+        recordHit(entries[i]);
+      }
+    }
+    if (missing > 0) {
+      insertMissing(chunk, n, missing);
+    }
+    timing.startCollecting();
+    try {
+      putValues(chunk, n);
+    } finally {
+      timing.scheduleCollected();
+    }
+  }
+
+  /**
+   * Update the entries of the chunk. Timers are scheduled together after the chunk.
+   */
+  private void putValues(BulkPutChunk<K, V> chunk, int n) {
+    K[] keys = chunk.keys;
+    Entry<K, V>[] entries = chunk.entries;
+    for (int i = 0; i < n; i++) {
+      if (!putIfNotGone(entries[i], chunk.values[i])) {
+        metrics.goneSpin();
+        put(keys[i], chunk.values[i]);
+      }
+      entries[i] = null;
+      keys[i] = null;
+      chunk.values[i] = null;
+    }
+  }
+
+  /**
+   * Insert new entries for the keys not found, grouped by hash segment. An entry inserted
+   * concurrently by another thread is used instead.
+   */
+  private void insertMissing(BulkPutChunk<K, V> chunk, int n, int missing) {
+    int[] hashes = chunk.hashes;
+    Entry<K, V>[] entries = chunk.entries;
+    int[] segmentEnd = new int[StampedHash.LOCK_SEGMENTS];
+    for (int i = 0; i < n; i++) {
+      if (entries[i] == null) {
+        segmentEnd[hashes[i] & StampedHash.LOCK_MASK]++;
+      }
+    }
+    int sum = 0;
+    for (int si = 0; si < segmentEnd.length; si++) {
+      int count = segmentEnd[si];
+      segmentEnd[si] = sum;
+      sum += count;
+    }
+    int[] order = new int[missing];
+    for (int i = 0; i < n; i++) {
+      if (entries[i] == null) {
+        order[segmentEnd[hashes[i] & StampedHash.LOCK_MASK]++] = i;
+      }
+    }
+    Entry<K, V>[] inserted = new Entry[missing];
+    int remaining = missing;
+    int budget = 0;
+    int begin = 0;
+    for (int si = 0; si < segmentEnd.length; si++) {
+      int end = segmentEnd[si];
+      while (begin < end) {
+        if (budget == 0) {
+          budget = eviction.evictEventuallyBeforeBulkInsert(remaining);
+        }
+        int to = Math.min(end, begin + budget);
+        budget -= to - begin;
+        remaining -= to - begin;
+        insertGroup(chunk, order, begin, to, inserted);
+        begin = to;
+      }
+    }
+  }
+
+  /**
+   * Insert the entries of one hash segment within one segment lock.
+   */
+  private void insertGroup(BulkPutChunk<K, V> chunk, int[] order, int begin, int end,
+                           Entry<K, V>[] inserted) {
+    int groupHash = chunk.hashes[order[begin]];
+    int count = 0;
+    StampedLock l = hash.getSegmentLock(groupHash);
+    long stamp = l.writeLock();
+    try {
+      for (int k = begin; k < end; k++) {
+        int i = order[k];
+        int val = chunk.keyValues[i];
+        Entry<K, V> e = createEntry(chunk.keys[i], val);
+        if (stripedLocking != null) {
+          e.enableStripedLocking();
+        }
+        Entry<K, V> e2 = hash.insertWithinLock(e, chunk.hashes[i], val);
+        chunk.entries[i] = e2;
+        if (e == e2) {
+          inserted[count++] = e;
+        }
+      }
+      if (count > 0) {
+        eviction.submitAllWithoutTriggeringEviction(inserted, 0, count);
+      }
+    } finally {
+      l.unlockWrite(stamp);
+    }
+    hash.checkExpand(groupHash);
   }
 
   @SuppressWarnings("unchecked")
@@ -1900,7 +2803,15 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
    */
   public K keyObjFromEntry(Entry<K, V> e) { return e.getKeyObj(); }
 
-  public StampedHash<K, V> createHashTable() {
+  /**
+   * Construct the hash table.
+   *
+   * @param openAddressing use the {@link OpenAddressingHash} instead of the chained hash
+   */
+  public StampedHash<K, V> createHashTable(boolean openAddressing) {
+    if (openAddressing) {
+      return new OpenAddressingHash<>(this);
+    }
     return new StampedHash<>(this);
   }
 
@@ -24,11 +24,15 @@ import org.cache2k.Cache2kBuilder;
 import org.cache2k.CacheEntry;
 import org.cache2k.CustomizationException;
 import org.cache2k.config.CacheType;
+import org.cache2k.config.CustomizationReferenceSupplier;
 import org.cache2k.config.CustomizationSupplier;
 import org.cache2k.core.api.InternalCacheBuildContext;
+import org.cache2k.core.concurrency.VirtualThreads;
 import org.cache2k.core.eviction.EvictionFactory;
 import org.cache2k.core.eviction.InternalEvictionListener;
+import org.cache2k.core.offheap.OffHeapStore;
 import org.cache2k.core.timing.DefaultSchedulerProvider;
+import org.cache2k.core.timing.TimeAgnosticTiming;
 import org.cache2k.core.timing.Timing;
 import org.cache2k.io.BulkCacheLoader;
 import org.cache2k.operation.Scheduler;
@@ -56,6 +60,8 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicLong;
 
+import static org.cache2k.core.util.Util.compactFullName;
+
 /**
  * Method object to construct a cache2k cache.
  *
@@ -189,6 +195,26 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
     return buildWithoutExternalConfig();
   }
 
+  /**
+   * Values stored off heap are weighed by their size in bytes. The weigher
+   * enables the limit by weight and the wired cache, which does all value updates
+   * via the entry action.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void configureOffHeap() {
+    if (config.getWeigher() != null) {
+      throw new IllegalArgumentException("weigher not supported with off heap values");
+    }
+    if (config.getRefreshAheadPolicy() != null) {
+      throw new IllegalArgumentException("refresh ahead policy not supported with off heap values");
+    }
+    if (config.getMaximumWeight() <= 0 || config.getMaximumWeight() == Long.MAX_VALUE) {
+      throw new IllegalArgumentException(
+        "off heap values need a maximum weight, which is the off heap memory limit in bytes");
+    }
+    config.setWeigher(new CustomizationReferenceSupplier(OffHeapStore.WEIGHER));
+  }
+
   /**
    * Build without applying external configuration. Needed for JCache.
    */
@@ -209,11 +235,17 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
     }
     clock = createCustomization(config.getTimeReference(), TimeReference.DEFAULT);
     executor = createCustomization(config.getExecutor(), buildContext -> ForkJoinPool.commonPool());
+    if (internalConfig().getOffHeapSerializer() != null) {
+      configureOffHeap();
+    }
     HeapCache<K, V> bc;
     Class<?> keyType = config.getKeyType().getType();
     if (keyType == Integer.class) {
       bc = (HeapCache<K, V>)
         new IntHeapCache<>((InternalCacheBuildContext<Integer, V>) this);
+    } else if (keyType == Long.class) {
+      bc = (HeapCache<K, V>)
+        new LongHeapCache<>((InternalCacheBuildContext<Long, V>) this);
     } else {
       bc = new HeapCache<>(this);
     }
@@ -292,6 +324,9 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
         Executor asyncExecutor = bc.getExecutor();
         if (config.getAsyncListenerExecutor() != null) {
           asyncExecutor = createCustomization(config.getAsyncListenerExecutor());
+        } else if (config.isVirtualThreads()) {
+          asyncExecutor = VirtualThreads.newExecutor(
+            "cache2k-listener-" + compactFullName(manager, bc.getName()));
         }
         AsyncDispatcher<K> asyncDispatcher = new AsyncDispatcher<>(wc, asyncExecutor);
         List<CacheEntryCreatedListener<K, V>> cll =
@@ -368,6 +403,7 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
     } else {
       Timing rh = Timing.of(this);
       bc.setTiming(rh);
+      bc.setSlimEntries(rh instanceof TimeAgnosticTiming && bc.loader == null);
       bc.eviction = EVICTION_FACTORY.constructEviction(
         this, bc, InternalEvictionListener.NO_OPERATION, config,
         Runtime.getRuntime().availableProcessors());
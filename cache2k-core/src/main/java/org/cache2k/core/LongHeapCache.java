@@ -0,0 +1,129 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.annotation.Nullable;
+import org.cache2k.core.api.InternalCacheBuildContext;
+
+/**
+ * Overwrite methods so the long key gets stored directly in the {@link LongEntry}
+ * and no key object is kept per entry. The methods {@link #get(long)} and
+ * {@link #put(long, Object)} allow access without boxing the key.
+ *
+ * @author Jens Wilke
+ */
+public class LongHeapCache<V> extends HeapCache<Long, V> {
+
+  public LongHeapCache(InternalCacheBuildContext<Long, V> ctx) {
+    super(ctx);
+  }
+
+  @Override
+  public Long keyObjFromEntry(Entry<Long, V> e) {
+    return e.getKey();
+  }
+
+  @Override
+  protected Entry<Long, V> createEntry(Long key, int val) {
+    return newEntry(key, val);
+  }
+
+  /**
+   * Same as {@link #get(Object)}. A hit with fresh data needs no key object. In all
+   * other cases the key is boxed and the general code path is used.
+   */
+  public @Nullable V get(long key) {
+    int hc = spreadHash(Long.hashCode(key));
+    Entry<Long, V> e = hash.lookupLong(key, hc, hc);
+    if (e != null && e.hasFreshData(clock)) {
+      recordHit(e);
+      return e.getValue();
+    }
+    return get(Long.valueOf(key));
+  }
+
+  /**
+   * Same as {@link #put(Object, Object)}, without boxing the key.
+   */
+  public void put(long key, V value) {
+    int hc = spreadHash(Long.hashCode(key));
+    for (;;) {
+      Entry<Long, V> e = lookupOrNewEntry(key, hc);
+      if (putIfNotGone(e, value)) {
+        return;
+      }
+      metrics.goneSpin();
+    }
+  }
+
+  private Entry<Long, V> lookupOrNewEntry(long key, int hc) {
+    Entry<Long, V> e = hash.lookupLong(key, hc, hc);
+    if (e == null) {
+      return insertNewEntry(newEntry(key, hc), hc, hc);
+    }
+    recordHit(e);
+    return e;
+  }
+
+  private Entry<Long, V> newEntry(long key, int hc) {
+    return isSlimEntries() ? new LongEntry<>(key, hc) : new FullLongEntry<>(key, hc);
+  }
+
+  static boolean keyIsEqual(Long key, long longKey, Entry e) {
+    return (key != null ? key : longKey) == ((LongEntry) e).longKey;
+  }
+
+  static boolean entryKeyIsEqual(Entry e, Entry f) {
+    return ((LongEntry) e).longKey == ((LongEntry) f).longKey;
+  }
+
+  /**
+   * Modified hash table implementation. Compares the primitive key values.
+   */
+  @Override
+  public StampedHash<Long, V> createHashTable(boolean openAddressing) {
+    if (openAddressing) {
+      return new OpenAddressingHash<Long, V>(this) {
+        @Override
+        protected boolean keyIsEqual(Long key, long longKey, Entry e) {
+          return LongHeapCache.keyIsEqual(key, longKey, e);
+        }
+
+        @Override
+        protected boolean entryKeyIsEqual(Entry<Long, V> e, Entry f) {
+          return LongHeapCache.entryKeyIsEqual(e, f);
+        }
+      };
+    }
+    return new StampedHash<Long, V>(this) {
+      @Override
+      protected boolean keyIsEqual(Long key, long longKey, Entry e) {
+        return LongHeapCache.keyIsEqual(key, longKey, e);
+      }
+
+      @Override
+      protected boolean entryKeyIsEqual(Entry<Long, V> e, Entry f) {
+        return LongHeapCache.entryKeyIsEqual(e, f);
+      }
+    };
+  }
+
+}
@@ -0,0 +1,191 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry.LoadExceptionPiggyBack;
+import org.cache2k.core.Entry.PiggyBack;
+import org.cache2k.core.Entry.RefreshProbationPiggyBack;
+import org.cache2k.core.Entry.TaskPiggyBack;
+import org.cache2k.core.timing.TimerTask;
+import org.cache2k.io.LoadExceptionInfo;
+
+/**
+ * Slot of an entry for the timer task and additional information. Implemented by
+ * {@link FullEntry} and {@link FullLongEntry}, which the cache uses when expiry, a loader
+ * or a wired cache is configured. A plain {@link Entry} has no slot, so code that is only
+ * reached with one of these features casts the entry, other code checks the type.
+ *
+ * @author Jens Wilke
+ * @see HeapCache#setSlimEntries(boolean)
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public interface MiscSlot {
+
+  /**
+   * Usually this contains the reference to the timer task. In some cases, like when exceptions
+   * happen we will link to the PiggyBack object to add more information as needed.
+   */
+  Object getMisc();
+
+  void setMisc(Object v);
+
+  /**
+   * Timer task of the entry, or {@code null} if the entry has no slot.
+   */
+  static TimerTask taskOf(Entry e) {
+    return e instanceof MiscSlot ? ((MiscSlot) e).getTask() : null;
+  }
+
+  default TimerTask getTask() {
+    Object misc = getMisc();
+    if (misc instanceof TimerTask) {
+      return (TimerTask) misc;
+    }
+    TaskPiggyBack pb = getPiggyBack(TaskPiggyBack.class);
+    if (pb != null) {
+      return pb.task;
+    }
+    return null;
+  }
+
+  default <X> X getPiggyBack(Class<X> type) {
+    Object obj = getMisc();
+    if (!(obj instanceof PiggyBack)) {
+      return null;
+    }
+    PiggyBack pb = (PiggyBack) obj;
+    do {
+      if (pb.getClass() == type) {
+        return (X) pb;
+      }
+      pb = pb.next;
+    } while (pb != null);
+    return null;
+  }
+
+  default void setTask(TimerTask v) {
+    Object misc = getMisc();
+    if (misc == null || misc instanceof TimerTask) {
+      setMisc(v);
+      return;
+    }
+    TaskPiggyBack pb = getPiggyBack(TaskPiggyBack.class);
+    if (pb != null) {
+      pb.task = v;
+      return;
+    }
+    setMisc(new TaskPiggyBack(v, (PiggyBack) misc));
+  }
+
+  /**
+   * Attach the running action, so concurrent asynchronous requests can be enqueued.
+   */
+  default void setEntryAction(EntryAction action) {
+    action.next = existingPiggyBackForInserting();
+    setMisc(action);
+  }
+
+  default EntryAction getEntryAction() {
+    Object misc = getMisc();
+    if (!(misc instanceof PiggyBack)) {
+      return null;
+    }
+    PiggyBack at = ((PiggyBack) misc);
+    while (at != null) {
+      if (at instanceof EntryAction) {
+        return (EntryAction) at;
+      }
+      at = at.next;
+    }
+    return null;
+  }
+
+  default void resetEntryAction() {
+    Object misc = getMisc();
+    if (!(misc instanceof PiggyBack)) {
+      return;
+    }
+    if (misc instanceof EntryAction) {
+      setMisc(((PiggyBack) misc).next);
+      return;
+    }
+    PiggyBack at = ((PiggyBack) misc);
+    while (at != null) {
+      PiggyBack next = at.next;
+      if (next instanceof EntryAction) {
+        at.next = next.next;
+        return;
+      }
+      at = next;
+    }
+  }
+
+  /**
+   * We want to add a new piggy back. Check for timer task and convert it to
+   * piggy back.
+   */
+  default PiggyBack existingPiggyBackForInserting() {
+    Object misc = getMisc();
+    if (misc instanceof TimerTask) {
+      return new TaskPiggyBack((TimerTask) misc, null);
+    }
+    return (PiggyBack) misc;
+  }
+
+  default void setSuppressedLoadExceptionInformation(LoadExceptionInfo w) {
+    LoadExceptionPiggyBack inf = getPiggyBack(LoadExceptionPiggyBack.class);
+    if (inf != null) {
+      inf.info = w;
+      return;
+    }
+    setMisc(new LoadExceptionPiggyBack(w, existingPiggyBackForInserting()));
+  }
+
+  /**
+   * If the entry carries information about a suppressed exception, clear it.
+   */
+  default void resetSuppressedLoadExceptionInformation() {
+    LoadExceptionPiggyBack inf = getPiggyBack(LoadExceptionPiggyBack.class);
+    if (inf != null) {
+      inf.info = null;
+    }
+  }
+
+  default LoadExceptionInfo getSuppressedLoadExceptionInformation() {
+    LoadExceptionPiggyBack inf = getPiggyBack(LoadExceptionPiggyBack.class);
+    return inf != null ? inf.info : null;
+  }
+
+  default void setRefreshPolicyData(Object v) {
+    RefreshProbationPiggyBack inf = getPiggyBack(RefreshProbationPiggyBack.class);
+    if (inf != null) {
+      inf.policyData = v;
+      return;
+    }
+    setMisc(new RefreshProbationPiggyBack(v, existingPiggyBackForInserting()));
+  }
+
+  default Object getRefreshPolicyData() {
+    RefreshProbationPiggyBack inf = getPiggyBack(RefreshProbationPiggyBack.class);
+    return inf != null ? inf.policyData : null;
+  }
+
+}
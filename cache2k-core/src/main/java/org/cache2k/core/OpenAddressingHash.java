@@ -0,0 +1,413 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.CacheClosedException;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Hash table variant using open addressing with linear probing instead of collision
+ * chains. Each lock segment has its own table, which consists of an array with
+ * the stored hash codes, see {@link Entry#hashCode}, and a parallel array with the entry
+ * references. A lookup compares the stored hash codes and only reads the entry in case
+ * of a match, so a probe sequence touches one or two cache lines instead of following
+ * a pointer per collision.
+ *
+ * <p>The optimistic read protocol of the segment locks is identical to the chained
+ * {@link StampedHash}. Since every segment has its own table, an expansion is done within
+ * the segment lock when inserting and never needs to lock the whole hash table.
+ * Removal uses backward shift deletion, so no tombstones are needed.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings({"WeakerAccess", "rawtypes", "unchecked"})
+public class OpenAddressingHash<K, V> extends StampedHash<K, V> {
+
+  /**
+   * Size of a segment table before inserting the first entry. Must be power of two.
+   */
+  private static final int INITIAL_SEGMENT_SIZE = 8;
+
+  /**
+   * Fill percentage limit of a segment table. Linear probing needs a lower fill
+   * than the chained hash to keep the probe sequences short.
+   */
+  private static final int LOAD_PERCENT = 60;
+
+  private static final int MAXIMUM_SEGMENT_SIZE = 1 << 30;
+
+  /**
+   * Fibonacci hashing constant, to derive the slot index from other bits
+   * than the segment index.
+   */
+  private static final int INDEX_MIX = 0x9E3779B9;
+
+  private int initialSegmentSize = INITIAL_SEGMENT_SIZE;
+
+  /** Relocations per segment, incremented within the segment lock, read within the total lock */
+  private final long[] segmentRelocationCount = new long[LOCK_SEGMENTS];
+
+  /** Stored hash codes of the entries, per segment */
+  private final int[][] segmentHashes = new int[LOCK_SEGMENTS][];
+
+  /** Entry references, per segment. A {@code null} value marks an empty slot. */
+  private final Entry<K, V>[][] segmentSlots = new Entry[LOCK_SEGMENTS][];
+
+  /**
+   * @param cache Cache reference only needed for the cache name in case of an exception
+   */
+  public OpenAddressingHash(Cache<?, ?> cache) {
+    super(cache, false);
+    initTables();
+  }
+
+  private void initTables() {
+    for (int i = 0; i < LOCK_SEGMENTS; i++) {
+      segmentHashes[i] = new int[initialSegmentSize];
+      segmentSlots[i] = new Entry[initialSegmentSize];
+    }
+  }
+
+  private static int slotIndex(int hash, int length) {
+    return (hash * INDEX_MIX) >>> Integer.numberOfLeadingZeros(length - 1);
+  }
+
+  private static long maxFill(int length) {
+    return length * (long) LOAD_PERCENT / 100;
+  }
+
+  @Override
+  public void presize(long expectedEntryCount) {
+    long perSegment = expectedEntryCount / LOCK_SEGMENTS;
+    perSegment += (perSegment >>> 3) + 1;
+    long required = perSegment * 100 / LOAD_PERCENT + 1;
+    if (required <= initialSegmentSize) {
+      return;
+    }
+    int len = MAXIMUM_SEGMENT_SIZE;
+    if (required < MAXIMUM_SEGMENT_SIZE) {
+      len = Integer.highestOneBit((int) required - 1) << 1;
+    }
+    initialSegmentSize = len;
+    initTables();
+  }
+
+  @Override
+  public long getEntryCapacity() {
+    long sum = 0;
+    for (Entry<K, V>[] slots : segmentSlots) {
+      if (slots != null) {
+        sum += maxFill(slots.length);
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  protected Entry<K, V> lookup(K key, long longKey, int hash, int keyValue) {
+    int si = hash & LOCK_MASK;
+    StampedLock l = locks[si];
+    long stamp = l.tryOptimisticRead();
+    int[] hashes = segmentHashes[si];
+    Entry<K, V>[] slots = segmentSlots[si];
+    if (slots == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    Entry<K, V> e;
+    int n = slots.length;
+    if (hashes != null && hashes.length == n) {
+      int mask = n - 1;
+      int idx = slotIndex(hash, n);
+      for (int i = 0; i < n; i++) {
+        e = slots[idx];
+        if (e == null) {
+          if (l.validate(stamp)) { return null; }
+          break;
+        }
+        if (hashes[idx] == keyValue && e.hashCode == keyValue && keyIsEqual(key, longKey, e)) {
+          return e;
+        }
+        idx = (idx + 1) & mask;
+      }
+    }
+    stamp = l.readLock();
+    try {
+      return findWithinLock(si, key, longKey, hash, keyValue);
+    } finally {
+      l.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  protected Entry<K, V> probe(K key, int hash, int keyValue) {
+    int si = hash & LOCK_MASK;
+    int[] hashes = segmentHashes[si];
+    Entry<K, V>[] slots = segmentSlots[si];
+    if (slots == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    int n = slots.length;
+    if (hashes == null || hashes.length != n) {
+      return null;
+    }
+    int mask = n - 1, idx = slotIndex(hash, n);
+    Entry<K, V> e;
+    for (int i = 0; i < n && (e = slots[idx]) != null; i++) {
+      if (hashes[idx] == keyValue && e.hashCode == keyValue && keyIsEqual(key, 0, e)) {
+        return e;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return null;
+  }
+
+  private Entry<K, V> findWithinLock(int si, K key, long longKey, int hash, int keyValue) {
+    int[] hashes = segmentHashes[si];
+    Entry<K, V>[] slots = segmentSlots[si];
+    if (slots == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    int n = slots.length, mask = n - 1, idx = slotIndex(hash, n);
+    Entry<K, V> e;
+    while ((e = slots[idx]) != null) {
+      if (hashes[idx] == keyValue && keyIsEqual(key, longKey, e)) {
+        return e;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Insert an entry. Checks if an entry already exists. Expands the segment table
+   * before the insert, if the fill limit is reached.
+   */
+  @Override
+  public Entry<K, V> insertWithinLock(Entry<K, V> e, int hash, int keyValue) {
+    int si = hash & LOCK_MASK;
+    Entry<K, V>[] slots = segmentSlots[si];
+    if (slots == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    if (segmentSize[si] >= maxFill(slots.length)) {
+      expandSegment(si);
+      slots = segmentSlots[si];
+    }
+    int[] hashes = segmentHashes[si];
+    int n = slots.length, mask = n - 1, idx = slotIndex(hash, n);
+    Entry<K, V> f;
+    while ((f = slots[idx]) != null) {
+      if (hashes[idx] == keyValue && entryKeyIsEqual(e, f)) {
+        return f;
+      }
+      idx = (idx + 1) & mask;
+    }
+    hashes[idx] = keyValue;
+    slots[idx] = e;
+    segmentSize[si]++;
+    return e;
+  }
+
+  /**
+   * Double the table of one segment. Assumes the segment lock.
+   */
+  private void expandSegment(int si) {
+    int[] srcHashes = segmentHashes[si];
+    Entry<K, V>[] src = segmentSlots[si];
+    int n = src.length * 2, mask = n - 1, idx;
+    int[] hashes = new int[n];
+    Entry<K, V>[] slots = new Entry[n];
+    for (int i = 0; i < src.length; i++) {
+      Entry<K, V> e = src[i];
+      if (e != null) {
+        idx = slotIndex(spreadHashFromEntry(e.hashCode), n);
+        while (slots[idx] != null) {
+          idx = (idx + 1) & mask;
+        }
+        hashes[idx] = srcHashes[i];
+        slots[idx] = e;
+      }
+    }
+    segmentHashes[si] = hashes;
+    segmentSlots[si] = slots;
+  }
+
+  /**
+   * Expansion happens within the segment lock on insert, nothing to do.
+   */
+  @Override
+  public void checkExpand(int hash) { }
+
+  @Override
+  public boolean remove(Entry<K, V> e) {
+    int hash = spreadHashFromEntry(e.hashCode);
+    StampedLock l = locks[hash & LOCK_MASK];
+    long stamp = l.writeLock();
+    try {
+      return removeWithinLock(e, hash);
+    } finally {
+      l.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public boolean containsWithinLock(Entry<K, V> e, int hash) {
+    Entry<K, V>[] slots = segmentSlots[hash & LOCK_MASK];
+    if (slots == null) {
+      return false;
+    }
+    int n = slots.length, mask = n - 1, idx = slotIndex(hash, n);
+    Entry<K, V> f;
+    for (int i = 0; i < n && (f = slots[idx]) != null; i++) {
+      if (f == e) {
+        return true;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Remove the entry and shift following entries of the probe sequence backwards
+   * to close the gap.
+   */
+  @Override
+  public boolean removeWithinLock(Entry<K, V> e, int hash) {
+    int si = hash & LOCK_MASK;
+    int[] hashes = segmentHashes[si];
+    Entry<K, V>[] slots = segmentSlots[si];
+    if (slots == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    int n = slots.length, mask = n - 1, idx = slotIndex(hash, n);
+    Entry<K, V> f;
+    while ((f = slots[idx]) != e) {
+      if (f == null) {
+        return false;
+      }
+      idx = (idx + 1) & mask;
+    }
+    int gap = idx;
+    int j = idx;
+    for (;;) {
+      j = (j + 1) & mask;
+      f = slots[j];
+      if (f == null) {
+        break;
+      }
+      int home = slotIndex(spreadHashFromEntry(f.hashCode), n);
+      boolean stays = gap <= j ? (gap < home && home <= j) : (gap < home || home <= j);
+      if (stays) {
+        continue;
+      }
+      hashes[gap] = hashes[j];
+      slots[gap] = f;
+      gap = j;
+      segmentRelocationCount[si]++;
+    }
+    hashes[gap] = 0;
+    slots[gap] = null;
+    segmentSize[si]--;
+    return true;
+  }
+
+  @Override
+  public void clearWhenLocked() {
+    for (int i = 0; i < segmentSize.length; i++) {
+      segmentSize[i] = 0;
+    }
+    clearOrCloseCount++;
+    initTables();
+  }
+
+  @Override
+  public void close() {
+    clearOrCloseCount++;
+    for (int i = 0; i < LOCK_SEGMENTS; i++) {
+      segmentHashes[i] = null;
+      segmentSlots[i] = null;
+    }
+  }
+
+  @Override
+  public long calcEntryCount() {
+    long count = 0;
+    for (Entry<K, V>[] slots : segmentSlots) {
+      if (slots == null) {
+        continue;
+      }
+      for (Entry<K, V> e : slots) {
+        if (e != null) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * There is no single table, return a copy with the slots of all segment tables.
+   * Prefer {@link #getTable(int)}, which needs no copy. Expects the total lock.
+   */
+  @Override
+  public Entry<K, V>[] getEntries() {
+    int length = 0;
+    for (Entry<K, V>[] slots : segmentSlots) {
+      if (slots == null) {
+        return null;
+      }
+      length += slots.length;
+    }
+    Entry<K, V>[] entries = new Entry[length];
+    int pos = 0;
+    for (Entry<K, V>[] slots : segmentSlots) {
+      System.arraycopy(slots, 0, entries, pos, slots.length);
+      pos += slots.length;
+    }
+    return entries;
+  }
+
+  /**
+   * A backward shift on removal may move an entry to a slot an iterator already passed.
+   * Expects the total lock.
+   */
+  @Override
+  public long getRelocationCount() {
+    long sum = 0;
+    for (long count : segmentRelocationCount) {
+      sum += count;
+    }
+    return sum;
+  }
+
+  @Override
+  public int getTableCount() {
+    return LOCK_SEGMENTS;
+  }
+
+  @Override
+  public Entry<K, V>[] getTable(int index) {
+    return segmentSlots[index];
+  }
+
+}
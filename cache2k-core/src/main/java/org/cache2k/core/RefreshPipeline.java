@@ -0,0 +1,201 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Limits the number of refreshes executing at the same time. Refreshes exceeding the
+ * limit are queued and started by priority when a running refresh completes. The priority
+ * is the hit count of the entry, see {@link Entry#hitCnt}. If the queue is full, the
+ * refresh with the lowest priority is dropped, which means the entry expires instead.
+ *
+ * <p>A refresh of an entry that was not accessed as often as required by the
+ * {@link org.cache2k.expiry.RefreshAheadPolicy#requiredHits} does not load but only expires
+ * the entry, see {@link AccessWrapper#shouldRefresh(Object)}. These are passed to the
+ * executor directly.
+ *
+ * <p>The limit is accurate for synchronous loaders. An asynchronous load may still be
+ * running after the refresh task completes.
+ *
+ * @author Jens Wilke
+ */
+public class RefreshPipeline {
+
+  private static final Comparator<Pending> ORDER = (a, b) -> {
+    if (a.priority != b.priority) {
+      return Long.compare(b.priority, a.priority);
+    }
+    return Long.compare(a.sequence, b.sequence);
+  };
+
+  private final Executor executor;
+  private final int maximumConcurrency;
+  private final int queueCapacity;
+  /** Highest priority first, guarded by this */
+  private final TreeSet<Pending> queue = new TreeSet<>(ORDER);
+  private int running;
+  private long sequence;
+  private long queuedCount;
+  private long droppedCount;
+
+  /**
+   * @param executor executor for the refresh, usually the refresh executor of the cache
+   * @param maximumConcurrency maximum number of refreshes passed to the executor
+   * @param queueCapacity maximum number of waiting refreshes
+   */
+  public RefreshPipeline(Executor executor, int maximumConcurrency, int queueCapacity) {
+    if (maximumConcurrency <= 0) {
+      throw new IllegalArgumentException("maximumRefreshConcurrency must be positive");
+    }
+    if (queueCapacity < 0) {
+      throw new IllegalArgumentException("refreshQueueCapacity must not be negative");
+    }
+    this.executor = executor;
+    this.maximumConcurrency = maximumConcurrency;
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Execute or queue the refresh of the entry.
+   *
+   * @param refresh the refresh action
+   * @param rejected called if the refresh is dropped or rejected by the executor.
+   *                 Not called within the lock of the entry.
+   */
+  public void submit(Entry<?, ?> e, Runnable refresh, Runnable rejected) {
+    if (!AccessWrapper.shouldRefresh(e.getValueOrWrapper())) {
+      try {
+        executor.execute(refresh);
+      } catch (RejectedExecutionException ex) {
+        rejected.run();
+      }
+      return;
+    }
+    Pending start = null;
+    Pending dropped = null;
+    synchronized (this) {
+      Pending p = new Pending(refresh, rejected, e.hitCnt, sequence++);
+      if (running < maximumConcurrency) {
+        running++;
+        start = p;
+      } else {
+        queue.add(p);
+        queuedCount++;
+        if (queue.size() > queueCapacity) {
+          dropped = queue.pollLast();
+          droppedCount++;
+        }
+      }
+    }
+    if (dropped != null) {
+      dropped.rejected.run();
+    }
+    if (start != null) {
+      execute(start);
+    }
+  }
+
+  /**
+   * Pass on to the executor. If rejected, continue with the next queued refresh.
+   */
+  private void execute(Pending p) {
+    while (p != null) {
+      Pending current = p;
+      try {
+        executor.execute(() -> {
+          try {
+            current.refresh.run();
+          } finally {
+            Pending next = complete();
+            if (next != null) {
+              execute(next);
+            }
+          }
+        });
+        return;
+      } catch (RejectedExecutionException ex) {
+        current.rejected.run();
+        p = complete();
+      }
+    }
+  }
+
+  /**
+   * A refresh completed. Returns the next refresh to run, which takes over the slot.
+   */
+  private synchronized Pending complete() {
+    Pending next = queue.pollFirst();
+    if (next == null) {
+      running--;
+    }
+    return next;
+  }
+
+  /**
+   * Drop all queued refreshes, without calling the rejected callback.
+   */
+  public synchronized void close() {
+    queue.clear();
+  }
+
+  public synchronized int getRunningCount() {
+    return running;
+  }
+
+  public synchronized int getQueueSize() {
+    return queue.size();
+  }
+
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "RefreshPipeline(maximumConcurrency=" + maximumConcurrency +
+      ", queueCapacity=" + queueCapacity +
+      ", running=" + running +
+      ", queued=" + queue.size() +
+      ", queuedCount=" + queuedCount +
+      ", droppedCount=" + droppedCount + ")";
+  }
+
+  private static final class Pending {
+
+    final Runnable refresh;
+    final Runnable rejected;
+    final long priority;
+    final long sequence;
+
+    Pending(Runnable refresh, Runnable rejected, long priority, long sequence) {
+      this.refresh = refresh;
+      this.rejected = rejected;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+
+  }
+
+}
@@ -68,6 +68,29 @@ public class SegmentedEviction implements Eviction {
     return sgs[idx].submitWithoutTriggeringEviction(e);
   }
 
+  /**
+   * Groups the entries by eviction segment and submits each group at once.
+   */
+  @Override
+  public boolean submitAllWithoutTriggeringEviction(Entry[] entries, int from, int to) {
+    Eviction[] sgs = segments;
+    int mask = sgs.length - 1;
+    Entry[] group = new Entry[to - from];
+    boolean evictionNeeded = false;
+    for (int idx = 0; idx < sgs.length; idx++) {
+      int count = 0;
+      for (int i = from; i < to; i++) {
+        if ((entries[i].hashCode & mask) == idx) {
+          group[count++] = entries[i];
+        }
+      }
+      if (count > 0) {
+        evictionNeeded |= sgs[idx].submitAllWithoutTriggeringEviction(group, 0, count);
+      }
+    }
+    return evictionNeeded;
+  }
+
   @Override
   public void evictEventuallyBeforeInsertOnSegment(int hashCodeHint) {
     Eviction[] sgs = segments;
@@ -83,6 +106,19 @@ public class SegmentedEviction implements Eviction {
     }
   }
 
+  /**
+   * Assumes the inserted entries are spread evenly across the segments.
+   */
+  @Override
+  public int evictEventuallyBeforeBulkInsert(int count) {
+    int countPerSegment = count / segments.length + 1;
+    int min = countPerSegment;
+    for (Eviction ev : segments) {
+      min = Math.min(min, ev.evictEventuallyBeforeBulkInsert(countPerSegment));
+    }
+    return Math.min(count, min * segments.length);
+  }
+
   @Override
   public void evictEventually() {
     for (Eviction ev : segments) {
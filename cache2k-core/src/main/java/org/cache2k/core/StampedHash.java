@@ -47,21 +47,34 @@ public class StampedHash<K, V> {
    */
   private static final int HASH_LOAD_PERCENT = 64;
 
-  private static final int LOCK_SEGMENTS;
-  private static final int LOCK_MASK;
+  /**
+   * Largest table size that we allocate up front when presizing.
+   */
+  private static final int MAXIMUM_PRESIZE = 1 << 30;
+
+  /**
+   * Number of buckets of one segment that are transferred to the expanded table
+   * in one step during an incremental expansion. Default: 64.
+   */
+  private static final int MIGRATION_STEP_BUCKETS = 64;
+
+  static final int LOCK_SEGMENTS;
+  static final int LOCK_MASK;
+  static final int LOCK_SEGMENT_BITS;
 
   /* GraalVM: This runs at runtime, see native-image.properties */
   static {
     int ncpu = Runtime.getRuntime().availableProcessors();
     LOCK_SEGMENTS = 2 << (31 - Integer.numberOfLeadingZeros(ncpu));
     LOCK_MASK = LOCK_SEGMENTS - 1;
+    LOCK_SEGMENT_BITS = Integer.numberOfTrailingZeros(LOCK_SEGMENTS);
   }
 
   /**
    * Counts clear and close operation on the hash.
    * Needed for the iterator to detect the need for an abort.
    */
-  private volatile int clearOrCloseCount = 0;
+  volatile int clearOrCloseCount = 0;
 
   /**
    * Maximum size of one segment, after we expand. Although there are concurrent updates/reads
@@ -71,18 +84,64 @@ public class StampedHash<K, V> {
    */
   private long segmentMaxFill;
 
+  /**
+   * Table size after construction or clear. Either the minimal size or the size
+   * requested via {@link #presize(long)}.
+   */
+  private int initialTableSize = Math.max(INITIAL_HASH_SIZE, LOCK_SEGMENTS * 4);
+
   private Entry<K, V>[] entries;
-  private final StampedLock[] locks;
-  private final long[] segmentSize;
+  final StampedLock[] locks;
+  final long[] segmentSize;
+
+  /**
+   * Expand incrementally. The segments are transferred to the expanded table one after
+   * another while holding only the lock of the segment.
+   */
+  private boolean incrementalExpansion;
+
+  /**
+   * The previous table, while an incremental expansion is in progress, otherwise {@code null}.
+   * Every bucket in the previous table belongs to exactly one segment. A bucket of
+   * a segment with a lower bucket number than the segment progress is transferred
+   * to {@link #entries} already.
+   *
+   * @see #tableForBucket(Entry[], int)
+   */
+  private Entry<K, V>[] previousEntries;
+
+  /**
+   * Number of buckets per segment that are transferred to the expanded table.
+   * Modified within the segment lock.
+   */
+  private final int[] segmentMigrationProgress;
+
+  /**
+   * Guards start and completion of an incremental expansion.
+   */
+  private final Object expansionLock = new Object();
 
   /** Cache reference, only used for CacheClosedException */
-  private final Cache<?, ?> maybeClosedCache;
+  final Cache<?, ?> maybeClosedCache;
 
   /**
    * @param cache Cache reference only needed for the cache name in case of an exception
    */
   public StampedHash(Cache<?, ?> cache) {
+    this(cache, true);
+  }
+
+  /**
+   * Constructor for alternative table implementations, which only use the
+   * segment locks and counters.
+   *
+   * @param allocateTable allocate the table with the collision chains
+   */
+  StampedHash(Cache<?, ?> cache, boolean allocateTable) {
     maybeClosedCache = cache;
+    if (allocateTable) {
+      initArray();
+    }
   }
 
   {
@@ -91,16 +150,57 @@ public class StampedHash<K, V> {
       locks[i] = new StampedLock();
     }
     segmentSize = new long[LOCK_SEGMENTS];
-    initArray();
+    segmentMigrationProgress = new int[LOCK_SEGMENTS];
   }
 
   @SuppressWarnings("unchecked")
   private void initArray() {
-    int len = Math.max(INITIAL_HASH_SIZE, LOCK_SEGMENTS * 4);
-    entries = new Entry[len];
+    entries = new Entry[initialTableSize];
+    previousEntries = null;
     calcMaxFill();
   }
 
+  /**
+   * Allocate the table big enough to hold the expected number of entries without expansion.
+   * Since the entries are not distributed evenly across the segments, we add 1/8 extra
+   * space, so a segment does not reach its fill limit before the expected total is reached.
+   * The size is kept after a clear. Must be called before the hash table is used.
+   */
+  public void presize(long expectedEntryCount) {
+    long withSlack = expectedEntryCount + (expectedEntryCount >>> 3) + LOCK_SEGMENTS;
+    long required = withSlack * 100 / HASH_LOAD_PERCENT + 1;
+    if (required <= initialTableSize) {
+      return;
+    }
+    int len = MAXIMUM_PRESIZE;
+    if (required < MAXIMUM_PRESIZE) {
+      len = Integer.highestOneBit((int) required - 1) << 1;
+    }
+    initialTableSize = len;
+    initArray();
+  }
+
+  /**
+   * Switch on incremental expansion. When the table needs to grow, the new table is
+   * allocated and all locks are held only for switching to the new table. The entries are
+   * transferred in small steps by subsequent inserts within the segment lock and after
+   * an insert. Should be set before the hash table is used.
+   */
+  public void setIncrementalExpansion(boolean f) {
+    incrementalExpansion = f;
+  }
+
+  public boolean isIncrementalExpansion() {
+    return incrementalExpansion;
+  }
+
+  /**
+   * True, if an incremental expansion is in progress. Only for testing and diagnostics.
+   */
+  public boolean isExpansionInProgress() {
+    return previousEntries != null;
+  }
+
   public long getEntryCapacity() {
     return entries.length * 1L * HASH_LOAD_PERCENT / 100;
   }
@@ -118,6 +218,21 @@ public class StampedHash<K, V> {
    * Lookup the entry in the hash table and return it. First tries an optimistic read.
    */
   public Entry<K, V> lookup(K key, int hash, int keyValue) {
+    return lookup(key, 0, hash, keyValue);
+  }
+
+  /**
+   * Lookup with a primitive long key, to avoid boxing the key for the lookup.
+   * Needs {@link #keyIsEqual(Object, long, Entry)} to be overridden.
+   */
+  public Entry<K, V> lookupLong(long key, int hash, int keyValue) {
+    return lookup(null, key, hash, keyValue);
+  }
+
+  /**
+   * Lookup with either the key object or the primitive long key.
+   */
+  protected Entry<K, V> lookup(K key, long longKey, int hash, int keyValue) {
     StampedLock[] locks = this.locks;
     int si = hash & LOCK_MASK;
     StampedLock l = locks[si];
@@ -126,6 +241,9 @@ public class StampedHash<K, V> {
     if (tab == null) {
       throw new CacheClosedException(maybeClosedCache);
     }
+    if (previousEntries != null) {
+      tab = tableForBucket(tab, hash);
+    }
     Entry<K, V> e;
     int n = tab.length;
     int mask = n - 1;
@@ -136,23 +254,20 @@ public class StampedHash<K, V> {
         if (l.validate(stamp)) { return null; }
         break;
       }
-      if (e.hashCode == keyValue && keyObjIsEqual(key, e)) {
+      if (e.hashCode == keyValue && keyIsEqual(key, longKey, e)) {
         return e;
       }
       e = e.another;
     }
     stamp = l.readLock();
     try {
-      tab = entries;
-      if (tab == null) {
-        throw new CacheClosedException(maybeClosedCache);
-      }
+      tab = tableWithinLock(hash);
       n = tab.length;
       mask = n - 1;
       idx = hash & (mask);
       e = tab[idx];
       while (e != null) {
-        if (e.hashCode == keyValue && (keyObjIsEqual(key, e))) {
+        if (e.hashCode == keyValue && keyIsEqual(key, longKey, e)) {
           return e;
         }
         e = e.another;
@@ -163,27 +278,154 @@ public class StampedHash<K, V> {
     }
   }
 
+  /**
+   * Lookup the entries for multiple keys. The keys are grouped by lock segment and
+   * each segment is probed under one optimistic read stamp. Found entries are valid
+   * without validating the stamp, same as in {@link #lookup(Object, int, int)}. If a key
+   * is not found and the stamp is invalid, the key is looked up again via the single
+   * lookup. Besides the index arrays for the grouping, nothing is allocated.
+   *
+   * @param keys keys, as passed to {@link #lookup(Object, int, int)}
+   * @param hashes spread hash codes of the keys
+   * @param keyValues stored hash code or key value of the keys
+   * @param result receives the entry for each key or {@code null}
+   */
+  public void lookupAll(K[] keys, int[] hashes, int[] keyValues, Entry<K, V>[] result) {
+    lookupAll(keys, hashes, keyValues, result, keys.length);
+  }
+
+  /**
+   * Lookup the entries for the first {@code n} keys of the arrays.
+   *
+   * @see #lookupAll(Object[], int[], int[], Entry[])
+   */
+  public void lookupAll(K[] keys, int[] hashes, int[] keyValues, Entry<K, V>[] result, int n) {
+    int[] segmentEnd = new int[LOCK_SEGMENTS];
+    for (int i = 0; i < n; i++) {
+      segmentEnd[hashes[i] & LOCK_MASK]++;
+    }
+    int sum = 0;
+    for (int si = 0; si < LOCK_SEGMENTS; si++) {
+      int count = segmentEnd[si];
+      segmentEnd[si] = sum;
+      sum += count;
+    }
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[segmentEnd[hashes[i] & LOCK_MASK]++] = i;
+    }
+    int begin = 0;
+    for (int si = 0; si < LOCK_SEGMENTS; si++) {
+      int end = segmentEnd[si];
+      if (begin == end) {
+        continue;
+      }
+      StampedLock l = locks[si];
+      long stamp = l.tryOptimisticRead();
+      boolean missing = false;
+      for (int k = begin; k < end; k++) {
+        int i = order[k];
+        Entry<K, V> e = probe(keys[i], hashes[i], keyValues[i]);
+        result[i] = e;
+        missing |= e == null;
+      }
+      if (missing && !l.validate(stamp)) {
+        for (int k = begin; k < end; k++) {
+          int i = order[k];
+          if (result[i] == null) {
+            result[i] = lookup(keys[i], 0, hashes[i], keyValues[i]);
+          }
+        }
+      }
+      begin = end;
+    }
+  }
+
+  /**
+   * Search the entry without locking. A {@code null} result needs to be validated
+   * with the optimistic read stamp of the segment.
+   */
+  protected Entry<K, V> probe(K key, int hash, int keyValue) {
+    Entry<K, V>[] tab = entries;
+    if (tab == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    if (previousEntries != null) {
+      tab = tableForBucket(tab, hash);
+    }
+    Entry<K, V> e = tab[hash & (tab.length - 1)];
+    while (e != null) {
+      if (e.hashCode == keyValue && keyIsEqual(key, 0, e)) {
+        return e;
+      }
+      e = e.another;
+    }
+    return null;
+  }
+
   protected boolean keyObjIsEqual(K key, Entry e) {
     Object ek;
     return (ek = e.getKeyObj()) == key || (ek.equals(key));
   }
 
+  /**
+   * Compare the key of the entry with the lookup key. The key is either present as
+   * object or as primitive long value, if {@link #lookupLong(long, int, int)} was used.
+   */
+  protected boolean keyIsEqual(K key, long longKey, Entry e) {
+    return keyObjIsEqual(key, e);
+  }
 
+  /**
+   * Compare the keys of two entries, used on insert.
+   */
+  protected boolean entryKeyIsEqual(Entry<K, V> e, Entry f) {
+    Object ek; K key = e.getKeyObj();
+    return (ek = f.getKeyObj()) == key || (ek.equals(key));
+  }
+
+  /**
+   * During an incremental expansion select the table containing the bucket for the hash.
+   * Requires a consistent read via the segment lock or a validated optimistic read.
+   */
+  private Entry<K, V>[] tableForBucket(Entry<K, V>[] tab, int hash) {
+    Entry<K, V>[] prev = previousEntries;
+    if (prev == null) {
+      return tab;
+    }
+    int bucketInSegment = (hash & (prev.length - 1)) >>> LOCK_SEGMENT_BITS;
+    if (bucketInSegment < segmentMigrationProgress[hash & LOCK_MASK]) {
+      return tab;
+    }
+    return prev;
+  }
+
+  /**
+   * Table to use for the hash, segment lock is held.
+   *
+   * @throws CacheClosedException if cache is closed
+   */
+  private Entry<K, V>[] tableWithinLock(int hash) {
+    Entry<K, V>[] tab = entries;
+    if (tab == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    return tableForBucket(tab, hash);
+  }
 
   /**
    * Insert an entry. Checks if an entry already exists.
    */
   public Entry<K, V> insertWithinLock(Entry<K, V> e, int hash, int keyValue) {
-    K key = e.getKeyObj();
     int si = hash & LOCK_MASK;
-    Entry<K, V> f; Object ek; Entry<K, V>[] tab = entries;
-    if (tab == null) {
-      throw new CacheClosedException(maybeClosedCache);
+    if (previousEntries != null) {
+      migrateSegmentStepWithinLock(si);
     }
+    Entry<K, V> f; Entry<K, V>[] tab = tableWithinLock(hash);
     int n = tab.length, mask = n - 1, idx = hash & (mask);
     f = tab[idx];
     while (f != null) {
-      if (f.hashCode == keyValue && ((ek = f.getKeyObj()) == key || (ek.equals(key)))) {
+      if (f.hashCode == keyValue && entryKeyIsEqual(e, f)) {
         return f;
       }
       f = f.another;
@@ -207,6 +449,8 @@ public class StampedHash<K, V> {
     long size = segmentSize[si];
     if (size > segmentMaxFill) {
       eventuallyExpand(si);
+    } else if (previousEntries != null) {
+      helpExpansion(si);
     }
   }
 
@@ -226,10 +470,7 @@ public class StampedHash<K, V> {
     StampedLock l = locks[si];
     long stamp = l.writeLock();
     try {
-      Entry<K, V> f; Entry<K, V>[] tab = entries;
-      if (tab == null) {
-        throw new CacheClosedException(maybeClosedCache);
-      }
+      Entry<K, V> f; Entry<K, V>[] tab = tableWithinLock(hash);
       int n = tab.length, mask = n - 1, idx = hash & (mask);
       f = tab[idx];
       if (f == e) {
@@ -254,10 +495,7 @@ public class StampedHash<K, V> {
 
   public boolean removeWithinLock(Entry<K, V> e, int hash) {
     int si = hash & LOCK_MASK;
-    Entry<K, V> f; Entry<K, V>[] tab = entries;
-    if (tab == null) {
-      throw new CacheClosedException(maybeClosedCache);
-    }
+    Entry<K, V> f; Entry<K, V>[] tab = tableWithinLock(hash);
     int n = tab.length, mask = n - 1, idx = hash & (mask);
     f = tab[idx];
     if (f == e) {
@@ -277,11 +515,33 @@ public class StampedHash<K, V> {
     return false;
   }
 
+  /**
+   * True if the entry is in the hash, compared by identity. Segment lock is held.
+   * False if the hash is closed.
+   */
+  public boolean containsWithinLock(Entry<K, V> e, int hash) {
+    Entry<K, V>[] tab = entries;
+    if (tab == null) {
+      return false;
+    }
+    tab = tableForBucket(tab, hash);
+    for (Entry<K, V> f = tab[hash & (tab.length - 1)]; f != null; f = f.another) {
+      if (f == e) {
+        return true;
+      }
+    }
+    return false;
+  }
+
 
   /**
    * Acquire all segment locks and rehash, if really needed.
    */
   private void eventuallyExpand(int segmentIndex) {
+    if (incrementalExpansion) {
+      startIncrementalExpansion(segmentIndex);
+      return;
+    }
     long[] stamps = lockAll();
     try {
       long size = segmentSize[segmentIndex];
@@ -294,6 +554,137 @@ public class StampedHash<K, V> {
     }
   }
 
+  /**
+   * Allocate the expanded table and switch to it within the total lock. The entries
+   * stay in the previous table and are transferred segment by segment afterwards.
+   * The new table is allocated before acquiring the locks, so the total lock is
+   * held only for a constant amount of work.
+   */
+  @SuppressWarnings("unchecked")
+  private void startIncrementalExpansion(int segmentIndex) {
+    synchronized (expansionLock) {
+      if (segmentSize[segmentIndex] <= segmentMaxFill) {
+        return;
+      }
+      Entry<K, V>[] src = entries;
+      if (src == null) {
+        throw new CacheClosedException(maybeClosedCache);
+      }
+      Entry<K, V>[] tab = new Entry[src.length * 2];
+      long[] stamps = lockAll();
+      try {
+        if (entries != src) {
+          return;
+        }
+        completeMigrationWithinLock();
+        previousEntries = src;
+        entries = tab;
+        for (int i = 0; i < LOCK_SEGMENTS; i++) {
+          segmentMigrationProgress[i] = 0;
+        }
+        calcMaxFill();
+      } finally {
+        unlockAll(stamps);
+      }
+    }
+    helpExpansion(segmentIndex);
+  }
+
+  /**
+   * Called without holding a lock. Transfer one step of the segment and one step of
+   * another segment which has not been transferred yet. Don't wait in case another
+   * thread is working within the segment. Drop the reference to the previous table,
+   * when all segments are transferred.
+   */
+  private void helpExpansion(int segmentIndex) {
+    Entry<K, V>[] prev = previousEntries;
+    if (prev == null) {
+      return;
+    }
+    int bucketsPerSegment = prev.length >>> LOCK_SEGMENT_BITS;
+    migrateSegmentStep(segmentIndex, bucketsPerSegment);
+    for (int i = 1; i < LOCK_SEGMENTS; i++) {
+      int si = (segmentIndex + i) & LOCK_MASK;
+      if (segmentMigrationProgress[si] < bucketsPerSegment) {
+        migrateSegmentStep(si, bucketsPerSegment);
+        return;
+      }
+    }
+    synchronized (expansionLock) {
+      if (previousEntries != prev) {
+        return;
+      }
+      for (int i = 0; i < LOCK_SEGMENTS; i++) {
+        if (segmentMigrationProgress[i] < bucketsPerSegment) {
+          return;
+        }
+      }
+      previousEntries = null;
+    }
+  }
+
+  private void migrateSegmentStep(int segmentIndex, int bucketsPerSegment) {
+    if (segmentMigrationProgress[segmentIndex] >= bucketsPerSegment) {
+      return;
+    }
+    StampedLock l = locks[segmentIndex];
+    long stamp = l.tryWriteLock();
+    if (stamp == 0) {
+      return;
+    }
+    try {
+      migrateSegmentStepWithinLock(segmentIndex);
+    } finally {
+      l.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Transfer the next buckets of the segment from the previous into the current table.
+   * A bucket in the previous table is split into two buckets at the same index and
+   * at the index plus the previous length, both belonging to the same segment.
+   */
+  private void migrateSegmentStepWithinLock(int segmentIndex) {
+    Entry<K, V>[] src = previousEntries;
+    Entry<K, V>[] tab = entries;
+    if (src == null || tab == null) {
+      return;
+    }
+    int bucketsPerSegment = src.length >>> LOCK_SEGMENT_BITS;
+    int start = segmentMigrationProgress[segmentIndex];
+    int end = Math.min(bucketsPerSegment, start + MIGRATION_STEP_BUCKETS);
+    int mask = tab.length - 1;
+    Entry<K, V> e, next; int idx;
+    for (int b = start; b < end; b++) {
+      int srcIdx = (b << LOCK_SEGMENT_BITS) | segmentIndex;
+      e = src[srcIdx];
+      while (e != null) {
+        next = e.another; idx = spreadHashFromEntry(e.hashCode) & mask;
+        e.another = tab[idx]; tab[idx] = e;
+        e = next;
+      }
+      src[srcIdx] = null;
+    }
+    segmentMigrationProgress[segmentIndex] = end;
+  }
+
+  /**
+   * Transfer all remaining buckets of a pending incremental expansion. Assumes total lock.
+   */
+  private void completeMigrationWithinLock() {
+    Entry<K, V>[] src = previousEntries;
+    if (src == null) {
+      return;
+    }
+    int bucketsPerSegment = src.length >>> LOCK_SEGMENT_BITS;
+    for (int si = 0; si < LOCK_SEGMENTS; si++) {
+      while (segmentMigrationProgress[si] < bucketsPerSegment) {
+        migrateSegmentStepWithinLock(si);
+      }
+    }
+    previousEntries = null;
+  }
+
   /**
    * Acquire all segment locks and return an array with the lock stamps.
    */
@@ -335,6 +726,7 @@ public class StampedHash<K, V> {
    */
   @SuppressWarnings("unchecked")
   void rehash() {
+    completeMigrationWithinLock();
     Entry<K, V>[] src = entries;
     if (src == null) {
       throw new CacheClosedException(maybeClosedCache);
@@ -385,11 +777,13 @@ public class StampedHash<K, V> {
   }
 
   /**
-   * Lock all segments and run the job.
+   * Lock all segments and run the job. A pending incremental expansion is completed
+   * before, so the job sees all entries in one table.
    */
   public <T> T runTotalLocked(Supplier<T> j) {
     long[] stamps = lockAll();
     try {
+      completeMigrationWithinLock();
       return j.get();
     } finally {
       unlockAll(stamps);
@@ -418,6 +812,7 @@ public class StampedHash<K, V> {
   public void close() {
     clearOrCloseCount++;
     entries = null;
+    previousEntries = null;
   }
 
   /**
@@ -436,10 +831,37 @@ public class StampedHash<K, V> {
   }
 
   /**
-   * Entry table used by the iterator.
+   * Entry table used by the iterator. Expects that no incremental expansion is in progress,
+   * which is the case when called within {@link #runTotalLocked(Supplier)}.
    */
   public Entry<K, V>[] getEntries() {
     return entries;
   }
 
+  /**
+   * Number of tables holding the entries, used by the iterator. The chained
+   * hash uses one table for all segments.
+   */
+  public int getTableCount() {
+    return 1;
+  }
+
+  /**
+   * Table with the entries. Entries colliding in one table slot are chained via
+   * {@link Entry#another}. Expects the total lock, same as {@link #getEntries()}.
+   * The table is {@code null} if the hash is closed.
+   */
+  public Entry<K, V>[] getTable(int index) {
+    return entries;
+  }
+
+  /**
+   * Count of entries that were moved to another slot within the same table, other than
+   * by an expansion. An iterator needs to rescan, if this changes. Expects the total lock.
+   * Always zero, since entries in the chained hash stay in their slot.
+   */
+  public long getRelocationCount() {
+    return 0;
+  }
+
 }
@@ -21,6 +21,7 @@ package org.cache2k.core;
  */
 
 import org.cache2k.core.api.CommonMetrics;
+import org.cache2k.core.util.LatencyHistogram;
 
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.LongAdder;
@@ -98,6 +99,7 @@ public class StandardCommonMetrics implements CommonMetrics.Updater {
   public void refresh(long millis) {
     REFRESH_UPDATER.incrementAndGet(this);
     LOAD_MILLIS_UPDATER.addAndGet(this, millis);
+    refreshHistogram.record(millis);
   }
 
   static final AtomicLongFieldUpdater<StandardCommonMetrics> READ_THROUGH_UPDATER =
@@ -111,6 +113,7 @@ public class StandardCommonMetrics implements CommonMetrics.Updater {
   public void readThrough(long millis) {
     READ_THROUGH_UPDATER.incrementAndGet(this);
     LOAD_MILLIS_UPDATER.addAndGet(this, millis);
+    loadHistogram.record(millis);
   }
 
   static final AtomicLongFieldUpdater<StandardCommonMetrics> RELOAD_UPDATER =
@@ -124,6 +127,29 @@ public class StandardCommonMetrics implements CommonMetrics.Updater {
   public void explicitLoad(long millis) {
     RELOAD_UPDATER.incrementAndGet(this);
     LOAD_MILLIS_UPDATER.addAndGet(this, millis);
+    loadHistogram.record(millis);
+  }
+
+  private final LatencyHistogram loadHistogram = new LatencyHistogram();
+  @Override
+  public LatencyHistogram getLoadHistogram() {
+    return loadHistogram;
+  }
+
+  private final LatencyHistogram refreshHistogram = new LatencyHistogram();
+  @Override
+  public LatencyHistogram getRefreshHistogram() {
+    return refreshHistogram;
+  }
+
+  private final LatencyHistogram bulkLoadHistogram = new LatencyHistogram();
+  @Override
+  public LatencyHistogram getBulkLoadHistogram() {
+    return bulkLoadHistogram;
+  }
+  @Override
+  public void bulkLoad(long millis) {
+    bulkLoadHistogram.record(millis);
   }
 
   static final AtomicLongFieldUpdater<StandardCommonMetrics> LOAD_EXCEPTION_UPDATER =
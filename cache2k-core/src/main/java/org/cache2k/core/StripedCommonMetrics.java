@@ -0,0 +1,278 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.cache2k.core.api.CommonMetrics;
+import org.cache2k.core.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics implementation with a {@link LongAdder} for every counter. Each adder starts
+ * with a single base value and only expands to striped cells, padded against false sharing,
+ * when updates from different threads collide. Updates do not spin on a shared cache line,
+ * reading a counter sums up the cells. The latency histograms of the loads expand
+ * in the same way, up to one bucket array per processor, see {@link LatencyHistogram}.
+ *
+ * <p>Compared to {@link StandardCommonMetrics} this needs more memory per cache once
+ * the counters are contended, so it is used by default only on machines with many cores.
+ *
+ * @author Jens Wilke
+ * @see org.cache2k.core.api.InternalConfig#getCommonMetrics()
+ */
+public class StripedCommonMetrics implements CommonMetrics.Updater {
+
+  /**
+   * Number of available processors from which on the striped metrics are used as default.
+   */
+  public static final int MINIMUM_PROCESSORS = 8;
+
+  /**
+   * Maximum number of bucket arrays per histogram, the number of processors rounded up
+   * to a power of two and capped at 64. An array of the histogram needs about 4k bytes.
+   */
+  static final int HISTOGRAM_STRIPES =
+    Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+  private final LongAdder heapHit = new LongAdder();
+  private final LongAdder putNewEntry = new LongAdder();
+  private final LongAdder putHit = new LongAdder();
+  private final LongAdder heapHitButNoRead = new LongAdder();
+  private final LongAdder timerEvent = new LongAdder();
+  private final LongAdder loadTicks = new LongAdder();
+  private final LongAdder refresh = new LongAdder();
+  private final LongAdder readThrough = new LongAdder();
+  private final LongAdder explicitLoad = new LongAdder();
+  private final LongAdder loadException = new LongAdder();
+  private final LongAdder suppressedException = new LongAdder();
+  private final LongAdder expiredKept = new LongAdder();
+  private final LongAdder peekMiss = new LongAdder();
+  private final LongAdder peekHitNotFresh = new LongAdder();
+  private final LongAdder refreshedHit = new LongAdder();
+  private final LongAdder refreshRejected = new LongAdder();
+  private final LongAdder goneSpin = new LongAdder();
+  private final LatencyHistogram loadHistogram = new LatencyHistogram(HISTOGRAM_STRIPES);
+  private final LatencyHistogram refreshHistogram = new LatencyHistogram(HISTOGRAM_STRIPES);
+  private final LatencyHistogram bulkLoadHistogram = new LatencyHistogram(HISTOGRAM_STRIPES);
+
+  /**
+   * True, if the striped metrics should be used with the given number of processors.
+   */
+  public static boolean isBeneficial(int availableProcessors) {
+    return availableProcessors >= MINIMUM_PROCESSORS;
+  }
+
+  @Override
+  public void heapHit() {
+    heapHit.increment();
+  }
+
+  @Override
+  public long getHeapHitCount() {
+    return heapHit.sum();
+  }
+
+  @Override
+  public void putNewEntry() {
+    putNewEntry.increment();
+  }
+
+  @Override
+  public long getPutNewEntryCount() {
+    return putNewEntry.sum();
+  }
+
+  @Override
+  public void putHit() {
+    putHit.increment();
+  }
+
+  @Override
+  public long getPutHitCount() {
+    return putHit.sum();
+  }
+
+  @Override
+  public void heapHitButNoRead() {
+    heapHitButNoRead.increment();
+  }
+
+  @Override
+  public long getHeapHitButNoReadCount() {
+    return heapHitButNoRead.sum();
+  }
+
+  @Override
+  public void timerEvent() {
+    timerEvent.increment();
+  }
+
+  @Override
+  public long getTimerEventCount() {
+    return timerEvent.sum();
+  }
+
+  @Override
+  public long getLoadTicks() {
+    return loadTicks.sum();
+  }
+
+  @Override
+  public void refresh(long millis) {
+    refresh.increment();
+    loadTicks.add(millis);
+    refreshHistogram.record(millis);
+  }
+
+  @Override
+  public long getRefreshCount() {
+    return refresh.sum();
+  }
+
+  @Override
+  public void readThrough(long millis) {
+    readThrough.increment();
+    loadTicks.add(millis);
+    loadHistogram.record(millis);
+  }
+
+  @Override
+  public long getReadThroughCount() {
+    return readThrough.sum();
+  }
+
+  @Override
+  public void explicitLoad(long millis) {
+    explicitLoad.increment();
+    loadTicks.add(millis);
+    loadHistogram.record(millis);
+  }
+
+  @Override
+  public long getExplicitLoadCount() {
+    return explicitLoad.sum();
+  }
+
+  @Override
+  public void bulkLoad(long millis) {
+    bulkLoadHistogram.record(millis);
+  }
+
+  @Override
+  public LatencyHistogram getLoadHistogram() {
+    return loadHistogram;
+  }
+
+  @Override
+  public LatencyHistogram getRefreshHistogram() {
+    return refreshHistogram;
+  }
+
+  @Override
+  public LatencyHistogram getBulkLoadHistogram() {
+    return bulkLoadHistogram;
+  }
+
+  @Override
+  public void loadException() {
+    loadException.increment();
+  }
+
+  @Override
+  public long getLoadExceptionCount() {
+    return loadException.sum();
+  }
+
+  @Override
+  public void suppressedException() {
+    suppressedException.increment();
+  }
+
+  @Override
+  public long getSuppressedExceptionCount() {
+    return suppressedException.sum();
+  }
+
+  @Override
+  public void expiredKept() {
+    expiredKept.increment();
+  }
+
+  @Override
+  public long getExpiredKeptCount() {
+    return expiredKept.sum();
+  }
+
+  @Override
+  public void peekMiss() {
+    peekMiss.increment();
+  }
+
+  @Override
+  public long getPeekMissCount() {
+    return peekMiss.sum();
+  }
+
+  @Override
+  public void peekHitNotFresh() {
+    peekHitNotFresh.increment();
+  }
+
+  @Override
+  public long getPeekHitNotFreshCount() {
+    return peekHitNotFresh.sum();
+  }
+
+  @Override
+  public void refreshedHit() {
+    refreshedHit.increment();
+  }
+
+  @Override
+  public long getRefreshedHitCount() {
+    return refreshedHit.sum();
+  }
+
+  @Override
+  public void refreshRejected() {
+    refreshRejected.increment();
+  }
+
+  @Override
+  public long getRefreshRejectedCount() {
+    return refreshRejected.sum();
+  }
+
+  @Override
+  public void goneSpin() {
+    goneSpin.increment();
+  }
+
+  @Override
+  public long getGoneSpinCount() {
+    return goneSpin.sum();
+  }
+
+  @Override
+  public boolean isDisabled() {
+    return false;
+  }
+
+}
@@ -0,0 +1,226 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks cache entries without a Java monitor. By default, entries are locked by
+ * synchronizing on the entry object. This locking is used instead, if selected via
+ * {@link org.cache2k.Cache2kBuilder#stripedEntryLocks(boolean)} or when virtual threads
+ * are enabled.
+ *
+ * <p>The lock is a bit in {@link Entry#modificationTimeAndState}, which is set via compare
+ * and swap. A thread that does not get the lock spins briefly, since an entry is only
+ * locked for short periods, and then blocks on a condition of a striped table of locks.
+ * Waiting for the entry processing, e.g. a concurrent load, also blocks on the condition.
+ * Blocking never pins a virtual thread to its carrier and no entry monitor is inflated.
+ *
+ * <p>The lock is not reentrant and the owner is not recorded. A thread holding the lock
+ * must not lock the entry again.
+ *
+ * @author Jens Wilke
+ */
+public final class StripedEntryLocking {
+
+  /**
+   * Retries before blocking, with a spin wait hint between them.
+   */
+  private static final int SPIN_COUNT = 64;
+
+  /**
+   * {@code Thread.onSpinWait()}, available with Java 9, or {@code null}.
+   */
+  private static final MethodHandle ON_SPIN_WAIT = lookupOnSpinWait();
+
+  /**
+   * Fibonacci hashing constant, to derive the stripe from other bits than the hash
+   * table index.
+   */
+  private static final int STRIPE_MIX = 0x9E3779B9;
+
+  private final ReentrantLock[] locks;
+  private final Condition[] conditions;
+  private final int shift;
+
+  /**
+   * Table with four stripes per available processor.
+   */
+  public StripedEntryLocking() {
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  StripedEntryLocking(int minimumStripes) {
+    int n = Integer.highestOneBit(Math.max(2, minimumStripes) - 1) << 1;
+    locks = new ReentrantLock[n];
+    conditions = new Condition[n];
+    for (int i = 0; i < n; i++) {
+      locks[i] = new ReentrantLock();
+      conditions[i] = locks[i].newCondition();
+    }
+    shift = Integer.numberOfLeadingZeros(n - 1);
+  }
+
+  private static MethodHandle lookupOnSpinWait() {
+    try {
+      return MethodHandles.lookup().findStatic(
+        Thread.class, "onSpinWait", MethodType.methodType(void.class));
+    } catch (ReflectiveOperationException ex) {
+      return null;
+    }
+  }
+
+  private static void onSpinWait() {
+    if (ON_SPIN_WAIT != null) {
+      try {
+        ON_SPIN_WAIT.invokeExact();
+      } catch (Throwable ignore) { }
+    }
+  }
+
+  public void lock(Entry<?, ?> e) {
+    if (e.tryLock()) {
+      return;
+    }
+    for (int i = 0; i < SPIN_COUNT; i++) {
+      onSpinWait();
+      if (e.tryLock()) {
+        return;
+      }
+    }
+    if (lockBlocking(e)) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public void unlock(Entry<?, ?> e) {
+    if (e.unlock()) {
+      signalAll(e);
+    }
+  }
+
+  /**
+   * Wait until the entry processing is complete. The entry is locked by the current
+   * thread and is unlocked while waiting. The thread completing the processing signals
+   * when it unlocks the entry.
+   */
+  public void waitForProcessing(Entry<?, ?> e) {
+    if (!e.isProcessing()) {
+      return;
+    }
+    boolean interrupted = false;
+    do {
+      interrupted |= awaitProcessing(e);
+      interrupted |= lockBlocking(e);
+    } while (e.isProcessing());
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Block until the lock is acquired. No spinning after waiting for the processing,
+   * since all threads waiting for the entry get a signal at the same time.
+   *
+   * @return {@code true} if interrupted while waiting
+   */
+  private boolean lockBlocking(Entry<?, ?> e) {
+    boolean interrupted = false;
+    while (!e.tryLock()) {
+      interrupted |= awaitUnlock(e);
+    }
+    return interrupted;
+  }
+
+  private int stripe(Entry<?, ?> e) {
+    return (e.hashCode * STRIPE_MIX) >>> shift;
+  }
+
+  int getStripeCount() {
+    return locks.length;
+  }
+
+  /**
+   * Block until a signal if the entry is still locked, which is checked via
+   * {@link Entry#markWaitingIfLocked()} within the lock used for the signal.
+   *
+   * @return {@code true} if interrupted while waiting
+   */
+  private boolean awaitUnlock(Entry<?, ?> e) {
+    int i = stripe(e);
+    ReentrantLock l = locks[i];
+    l.lock();
+    try {
+      if (e.markWaitingIfLocked()) {
+        conditions[i].await();
+      }
+    } catch (InterruptedException ex) {
+      return true;
+    } finally {
+      l.unlock();
+    }
+    return false;
+  }
+
+  /**
+   * Unlock the entry via {@link Entry#unlockAndMarkWaiting()}, signal threads waiting
+   * for the entry lock and block until a signal. All within the lock used for the signal.
+   *
+   * @return {@code true} if interrupted while waiting
+   */
+  private boolean awaitProcessing(Entry<?, ?> e) {
+    int i = stripe(e);
+    ReentrantLock l = locks[i];
+    l.lock();
+    try {
+      e.unlockAndMarkWaiting();
+      conditions[i].signalAll();
+      conditions[i].await();
+    } catch (InterruptedException ex) {
+      return true;
+    } finally {
+      l.unlock();
+    }
+    return false;
+  }
+
+  private void signalAll(Entry<?, ?> e) {
+    int i = stripe(e);
+    ReentrantLock l = locks[i];
+    l.lock();
+    try {
+      conditions[i].signalAll();
+    } finally {
+      l.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "striped(" + locks.length + ")";
+  }
+
+}
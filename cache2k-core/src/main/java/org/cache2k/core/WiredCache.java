@@ -51,12 +51,14 @@ import org.cache2k.core.operation.ExaminationEntry;
 import org.cache2k.core.operation.Semantic;
 import org.cache2k.core.operation.Operations;
 import org.cache2k.core.log.Log;
+import org.cache2k.core.offheap.OffHeapValue;
 
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
@@ -420,6 +422,18 @@ public class WiredCache<K, V> extends BaseCache<K, V>
     return returnValue(e.getValueOrException());
   }
 
+  /**
+   * Value or exception of the entry, or {@link OffHeapValue#FREED} if the value is stored
+   * off heap and the entry was removed while reading it.
+   */
+  private static Object readValue(Entry<?, ?> e) {
+    Object v = e.getValueOrWrapper();
+    if (v instanceof OffHeapValue) {
+      return ((OffHeapValue<?>) v).readValueOrException();
+    }
+    return e.getValueOrException();
+  }
+
   Entry<K, V> lookupQuick(K key) {
     return heapCache.lookupEntry(key);
   }
@@ -429,7 +443,11 @@ public class WiredCache<K, V> extends BaseCache<K, V>
   public @Nullable V get(K key) {
     Entry<K, V> e = lookupQuick(key);
     if (e != null && e.hasFreshData(getClock())) {
-      return returnValue(e);
+      Object v = readValue(e);
+      if (v != OffHeapValue.FREED) {
+        return returnValue(v);
+      }
+      return returnValue(execute(key, ops.get(key)));
     }
     return returnValue(execute(key, e, ops.get(key)));
    }
@@ -506,7 +524,12 @@ public class WiredCache<K, V> extends BaseCache<K, V>
       Entry<K, V> e = lookupQuick(key);
       if (e != null) {
         if (e.hasFreshData(getClock())) {
-          collect.put(key, e.getValueOrException());
+          Object v = readValue(e);
+          if (v != OffHeapValue.FREED) {
+            collect.put(key, v);
+          } else {
+            missingKeys.add(key);
+          }
         } else {
           metrics().heapHitButNoRead();
           missingKeys.add(key);
@@ -551,6 +574,23 @@ public class WiredCache<K, V> extends BaseCache<K, V>
     return heapCache.getTotalEntryCount();
   }
 
+  @Override
+  public Iterator<Entry<K, V>> iterateAllHeapEntries() {
+    return heapCache.iterateAllHeapEntries();
+  }
+
+  /**
+   * Checks the expiry time without entry lock, since the expiry event checks again.
+   */
+  @Override
+  public boolean timerEventSweepExpired(Entry<K, V> e, long now) {
+    if (!e.isExpiryTimeReached(now)) {
+      return false;
+    }
+    timerEventExpireEntry(e, null);
+    return true;
+  }
+
   @Override
   public <@Nullable R> Map<K, EntryProcessingResult<R>> invokeAll(
     Iterable<? extends K> keys, EntryProcessor<K, V, R> entryProcessor) {
@@ -607,6 +647,11 @@ public class WiredCache<K, V> extends BaseCache<K, V>
     }
   }
 
+  @Override
+  public Spliterator<CacheEntry<K, V>> spliterator() {
+    return heapCache.spliterator();
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Iterator<CacheEntry<K, V>> iterator() {
@@ -642,7 +687,10 @@ public class WiredCache<K, V> extends BaseCache<K, V>
   public @Nullable V peek(K key) {
     Entry<K, V> e = lookupQuick(key);
     if (e != null && e.hasFreshData(getClock())) {
-      return returnValue(e);
+      Object v = readValue(e);
+      if (v != OffHeapValue.FREED) {
+        return returnValue(v);
+      }
     }
     return returnValue(execute(key, ops.peek(key)));
   }
@@ -793,9 +841,7 @@ public class WiredCache<K, V> extends BaseCache<K, V>
   @Override
   public void timerEventExpireEntry(Entry<K, V> e, Object task) {
     metrics().timerEvent();
-    synchronized (e) {
-      if (e.getTask() != task) { return; }
-    }
+    if (!heapCache.isCurrentTask(e, task)) { return; }
     enqueueTimerAction(e, ops.expireEvent);
   }
 
@@ -807,32 +853,44 @@ public class WiredCache<K, V> extends BaseCache<K, V>
   /**
    * Starts a refresh operation or expires if no threads in the loader thread pool are available.
    * If no async loader is available we execute the synchronous loader via the loader
-   * thread pool.
+   * thread pool. The refresh is started outside the entry lock, since the executor
+   * may run it in the calling thread.
    */
   @Override
   public void timerEventRefresh(Entry<K, V> e, Object task) {
     metrics().timerEvent();
-    synchronized (e) {
-      if (e.getTask() != task) { return; }
-      if (asyncLoader != null) {
-        enqueueTimerAction(e, ops.refresh);
-        return;
-      }
+    if (!heapCache.isCurrentTask(e, task)) { return; }
+    if (asyncLoader != null) {
+      enqueueTimerAction(e, ops.refresh);
+      return;
+    }
+    if (heapCache.refreshPipeline == null) {
       try {
         heapCache.getRefreshExecutor().execute(createFireAndForgetAction(e, ops.refresh));
       } catch (RejectedExecutionException ex) {
         metrics().refreshRejected();
         enqueueTimerAction(e, ops.expireEvent);
       }
+      return;
     }
+    heapCache.refreshPipeline.submit(e, createFireAndForgetAction(e, ops.refresh),
+      () -> refreshRejected(e, task));
+  }
+
+  /**
+   * Refresh was dropped by the {@link RefreshPipeline}. Expire the entry, if
+   * not modified meanwhile.
+   */
+  private void refreshRejected(Entry<K, V> e, Object task) {
+    if (!heapCache.isCurrentTask(e, task)) { return; }
+    metrics().refreshRejected();
+    enqueueTimerAction(e, ops.expireEvent);
   }
 
   @Override
   public void timerEventProbationTerminated(Entry<K, V> e, Object task) {
     metrics().timerEvent();
-    synchronized (e) {
-      if (e.getTask() != task) { return; }
-    }
+    if (!heapCache.isCurrentTask(e, task)) { return; }
     enqueueTimerAction(e, ops.expireEvent);
   }
 
@@ -20,6 +20,8 @@ package org.cache2k.core.api;
  * #L%
  */
 
+import org.cache2k.core.util.LatencyHistogram;
+
 /**
  * Statistic metrics common to every cache type.
  *
@@ -142,6 +144,21 @@ public interface CommonMetrics {
    */
   long getGoneSpinCount();
 
+  /**
+   * Distribution of the durations of read through and explicit loads in ticks.
+   */
+  LatencyHistogram getLoadHistogram();
+
+  /**
+   * Distribution of the durations of refresh loads in ticks.
+   */
+  LatencyHistogram getRefreshHistogram();
+
+  /**
+   * Distribution of the durations of requests to the bulk loader in ticks.
+   */
+  LatencyHistogram getBulkLoadHistogram();
+
   /**
    * True if statistics are disabled.
    */
@@ -165,6 +182,8 @@ public interface CommonMetrics {
 
     void refresh(long millis);
 
+    void bulkLoad(long millis);
+
     void loadException();
 
     void suppressedException();
@@ -209,6 +228,9 @@ public interface CommonMetrics {
     @Override
     public void refresh(long millis) { }
 
+    @Override
+    public void bulkLoad(long millis) { }
+
     @Override
     public void loadException() { }
 
@@ -316,6 +338,21 @@ public interface CommonMetrics {
       return 0;
     }
 
+    @Override
+    public LatencyHistogram getLoadHistogram() {
+      return LatencyHistogram.EMPTY;
+    }
+
+    @Override
+    public LatencyHistogram getRefreshHistogram() {
+      return LatencyHistogram.EMPTY;
+    }
+
+    @Override
+    public LatencyHistogram getBulkLoadHistogram() {
+      return LatencyHistogram.EMPTY;
+    }
+
     @Override
     public boolean isDisabled() {
       return true;
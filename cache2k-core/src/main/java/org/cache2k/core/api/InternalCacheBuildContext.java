@@ -49,6 +49,7 @@ public interface InternalCacheBuildContext<K, V> extends CacheBuildContext<K, V>
   /**
    * Create a new scheduler instance which must be closed.
    */
+  @Override
   Scheduler createScheduler();
 
   /**
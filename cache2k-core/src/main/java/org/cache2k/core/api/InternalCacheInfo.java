@@ -238,6 +238,28 @@ public interface InternalCacheInfo {
    */
   long getLoadMillis();
 
+  /**
+   * Duration in milliseconds below which the percentage of the read through and explicit
+   * loads completed.
+   *
+   * @see CommonMetrics#getLoadHistogram()
+   */
+  double getLoadMillisPercentile(double percentile);
+
+  /**
+   * Duration percentile of refresh loads in milliseconds.
+   *
+   * @see CommonMetrics#getRefreshHistogram()
+   */
+  double getRefreshMillisPercentile(double percentile);
+
+  /**
+   * Duration percentile of bulk loader requests in milliseconds.
+   *
+   * @see CommonMetrics#getBulkLoadHistogram()
+   */
+  double getBulkLoadMillisPercentile(double percentile);
+
   boolean isIntegrityFailure();
 
   String getFailedIntegrityChecks();
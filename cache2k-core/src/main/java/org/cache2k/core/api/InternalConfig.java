@@ -26,7 +26,13 @@ import org.cache2k.config.CustomizationReferenceSupplier;
 import org.cache2k.config.CustomizationSupplier;
 import org.cache2k.config.SectionBuilder;
 import org.cache2k.core.StandardCommonMetrics;
+import org.cache2k.core.StripedCommonMetrics;
 import org.cache2k.core.concurrency.ThreadFactoryProvider;
+import org.cache2k.core.eviction.EvictionPolicy;
+import org.cache2k.core.offheap.OffHeapStore;
+import org.cache2k.core.offheap.ValueSerializer;
+
+import java.time.Duration;
 
 /**
  * @author Jens Wilke
@@ -36,12 +42,27 @@ public class InternalConfig implements ConfigSection<InternalConfig, InternalCon
   private static final CommonMetrics.Updater METRICS_BLACKHOLE = new CommonMetrics.BlackHole();
 
   private int evictionSegmentCount = Cache2kConfig.UNSET_INT;
+  private boolean incrementalHashExpansion = false;
+  private boolean openAddressingHash = false;
+  private int hitSampling = 0;
+  private int evictionWriteBuffer = 0;
+  private EvictionPolicy evictionPolicy = EvictionPolicy.CLOCK_PRO_PLUS;
+  private int timerShards = 1;
+  private Duration expirySweepTime = null;
+  private int refreshJitterPercent = 0;
+  private int maximumRefreshConcurrency = 0;
+  private int refreshQueueCapacity = 1000;
+  private ValueSerializer<?> offHeapSerializer = null;
+  private int offHeapSlabSize = OffHeapStore.DEFAULT_SLAB_SIZE;
   private CustomizationSupplier<ThreadFactoryProvider> threadFactoryProvider =
     new CustomizationReferenceSupplier<>(ThreadFactoryProvider.DEFAULT);
   private CustomizationSupplier<CommonMetrics.Updater> commonMetrics = buildContext -> {
     if (buildContext.getConfig().isDisableStatistics()) {
       return METRICS_BLACKHOLE;
     }
+    if (StripedCommonMetrics.isBeneficial(Runtime.getRuntime().availableProcessors())) {
+      return new StripedCommonMetrics();
+    }
     return new StandardCommonMetrics();
   };
 
@@ -64,6 +85,145 @@ public class InternalConfig implements ConfigSection<InternalConfig, InternalCon
     this.evictionSegmentCount = evictionSegmentCount;
   }
 
+  public boolean isIncrementalHashExpansion() {
+    return incrementalHashExpansion;
+  }
+
+  /**
+   * @see Builder#incrementalHashExpansion(boolean)
+   */
+  public void setIncrementalHashExpansion(boolean incrementalHashExpansion) {
+    this.incrementalHashExpansion = incrementalHashExpansion;
+  }
+
+  public boolean isOpenAddressingHash() {
+    return openAddressingHash;
+  }
+
+  /**
+   * @see Builder#openAddressingHash(boolean)
+   */
+  public void setOpenAddressingHash(boolean openAddressingHash) {
+    this.openAddressingHash = openAddressingHash;
+  }
+
+  public int getHitSampling() {
+    return hitSampling;
+  }
+
+  /**
+   * @see Builder#hitSampling(int)
+   */
+  public void setHitSampling(int hitSampling) {
+    this.hitSampling = hitSampling;
+  }
+
+  public int getEvictionWriteBuffer() {
+    return evictionWriteBuffer;
+  }
+
+  /**
+   * @see Builder#evictionWriteBuffer(int)
+   */
+  public void setEvictionWriteBuffer(int evictionWriteBuffer) {
+    this.evictionWriteBuffer = evictionWriteBuffer;
+  }
+
+  public EvictionPolicy getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  /**
+   * @see Builder#evictionPolicy(EvictionPolicy)
+   */
+  public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+  }
+
+  public int getTimerShards() {
+    return timerShards;
+  }
+
+  /**
+   * @see Builder#timerShards(int)
+   */
+  public void setTimerShards(int timerShards) {
+    this.timerShards = timerShards;
+  }
+
+  public Duration getExpirySweepTime() {
+    return expirySweepTime;
+  }
+
+  /**
+   * @see Builder#expirySweepTime(Duration)
+   */
+  public void setExpirySweepTime(Duration expirySweepTime) {
+    this.expirySweepTime = expirySweepTime;
+  }
+
+  public int getRefreshJitterPercent() {
+    return refreshJitterPercent;
+  }
+
+  /**
+   * @see Builder#refreshJitterPercent(int)
+   */
+  public void setRefreshJitterPercent(int refreshJitterPercent) {
+    this.refreshJitterPercent = refreshJitterPercent;
+  }
+
+  public int getMaximumRefreshConcurrency() {
+    return maximumRefreshConcurrency;
+  }
+
+  /**
+   * @see Builder#maximumRefreshConcurrency(int)
+   */
+  public void setMaximumRefreshConcurrency(int maximumRefreshConcurrency) {
+    this.maximumRefreshConcurrency = maximumRefreshConcurrency;
+  }
+
+  public int getRefreshQueueCapacity() {
+    return refreshQueueCapacity;
+  }
+
+  /**
+   * @see Builder#refreshQueueCapacity(int)
+   */
+  public void setRefreshQueueCapacity(int refreshQueueCapacity) {
+    this.refreshQueueCapacity = refreshQueueCapacity;
+  }
+
+  public ValueSerializer<?> getOffHeapSerializer() {
+    return offHeapSerializer;
+  }
+
+  /**
+   * @see Builder#offHeap(ValueSerializer)
+   */
+  public void setOffHeapSerializer(ValueSerializer<?> offHeapSerializer) {
+    this.offHeapSerializer = offHeapSerializer;
+  }
+
+  public int getOffHeapSlabSize() {
+    return offHeapSlabSize;
+  }
+
+  /**
+   * @see Builder#offHeapSlabSize(int)
+   */
+  public void setOffHeapSlabSize(int offHeapSlabSize) {
+    this.offHeapSlabSize = offHeapSlabSize;
+  }
+
+  /**
+   * Supplier for the metrics implementation. By default a shared no-op implementation
+   * is used when statistics are disabled, so the updates cost an empty call only.
+   * Otherwise {@link StripedCommonMetrics} is used on machines with many cores and
+   * {@link StandardCommonMetrics} on smaller ones. The choice depends on the machine only,
+   * so the metric call sites see at most two implementations within one VM.
+   */
   public CustomizationSupplier<CommonMetrics.Updater> getCommonMetrics() {
     return commonMetrics;
   }
@@ -95,6 +255,150 @@ public class InternalConfig implements ConfigSection<InternalConfig, InternalCon
       return this;
     }
 
+    /**
+     * Expand the hash table incrementally instead of rehashing all entries while holding
+     * all segment locks. The entries are transferred in small steps along with inserts.
+     * This avoids latency spikes when a big cache is filled. Default is {@code false}.
+     */
+    public Builder incrementalHashExpansion(boolean v) {
+      cfg.setIncrementalHashExpansion(v);
+      return this;
+    }
+
+    /**
+     * Use a hash table with open addressing and linear probing instead of collision
+     * chains. Lookups compare the hash codes in a compact array and touch fewer cache lines,
+     * expansion only locks a single segment. Default is {@code false}.
+     */
+    public Builder openAddressingHash(boolean v) {
+      cfg.setOpenAddressingHash(v);
+      return this;
+    }
+
+    /**
+     * Record only a random sample of the hits on an entry for the eviction. Every hit is
+     * recorded with the given probability of {@code 1/v} and counted with {@code v}.
+     * The first hit on an entry is always recorded. This reduces the writes to shared
+     * memory when an entry is read by many threads concurrently. The hit statistics
+     * stay exact. Rounded up to the next power of two. Default is 0, record every hit.
+     */
+    public Builder hitSampling(int v) {
+      cfg.setHitSampling(v);
+      return this;
+    }
+
+    /**
+     * Size of a buffer per eviction segment for inserted and removed entries. Updates
+     * are added to the buffer without locking and processed in bulk by the next thread
+     * holding the eviction lock. The eviction lock is only taken on an insert when the buffer
+     * is full or the cache is close to its capacity. Rounded up to the next power of two.
+     * Not used with a weigher or strict eviction. May reduce contention on the eviction lock
+     * with many cores, see {@code EvictionBenchmark} in the benchmark module. Default is 0,
+     * which locks on every insert and removal.
+     *
+     * <p>Off by default, since a cache at its capacity needs the eviction lock on every
+     * insert anyway to evict, so the buffer only adds the offer and drain. In
+     * {@code EvictionBenchmark} on a single core a buffer of 64 lowered the put throughput
+     * by 4 to 20 percent in six of eight combinations, e.g. 3.75 vs. 3.37 ops/us for
+     * {@code putNewKey} with Clock-Pro+ and uniform keys, and was within the noise for
+     * TinyLFU with Zipfian keys.
+     */
+    public Builder evictionWriteBuffer(int v) {
+      cfg.setEvictionWriteBuffer(v);
+      return this;
+    }
+
+    /**
+     * Eviction algorithm. Default is {@link EvictionPolicy#CLOCK_PRO_PLUS}.
+     * {@link EvictionPolicy#TINY_LFU} achieves better hit rates for workloads
+     * with scans or one time accesses mixed with frequently accessed entries.
+     */
+    public Builder evictionPolicy(EvictionPolicy v) {
+      cfg.setEvictionPolicy(v);
+      return this;
+    }
+
+    /**
+     * Number of independent timers for expiry and refresh. Tasks are distributed
+     * by the entry hash, each timer has its own lock. This reduces lock contention
+     * when many entries with expiry are updated concurrently. Rounded up to the next
+     * power of two. Default is 1.
+     */
+    public Builder timerShards(int v) {
+      cfg.setTimerShards(v);
+      return this;
+    }
+
+    /**
+     * Expire entries without a timer task per entry. The expiry time is checked on each
+     * access and a background sweep removes expired entries, visiting all entries within
+     * the given time. Saves memory and the timer overhead on updates, but expiry events
+     * and the removal of expired entries are delayed up to the sweep time. Only used for
+     * {@link org.cache2k.Cache2kBuilder#expireAfterWrite} without expiry policy,
+     * resilience or refresh ahead, otherwise timers are used. Default is {@code null},
+     * expiry via timer.
+     */
+    public Builder expirySweepTime(Duration v) {
+      cfg.setExpirySweepTime(v);
+      return this;
+    }
+
+    /**
+     * Schedule refresh ahead earlier by a random amount of up to the given percentage
+     * of the time until the refresh. Spreads the refreshes of entries that were loaded
+     * at the same time. Default is {@code 0}, no jitter.
+     */
+    public Builder refreshJitterPercent(int v) {
+      cfg.setRefreshJitterPercent(v);
+      return this;
+    }
+
+    /**
+     * Maximum number of refreshes executing at the same time. Further refreshes are
+     * queued and started by priority, entries with more hits first. Default is {@code 0},
+     * refreshes are passed to the refresh executor without limit.
+     */
+    public Builder maximumRefreshConcurrency(int v) {
+      cfg.setMaximumRefreshConcurrency(v);
+      return this;
+    }
+
+    /**
+     * Number of refreshes waiting when {@link #maximumRefreshConcurrency(int)} is reached.
+     * When the queue is full, the refresh with the least hits is dropped and the entry
+     * expires. Default is {@code 1000}.
+     */
+    public Builder refreshQueueCapacity(int v) {
+      cfg.setRefreshQueueCapacity(v);
+      return this;
+    }
+
+    /**
+     * Store the values serialized in direct memory instead of on the heap. Keys and
+     * entries stay on the heap. The cache limit needs to be set via
+     * {@link org.cache2k.Cache2kBuilder#maximumWeight(long)} in bytes of off heap memory,
+     * a weigher or refresh ahead policy cannot be used. The reserved memory stays within
+     * the maximum weight. If no memory is left, an update fails with a
+     * {@link org.cache2k.CacheException}. Default is {@code null}, values are stored on
+     * the heap.
+     *
+     * @see ValueSerializer#JAVA
+     */
+    public Builder offHeap(ValueSerializer<?> v) {
+      cfg.setOffHeapSerializer(v);
+      return this;
+    }
+
+    /**
+     * Size of one memory block allocated for off heap values, which is also the maximum
+     * size of a serialized value. Smaller blocks are used, if the maximum weight
+     * is lower. Default is 64 megabytes.
+     */
+    public Builder offHeapSlabSize(int v) {
+      cfg.setOffHeapSlabSize(v);
+      return this;
+    }
+
     public Builder threadFactoryProvider(ThreadFactoryProvider v) {
       cfg.setThreadFactoryProvider(new CustomizationReferenceSupplier<>(v));
       return this;
@@ -131,4 +131,19 @@ public abstract class AbstractCacheStatistics implements CacheStatistics {
     return info().getLoadMillis();
   }
 
+  @Override
+  public double getLoadMillisPercentile(double percentile) {
+    return info().getLoadMillisPercentile(percentile);
+  }
+
+  @Override
+  public double getRefreshMillisPercentile(double percentile) {
+    return info().getRefreshMillisPercentile(percentile);
+  }
+
+  @Override
+  public double getBulkLoadMillisPercentile(double percentile) {
+    return info().getBulkLoadMillisPercentile(percentile);
+  }
+
 }
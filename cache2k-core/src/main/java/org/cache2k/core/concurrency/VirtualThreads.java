@@ -0,0 +1,95 @@
+package org.cache2k.core.concurrency;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.annotation.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides executors that start a new virtual thread for each task. Virtual threads
+ * are available with Java 21. The sources are compiled for Java 8, so the thread
+ * builder is looked up via reflection. This is only done when an executor is created,
+ * so there is no need for a separate Java 21 variant in a multi-release jar.
+ *
+ * @author Jens Wilke
+ */
+public final class VirtualThreads {
+
+  private VirtualThreads() { }
+
+  /**
+   * True, if the runtime supports virtual threads.
+   */
+  public static boolean isSupported() {
+    return newThreadFactory("cache2k") != null;
+  }
+
+  /**
+   * Executor starting a virtual thread per task. The executor holds no resources
+   * and does not need to be closed.
+   *
+   * @param threadNamePrefix prefix of the thread name, a counter is appended
+   * @throws IllegalArgumentException if virtual threads are not supported
+   */
+  public static Executor newExecutor(String threadNamePrefix) {
+    ThreadFactory factory = newThreadFactory(threadNamePrefix);
+    if (factory == null) {
+      throw new IllegalArgumentException("Virtual threads require Java 21 or newer");
+    }
+    return new VirtualThreadExecutor(factory);
+  }
+
+  private static @Nullable ThreadFactory newThreadFactory(String threadNamePrefix) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      Method name = builderType.getMethod("name", String.class, long.class);
+      builder = name.invoke(builder, threadNamePrefix + '-', 1L);
+      return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  private static class VirtualThreadExecutor implements Executor {
+
+    private final ThreadFactory factory;
+
+    VirtualThreadExecutor(ThreadFactory factory) {
+      this.factory = factory;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      factory.newThread(command).start();
+    }
+
+    @Override
+    public String toString() {
+      return "VirtualThreadExecutor";
+    }
+
+  }
+
+}
@@ -24,7 +24,9 @@ import org.cache2k.config.Cache2kConfig;
 import org.cache2k.core.Entry;
 import org.cache2k.core.ExceptionWrapper;
 import org.cache2k.core.IntegerTo16BitFloatingPoint;
+import org.cache2k.core.StripedEntryLocking;
 import org.cache2k.core.api.InternalCacheCloseContext;
+import org.cache2k.core.offheap.OffHeapValue;
 import org.cache2k.operation.Weigher;
 
 import java.util.function.Supplier;
@@ -61,6 +63,13 @@ public abstract class AbstractEviction implements Eviction {
   private final boolean noListenerCall;
   private final boolean noChunking;
 
+  /**
+   * Buffer for submitted entries, so they can be submitted without taking the eviction lock.
+   * Consumed in bulk by the lock holder. {@code null} if disabled, which is the default,
+   * see {@link org.cache2k.core.api.InternalConfig.Builder#evictionWriteBuffer(int)}.
+   */
+  private final WriteBuffer writeBuffer;
+
   /**
    * Set when size is reached.
    */
@@ -110,6 +119,17 @@ public abstract class AbstractEviction implements Eviction {
    public AbstractEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
                           long maxSize, Weigher weigher, long maxWeight,
                           boolean noChunking) {
+    this(heapCache, listener, maxSize, weigher, maxWeight, noChunking, 0);
+  }
+
+  /**
+   * @param writeBufferSize size of the buffer for submitted entries, 0 to lock on every
+   *                        submit. Not used with a weigher.
+   */
+  public AbstractEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                          long maxSize, Weigher weigher, long maxWeight,
+                          boolean noChunking, int writeBufferSize) {
+    writeBuffer = writeBufferSize > 0 && weigher == null ? new WriteBuffer(writeBufferSize) : null;
     this.weigher = weigher;
     this.heapCache = heapCache;
     this.listener = listener;
@@ -128,22 +148,92 @@ public abstract class AbstractEviction implements Eviction {
    @Override
    public long startNewIdleScanRound() {
     synchronized (lock) {
+      drainWriteBuffer();
       idleNonEvictDrainCount = 0;
       idleScanRound = (idleScanRound + 1) & Entry.SCAN_ROUND_MASK;
       return getScanCount();
     }
    }
 
+   /**
+    * Puts the entry into the write buffer, if present. If the buffer is full, lock
+    * and process all buffered entries before the entry, to keep the order. If another
+    * thread has not yet published its entry, release the lock and retry the buffer.
+    *
+    * @return always {@code false}, if the entry was buffered
+    */
    @Override
   public boolean submitWithoutTriggeringEviction(Entry e) {
-    synchronized (lock) {
-      if (e.isNotYetInsertedInReplacementList()) {
-        insertIntoReplacementList(e);
-        newEntryCounter++;
-      } else {
-        removeEventually(e);
+    if (writeBuffer == null) {
+      synchronized (lock) {
+        processSubmit(e);
+        return isEvictionNeeded(1);
+      }
+    }
+    for (;;) {
+      if (writeBuffer.offer(e)) {
+        return false;
+      }
+      synchronized (lock) {
+        drainWriteBuffer();
+        if (writeBuffer.isEmpty()) {
+          processSubmit(e);
+          return isEvictionNeeded(1);
+        }
+      }
+      Thread.yield();
+    }
+  }
+
+  @Override
+  public boolean submitAllWithoutTriggeringEviction(Entry[] entries, int from, int to) {
+    return runLockedWhenDrained(() -> {
+      for (int i = from; i < to; i++) {
+        processSubmit(entries[i]);
       }
       return isEvictionNeeded(1);
+    });
+  }
+
+  private void processSubmit(Entry e) {
+    if (e.isNotYetInsertedInReplacementList()) {
+      insertIntoReplacementList(e);
+      newEntryCounter++;
+    } else {
+      removeEventually(e);
+    }
+  }
+
+  /**
+   * Process entries in the write buffer. Called whenever the lock is acquired, to see
+   * a consistent state. Stops at a slot that is not yet published.
+   */
+  protected final void drainWriteBuffer() {
+    if (writeBuffer == null) {
+      return;
+    }
+    Entry e;
+    while ((e = writeBuffer.poll()) != null) {
+      processSubmit(e);
+    }
+  }
+
+  /**
+   * Run within the lock after all entries in the write buffer are processed. Another
+   * thread may have claimed a slot but not yet published the entry, which happens within
+   * its hash segment lock. In that case release the eviction lock and retry, so the
+   * waiting never blocks other threads on the eviction lock. Within the total lock of
+   * the hash no slot can be unpublished, so the job runs without retry.
+   */
+  private <T> T runLockedWhenDrained(Supplier<T> job) {
+    for (;;) {
+      synchronized (lock) {
+        drainWriteBuffer();
+        if (writeBuffer == null || writeBuffer.isEmpty()) {
+          return job.get();
+        }
+      }
+      Thread.yield();
     }
   }
 
@@ -203,11 +293,14 @@ public abstract class AbstractEviction implements Eviction {
    * Update total weight in this eviction segment. The total weight differs from
    * the accumulated entry weight, since it is based on the stored decompressed, compressed
    * weight. We calculate based on the stored weight, because we don't want to call the
-   * weigher for deletion again, which may cause wrong counts.
+   * weigher for deletion again, which may cause wrong counts. A value stored off heap
+   * is weighed by its size, without reading it.
    */
   protected void updateAccumulatedWeightInLock(Entry e) {
-    Object v = e.getValueOrException();
-    int requestedCompressedWeight = compressWeight(calculateWeight(e, v));
+    Object v = e.getValueOrWrapper();
+    int weight = v instanceof OffHeapValue ?
+      ((OffHeapValue<?>) v).getWeight() : calculateWeight(e, e.getValueOrException());
+    int requestedCompressedWeight = compressWeight(weight);
     if (e.getCompressedWeight() != requestedCompressedWeight) {
       long decompressedEntryWeight = decompressWeight(e.getCompressedWeight());
       long requestedWeightWithLostPrecision = decompressWeight(requestedCompressedWeight);
@@ -255,6 +348,14 @@ public abstract class AbstractEviction implements Eviction {
     }
   }
 
+  /**
+   * Racy check without the lock, whether eviction might be needed, counting all
+   * buffered entries as inserts. Only used without weigher.
+   */
+  private boolean isEvictionNeededEstimate(int spaceNeeded) {
+    return getSize() + writeBuffer.size() + spaceNeeded - evictionRunningCount > maxSize;
+  }
+
   @Override
   public void evictEventuallyBeforeInsert() {
     evictEventually(1);
@@ -265,6 +366,22 @@ public abstract class AbstractEviction implements Eviction {
     evictEventuallyBeforeInsert();
   }
 
+  /**
+   * Evicts for at most the capacity minus one eviction chunk, so the eviction never runs
+   * out of candidates. With a weigher the weight of the new entries is unknown, so
+   * the space for one entry is made, like a single insert does.
+   */
+  @Override
+  public int evictEventuallyBeforeBulkInsert(int count) {
+    if (weigher != null) {
+      evictEventuallyBeforeInsert();
+      return count;
+    }
+    int spaceNeeded = (int) Math.max(1, Math.min(count, maxSize - chunkSize + 1));
+    evictEventually(spaceNeeded);
+    return spaceNeeded;
+  }
+
   @Override
   public void evictEventually() {
     evictEventually(0);
@@ -278,8 +395,12 @@ public abstract class AbstractEviction implements Eviction {
    * from the eviction algorithm, if its currently processing.
    *
    * <p>If a weigher is present we might need to evict more than one entry.
+   * For a bulk insert, eviction is repeated until space for all entries is made.
    */
   private void evictEventually(int spaceNeeded) {
+    if (writeBuffer != null && !isEvictionNeededEstimate(spaceNeeded)) {
+      return;
+    }
     Entry[] chunk;
     synchronized (lock) {
       chunk = fillEvictionChunk(spaceNeeded);
@@ -287,7 +408,7 @@ public abstract class AbstractEviction implements Eviction {
     if (chunk == null) { return; }
     boolean needsEviction = (evictChunk(chunk, spaceNeeded) & 1) > 0;
     if (!needsEviction) { return; }
-    long loop = 1;
+    long loop = Math.max(1, (spaceNeeded - 1) / chunkSize + 1);
     if (weigher != null) {
       synchronized (lock) {
         loop = getSize();
@@ -302,6 +423,7 @@ public abstract class AbstractEviction implements Eviction {
   }
 
   private Entry[] fillEvictionChunk(int spaceNeeded) {
+    drainWriteBuffer();
     if (!isEvictionNeeded(spaceNeeded)) {
       return null;
     }
@@ -354,6 +476,7 @@ public abstract class AbstractEviction implements Eviction {
    }
 
   private Entry[] fillEvictChunkWithIdlers(int maxScan) {
+    drainWriteBuffer();
     Entry[] chunk = evictChunkReuse;
     evictChunkReuse = null;
     if (chunk == null) { chunk = new Entry[chunkSize]; }
@@ -403,41 +526,81 @@ public abstract class AbstractEviction implements Eviction {
    * An entry may have been also already evicted in another task.
    */
   private int removeFromHashWithoutListener(Entry[] chunk) {
+    StripedEntryLocking locking = heapCache.getStripedEntryLocking();
     int processCount = 0;
     for (int i = 0; i < chunk.length; i++) {
       Entry e = chunk[i];
       if (e == null) { continue; }
-      synchronized (e) {
-        if (e.isGone() || e.isProcessing()) {
-          chunk[i] = null;
-          continue;
+      boolean removed;
+      if (locking == null) {
+        synchronized (e) {
+          removed = removeFromHashIfIdle(e);
+        }
+      } else {
+        locking.lock(e);
+        try {
+          removed = removeFromHashIfIdle(e);
+        } finally {
+          locking.unlock(e);
         }
-        heapCache.removeEntryForEviction(e);
+      }
+      if (!removed) {
+        chunk[i] = null;
+        continue;
       }
       processCount++;
     }
     return processCount;
   }
 
+  private boolean removeFromHashIfIdle(Entry e) {
+    if (e.isGone() || e.isProcessing()) {
+      return false;
+    }
+    heapCache.removeEntryForEviction(e);
+    return true;
+  }
+
   /**
    * Same as {@link #removeFromHash(Entry[])}
    * Before calling the listener, we need to lock the entry, to keep other
    * operations or evictions in concurrent tasks away from it.
    */
   private int removeFromHashWithListener(Entry[] chunk) {
+    StripedEntryLocking locking = heapCache.getStripedEntryLocking();
     int processCount = 0;
     for (int i = 0; i < chunk.length; i++) {
       Entry e = chunk[i];
-      synchronized (e) {
-        if (e.isGone() || e.isProcessing()) {
-          chunk[i] = null; continue;
+      if (locking == null) {
+        synchronized (e) {
+          if (e.isGone() || e.isProcessing()) {
+            chunk[i] = null; continue;
+          }
+          e.startProcessing(Entry.ProcessingState.EVICT, null);
+        }
+        listener.onEvictionFromHeap(e);
+        synchronized (e) {
+          e.processingDone();
+          heapCache.removeEntryForEviction(e);
+        }
+      } else {
+        locking.lock(e);
+        try {
+          if (e.isGone() || e.isProcessing()) {
+            chunk[i] = null; continue;
+          }
+          e.startProcessing(Entry.ProcessingState.EVICT, null);
+        } finally {
+          locking.unlock(e);
+        }
+        listener.onEvictionFromHeap(e);
+        locking.lock(e);
+        try {
+          e.processingDoneWithoutNotify();
+          heapCache.removeEntryForEviction(e);
+        } finally {
+          locking.unlock(e);
         }
-        e.startProcessing(Entry.ProcessingState.EVICT, null);
-      }
-      listener.onEvictionFromHeap(e);
-      synchronized (e) {
-        e.processingDone();
-        heapCache.removeEntryForEviction(e);
       }
       processCount++;
     }
@@ -462,6 +625,7 @@ public abstract class AbstractEviction implements Eviction {
   @Override
   public EvictionMetrics getMetrics() {
     synchronized (lock) {
+      drainWriteBuffer();
       long size = getSize();
       long newEntryCounter = this.newEntryCounter;
       long removedCnt = this.removedCnt;
@@ -498,13 +662,12 @@ public abstract class AbstractEviction implements Eviction {
 
    @Override
   public <T> T runLocked(Supplier<T> j) {
-    synchronized (lock) {
-      return j.get();
-    }
+    return runLockedWhenDrained(j);
   }
 
   public String toString() {
     synchronized (lock) {
+      drainWriteBuffer();
       String s = "impl=" + this.getClass().getSimpleName() +
         ", chunkSize=" + chunkSize;
       if (isWeigherPresent()) {
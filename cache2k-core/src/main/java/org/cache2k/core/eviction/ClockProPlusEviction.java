@@ -27,14 +27,20 @@ import org.cache2k.core.IntegrityState;
 /**
  * Eviction algorithm inspired from CLOCK Pro with 3 clocks.
  *
- * <p>Uses a static allocation for hot and cold space sizes. No online or dynamic
- * optimization is done yet. However, the hit rate for all measured access traces is better
- * than LRU and resistant to scans.
+ * <p>The maximum size of the hot clock adapts like described in the paper, but only when
+ * an entry is found in the ghost history: a ghost hit means a cold entry was evicted too
+ * early, so the hot maximum decreases by one. Each ghost that was removed from the history
+ * without a hit since the previous ghost hit means the cold clock could be smaller, so the
+ * hot maximum increases by one for each of them. The hot maximum stays between
+ * {@value #HOT_MIN_PERCENTAGE} and {@value #HOT_MAX_PERCENTAGE} percent of the size and
+ * starts again from the upper bound, when the capacity changes.
  *
  * <p>From cache2k version 1.2 to version 1.4 the implementation was simplified and the
  * demotion of hot entries removed. The result achieves similar or better hit rates.
  * Version 2.4 limits the ghost size to 3000 elements. Version 2.6 stops inserting
- * evicted hot entries into ghosts.
+ * evicted hot entries into ghosts. Version 2.8 stores ghosts as compact hash codes,
+ * see {@link GhostSet}, and removes the limit of 3000 elements, so the history scales
+ * with the cache size. The hot clock maximum adapts.
  *
  * <p>The Clock-Pro algorithm is explained by the authors in
  * <a href="http://www.ece.eng.wayne.edu/~sjiang/pubs/papers/jiang05_CLOCK-Pro.pdf">CLOCK-Pro:
@@ -47,9 +53,8 @@ import org.cache2k.core.IntegrityState;
 @SuppressWarnings({"WeakerAccess", "rawtypes"})
 public class ClockProPlusEviction extends AbstractEviction {
 
-  static final int MAX_GHOST_ENTRIES = 3_000;
-  static final int GHOST_LOAD_PERCENT = 63;
   static final int HOT_MAX_PERCENTAGE = 97;
+  static final int HOT_MIN_PERCENTAGE = 30;
   static final int HIT_COUNTER_DECREASE_SHIFT = 6;
   static final int GHOST_MAX_PERCENTAGE = 50;
 
@@ -68,21 +73,48 @@ public class ClockProPlusEviction extends AbstractEviction {
   private Entry handCold;
   private Entry handHot;
 
-  private Ghost[] ghosts;
-  private final Ghost ghostHead = new Ghost().shortCircuit();
-  private int ghostSize = 0;
+  /** Maximum size is set when the capacity limit is reached, see {@link #updateHotMax()} */
+  private final GhostSet ghosts = new GhostSet(1);
   private long hotMax = Long.MAX_VALUE;
-  private long ghostMax = MAX_GHOST_ENTRIES;
+  private long hotMaxLower;
+  private long ghostsRemovedWithoutHit;
+  private long hotMaxUpper = Long.MAX_VALUE;
 
   public ClockProPlusEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
                               long maxSize, Weigher weigher, long maxWeight,
                               boolean noChunking) {
-    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+    this(heapCache, listener, maxSize, weigher, maxWeight, noChunking, 0);
+  }
+
+  public ClockProPlusEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                              long maxSize, Weigher weigher, long maxWeight,
+                              boolean noChunking, int writeBufferSize) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking, writeBufferSize);
     coldSize = 0;
     hotSize = 0;
     handCold = null;
     handHot = null;
-    ghosts = new Ghost[4];
+  }
+
+  /**
+   * Allocate the ghost table for the ghost size that is reached when the
+   * expected number of entries is in this eviction segment, so no expansion
+   * is needed when the cache fills up.
+   */
+  public void presize(long expectedSize) {
+    synchronized (lock) {
+      drainWriteBuffer();
+      ghosts.presize(calculateGhostMax(expectedSize));
+    }
+  }
+
+  private static long calculateGhostMax(long size) {
+    return size * GHOST_MAX_PERCENTAGE / 100 + 1;
+  }
+
+  /** For testing */
+  GhostSet getGhosts() {
+    return ghosts;
   }
 
   private long sumUpListHits(Entry e) {
@@ -101,20 +133,22 @@ public class ClockProPlusEviction extends AbstractEviction {
   }
 
   public long getGhostMax() {
-    return ghostMax;
+    return ghosts.getMaxSize();
   }
 
   /**
    * Updates hot max based on current size. This is called when eviction
    * kicks in so current size is the maximum size this cache should reach
    * regardless whether we use entry capacity or weigher to limit the size.
+   * Adaption starts again from the upper bound.
    */
   @Override
   protected void updateHotMax() {
-    hotMax = getSize() * HOT_MAX_PERCENTAGE / 100;
-    ghostMax = getSize() * GHOST_MAX_PERCENTAGE / 100 + 1;
-    ghostMax = Math.min(MAX_GHOST_ENTRIES, ghostMax);
-    trimGhostSize();
+    hotMaxUpper = getSize() * HOT_MAX_PERCENTAGE / 100;
+    hotMaxLower = getSize() * HOT_MIN_PERCENTAGE / 100;
+    hotMax = hotMaxUpper;
+    ghostsRemovedWithoutHit = 0;
+    ghosts.setMaxSize(calculateGhostMax(getSize()));
   }
 
   @Override
@@ -186,35 +220,21 @@ public class ClockProPlusEviction extends AbstractEviction {
     }
   }
 
+  /**
+   * Remember the evicted entry. The oldest ghost is dropped when the history is full,
+   * which happens on almost every eviction. This is only counted, the hot maximum
+   * adapts on the next ghost hit.
+   */
   private void insertCopyIntoGhosts(Entry e) {
-    int hc = e.hashCode;
-    Ghost g = lookupGhost(hc);
-    if (g != null) {
-      Ghost.moveToFront(ghostHead, g);
-      return;
+    if (ghosts.add(e.hashCode)) {
+      ghostsRemovedWithoutHit++;
     }
-    g = trimGhostSize();
-    if (g == null) {
-      g = new Ghost();
-    }
-    g.hash = hc;
-    insertGhost(g, hc);
-    Ghost.insertInList(ghostHead, g);
   }
 
-  /**
-   * Reduce ghost size to fit maximum size.
-   *
-   * @return A removed ghost to reuse the object for insert
-   */
-  private Ghost trimGhostSize() {
-    Ghost g = null;
-    while (ghostSize >= getGhostMax()) {
-      g = ghostHead.prev;
-      Ghost.removeFromList(g);
-      boolean f = removeGhost(g, g.hash);
-    }
-    return g;
+  private void adaptHotMaxOnGhostHit() {
+    long v = hotMax + ghostsRemovedWithoutHit - 1;
+    ghostsRemovedWithoutHit = 0;
+    hotMax = Math.max(hotMaxLower, Math.min(hotMaxUpper, v));
   }
 
   public long getSize() {
@@ -223,16 +243,13 @@ public class ClockProPlusEviction extends AbstractEviction {
 
   @Override
   protected void insertIntoReplacementList(Entry e) {
-    Ghost g = lookupGhost(e.hashCode);
-    if (g != null) {
-      /*
-       * don't remove ghosts here, save object allocations.
-       * removeGhost(g, g.hash);  Ghost.removeFromList(g);
-       */
+    boolean ghostHit = ghosts.contains(e.hashCode);
+    if (ghostHit) {
       ghostHits++;
+      adaptHotMaxOnGhostHit();
     }
     e.setScanRound(idleScanRound);
-    if (g != null || (coldSize == 0 && hotSize < getHotMax())) {
+    if (ghostHit || (coldSize == 0 && hotSize < getHotMax())) {
       e.setHot(true);
       hotSize++;
       handHot = Entry.insertIntoTailCyclicList(handHot, e);
@@ -372,25 +389,25 @@ public class ClockProPlusEviction extends AbstractEviction {
 
   @Override
   public void checkIntegrity(IntegrityState integrityState) {
-    integrityState.checkEquals("ghostSize == countGhostsInHash()", ghostSize, countGhostsInHash())
+    integrityState.checkEquals("ghosts.size() == ghosts.countInTable()",
+        ghosts.size(), ghosts.countInTable())
       .check("checkCyclicListIntegrity(handHot)", Entry.checkCyclicListIntegrity(handHot))
       .check("checkCyclicListIntegrity(handCold)", Entry.checkCyclicListIntegrity(handCold))
       .checkEquals("getCyclicListEntryCount(handHot) == hotSize",
         Entry.getCyclicListEntryCount(handHot), hotSize)
       .checkEquals("getCyclicListEntryCount(handCold) == coldSize",
-        Entry.getCyclicListEntryCount(handCold), coldSize)
-      .checkEquals("Ghost.listSize(ghostHead) == ghostSize",
-        Ghost.listSize(ghostHead), ghostSize);
+        Entry.getCyclicListEntryCount(handCold), coldSize);
   }
 
   @Override
   public String toString() {
     synchronized (lock) {
+      drainWriteBuffer();
       return super.toString() +
         ", coldSize=" + coldSize +
         ", hotSize=" + hotSize +
         ", hotMaxSize=" + getHotMax() +
-        ", ghostSize=" + ghostSize +
+        ", ghostSize=" + ghosts.size() +
         ", ghostMaxSize=" + getGhostMax() +
         ", coldHits=" + (coldHits + sumUpListHits(handCold)) +
         ", hotHits=" + (hotHits + sumUpListHits(handHot)) +
@@ -402,134 +419,4 @@ public class ClockProPlusEviction extends AbstractEviction {
     }
   }
 
-  private Ghost lookupGhost(int hash) {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    Ghost e = tab[idx];
-    while (e != null) {
-      if (e.hash == hash) {
-        return e;
-      }
-      e = e.another;
-    }
-    return null;
-  }
-
-  private void insertGhost(Ghost e2, int hash) {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    e2.another = tab[idx];
-    tab[idx] = e2;
-    ghostSize++;
-    int maxFill = n * GHOST_LOAD_PERCENT / 100;
-    if (ghostSize > maxFill) {
-      expand();
-    }
-  }
-
-  private void expand() {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask;
-    int idx;
-    Ghost[] newTab = new Ghost[n * 2];
-    mask = newTab.length - 1;
-    for (Ghost g : tab) {
-      while (g != null) {
-        idx = g.hash & mask;
-        Ghost next = g.another;
-        g.another = newTab[idx];
-        newTab[idx] = g;
-        g = next;
-      }
-    }
-    ghosts = newTab;
-  }
-
-
-  private boolean removeGhost(Ghost g, int hash) {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    Ghost e = tab[idx];
-    if (e == g) {
-      tab[idx] = e.another;
-      ghostSize--;
-      return true;
-    } else {
-      while (e != null) {
-        Ghost another = e.another;
-        if (another == g) {
-          e.another = another.another;
-          ghostSize--;
-          return true;
-        }
-        e = another;
-      }
-    }
-    return false;
-  }
-
-  private int countGhostsInHash() {
-    int entryCount = 0;
-    for (Ghost e : ghosts) {
-      while (e != null) {
-        entryCount++;
-        e = e.another;
-      }
-    }
-    return entryCount;
-  }
-
-  /**
-   * Ghost representing a entry we have seen and evicted from the cache. We only store
-   * the hash to save memory, since holding the key references may cause a size overhead.
-   */
-  private static class Ghost {
-
-    /** Modified hashcode of the key */
-    int hash;
-    /** Hash table chain */
-    Ghost another;
-    /** LRU double linked list */
-    Ghost next;
-    /** LRU double linked list */
-    Ghost prev;
-
-    Ghost shortCircuit() {
-      return next = prev = this;
-    }
-
-    static void removeFromList(Ghost e) {
-      e.prev.next = e.next;
-      e.next.prev = e.prev;
-      e.next = e.prev = null;
-    }
-
-    static void insertInList(Ghost head, Ghost e) {
-      e.prev = head;
-      e.next = head.next;
-      e.next.prev = e;
-      head.next = e;
-    }
-
-    static void moveToFront(Ghost head, Ghost e) {
-      removeFromList(e);
-      insertInList(head, e);
-    }
-
-    static int listSize(Ghost head) {
-      int count = 0;
-      Ghost e = head;
-      while ((e = e.next) != head) { count++; }
-      return count;
-    }
-
-  }
-
 }
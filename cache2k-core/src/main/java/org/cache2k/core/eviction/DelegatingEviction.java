@@ -50,6 +50,11 @@ public abstract class DelegatingEviction implements Eviction {
     return delegate().submitWithoutTriggeringEviction(e);
   }
 
+  @Override
+  public boolean submitAllWithoutTriggeringEviction(Entry[] entries, int from, int to) {
+    return delegate().submitAllWithoutTriggeringEviction(entries, from, to);
+  }
+
   @Override
   public boolean updateWeight(Entry e) {
     return delegate().updateWeight(e);
@@ -65,6 +70,11 @@ public abstract class DelegatingEviction implements Eviction {
     delegate().evictEventuallyBeforeInsert();
   }
 
+  @Override
+  public int evictEventuallyBeforeBulkInsert(int count) {
+    return delegate().evictEventuallyBeforeBulkInsert(count);
+  }
+
   @Override
   public void evictEventually() {
     delegate().evictEventually();
@@ -47,6 +47,12 @@ public interface Eviction extends NeedsClose {
    */
   boolean submitWithoutTriggeringEviction(Entry e);
 
+  /**
+   * Submit multiple entries within one lock acquisition. Same as
+   * {@link #submitWithoutTriggeringEviction(Entry)} for each entry in the range.
+   */
+  boolean submitAllWithoutTriggeringEviction(Entry[] entries, int from, int to);
+
   /**
    * Updates the weight on the entry and recalculates the total weight if needed.
    *
@@ -73,6 +79,14 @@ public interface Eviction extends NeedsClose {
    */
   void evictEventuallyBeforeInsert();
 
+  /**
+   * Evict if needed, to make space for a bulk insert of the number of entries.
+   * The space made may be less than requested, if the capacity is low.
+   *
+   * @return number of entries that can be inserted, at least 1
+   */
+  int evictEventuallyBeforeBulkInsert(int count);
+
   /**
    * Evict if needed, checks all segments.
    */
@@ -31,7 +31,8 @@ import org.cache2k.core.SegmentedEviction;
 public class EvictionFactory {
 
   /**
-   * Construct segmented or queued eviction. For the moment hard coded.
+   * Construct segmented or queued eviction. The algorithm is selected via
+   * {@link org.cache2k.core.api.InternalConfig#getEvictionPolicy()}.
    * If capacity is at least 1000 we use 2 segments if 2 or more CPUs are available.
    * Segmenting the eviction only improves for lots of concurrent inserts or evictions,
    * there is no effect on read performance.
@@ -67,8 +68,15 @@ public class EvictionFactory {
     Eviction[] segments = new Eviction[segmentCount];
     long maxSize = EvictionFactory.determineMaxSize(entryCapacity, segmentCount);
     long maxWeight = EvictionFactory.determineMaxWeight(maximumWeight, segmentCount);
+    long expectedSize = determineMaxSize(config.getExpectedEntryCount(), segmentCount);
+    if (maxSize > 0) {
+      expectedSize = Math.min(expectedSize, maxSize);
+    }
+    int writeBufferSize = strictEviction ? 0 : ctx.internalConfig().getEvictionWriteBuffer();
+    EvictionPolicy policy = ctx.internalConfig().getEvictionPolicy();
     for (int i = 0; i < segments.length; i++) {
-      segments[i]= new ClockProPlusEviction(hc, l, maxSize, weigher, maxWeight, strictEviction);
+      segments[i] = policy.create(hc, l, maxSize, weigher, maxWeight, strictEviction,
+        writeBufferSize, expectedSize);
     }
     Eviction eviction = segmentCount == 1 ? segments[0] : new SegmentedEviction(segments);
     if (config.getIdleScanTime() != null) {
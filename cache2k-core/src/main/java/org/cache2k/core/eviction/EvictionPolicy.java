@@ -0,0 +1,72 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.operation.Weigher;
+
+/**
+ * Available eviction algorithms. Constructs an eviction segment.
+ *
+ * @author Jens Wilke
+ * @see org.cache2k.core.api.InternalConfig.Builder#evictionPolicy(EvictionPolicy)
+ */
+public enum EvictionPolicy {
+
+  /**
+   * Default, see {@link ClockProPlusEviction}
+   */
+  CLOCK_PRO_PLUS {
+    @Override
+    AbstractEviction create(HeapCacheForEviction hc, InternalEvictionListener l,
+                            long maxSize, Weigher weigher, long maxWeight,
+                            boolean noChunking, int writeBufferSize, long expectedSize) {
+      ClockProPlusEviction clockPro =
+        new ClockProPlusEviction(hc, l, maxSize, weigher, maxWeight, noChunking,
+          writeBufferSize);
+      if (expectedSize > 0) {
+        clockPro.presize(expectedSize);
+      }
+      return clockPro;
+    }
+  },
+
+  /**
+   * Frequency based admission, see {@link TinyLfuEviction}
+   */
+  TINY_LFU {
+    @Override
+    AbstractEviction create(HeapCacheForEviction hc, InternalEvictionListener l,
+                            long maxSize, Weigher weigher, long maxWeight,
+                            boolean noChunking, int writeBufferSize, long expectedSize) {
+      TinyLfuEviction tinyLfu =
+        new TinyLfuEviction(hc, l, maxSize, weigher, maxWeight, noChunking, writeBufferSize);
+      if (expectedSize > 0) {
+        tinyLfu.presize(expectedSize);
+      }
+      return tinyLfu;
+    }
+  };
+
+  abstract AbstractEviction create(HeapCacheForEviction hc, InternalEvictionListener l,
+                                   long maxSize, Weigher weigher, long maxWeight,
+                                   boolean noChunking, int writeBufferSize, long expectedSize);
+
+}
@@ -0,0 +1,147 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Count-min sketch with 4-bit counters to estimate the access frequency of a hash code.
+ * Each {@code long} of the table holds 16 counters. A hash maps to one counter
+ * in each of four rows, the estimated frequency is the minimum of the four counters.
+ * When the number of recorded accesses reaches the sample size, all counters are halved,
+ * so the frequency of entries that are not accessed any more ages out.
+ *
+ * <p>Not thread safe, accessed within the eviction lock.
+ *
+ * @author Jens Wilke
+ */
+final class FrequencySketch {
+
+  static final int MAX_COUNT = 15;
+  static final int SAMPLE_FACTOR = 10;
+  static final int MAXIMUM_TABLE_SIZE = 1 << 24;
+
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  private long[] table;
+  private int tableMask;
+  private long sampleSize;
+  private long additions;
+  private long resetCount;
+
+  FrequencySketch(long expectedSize) {
+    ensureCapacity(expectedSize);
+  }
+
+  /**
+   * Size the table for the expected number of entries. Counters are dropped
+   * when the table is enlarged. Never shrinks.
+   */
+  void ensureCapacity(long expectedSize) {
+    int n = (int) Math.min(Math.max(expectedSize, 16), MAXIMUM_TABLE_SIZE);
+    n = Integer.highestOneBit(n - 1) << 1;
+    if (table != null && n <= table.length) {
+      return;
+    }
+    table = new long[n];
+    tableMask = n - 1;
+    sampleSize = (long) n * SAMPLE_FACTOR;
+    additions = 0;
+  }
+
+  /**
+   * Estimated frequency of the hash code, between 0 and {@value #MAX_COUNT}.
+   */
+  int frequency(int hash) {
+    int min = MAX_COUNT;
+    for (int i = 0; i < SEEDS.length; i++) {
+      min = Math.min(min, counter(hash, i));
+    }
+    return min;
+  }
+
+  /**
+   * Record accesses of the hash code. Counters are only raised up to the new estimated
+   * frequency, which is the conservative update variant of the count-min sketch and
+   * reduces the over estimation. Counters saturate at {@value #MAX_COUNT}.
+   */
+  void add(int hash, long count) {
+    int min = frequency(hash);
+    if (min == MAX_COUNT || count <= 0) {
+      return;
+    }
+    int newCount = (int) Math.min(MAX_COUNT, min + count);
+    for (int i = 0; i < SEEDS.length; i++) {
+      long h = mix(hash, i);
+      int c = (int) (table[indexOf(h)] >>> offsetOf(h)) & MAX_COUNT;
+      if (c < newCount) {
+        table[indexOf(h)] += (long) (newCount - c) << offsetOf(h);
+      }
+    }
+    additions += newCount - min;
+    if (additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Halve all counters.
+   */
+  private void reset() {
+    long[] tab = table;
+    for (int i = 0; i < tab.length; i++) {
+      tab[i] = (tab[i] >>> 1) & RESET_MASK;
+    }
+    additions = additions >>> 1;
+    resetCount++;
+  }
+
+  private int counter(int hash, int row) {
+    long h = mix(hash, row);
+    return (int) (table[indexOf(h)] >>> offsetOf(h)) & MAX_COUNT;
+  }
+
+  private static long mix(int hash, int row) {
+    long h = (hash + SEEDS[row]) * SEEDS[row];
+    return h + (h >>> 32);
+  }
+
+  private int indexOf(long mixed) {
+    return (int) mixed & tableMask;
+  }
+
+  /**
+   * Bit offset of the counter within the table element. Uses the upper bits of the
+   * mixed hash, which are independent of the table index.
+   */
+  private static int offsetOf(long mixed) {
+    return (int) (mixed >>> 60) << 2;
+  }
+
+  long getResetCount() {
+    return resetCount;
+  }
+
+  int getTableSize() {
+    return table.length;
+  }
+
+}
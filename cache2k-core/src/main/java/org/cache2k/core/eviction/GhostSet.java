@@ -0,0 +1,229 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Compact set of hash codes of evicted entries, for the Clock-Pro history. Only the hash
+ * codes are stored in an open addressing table with linear probing plus a ring in insertion
+ * order, to remove the oldest ghost when the maximum size is reached. A ghost needs about
+ * 12 bytes, compared to an object with hash chain and list pointers which needs about 40
+ * bytes, so the history can scale with the cache size.
+ *
+ * <p>Hash codes are used as fingerprints, a colliding hash code counts as ghost hit.
+ * Zero marks an empty slot, so a zero hash code is stored as one.
+ *
+ * <p>Not thread safe, accessed within the eviction lock.
+ *
+ * @author Jens Wilke
+ */
+final class GhostSet {
+
+  static final int LOAD_PERCENT = 50;
+  private static final int INDEX_MIX = 0x9E3779B9;
+  private static final int MINIMUM_SIZE = 4;
+
+  private int[] table;
+  private int tableShift;
+  private int[] ring;
+  private int ringHead;
+  private int size;
+  private long maxSize;
+
+  GhostSet(long maxSize) {
+    this.maxSize = maxSize;
+    table = new int[MINIMUM_SIZE * 2];
+    tableShift = Integer.numberOfLeadingZeros(table.length - 1);
+    ring = new int[MINIMUM_SIZE];
+  }
+
+  /**
+   * Allocate the table and ring for the expected number of ghosts.
+   * Only effective when empty.
+   */
+  void presize(long expectedSize) {
+    if (size > 0 || expectedSize <= ring.length) {
+      return;
+    }
+    int n = ringLengthFor(expectedSize);
+    ring = new int[n];
+    resizeTable(tableLengthFor(n));
+  }
+
+  private static int ringLengthFor(long expectedSize) {
+    long n = Math.min(expectedSize, 1 << 29);
+    return Math.max(MINIMUM_SIZE, Integer.highestOneBit((int) n - 1) << 1);
+  }
+
+  private static int tableLengthFor(int count) {
+    long n = (long) count * 100 / LOAD_PERCENT + 1;
+    return Integer.highestOneBit((int) Math.min(n, 1 << 30) - 1) << 1;
+  }
+
+  private static int fingerprint(int hash) {
+    return hash == 0 ? 1 : hash;
+  }
+
+  private int slotIndex(int fingerprint) {
+    return (fingerprint * INDEX_MIX) >>> tableShift;
+  }
+
+  boolean contains(int hash) {
+    int fp = fingerprint(hash);
+    int[] tab = table;
+    int mask = tab.length - 1;
+    int idx = slotIndex(fp);
+    int v;
+    while ((v = tab[idx]) != 0) {
+      if (v == fp) {
+        return true;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Add the hash code, if not yet present. Removes the oldest ghost, if the maximum
+   * size is reached.
+   *
+   * @return {@code true} if the oldest ghost was removed
+   */
+  boolean add(int hash) {
+    if (contains(hash)) {
+      return false;
+    }
+    boolean removed = trim(maxSize - 1);
+    if (size == ring.length) {
+      expandRing();
+    }
+    int fp = fingerprint(hash);
+    ring[(ringHead + size) & (ring.length - 1)] = fp;
+    size++;
+    if ((long) size * 100 > (long) table.length * LOAD_PERCENT) {
+      resizeTable(table.length * 2);
+    }
+    insertIntoTable(fp);
+    return removed;
+  }
+
+  /**
+   * Set a new maximum size and remove the oldest ghosts exceeding it.
+   */
+  void setMaxSize(long maxSize) {
+    this.maxSize = maxSize;
+    trim(maxSize);
+  }
+
+  private boolean trim(long limit) {
+    boolean removed = false;
+    while (size > 0 && size > limit) {
+      removed = true;
+      int fp = ring[ringHead];
+      ring[ringHead] = 0;
+      ringHead = (ringHead + 1) & (ring.length - 1);
+      size--;
+      removeFromTable(fp);
+    }
+    return removed;
+  }
+
+  private void expandRing() {
+    int[] newRing = new int[ring.length * 2];
+    for (int i = 0; i < size; i++) {
+      newRing[i] = ring[(ringHead + i) & (ring.length - 1)];
+    }
+    ring = newRing;
+    ringHead = 0;
+  }
+
+  private void resizeTable(int length) {
+    int[] old = table;
+    table = new int[length];
+    tableShift = Integer.numberOfLeadingZeros(length - 1);
+    for (int fp : old) {
+      if (fp != 0) {
+        insertIntoTable(fp);
+      }
+    }
+  }
+
+  private void insertIntoTable(int fp) {
+    int[] tab = table;
+    int mask = tab.length - 1;
+    int idx = slotIndex(fp);
+    while (tab[idx] != 0) {
+      idx = (idx + 1) & mask;
+    }
+    tab[idx] = fp;
+  }
+
+  /**
+   * Remove and shift following entries of the probe sequence backwards.
+   */
+  private void removeFromTable(int fp) {
+    int[] tab = table;
+    int mask = tab.length - 1;
+    int idx = slotIndex(fp);
+    while (tab[idx] != fp) {
+      idx = (idx + 1) & mask;
+    }
+    int gap = idx;
+    int j = idx;
+    for (;;) {
+      j = (j + 1) & mask;
+      int v = tab[j];
+      if (v == 0) {
+        break;
+      }
+      int home = slotIndex(v);
+      boolean stays = gap <= j ? (gap < home && home <= j) : (gap < home || home <= j);
+      if (!stays) {
+        tab[gap] = v;
+        gap = j;
+      }
+    }
+    tab[gap] = 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  long getMaxSize() {
+    return maxSize;
+  }
+
+  /** For testing */
+  int getTableLength() {
+    return table.length;
+  }
+
+  int countInTable() {
+    int count = 0;
+    for (int fp : table) {
+      if (fp != 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+}
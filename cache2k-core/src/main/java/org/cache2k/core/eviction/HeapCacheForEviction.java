@@ -20,7 +20,9 @@ package org.cache2k.core.eviction;
  * #L%
  */
 
+import org.cache2k.annotation.Nullable;
 import org.cache2k.core.Entry;
+import org.cache2k.core.StripedEntryLocking;
 
 /**
  * Interface for the eviction to the heap cache hash. By separating this, the
@@ -42,4 +44,10 @@ public interface HeapCacheForEviction<K, V> {
    */
   void removeEntryForEviction(Entry<K, V> e);
 
+  /**
+   * Locking of entries, if entries are not locked by synchronizing on the entry object.
+   * Needed to check the entry state before eviction.
+   */
+  @Nullable StripedEntryLocking getStripedEntryLocking();
+
 }
@@ -0,0 +1,367 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+import org.cache2k.core.IntegrityState;
+import org.cache2k.operation.Weigher;
+
+/**
+ * Eviction with a frequency sketch as admission filter, inspired by W-TinyLFU.
+ *
+ * <p>New entries are inserted in a small window clock. When eviction is needed, the
+ * candidate leaving the window competes against the victim of the main area. The
+ * candidate enters the main area only if its estimated access frequency is higher than
+ * the frequency of the victim, otherwise it is evicted. One time accesses, for example
+ * of a scan, pass through the window and cannot displace the frequently used entries.
+ * The window keeps the policy responsive to bursts of recently inserted entries.
+ *
+ * <p>The main area is segmented into a probation and a protected clock. Admitted entries
+ * start in probation. An entry with hits is moved to the protected clock when the
+ * probation hand passes. If the protected clock exceeds its maximum, it demotes an entry
+ * without hits back to probation. Victims are taken from probation only.
+ *
+ * <p>Hits are recorded lock free in {@link Entry#hitCnt} and transferred to the frequency
+ * sketch when a clock hand passes the entry. Inserts are recorded in the sketch
+ * directly, so the sketch also remembers evicted entries, which makes ghost entries
+ * unnecessary. The sketch is aged by halving all counters periodically.
+ *
+ * <p>Entries in the main area are flagged as hot, see {@link Entry#isHot()}, and entries
+ * in the protected clock additionally as protected, see {@link Entry#isProtected()}.
+ *
+ * <p>The algorithm is explained in <a href="https://arxiv.org/abs/1512.00727">TinyLFU:
+ * A Highly Efficient Cache Admission Policy</a>.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings({"WeakerAccess", "rawtypes"})
+public class TinyLfuEviction extends AbstractEviction {
+
+  static final int WINDOW_PERCENTAGE = 1;
+  static final int PROTECTED_PERCENTAGE = 80;
+
+  /**
+   * Limit the sketch size derived from the capacity, since the capacity may be unbounded.
+   * The sketch grows when the limit is reached or via {@link #presize(long)}.
+   */
+  static final long MAX_INITIAL_SKETCH_SIZE = 1 << 16;
+
+  private final FrequencySketch sketch;
+
+  private int windowSize;
+  private int probationSize;
+  private int protectedSize;
+  private long windowMax = Long.MAX_VALUE;
+  private long mainMax = Long.MAX_VALUE;
+  private long protectedMax = Long.MAX_VALUE;
+
+  private Entry handWindow;
+  private Entry handProbation;
+  private Entry handProtected;
+
+  private long admittedCnt;
+  private long rejectedCnt;
+  private long scanCnt;
+
+  public TinyLfuEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                         long maxSize, Weigher weigher, long maxWeight,
+                         boolean noChunking, int writeBufferSize) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking, writeBufferSize);
+    sketch = new FrequencySketch(Math.min(MAX_INITIAL_SKETCH_SIZE, Math.max(0, maxSize)));
+  }
+
+  /**
+   * Allocate the sketch for the expected number of entries in this eviction segment.
+   */
+  public void presize(long expectedSize) {
+    synchronized (lock) {
+      drainWriteBuffer();
+      sketch.ensureCapacity(expectedSize);
+    }
+  }
+
+  /** For testing */
+  FrequencySketch getSketch() {
+    return sketch;
+  }
+
+  /**
+   * Size of the clocks is determined when the capacity limit is reached.
+   * Enlarge the sketch, in case a weigher is used and the entry count is higher
+   * than expected.
+   */
+  @Override
+  protected void updateHotMax() {
+    long size = getSize();
+    windowMax = Math.max(1, size * WINDOW_PERCENTAGE / 100);
+    mainMax = Math.max(1, size - windowMax);
+    protectedMax = mainMax * PROTECTED_PERCENTAGE / 100;
+    sketch.ensureCapacity(size);
+  }
+
+  @Override
+  protected long getSize() {
+    return windowSize + getMainSize();
+  }
+
+  private long getMainSize() {
+    return probationSize + protectedSize;
+  }
+
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    sketch.add(e.hashCode, 1);
+    e.setScanRound(idleScanRound);
+    windowSize++;
+    handWindow = Entry.insertIntoTailCyclicList(handWindow, e);
+  }
+
+  @Override
+  protected long removeAllFromReplacementList() {
+    long count = removeAll(handWindow) + removeAll(handProbation) + removeAll(handProtected);
+    handWindow = handProbation = handProtected = null;
+    windowSize = probationSize = protectedSize = 0;
+    return count;
+  }
+
+  private static long removeAll(Entry head) {
+    long count = 0;
+    Entry e = head;
+    if (e != null) {
+      do {
+        Entry next = e.prev;
+        e.removedFromList();
+        count++;
+        e = next;
+      } while (e != head);
+    }
+    return count;
+  }
+
+  @Override
+  protected void removeFromReplacementListOnEvict(Entry e) {
+    removeFromReplacementList(e);
+  }
+
+  @Override
+  protected void removeFromReplacementList(Entry e) {
+    if (!e.isHot()) {
+      handWindow = Entry.removeFromCyclicList(handWindow, e);
+      windowSize--;
+    } else if (e.isProtected()) {
+      handProtected = Entry.removeFromCyclicList(handProtected, e);
+      protectedSize--;
+    } else {
+      handProbation = Entry.removeFromCyclicList(handProbation, e);
+      probationSize--;
+    }
+  }
+
+  /**
+   * Move window entries to the main area while it has space, which happens when the
+   * capacity limit is reached for the first time or after entries were removed. The last
+   * candidate from the window either replaces the main victim or is evicted.
+   * Entries of an eviction chunk are still counted in the clock sizes, so the main area
+   * is only filled up to its maximum when the window would still exceed its maximum.
+   *
+   * <p>A rejected victim stays at the probation hand and competes with the next candidate.
+   */
+  @Override
+  protected Entry findEvictionCandidate() {
+    while (handWindow != null && (windowSize > windowMax || getMainSize() == 0)) {
+      Entry candidate = runHandWindow(windowSize);
+      long mainSize = getMainSize();
+      if (mainSize == 0 || (mainSize < mainMax && windowSize - 1 > windowMax)) {
+        moveToProbation(candidate);
+        continue;
+      }
+      Entry victim = findVictim();
+      if (sketch.frequency(candidate.hashCode) > sketch.frequency(victim.hashCode)) {
+        admittedCnt++;
+        handProbation = victim.next;
+        moveToProbation(candidate);
+        return victim;
+      }
+      rejectedCnt++;
+      return candidate;
+    }
+    Entry victim = findVictim();
+    handProbation = victim.next;
+    return victim;
+  }
+
+  private void moveToProbation(Entry e) {
+    handWindow = Entry.removeFromCyclicList(handWindow, e);
+    windowSize--;
+    e.setHot(true);
+    probationSize++;
+    handProbation = Entry.insertIntoTailCyclicList(handProbation, e);
+  }
+
+  /**
+   * Entry has hits, record them in the sketch, reset hit counter and mark
+   */
+  private void stepOver(Entry e) {
+    sketch.add(e.hashCode, e.hitCnt);
+    e.hitCnt = 0;
+    e.setScanRound(idleScanRound);
+  }
+
+  /**
+   * Advance the window hand, skipping entries with hits. Returns the first entry without
+   * hits or the last scanned entry, if the scan limit is reached. The hand is moved past
+   * the returned entry.
+   */
+  private Entry runHandWindow(int maxScan) {
+    Entry hand = handWindow;
+    int scanCount = 1;
+    while (hand.hitCnt > 0 && scanCount <= maxScan) {
+      stepOver(hand);
+      hand = hand.next;
+      scanCount++;
+    }
+    scanCnt += scanCount;
+    handWindow = hand.next;
+    return hand;
+  }
+
+  /**
+   * Find the next entry without hits at the probation hand. Entries with hits are
+   * moved to the protected clock. The victim stays at the hand position.
+   */
+  private Entry findVictim() {
+    int maxScan = probationSize + protectedSize;
+    int scanCount = 0;
+    while (scanCount++ < maxScan) {
+      if (handProbation == null) {
+        demote();
+        continue;
+      }
+      Entry e = handProbation;
+      if (e.hitCnt == 0) {
+        break;
+      }
+      stepOver(e);
+      handProbation = Entry.removeFromCyclicList(handProbation, e);
+      probationSize--;
+      e.setProtected(true);
+      protectedSize++;
+      handProtected = Entry.insertIntoTailCyclicList(handProtected, e);
+      if (protectedSize > protectedMax) {
+        demote();
+      }
+    }
+    scanCnt += scanCount;
+    if (handProbation == null) {
+      demote();
+    }
+    return handProbation;
+  }
+
+  /**
+   * Move the next entry without hits from the protected clock to probation.
+   */
+  private void demote() {
+    Entry e = handProtected;
+    int scanCount = 1;
+    while (e.hitCnt > 0 && scanCount < protectedSize) {
+      stepOver(e);
+      e = e.next;
+      scanCount++;
+    }
+    scanCnt += scanCount;
+    handProtected = Entry.removeFromCyclicList(e.next, e);
+    protectedSize--;
+    e.setProtected(false);
+    probationSize++;
+    handProbation = Entry.insertIntoTailCyclicList(handProbation, e);
+  }
+
+  /**
+   * Idle scanning is done on the biggest clock.
+   */
+  @Override
+  protected Entry findIdleCandidate(int maxScan) {
+    Entry e;
+    if (protectedSize >= probationSize && protectedSize >= windowSize && protectedSize > 0) {
+      e = scanForIdle(handProtected, maxScan);
+      handProtected = e.next;
+    } else if (probationSize >= windowSize && probationSize > 0) {
+      e = scanForIdle(handProbation, maxScan);
+      handProbation = e.next;
+    } else if (windowSize > 0) {
+      e = scanForIdle(handWindow, maxScan);
+      handWindow = e.next;
+    } else {
+      return null;
+    }
+    return e.hitCnt == 0 ? e : null;
+  }
+
+  private Entry scanForIdle(Entry hand, int maxScan) {
+    int scanCount = 1;
+    while (hand.hitCnt > 0 && scanCount < maxScan) {
+      stepOver(hand);
+      hand = hand.next;
+      scanCount++;
+    }
+    scanCnt += scanCount;
+    return hand;
+  }
+
+  @Override
+  protected long getScanCount() {
+    return scanCnt;
+  }
+
+  @Override
+  public void checkIntegrity(IntegrityState integrityState) {
+    integrityState
+      .check("checkCyclicListIntegrity(handWindow)", Entry.checkCyclicListIntegrity(handWindow))
+      .check("checkCyclicListIntegrity(handProbation)",
+        Entry.checkCyclicListIntegrity(handProbation))
+      .check("checkCyclicListIntegrity(handProtected)",
+        Entry.checkCyclicListIntegrity(handProtected))
+      .checkEquals("getCyclicListEntryCount(handWindow) == windowSize",
+        Entry.getCyclicListEntryCount(handWindow), windowSize)
+      .checkEquals("getCyclicListEntryCount(handProbation) == probationSize",
+        Entry.getCyclicListEntryCount(handProbation), probationSize)
+      .checkEquals("getCyclicListEntryCount(handProtected) == protectedSize",
+        Entry.getCyclicListEntryCount(handProtected), protectedSize);
+  }
+
+  @Override
+  public String toString() {
+    synchronized (lock) {
+      drainWriteBuffer();
+      return super.toString() +
+        ", windowSize=" + windowSize +
+        ", probationSize=" + probationSize +
+        ", protectedSize=" + protectedSize +
+        ", windowMaxSize=" + windowMax +
+        ", protectedMaxSize=" + protectedMax +
+        ", admittedCnt=" + admittedCnt +
+        ", rejectedCnt=" + rejectedCnt +
+        ", sketchResetCnt=" + sketch.getResetCount();
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring buffer for entries submitted to the eviction by multiple threads.
+ * Only one thread at a time consumes entries, which is the holder of the eviction lock.
+ * A producer claims a slot by incrementing the tail and then publishes the entry in the
+ * slot. The consumer stops at a slot that is claimed but not yet published,
+ * so the entries are consumed in the order of the claims.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("rawtypes")
+final class WriteBuffer {
+
+  private final AtomicReferenceArray<Entry> slots;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+
+  /** Only written by the consumer */
+  private volatile long head;
+
+  /**
+   * @param size buffer size, rounded up to the next power of two
+   */
+  WriteBuffer(int size) {
+    int n = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+    slots = new AtomicReferenceArray<>(n);
+    mask = n - 1;
+  }
+
+  /**
+   * Add the entry to the buffer.
+   *
+   * @return {@code false}, if the buffer is full
+   */
+  boolean offer(Entry e) {
+    long t;
+    do {
+      t = tail.get();
+      if (t - head > mask) {
+        return false;
+      }
+    } while (!tail.compareAndSet(t, t + 1));
+    slots.lazySet((int) t & mask, e);
+    return true;
+  }
+
+  /**
+   * Next published entry or {@code null} if the buffer is empty or the next slot is
+   * not yet published. Only called by the consumer.
+   */
+  Entry poll() {
+    long h = head;
+    int idx = (int) h & mask;
+    Entry e = slots.get(idx);
+    if (e == null) {
+      return null;
+    }
+    slots.lazySet(idx, null);
+    head = h + 1;
+    return e;
+  }
+
+  /**
+   * True if all claimed slots are consumed.
+   */
+  boolean isEmpty() {
+    return head == tail.get();
+  }
+
+  /**
+   * Number of claimed slots not yet consumed. Not exact when called concurrently.
+   */
+  long size() {
+    return tail.get() - head;
+  }
+
+}
@@ -0,0 +1,235 @@
+package org.cache2k.core.offheap;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.CacheException;
+import org.cache2k.core.Entry;
+import org.cache2k.core.ExceptionWrapper;
+import org.cache2k.operation.Weigher;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stores values off heap within the slabs of a {@link SlabAllocator}. The keys and the
+ * entry objects stay on the heap. The entry references the value via an
+ * {@link OffHeapValue}.
+ *
+ * <p>The eviction limit is the maximum weight in bytes. The weight of an entry is the
+ * chunk size of its serialized value plus a reserve for fragmentation, see
+ * {@link OffHeapValue#getWeight()}. The memory reserved off heap does not exceed the
+ * maximum weight. This holds after a clear as well, since the allocators are kept and
+ * the chunks of the cleared values are reused once concurrent readers are finished.
+ *
+ * <p>The memory is split into multiple allocators, one per CPU, as long as each
+ * allocator gets at least one slab. A thread allocates from the allocator selected
+ * by its hash code and uses the others only when it is exhausted.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class OffHeapStore<V> {
+
+  public static final int DEFAULT_SLAB_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Weigher used by the cache when values are stored off heap. The weight of
+   * a value that is not stored off heap, e.g. an exception, is one.
+   */
+  public static final Weigher<Object, Object> WEIGHER = new Weigher<Object, Object>() {
+    @Override
+    public int weigh(Object key, Object value) {
+      return 1;
+    }
+  };
+
+  private final ValueSerializer<V> serializer;
+  private final int slabSize;
+  private final long maximumBytes;
+  private volatile SlabAllocator[] allocators;
+
+  /**
+   * Entries dropped by a clear while in processing, see {@link #releaseCleared(Entry)}.
+   * Guarded by itself.
+   */
+  private final List<Entry<?, ?>> clearedInProcessing = new ArrayList<>();
+  private volatile int clearedInProcessingCount;
+
+  /**
+   * @param slabSize maximum size of a slab in bytes
+   * @param maximumBytes limit of the memory reserved off heap
+   */
+  public OffHeapStore(ValueSerializer<V> serializer, int slabSize, long maximumBytes) {
+    this.serializer = serializer;
+    this.slabSize = slabSize;
+    this.maximumBytes = maximumBytes;
+    allocators = createAllocators();
+  }
+
+  private SlabAllocator[] createAllocators() {
+    int count = Integer.highestOneBit(
+      (int) Math.min(Runtime.getRuntime().availableProcessors(),
+        Math.max(1, maximumBytes / slabSize)));
+    long bytesPerAllocator = maximumBytes / count;
+    int allocatorSlabSize = (int) Math.min(slabSize, bytesPerAllocator);
+    SlabAllocator[] array = new SlabAllocator[count];
+    for (int i = 0; i < count; i++) {
+      array[i] = new SlabAllocator(allocatorSlabSize, bytesPerAllocator);
+    }
+    return array;
+  }
+
+  /**
+   * Serialize the value and copy it off heap.
+   *
+   * @return the wrapper to store in the entry, or the unchanged parameter
+   *         for {@code null} or an exception
+   * @throws CacheException if the off heap memory is exhausted
+   * @throws IllegalArgumentException if the value is larger than a slab
+   */
+  public Object store(Entry<?, V> e, Object valueOrException) {
+    if (valueOrException == null || valueOrException instanceof ExceptionWrapper) {
+      return valueOrException;
+    }
+    if (clearedInProcessingCount > 0) {
+      releaseClearedAfterProcessing();
+    }
+    byte[] data = serializer.serialize((V) valueOrException);
+    SlabAllocator[] array = allocators;
+    int mask = array.length - 1;
+    int start = Thread.currentThread().hashCode() & mask;
+    for (int i = 0; i < array.length; i++) {
+      SlabAllocator a = array[(start + i) & mask];
+      long handle = a.allocate(data.length);
+      if (handle != SlabAllocator.EXHAUSTED) {
+        a.write(handle, data);
+        return new OffHeapValue<V>(a, serializer, e, handle, data.length);
+      }
+    }
+    throw new CacheException(
+      "Off heap memory limit of " + maximumBytes + " bytes reached, " +
+        "value of " + data.length + " bytes cannot be stored");
+  }
+
+  /**
+   * Free the off heap memory, if the value or wrapper of an entry is an
+   * {@link OffHeapValue}. Called after the value was replaced or the entry was removed.
+   */
+  public static void release(Object valueOrWrapper) {
+    if (valueOrWrapper instanceof OffHeapValue) {
+      ((OffHeapValue<?>) valueOrWrapper).release();
+    }
+  }
+
+  /**
+   * Release the value of an entry dropped by a clear. The clear does not hold the entry
+   * locks. If the entry is in processing, the operation may still read the value it has
+   * just set, so the value is released on a later store after the processing is done.
+   * The value is read before the processing state, in case the operation sets a new
+   * value meanwhile, which it releases itself, since the entry is not in the hash any more.
+   */
+  public void releaseCleared(Entry<?, ?> e) {
+    Object v = e.getValueOrWrapper();
+    if (!e.isProcessing()) {
+      release(v);
+      return;
+    }
+    synchronized (clearedInProcessing) {
+      clearedInProcessing.add(e);
+      clearedInProcessingCount = clearedInProcessing.size();
+    }
+  }
+
+  /**
+   * Release the values of entries dropped by a clear while in processing, if the
+   * processing is done. Called on store and at the start of the next clear.
+   */
+  public void releaseClearedAfterProcessing() {
+    synchronized (clearedInProcessing) {
+      Iterator<Entry<?, ?>> it = clearedInProcessing.iterator();
+      while (it.hasNext()) {
+        Entry<?, ?> e = it.next();
+        Object v = e.getValueOrWrapper();
+        if (!e.isProcessing()) {
+          release(v);
+          it.remove();
+        }
+      }
+      clearedInProcessingCount = clearedInProcessing.size();
+    }
+  }
+
+  /**
+   * Weight of the entry value, without reading it.
+   */
+  public static int weigh(Object valueOrWrapper) {
+    if (valueOrWrapper instanceof OffHeapValue) {
+      return ((OffHeapValue<?>) valueOrWrapper).getWeight();
+    }
+    return 1;
+  }
+
+  /**
+   * Drop the slabs after the cache is closed, so they are garbage collected even if
+   * the closed cache is still referenced. Concurrent readers still reference the
+   * previous slabs. A clear does not start with new allocators, since the memory
+   * would be reserved twice until the old slabs are collected. Instead, the cache
+   * releases the value of every entry.
+   */
+  public void close() {
+    synchronized (clearedInProcessing) {
+      clearedInProcessing.clear();
+      clearedInProcessingCount = 0;
+    }
+    allocators = createAllocators();
+  }
+
+  /**
+   * Bytes allocated for values.
+   */
+  public long getAllocatedBytes() {
+    long sum = 0;
+    for (SlabAllocator a : allocators) {
+      sum += a.getAllocatedBytes();
+    }
+    return sum;
+  }
+
+  /**
+   * Bytes of memory reserved off heap.
+   */
+  public long getReservedBytes() {
+    long sum = 0;
+    for (SlabAllocator a : allocators) {
+      sum += a.getReservedBytes();
+    }
+    return sum;
+  }
+
+  /**
+   * Number of allocators the memory is split into.
+   */
+  public int getAllocatorCount() {
+    return allocators.length;
+  }
+
+}
@@ -0,0 +1,180 @@
+package org.cache2k.core.offheap;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+import org.cache2k.core.HeapCache;
+import org.cache2k.core.ValueWrapper;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Stored in the entry instead of the value, when the value is kept off heap.
+ * Holds the handle of the memory chunk with the serialized value.
+ *
+ * <p>The chunk is freed when the entry is updated, removed or evicted. Reads happen
+ * without the entry lock, so a reference count protects the chunk against being
+ * freed and reused while it is copied. The entry holds one reference, which is
+ * released via {@link #release()}. If a reader comes too late, the entry has a new
+ * value already, which is read instead. If the entry was removed, the reader gets
+ * {@link #FREED} and needs to start over.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class OffHeapValue<V> extends ValueWrapper<V> {
+
+  private static final AtomicIntegerFieldUpdater<OffHeapValue> REFERENCES =
+    AtomicIntegerFieldUpdater.newUpdater(OffHeapValue.class, "references");
+  private static final AtomicIntegerFieldUpdater<OffHeapValue> OWNED =
+    AtomicIntegerFieldUpdater.newUpdater(OffHeapValue.class, "owned");
+
+  /**
+   * Returned by {@link #readValueOrException()} if the entry was removed concurrently.
+   */
+  public static final Object FREED = new Object();
+
+  private final SlabAllocator allocator;
+  private final ValueSerializer<V> serializer;
+  private final Entry<?, V> entry;
+  private final long handle;
+  private final int length;
+  private volatile int references = 1;
+  private volatile int owned = 1;
+
+  OffHeapValue(SlabAllocator allocator, ValueSerializer<V> serializer,
+               Entry<?, V> entry, long handle, int length) {
+    this.allocator = allocator;
+    this.serializer = serializer;
+    this.entry = entry;
+    this.handle = handle;
+    this.length = length;
+  }
+
+  @Override
+  public V getValue() {
+    return HeapCache.returnValue(getValueOrException());
+  }
+
+  /**
+   * Copy the value from off heap memory and deserialize it. If the chunk was freed
+   * concurrently, return the current value of the entry instead or {@code null}
+   * if the entry was removed.
+   */
+  public Object getValueOrException() {
+    Object v = readValueOrException();
+    return v == FREED ? null : v;
+  }
+
+  /**
+   * Like {@link #getValueOrException()} but returns {@link #FREED} if the entry was
+   * removed while reading. A reader coming from a cache hit needs to start over
+   * with a new lookup, since the entry may have been replaced by another one.
+   */
+  public Object readValueOrException() {
+    OffHeapValue<V> v = this;
+    for (;;) {
+      if (v.acquire()) {
+        byte[] data = new byte[v.length];
+        try {
+          v.allocator.read(v.handle, data);
+        } finally {
+          v.releaseReference();
+        }
+        return v.serializer.deserialize(data);
+      }
+      Object current = entry.getValueOrWrapper();
+      if (current == v) {
+        return FREED;
+      }
+      if (!(current instanceof OffHeapValue)) {
+        return current;
+      }
+      v = (OffHeapValue<V>) current;
+    }
+  }
+
+  /**
+   * Hold a reference to the current value of the entry, so it is not freed until
+   * {@link #unpin()} is called. Used to read the value multiple times without the
+   * entry lock.
+   *
+   * @return the pinned value, or {@code null} if the entry was removed or holds no
+   *         value off heap any more
+   */
+  public OffHeapValue<V> pin() {
+    OffHeapValue<V> v = this;
+    for (;;) {
+      if (v.acquire()) {
+        return v;
+      }
+      Object current = entry.getValueOrWrapper();
+      if (current == v || !(current instanceof OffHeapValue)) {
+        return null;
+      }
+      v = (OffHeapValue<V>) current;
+    }
+  }
+
+  public void unpin() {
+    releaseReference();
+  }
+
+  /**
+   * Memory consumed off heap in bytes. Besides the chunk, one eighth is added as
+   * reserve for free chunks of other size classes and unused space at the end of
+   * slabs. Eviction keeps the allocated bytes below the maximum weight by this margin,
+   * so the reserved memory does not exceed the maximum weight.
+   */
+  public int getWeight() {
+    int chunkSize = SlabAllocator.chunkSize(length);
+    return chunkSize + (chunkSize >>> 3);
+  }
+
+  /**
+   * Release the reference of the entry. The chunk is freed after the last reader
+   * is finished. Multiple calls have no effect.
+   */
+  public void release() {
+    if (OWNED.compareAndSet(this, 1, 0)) {
+      releaseReference();
+    }
+  }
+
+  private boolean acquire() {
+    for (;;) {
+      int count = references;
+      if (count == 0) {
+        return false;
+      }
+      if (REFERENCES.compareAndSet(this, count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private void releaseReference() {
+    if (REFERENCES.decrementAndGet(this) == 0) {
+      allocator.free(handle, length);
+    }
+  }
+
+}
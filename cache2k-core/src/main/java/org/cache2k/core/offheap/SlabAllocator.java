@@ -0,0 +1,277 @@
+package org.cache2k.core.offheap;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates chunks of memory within direct byte buffers of a fixed size, called slabs.
+ * A chunk is addressed by a handle, which is the slab index in the upper and the offset
+ * within the slab in the lower 32 bits.
+ *
+ * <p>Chunk sizes are rounded up to four size classes per power of two, so at most 25% of
+ * a chunk is unused. Freed chunks are kept in a list per size class and are reused for
+ * the next allocation of the same class. New chunks are allocated sequentially within
+ * the last slab. Slabs are never returned, the memory is released when the allocator
+ * is no longer referenced.
+ *
+ * <p>The reserved memory, which is the size of all slabs, does not exceed the maximum
+ * given in the constructor. The remaining space at the end of a slab is split into free
+ * chunks, when the next slab is started. When no more slab can be reserved, a free chunk
+ * of a larger size class is split. If this is not possible either, the allocation fails
+ * with {@link #EXHAUSTED}. Free chunks are not merged.
+ *
+ * <p>Allocation and free are synchronized. Reading and writing chunks is done without
+ * locking. The caller needs to make sure that a chunk is not freed while it is
+ * read, see {@link OffHeapValue}. To reduce contention {@link OffHeapStore} uses
+ * multiple allocators.
+ *
+ * @author Jens Wilke
+ */
+public class SlabAllocator {
+
+  public static final int MINIMUM_CHUNK_SIZE = 16;
+
+  /**
+   * Returned by {@link #allocate(int)} if the maximum reserved memory is reached and no
+   * free chunk is large enough.
+   */
+  public static final long EXHAUSTED = -1;
+
+  private static final int SUB_CLASS_BITS = 2;
+  private static final int SUB_CLASS_COUNT = 1 << SUB_CLASS_BITS;
+  private static final int MINIMUM_CHUNK_SIZE_BITS = 4;
+  private static final int SIZE_CLASS_COUNT = 32 * SUB_CLASS_COUNT;
+
+  private final int slabSize;
+  private final long maximumReservedBytes;
+  private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+  private final long[][] freeLists = new long[SIZE_CLASS_COUNT][];
+  private final int[] freeCounts = new int[SIZE_CLASS_COUNT];
+  private int position;
+  private int limit;
+  private long allocatedBytes;
+  private long reservedBytes;
+
+  /**
+   * Allocator without a limit of the reserved memory.
+   *
+   * @param slabSize size of one slab in bytes, which is the maximum chunk size as well
+   */
+  public SlabAllocator(int slabSize) {
+    this(slabSize, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param slabSize size of one slab in bytes, which is the maximum chunk size as well
+   * @param maximumReservedBytes maximum size of all slabs. The last slab is smaller than
+   *                             the slab size, if needed to stay within the maximum.
+   */
+  public SlabAllocator(int slabSize, long maximumReservedBytes) {
+    if (slabSize < MINIMUM_CHUNK_SIZE) {
+      throw new IllegalArgumentException("slab size too small: " + slabSize);
+    }
+    this.slabSize = slabSize;
+    this.maximumReservedBytes = maximumReservedBytes;
+  }
+
+  /**
+   * Size of the chunk allocated for the requested length in bytes.
+   */
+  public static int chunkSize(int length) {
+    if (length <= MINIMUM_CHUNK_SIZE) {
+      return MINIMUM_CHUNK_SIZE;
+    }
+    int step = Integer.highestOneBit(length - 1) >>> SUB_CLASS_BITS;
+    return (length + step - 1) & -step;
+  }
+
+  static int sizeClass(int chunkSize) {
+    if (chunkSize == MINIMUM_CHUNK_SIZE) {
+      return 0;
+    }
+    int base = Integer.highestOneBit(chunkSize - 1);
+    int exponent = 31 - Integer.numberOfLeadingZeros(base);
+    int step = base >>> SUB_CLASS_BITS;
+    return (exponent - MINIMUM_CHUNK_SIZE_BITS) * SUB_CLASS_COUNT + (chunkSize - base) / step;
+  }
+
+  /**
+   * Chunk size of a size class, inverse of {@link #sizeClass(int)}.
+   */
+  static int classChunkSize(int sizeClass) {
+    if (sizeClass == 0) {
+      return MINIMUM_CHUNK_SIZE;
+    }
+    int base = 1 << (MINIMUM_CHUNK_SIZE_BITS + (sizeClass - 1) / SUB_CLASS_COUNT);
+    return base + ((sizeClass - 1) % SUB_CLASS_COUNT + 1) * (base >>> SUB_CLASS_BITS);
+  }
+
+  /**
+   * Allocate a chunk that can hold the requested number of bytes.
+   *
+   * @return handle of the chunk or {@link #EXHAUSTED}
+   * @throws IllegalArgumentException if the length exceeds the slab size
+   */
+  public synchronized long allocate(int length) {
+    int chunkSize = chunkSize(length);
+    if (chunkSize > slabSize || chunkSize < length) {
+      throw new IllegalArgumentException(
+        "Value of " + length + " bytes exceeds the slab size of " + slabSize + " bytes");
+    }
+    int sizeClass = sizeClass(chunkSize);
+    long handle;
+    if (freeCounts[sizeClass] > 0) {
+      handle = pop(sizeClass);
+    } else if (position + chunkSize <= limit || reserveSlab(chunkSize)) {
+      handle = ((long) (slabs.length - 1) << 32) | position;
+      position += chunkSize;
+    } else {
+      handle = splitLargerChunk(sizeClass, chunkSize);
+      if (handle == EXHAUSTED) {
+        return EXHAUSTED;
+      }
+    }
+    allocatedBytes += chunkSize;
+    return handle;
+  }
+
+  /**
+   * Start a new slab, if the maximum allows a slab that can hold the chunk. The
+   * rest of the current slab is kept as free chunks.
+   */
+  private boolean reserveSlab(int chunkSize) {
+    int size = (int) Math.min(slabSize, maximumReservedBytes - reservedBytes);
+    if (size < chunkSize) {
+      return false;
+    }
+    if (slabs.length > 0) {
+      freeRange(((long) (slabs.length - 1) << 32) | position, limit - position);
+    }
+    ByteBuffer[] current = slabs;
+    ByteBuffer[] extended = new ByteBuffer[current.length + 1];
+    System.arraycopy(current, 0, extended, 0, current.length);
+    extended[current.length] = ByteBuffer.allocateDirect(size);
+    slabs = extended;
+    reservedBytes += size;
+    position = 0;
+    limit = size;
+    return true;
+  }
+
+  /**
+   * Take a free chunk of the next larger size class available and keep the rest as
+   * free chunks.
+   */
+  private long splitLargerChunk(int sizeClass, int chunkSize) {
+    for (int i = sizeClass + 1; i < SIZE_CLASS_COUNT; i++) {
+      if (freeCounts[i] > 0) {
+        long handle = pop(i);
+        freeRange(handle + chunkSize, classChunkSize(i) - chunkSize);
+        return handle;
+      }
+    }
+    return EXHAUSTED;
+  }
+
+  /**
+   * Split the range into chunks as large as possible and add them to the free lists.
+   * A rest below the minimum chunk size is lost.
+   */
+  private void freeRange(long handle, int length) {
+    while (length >= MINIMUM_CHUNK_SIZE) {
+      int sizeClass = sizeClass(chunkSize(length));
+      int chunkSize = classChunkSize(sizeClass);
+      if (chunkSize > length) {
+        chunkSize = classChunkSize(--sizeClass);
+      }
+      push(sizeClass, handle);
+      handle += chunkSize;
+      length -= chunkSize;
+    }
+  }
+
+  private long pop(int sizeClass) {
+    int count = --freeCounts[sizeClass];
+    return freeLists[sizeClass][count];
+  }
+
+  private void push(int sizeClass, long handle) {
+    long[] list = freeLists[sizeClass];
+    int count = freeCounts[sizeClass];
+    if (list == null || count == list.length) {
+      long[] extended = new long[list == null ? 16 : list.length * 2];
+      if (list != null) {
+        System.arraycopy(list, 0, extended, 0, count);
+      }
+      freeLists[sizeClass] = list = extended;
+    }
+    list[count] = handle;
+    freeCounts[sizeClass] = count + 1;
+  }
+
+  /**
+   * Return a chunk for reuse.
+   *
+   * @param length the length requested on allocation
+   */
+  public synchronized void free(long handle, int length) {
+    int chunkSize = chunkSize(length);
+    allocatedBytes -= chunkSize;
+    push(sizeClass(chunkSize), handle);
+  }
+
+  public void write(long handle, byte[] data) {
+    ByteBuffer buffer = slabs[(int) (handle >>> 32)].duplicate();
+    buffer.position((int) handle);
+    buffer.put(data);
+  }
+
+  public void read(long handle, byte[] target) {
+    ByteBuffer buffer = slabs[(int) (handle >>> 32)].duplicate();
+    buffer.position((int) handle);
+    buffer.get(target);
+  }
+
+  /**
+   * Bytes of all allocated chunks.
+   */
+  public synchronized long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Bytes of all slabs, which is the memory used off heap.
+   */
+  public synchronized long getReservedBytes() {
+    return reservedBytes;
+  }
+
+  public long getMaximumReservedBytes() {
+    return maximumReservedBytes;
+  }
+
+  public int getSlabSize() {
+    return slabSize;
+  }
+
+}
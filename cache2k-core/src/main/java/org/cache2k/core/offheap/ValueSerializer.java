@@ -0,0 +1,71 @@
+package org.cache2k.core.offheap;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Converts values to bytes and back, for storing them off heap.
+ *
+ * @author Jens Wilke
+ * @see org.cache2k.core.api.InternalConfig.Builder#offHeap(ValueSerializer)
+ */
+public interface ValueSerializer<V> {
+
+  /**
+   * Uses Java serialization, the values need to implement {@link java.io.Serializable}.
+   * Works for every serializable value, but a serializer specific to the value type
+   * is more compact and faster.
+   */
+  ValueSerializer<Object> JAVA = new ValueSerializer<Object>() {
+    @Override
+    public byte[] serialize(Object value) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+        out.writeObject(value);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      return bos.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] data) {
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+        return in.readObject();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      } catch (ClassNotFoundException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+  };
+
+  byte[] serialize(V value);
+
+  V deserialize(byte[] data);
+
+}
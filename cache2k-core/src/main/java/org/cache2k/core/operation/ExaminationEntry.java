@@ -21,6 +21,7 @@ package org.cache2k.core.operation;
  */
 
 import org.cache2k.core.AccessWrapper;
+import org.cache2k.core.offheap.OffHeapValue;
 import org.cache2k.processor.MutableCacheEntry;
 
 /**
@@ -50,6 +51,9 @@ public interface ExaminationEntry<K, V> {
     if (v instanceof AccessWrapper) {
       return ((AccessWrapper<?>) v).getValueNoTouch();
     }
+    if (v instanceof OffHeapValue) {
+      return ((OffHeapValue<?>) v).getValueOrException();
+    }
     return v;
   }
 
@@ -25,6 +25,7 @@ import org.cache2k.core.api.InternalCacheCloseContext;
 import org.cache2k.operation.TimeReference;
 import org.cache2k.operation.Scheduler;
 
+import java.util.Arrays;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -52,6 +53,11 @@ public class DefaultTimer implements Timer {
    * common, we cover these on the first level.
    */
   public static final int DEFAULT_SLOTS_PER_WHEEL = 921;
+  /**
+   * Maximum number of tasks taken from the timer structure within one lock.
+   * If more tasks are due, full chunks are handed to the executor and run in parallel.
+   */
+  static final int EXECUTION_CHUNK_SIZE = 128;
 
   private final Lock lock = new ReentrantLock();
   private final TimeReference clock;
@@ -62,6 +68,10 @@ public class DefaultTimer implements Timer {
    */
   private final long lagTicks;
   private long nextScheduled = Long.MAX_VALUE;
+  /**
+   * Buffer for the tasks removed in {@link #timeReachedEvent(long)}.
+   */
+  private TimerTask[] dueTasks = new TimerTask[EXECUTION_CHUNK_SIZE];
 
   private final Runnable timerAction = new Runnable() {
     @Override
@@ -78,8 +88,13 @@ public class DefaultTimer implements Timer {
     this(clock, scheduler, lagTicks, DEFAULT_SLOTS_PER_WHEEL);
   }
 
-  public DefaultTimer(TimeReference c, Scheduler scheduler, long lagTicks, int steps) {
-    structure = new TimerWheels(c.ticks() + 1, lagTicks + 1, steps);
+  /**
+   * @param slotsPerLevel slot count of the timer wheels, starting with the first level.
+   *                      The last value is used for all higher levels.
+   */
+  public DefaultTimer(TimeReference c, Scheduler scheduler, long lagTicks,
+                      int... slotsPerLevel) {
+    structure = new TimerWheels(c.ticks() + 1, lagTicks + 1, slotsPerLevel);
     this.lagTicks = lagTicks;
     this.clock = c;
     this.scheduler = scheduler;
@@ -91,12 +106,7 @@ public class DefaultTimer implements Timer {
    */
   @Override
   public void schedule(TimerTask task, long time) {
-    if (time < 0) {
-      throw new IllegalArgumentException("Illegal execution time.");
-    }
-    if (!task.isUnscheduled()) {
-      throw new IllegalStateException("scheduled already");
-    }
+    checkSchedule(task, time);
     if (time == 0) {
       executeImmediately(task);
       return;
@@ -108,10 +118,59 @@ public class DefaultTimer implements Timer {
         rescheduleEventually(slotTime);
         return;
       }
-      executeImmediately(task);
+      task.markForImmediateExecution();
     } finally {
       lock.unlock();
     }
+    scheduler.execute(task);
+  }
+
+  /**
+   * Schedule all tasks within one lock. Tasks that need to run immediately are
+   * passed to the executor together, after the lock is released.
+   */
+  @Override
+  public void schedule(TimerTask[] tasks, long[] times, int count) {
+    for (int i = 0; i < count; i++) {
+      checkSchedule(tasks[i], times[i]);
+    }
+    TimerTask[] immediate = null;
+    int immediateCount = 0;
+    long earliestSlotTime = Long.MAX_VALUE;
+    lock.lock();
+    try {
+      for (int i = 0; i < count; i++) {
+        TimerTask task = tasks[i];
+        long time = times[i];
+        long slotTime = time == 0 ? 0 : structure.schedule(task, time);
+        if (slotTime != 0) {
+          earliestSlotTime = Math.min(earliestSlotTime, slotTime);
+          continue;
+        }
+        if (immediate == null) {
+          immediate = new TimerTask[count - i];
+        }
+        task.markForImmediateExecution();
+        immediate[immediateCount++] = task;
+      }
+      if (earliestSlotTime != Long.MAX_VALUE) {
+        rescheduleEventually(earliestSlotTime);
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (immediateCount > 0) {
+      scheduler.execute(new TaskChunk(immediate, immediateCount));
+    }
+  }
+
+  private static void checkSchedule(TimerTask task, long time) {
+    if (time < 0) {
+      throw new IllegalArgumentException("Illegal execution time.");
+    }
+    if (!task.isUnscheduled()) {
+      throw new IllegalStateException("scheduled already");
+    }
   }
 
   /**
@@ -120,10 +179,9 @@ public class DefaultTimer implements Timer {
    * Alternatively, we could add it to wheel for the next timeslot to execute, which
    * would mean further delay, but is within lag limits.
    *
-   * <p>Executing within lock, since racing with cancel.
-   *
-   * <p>After marked for execution, the task cannot be cancelled any more and
-   * is expected to be executed by the executor.
+   * <p>A scheduled task is marked within the lock, since racing with cancel. The executor
+   * is called outside the lock. After marked for execution, the task cannot be cancelled
+   * any more and is expected to be executed by the executor.
    */
   private void executeImmediately(TimerTask task) {
     task.markForImmediateExecution();
@@ -170,31 +228,50 @@ public class DefaultTimer implements Timer {
    * Called from the scheduler when a scheduled time was reached.
    * Its expected that the time is increasing constantly.
    * Per timer there is only one scheduled event, so this method is not
-   * running concurrently
+   * running concurrently.
+   *
+   * <p>Tasks are removed in chunks within one lock. The last chunk is executed in this
+   * thread. When many tasks are due at once, e.g. after a bulk insert with identical
+   * expiry, the full chunks are handed to the executor. A chunk handed to the executor
+   * keeps its array, otherwise the array is reused for the next event.
    */
   private void timeReachedEvent(long currentTime) {
     while (true) {
-      TimerTask task;
+      TimerTask[] tasks = dueTasks;
+      int count;
       lock.lock();
       try {
-        task = structure.removeNextToRun(currentTime);
+        count = structure.removeNextToRun(currentTime, tasks);
       } finally {
         lock.unlock();
       }
-      if (task != null) {
-        task.execute();
-        task.action();
-      } else {
-        long nextTime;
-        lock.lock();
+      for (int i = 0; i < count; i++) {
+        tasks[i].execute();
+      }
+      if (count == tasks.length) {
+        dueTasks = new TimerTask[EXECUTION_CHUNK_SIZE];
+        TaskChunk chunk = new TaskChunk(tasks, count);
         try {
-          nextTime = structure.nextRun();
-          scheduleNextWakeup(nextTime);
-        } finally {
-          lock.unlock();
+          scheduler.execute(chunk);
+        } catch (RejectedExecutionException ex) {
+          chunk.run();
         }
-        break;
+        continue;
       }
+      try {
+        TaskChunk.runAll(tasks, count);
+      } finally {
+        Arrays.fill(tasks, 0, count, null);
+      }
+      long nextTime;
+      lock.lock();
+      try {
+        nextTime = structure.nextRun();
+        scheduleNextWakeup(nextTime);
+      } finally {
+        lock.unlock();
+      }
+      break;
     }
   }
 
@@ -237,4 +314,41 @@ public class DefaultTimer implements Timer {
     }
   }
 
+  /**
+   * Run the actions of tasks that are marked as executed. An exception of one task
+   * does not prevent the execution of the following tasks and is rethrown at the end.
+   */
+  static class TaskChunk implements Runnable {
+
+    private final TimerTask[] tasks;
+    private final int count;
+
+    TaskChunk(TimerTask[] tasks, int count) {
+      this.tasks = tasks;
+      this.count = count;
+    }
+
+    @Override
+    public void run() {
+      runAll(tasks, count);
+    }
+
+    static void runAll(TimerTask[] tasks, int count) {
+      RuntimeException exception = null;
+      for (int i = 0; i < count; i++) {
+        try {
+          tasks[i].run();
+        } catch (RuntimeException ex) {
+          if (exception == null) {
+            exception = ex;
+          }
+        }
+      }
+      if (exception != null) {
+        throw exception;
+      }
+    }
+
+  }
+
 }
@@ -0,0 +1,143 @@
+package org.cache2k.core.timing;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.CacheClosedException;
+import org.cache2k.core.Entry;
+import org.cache2k.core.api.InternalCacheCloseContext;
+import org.cache2k.core.api.NeedsClose;
+import org.cache2k.operation.Scheduler;
+import org.cache2k.operation.TimeReference;
+
+import java.util.Iterator;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Removes expired entries in the background when expiry is not done by timer tasks,
+ * see {@link SweepTiming}. A sweep round iterates all entries within the round time.
+ * The round is split into {@value #WAKEUPS_PER_ROUND} wakeups, each checking an equal share
+ * of the entries counted at round start. Wakeups are at least one millisecond apart, so
+ * a round time below {@value #WAKEUPS_PER_ROUND} milliseconds has fewer wakeups with bigger
+ * shares. If the cache is empty the next round starts after the round time.
+ *
+ * @author Jens Wilke
+ */
+class ExpirySweep<K, V> implements NeedsClose {
+
+  static final int WAKEUPS_PER_ROUND = 100;
+
+  private final TimeReference clock;
+  private final Scheduler scheduler;
+  private final TimerEventListener<K, V> target;
+  private final long roundTicks;
+  private Iterator<Entry<K, V>> iterator;
+  private long scansPerWakeup;
+  private final long wakeupsPerRound;
+  private final long wakeupIntervalMillis;
+  private long roundCount;
+  private long scanCount;
+  private long expiredCount;
+  private boolean closed;
+
+  ExpirySweep(TimeReference clock, Scheduler scheduler,
+              TimerEventListener<K, V> target, long roundTicks) {
+    this.clock = clock;
+    this.scheduler = scheduler;
+    this.target = target;
+    this.roundTicks = roundTicks;
+    long roundMillis = clock.ticksToMillisCeiling(roundTicks);
+    wakeupsPerRound = Math.max(1, Math.min(WAKEUPS_PER_ROUND, roundMillis));
+    wakeupIntervalMillis = Math.max(1, roundMillis / wakeupsPerRound);
+    schedule(clock.ticksToMillisCeiling(roundTicks));
+  }
+
+  private void wakeup() {
+    try {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        if (iterator == null && !startRound()) {
+          schedule(clock.ticksToMillisCeiling(roundTicks));
+          return;
+        }
+        sweep();
+        schedule(wakeupIntervalMillis);
+      }
+    } catch (CacheClosedException ignore) { }
+  }
+
+  private boolean startRound() {
+    long size = target.getTotalEntryCount();
+    if (size == 0) {
+      return false;
+    }
+    roundCount++;
+    scansPerWakeup = size / wakeupsPerRound + 1;
+    iterator = target.iterateAllHeapEntries();
+    return true;
+  }
+
+  /**
+   * Check the next share of entries and expire an entry if the expiry time is reached.
+   */
+  private void sweep() {
+    long now = clock.ticks();
+    Iterator<Entry<K, V>> it = iterator;
+    for (long i = 0; i < scansPerWakeup && it.hasNext(); i++) {
+      Entry<K, V> e = it.next();
+      scanCount++;
+      if (e.isExpiryTimeReached(now) && target.timerEventSweepExpired(e, now)) {
+        expiredCount++;
+      }
+    }
+    if (!it.hasNext()) {
+      iterator = null;
+    }
+  }
+
+  /**
+   * Schedule, but ignore when scheduler is closed. That happens when the cache is closed
+   * concurrently. No more wakeups are needed anyway.
+   */
+  private void schedule(long delayMillis) {
+    try {
+      scheduler.schedule(this::wakeup, delayMillis);
+    } catch (RejectedExecutionException ignore) { }
+  }
+
+  @Override
+  public void close(InternalCacheCloseContext closeContext) {
+    synchronized (this) {
+      closed = true;
+      iterator = null;
+    }
+    closeContext.closeCustomization(scheduler, "scheduler for expiry sweep");
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "expirySweepRounds=" + roundCount +
+      ", expirySweepScans=" + scanCount +
+      ", expirySweepExpired=" + expiredCount;
+  }
+
+}
@@ -0,0 +1,132 @@
+package org.cache2k.core.timing;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.api.InternalCacheCloseContext;
+import org.cache2k.operation.Scheduler;
+import org.cache2k.operation.TimeReference;
+
+/**
+ * Timer that distributes the tasks on multiple {@link DefaultTimer} instances by
+ * the entry hash code. Each shard has its own lock and timer wheels, so scheduling and
+ * cancelling in different shards does not contend. Each shard schedules its own wakeups
+ * with the shared scheduler. Useful for caches with many entries and frequent updates
+ * with expiry or refresh.
+ *
+ * @author Jens Wilke
+ * @see TimerTask#getShardHash()
+ */
+public class ShardedTimer implements Timer {
+
+  /**
+   * Fibonacci hashing constant to select the shard from the upper bits, which
+   * are independent of the bits the hash table uses for its segments.
+   */
+  private static final int SHARD_MIX = 0x9E3779B9;
+
+  private final Scheduler scheduler;
+  private final DefaultTimer[] shards;
+  private final int shift;
+
+  /**
+   * @param shardCount number of shards, rounded up to the next power of two
+   */
+  public ShardedTimer(TimeReference clock, Scheduler scheduler, long lagTicks, int shardCount) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("shard count must be positive");
+    }
+    int n = shardCount == 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+    this.scheduler = scheduler;
+    shards = new DefaultTimer[n];
+    for (int i = 0; i < n; i++) {
+      shards[i] = new DefaultTimer(clock, scheduler, lagTicks);
+    }
+    shift = n == 1 ? 32 : Integer.numberOfLeadingZeros(n - 1);
+  }
+
+  private DefaultTimer shard(TimerTask task) {
+    if (shift == 32) {
+      return shards[0];
+    }
+    return shards[(task.getShardHash() * SHARD_MIX) >>> shift];
+  }
+
+  @Override
+  public void schedule(TimerTask task, long time) {
+    shard(task).schedule(task, time);
+  }
+
+  /**
+   * Group the tasks by shard, so each shard is locked once.
+   */
+  @Override
+  public void schedule(TimerTask[] tasks, long[] times, int count) {
+    if (shards.length == 1) {
+      shards[0].schedule(tasks, times, count);
+      return;
+    }
+    TimerTask[] shardTasks = new TimerTask[count];
+    long[] shardTimes = new long[count];
+    for (DefaultTimer shard : shards) {
+      int shardCount = 0;
+      for (int i = 0; i < count; i++) {
+        if (shard(tasks[i]) == shard) {
+          shardTasks[shardCount] = tasks[i];
+          shardTimes[shardCount++] = times[i];
+        }
+      }
+      if (shardCount > 0) {
+        shard.schedule(shardTasks, shardTimes, shardCount);
+      }
+    }
+  }
+
+  @Override
+  public void cancel(TimerTask t) {
+    shard(t).cancel(t);
+  }
+
+  @Override
+  public void cancelAll() {
+    for (DefaultTimer t : shards) {
+      t.cancelAll();
+    }
+  }
+
+  @Override
+  public long getLagTicks() {
+    return shards[0].getLagTicks();
+  }
+
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Cancel the tasks of all shards and close the shared scheduler once.
+   */
+  @Override
+  public void close(InternalCacheCloseContext closeContext) {
+    cancelAll();
+    closeContext.closeCustomization(scheduler, "scheduler");
+  }
+
+}
@@ -28,6 +28,7 @@ import org.cache2k.core.api.InternalCacheBuildContext;
 import org.cache2k.core.api.InternalCacheCloseContext;
 import org.cache2k.core.Entry;
 import org.cache2k.core.ExceptionWrapper;
+import org.cache2k.core.MiscSlot;
 import org.cache2k.expiry.RefreshAheadPolicy;
 import org.cache2k.operation.TimeReference;
 import org.cache2k.expiry.Expiry;
@@ -36,6 +37,9 @@ import org.cache2k.expiry.ExpiryTimeValues;
 import org.cache2k.io.LoadExceptionInfo;
 import org.cache2k.io.ResiliencePolicy;
 
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Expiry time is constant
  *
@@ -48,11 +52,25 @@ public class StaticTiming<K, V> extends Timing<K, V> {
   protected final boolean sharpExpiry;
   @Nullable protected final RefreshAheadPolicy<? super K, ? super V, Object> refreshAheadPolicy;
   protected final long expiryTicks;
-  private final Timer timer;
+  private final int refreshJitterPercent;
+  @Nullable private final Timer timer;
   private TimerEventListener<K, V> target;
+  /**
+   * Tasks started by the current thread during a bulk operation,
+   * see {@link #startCollecting()}.
+   */
+  private final ThreadLocal<TaskBatch> collecting = new ThreadLocal<>();
 
   StaticTiming(InternalCacheBuildContext<K, V> buildContext,
                ResiliencePolicy<K, V> resiliencePolicy) {
+    this(buildContext, resiliencePolicy, true);
+  }
+
+  /**
+   * @param useTimer {@code false} if the subclass expires entries without timer tasks
+   */
+  StaticTiming(InternalCacheBuildContext<K, V> buildContext,
+               ResiliencePolicy<K, V> resiliencePolicy, boolean useTimer) {
     clock = buildContext.getTimeReference();
     Cache2kConfig<K, V> cfg = buildContext.getConfig();
     if (cfg.getExpireAfterWrite() == null
@@ -72,11 +90,19 @@ public class StaticTiming<K, V> extends Timing<K, V> {
         buildContext.createCustomization(buildContext.getConfig().getRefreshAheadPolicy());
     }
     sharpExpiry = cfg.isSharpExpiry();
-    if (cfg.getTimerLag() == null) {
-      timer = new DefaultTimer(clock, buildContext.createScheduler());
+    refreshJitterPercent = buildContext.internalConfig().getRefreshJitterPercent();
+    if (refreshJitterPercent < 0 || refreshJitterPercent > 100) {
+      throw new IllegalArgumentException("refreshJitterPercent must be between 0 and 100");
+    }
+    long lagTicks = cfg.getTimerLag() == null ?
+      DefaultTimer.DEFAULT_TIMER_LAG_MILLIS : clock.toTicks(cfg.getTimerLag());
+    int timerShards = buildContext.internalConfig().getTimerShards();
+    if (!useTimer) {
+      timer = null;
+    } else if (timerShards > 1) {
+      timer = new ShardedTimer(clock, buildContext.createScheduler(), lagTicks, timerShards);
     } else {
-      timer =
-        new DefaultTimer(clock, buildContext.createScheduler(), clock.toTicks(cfg.getTimerLag()));
+      timer = new DefaultTimer(clock, buildContext.createScheduler(), lagTicks);
     }
     this.resiliencePolicy = resiliencePolicy;
   }
@@ -128,7 +154,7 @@ public class StaticTiming<K, V> extends Timing<K, V> {
    */
   long expiredEventuallyStartBackgroundRefresh(Entry<K, V> e, boolean sharpExpiry) {
     if (refreshAheadPolicy != null) {
-      e.setTask(new Tasks.RefreshTimerTask<K, V>().to(target, e));
+      ((MiscSlot) e).setTask(new Tasks.RefreshTimerTask<K, V>().to(target, e));
       scheduleTask(0, e);
       return sharpExpiry ? Entry.EXPIRED_REFRESH_PENDING : Entry.DATA_VALID;
     }
@@ -170,29 +196,113 @@ public class StaticTiming<K, V> extends Timing<K, V> {
       return expiredEventuallyStartBackgroundRefresh(e, expiryTime < 0);
     }
     if (refreshTime > 0) {
-      e.setTask(new Tasks.RefreshTimerTask<K, V>().to(target, e));
-      scheduleTask(refreshTime, e);
+      ((MiscSlot) e).setTask(new Tasks.RefreshTimerTask<K, V>().to(target, e));
+      scheduleTask(spreadRefreshTime(now, refreshTime), e);
     } else {
-      e.setTask(new Tasks.ExpireTimerTask<K, V>().to(target, e));
+      ((MiscSlot) e).setTask(new Tasks.ExpireTimerTask<K, V>().to(target, e));
       scheduleTask(absExpiryTime, e);
     }
     return expiryTime;
   }
 
+  /**
+   * Move the refresh time randomly to an earlier time, so entries loaded at the same
+   * time are not refreshed at the same time. Never later, so the refresh still
+   * happens before the expiry.
+   */
+  long spreadRefreshTime(long now, long refreshTime) {
+    long range = (refreshTime - now) / 100 * refreshJitterPercent;
+    if (range <= 0) {
+      return refreshTime;
+    }
+    return refreshTime - ThreadLocalRandom.current().nextLong(range + 1);
+  }
+
   void scheduleTask(long t, Entry<K, V> e) {
+    TimerTask task = ((MiscSlot) e).getTask();
+    TaskBatch batch = collecting.get();
+    if (batch != null) {
+      batch.tasks[batch.count] = task;
+      batch.times[batch.count++] = t;
+      if (batch.count == TaskBatch.SIZE) {
+        scheduleBatch(batch);
+      }
+      return;
+    }
     try {
-      timer.schedule(e.getTask(), t);
+      timer.schedule(task, t);
     } catch (IllegalStateException ignore) {
     }
   }
 
+  /**
+   * Cancel the timer task of the entry. A task that is executed already, which is the
+   * case when the entry is removed by its expiry task, is skipped, so expiring many
+   * entries does not lock the timer for each entry.
+   */
   @SuppressWarnings("unchecked")
   public void cancelExpiryTimer(Entry<K, V> e) {
-    Tasks<K, V> tsk = (Tasks<K, V>) e.getTask();
-    if (tsk != null) {
+    Tasks<K, V> tsk = (Tasks<K, V>) ((MiscSlot) e).getTask();
+    if (tsk != null && !tsk.isExecuted()) {
       timer.cancel(tsk);
     }
-    e.setTask(null);
+    ((MiscSlot) e).setTask(null);
+  }
+
+  @Override
+  public void startCollecting() {
+    if (timer != null) {
+      collecting.set(new TaskBatch());
+    }
+  }
+
+  @Override
+  public void scheduleCollected() {
+    TaskBatch batch = collecting.get();
+    if (batch != null) {
+      collecting.remove();
+      scheduleBatch(batch);
+    }
+  }
+
+  /**
+   * Schedule the collected tasks with one timer call. A task is skipped, if the entry
+   * was updated by another thread meanwhile and has a different task. The cancel of the
+   * other thread had no effect on the not yet scheduled task. The check is done without
+   * entry lock, if a stale task is scheduled, the timer event ignores it.
+   */
+  @SuppressWarnings("unchecked")
+  private void scheduleBatch(TaskBatch batch) {
+    TimerTask[] tasks = batch.tasks;
+    long[] times = batch.times;
+    int count = 0;
+    for (int i = 0; i < batch.count; i++) {
+      Tasks<K, V> task = (Tasks<K, V>) tasks[i];
+      if (task.isUnscheduled() && MiscSlot.taskOf(task.getEntry()) == task) {
+        tasks[count] = task;
+        times[count++] = times[i];
+      }
+    }
+    Arrays.fill(tasks, count, batch.count, null);
+    batch.count = 0;
+    try {
+      timer.schedule(tasks, times, count);
+    } finally {
+      Arrays.fill(tasks, 0, count, null);
+    }
+  }
+
+  /**
+   * Timer tasks and execution times collected during a bulk operation.
+   */
+  static final class TaskBatch {
+
+    static final int SIZE = 128;
+
+    final TimerTask[] tasks = new TimerTask[SIZE];
+    final long[] times = new long[SIZE];
+    int count;
+
   }
 
   @Override
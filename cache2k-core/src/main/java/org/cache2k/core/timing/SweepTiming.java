@@ -0,0 +1,109 @@
+package org.cache2k.core.timing;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+import org.cache2k.core.api.InternalCacheBuildContext;
+import org.cache2k.core.api.InternalCacheCloseContext;
+import org.cache2k.expiry.ExpiryTimeValues;
+import org.cache2k.io.ResiliencePolicy;
+
+/**
+ * Constant expiry without timer tasks. The expiry time is stored in the entry as
+ * point in time that needs a time check, see {@link Entry#needsTimeCheck(long)}, so an
+ * expired entry is not visible on access. The {@link ExpirySweep} removes expired entries
+ * in the background. Saves the timer task object per entry and the timer lock on
+ * every update. The expiry is sharp on access, but expiry events and the removal of
+ * the entry from the cache may be delayed up to the sweep round time.
+ *
+ * <p>Not used with refresh ahead, which needs a timer event.
+ *
+ * @author Jens Wilke
+ * @see org.cache2k.core.api.InternalConfig.Builder#expirySweepTime(java.time.Duration)
+ */
+class SweepTiming<K, V> extends StaticTiming<K, V> {
+
+  private final InternalCacheBuildContext<K, V> buildContext;
+  private final long sweepTicks;
+  private ExpirySweep<K, V> sweep;
+
+  SweepTiming(InternalCacheBuildContext<K, V> buildContext,
+              ResiliencePolicy<K, V> resiliencePolicy, long sweepTicks) {
+    super(buildContext, resiliencePolicy, false);
+    this.buildContext = buildContext;
+    this.sweepTicks = sweepTicks;
+  }
+
+  @Override
+  public void setTarget(TimerEventListener<K, V> target) {
+    super.setTarget(target);
+    sweep = new ExpirySweep<>(clock, buildContext.createScheduler(), target, sweepTicks);
+  }
+
+  /**
+   * Nothing to cancel, the sweep continues after a clear.
+   */
+  @Override
+  public void cancelAll() { }
+
+  @Override
+  public void close(InternalCacheCloseContext closeContext) {
+    closeContext.closeCustomization(resiliencePolicy, "resiliencePolicy");
+    if (sweep != null) {
+      sweep.close(closeContext);
+    }
+  }
+
+  /**
+   * Store the expiry time as point in time to check on access.
+   * The refresh time is not used, since refresh ahead is not supported.
+   */
+  @Override
+  public long stopStartTimer(Entry<K, V> e, long expiryTime, long refreshTime) {
+    if (expiryTime == ExpiryTimeValues.NOW) {
+      return Entry.EXPIRED;
+    }
+    if (expiryTime == ExpiryTimeValues.NEUTRAL) {
+      long currentExpiry = e.getRawExpiry();
+      if (currentExpiry == 0) {
+        throw new IllegalArgumentException("neutral expiry not allowed for creation");
+      }
+      return currentExpiry;
+    }
+    if (expiryTime == ExpiryTimeValues.ETERNAL) {
+      return expiryTime;
+    }
+    long absExpiryTime = Math.abs(expiryTime);
+    if (absExpiryTime <= clock.ticks()) {
+      return Entry.EXPIRED;
+    }
+    return -absExpiryTime;
+  }
+
+  @Override
+  public void cancelExpiryTimer(Entry<K, V> e) { }
+
+  @Override
+  public String toString() {
+    return String.valueOf(sweep);
+  }
+
+}
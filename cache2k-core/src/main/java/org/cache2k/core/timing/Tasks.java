@@ -30,10 +30,12 @@ abstract class Tasks<K, V> extends TimerTask {
 
   private Entry<K, V> entry;
   private TimerEventListener<K, V> target;
+  private int shardHash;
 
   Tasks<K, V> to(TimerEventListener<K, V> target, Entry<K, V> e) {
     this.target = target;
     entry = e;
+    shardHash = e.hashCode;
     return this;
   }
 
@@ -52,6 +54,15 @@ abstract class Tasks<K, V> extends TimerTask {
     return false;
   }
 
+  /**
+   * Select the shard by the entry hash, which is kept after the entry reference is
+   * cleared by a cancel.
+   */
+  @Override
+  int getShardHash() {
+    return shardHash;
+  }
+
   protected TimerEventListener<K, V> getTarget() {
     return target;
   }
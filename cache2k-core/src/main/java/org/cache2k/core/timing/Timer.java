@@ -40,6 +40,21 @@ public interface Timer extends NeedsClose {
    */
   void schedule(TimerTask task, long time);
 
+  /**
+   * Schedule multiple tasks. Identical to calling {@link #schedule(TimerTask, long)}
+   * for each task, but implementations may do this more efficiently, e.g. by
+   * locking only once.
+   *
+   * @param tasks tasks to schedule
+   * @param times execution time for the task at the same index
+   * @param count number of tasks in the array to schedule
+   */
+  default void schedule(TimerTask[] tasks, long[] times, int count) {
+    for (int i = 0; i < count; i++) {
+      schedule(tasks[i], times[i]);
+    }
+  }
+
   /**
    * Cancel the timer task.
    */
@@ -23,6 +23,8 @@ package org.cache2k.core.timing;
 import org.cache2k.core.Entry;
 import org.cache2k.core.api.InternalCache;
 
+import java.util.Iterator;
+
 /**
  * Notifications from the {@link Timing} to the {@link InternalCache} upon timer
  * events. This interface is part of {@link InternalCache} at the moment, but maybe better
@@ -62,4 +64,24 @@ public interface TimerEventListener<K, V> {
    */
   void timerEventProbationTerminated(Entry<K, V> e, Object task);
 
+  /**
+   * Iterate all entries in the heap, including expired entries.
+   * Used by the {@link ExpirySweep}.
+   */
+  Iterator<Entry<K, V>> iterateAllHeapEntries();
+
+  /**
+   * Number of entries in the heap.
+   */
+  long getTotalEntryCount();
+
+  /**
+   * Expire the entry, if the expiry time is reached. Used by the {@link ExpirySweep}.
+   * The time is checked again within the entry lock, since the entry may be updated
+   * concurrently.
+   *
+   * @return {@code true}, if the entry is expired
+   */
+  boolean timerEventSweepExpired(Entry<K, V> e, long now);
+
 }
@@ -60,6 +60,16 @@ public interface TimerStructure {
    */
   TimerTask removeNextToRun(long time);
 
+  /**
+   * Remove all tasks that are supposed to execute at the given time or earlier,
+   * up to the length of the array. Moves the clock hand like {@link #removeNextToRun(long)}.
+   *
+   * @param tasks array to store the removed tasks
+   * @return number of tasks removed. If equal to the array length more tasks may be
+   *         ready to run
+   */
+  int removeNextToRun(long time, TimerTask[] tasks);
+
   /**
    * Time of next run, or MAX_VALUE if no more tasks are scheduled
    */
@@ -72,6 +72,14 @@ public abstract class TimerTask implements Runnable {
     action();
   }
 
+  /**
+   * Hash code to select the timer shard, see {@link ShardedTimer}. Must not change
+   * while the task is scheduled.
+   */
+  int getShardHash() {
+    return System.identityHashCode(this);
+  }
+
   public boolean isUnscheduled() {
     return time == UNSCHEDULED;
   }
@@ -21,11 +21,17 @@ package org.cache2k.core.timing;
  */
 
 /**
- * Hierarchical timer wheel implementation. The implementation is flexible and
- * can work with variable delta time per time slot and variable slots per wheel
- * level.
+ * Hierarchical timer wheel implementation. The first level wheel has slots with
+ * the width of the timer lag. Each higher level wheel covers one complete circle of
+ * the lower level wheel per slot. The slot count can be set per level, so the first level
+ * can cover the common expiry durations and the higher levels can be kept small.
+ * Higher levels are created on demand.
  *
- * <p>This implementation is rather simple and has opportunities to improve performance.
+ * <p>Each wheel keeps a bitmap of slots that had tasks inserted, so the next slot
+ * to run is found without visiting every empty slot. When the lower level wheel completes
+ * a circle, the tasks of the next slot of the higher level are detached at once and
+ * sorted into the lower level slots. Every task moves only once per level, so scheduling,
+ * cancelling and cascading is constant time per task.
  *
  * @author Jens Wilke
  */
@@ -33,10 +39,21 @@ public class TimerWheels implements TimerStructure {
 
   private final Wheel wheel;
   private final long delta;
+  private final int[] slotsPerLevel;
 
-  public TimerWheels(long startTime, long delta, int slots) {
+  /**
+   * @param startTime time of the first slot
+   * @param delta time covered by one slot of the first level
+   * @param slotsPerLevel slot count of the wheels starting with the first level. The last
+   *                      value is used for all higher levels.
+   */
+  public TimerWheels(long startTime, long delta, int... slotsPerLevel) {
+    if (slotsPerLevel.length == 0) {
+      throw new IllegalArgumentException("slot count missing");
+    }
     this.delta = delta;
-    wheel = new Wheel(startTime, delta, slots);
+    this.slotsPerLevel = slotsPerLevel.clone();
+    wheel = new Wheel(0, startTime, delta);
   }
 
   public long schedule(TimerTask task, long time) {
@@ -58,22 +75,46 @@ public class TimerWheels implements TimerStructure {
     return t;
   }
 
+  public int removeNextToRun(long time, TimerTask[] tasks) {
+    return wheel.removeNextToRun(time, tasks);
+  }
+
   public long nextRun() {
     return wheel.nextToRun();
   }
 
+  /**
+   * Number of wheel levels currently in use. For testing.
+   */
+  int getLevelCount() {
+    int count = 0;
+    for (Wheel w = wheel; w != null; w = w.up) {
+      count++;
+    }
+    return count;
+  }
+
   class Wheel {
 
+    private final int level;
     private Wheel up;
     private long noon;
     private long nextNoon;
     private final long slotDelta;
     private final TimerTask[] slots;
+    /**
+     * Bit set for a slot when a task is inserted. Cancelled tasks are removed from
+     * the slot without clearing the bit, so a set bit is only a hint.
+     */
+    private final long[] occupied;
     private int index;
 
-    Wheel(long time, long slotDelta, int slotCount) {
+    Wheel(int level, long time, long slotDelta) {
+      this.level = level;
       this.slotDelta = slotDelta;
+      int slotCount = slotsPerLevel[Math.min(level, slotsPerLevel.length - 1)];
       slots = new TimerTask[slotCount];
+      occupied = new long[(slotCount + 63) >>> 6];
       initArray();
       atNoon(time);
     }
@@ -82,6 +123,9 @@ public class TimerWheels implements TimerStructure {
       for (int i = 0; i < slots.length; i++) {
         slots[i] = new TimerTask.Sentinel();
       }
+      for (int i = 0; i < occupied.length; i++) {
+        occupied[i] = 0;
+      }
     }
 
     /**
@@ -93,7 +137,7 @@ public class TimerWheels implements TimerStructure {
       index = 0;
       noon = time;
       nextNoon = time + slotDelta * slots.length;
-      if (nextNoon < 0) {
+      if (slotDelta > Long.MAX_VALUE / slots.length || nextNoon < 0) {
         nextNoon = Long.MAX_VALUE;
       }
     }
@@ -123,10 +167,9 @@ public class TimerWheels implements TimerStructure {
      * at an upper level needs to split up.
      */
     long nextToRun() {
-      for (int i = index; i < slots.length; i++) {
-        if (slots[i].isOccupied()) {
-          return executionTime(i);
-        }
+      int i = nextOccupied(index);
+      if (i >= 0) {
+        return executionTime(i);
       }
       if (up == null) {
         return Long.MAX_VALUE;
@@ -135,6 +178,32 @@ public class TimerWheels implements TimerStructure {
       return time;
     }
 
+    /**
+     * Index of the next slot with tasks, starting at the given index, or -1 if all
+     * following slots are empty. Clears bits of slots that became empty by a cancel.
+     */
+    private int nextOccupied(int from) {
+      int word = from >>> 6;
+      if (word >= occupied.length) {
+        return -1;
+      }
+      long bits = occupied[word] & (-1L << from);
+      while (true) {
+        while (bits != 0) {
+          int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+          if (slots[i].isOccupied()) {
+            return i;
+          }
+          occupied[word] &= ~(1L << i);
+          bits &= bits - 1;
+        }
+        if (++word >= occupied.length) {
+          return -1;
+        }
+        bits = occupied[word];
+      }
+    }
+
     /**
      * If execution time for the current slot is reached, return the tasks in it.
      * We don't need to compare the actual time in the task.
@@ -151,6 +220,7 @@ public class TimerWheels implements TimerStructure {
             t.remove();
             return t;
           }
+          occupied[index >>> 6] &= ~(1L << index);
           hand = hand + slotDelta;
           if (time >= hand) {
             moveHand();
@@ -162,6 +232,36 @@ public class TimerWheels implements TimerStructure {
       return null;
     }
 
+    /**
+     * Remove tasks of all slots with reached execution time. The tasks of a slot
+     * are taken in one go.
+     */
+    int removeNextToRun(long time, TimerTask[] tasks) {
+      int count = 0;
+      long hand = executionTime(index);
+      if (time >= hand) {
+        while (true) {
+          TimerTask head = slots[index];
+          TimerTask t;
+          while ((t = head.next) != head) {
+            if (count == tasks.length) {
+              return count;
+            }
+            t.remove();
+            tasks[count++] = t;
+          }
+          occupied[index >>> 6] &= ~(1L << index);
+          hand = hand + slotDelta;
+          if (time >= hand) {
+            moveHand();
+            continue;
+          }
+          break;
+        }
+      }
+      return count;
+    }
+
     /**
      * Move to the next time slot. If we completed a circle, refill from the
      * upper hierarchy.
@@ -179,13 +279,34 @@ public class TimerWheels implements TimerStructure {
      * all tasks into their slots.
      */
     private void refill() {
-       TimerTask t;
-       long limit = nextNoon - 1;
-       Wheel up = this.up;
-       if (up == null) { return; }
-       while ((t = up.removeNextToRun(limit)) != null) {
-         insert(t);
-       }
+      Wheel up = this.up;
+      if (up == null) { return; }
+      up.transferTo(this, nextNoon - 1);
+    }
+
+    /**
+     * Move the tasks of all slots that are due at the given time into the lower level
+     * wheel. The task list of a slot is detached as a whole and each task is inserted
+     * into its slot in the lower level.
+     */
+    private void transferTo(Wheel lower, long limit) {
+      long hand = executionTime(index);
+      while (limit >= hand) {
+        TimerTask head = slots[index];
+        TimerTask t = head.next;
+        head.next = head.prev = head;
+        occupied[index >>> 6] &= ~(1L << index);
+        while (t != head) {
+          TimerTask next = t.next;
+          lower.insert(t);
+          t = next;
+        }
+        hand = hand + slotDelta;
+        if (limit < hand) {
+          break;
+        }
+        moveHand();
+      }
     }
 
     /**
@@ -202,7 +323,7 @@ public class TimerWheels implements TimerStructure {
         return true;
       } else {
         if (up == null) {
-          up = new Wheel(nextNoon, slotDelta * slots.length, slots.length);
+          up = new Wheel(level + 1, nextNoon, slotDelta * slots.length);
         }
         return up.schedule(t);
       }
@@ -214,6 +335,7 @@ public class TimerWheels implements TimerStructure {
     private void insert(TimerTask t) {
       int idx = (int) ((t.time - noon) / slotDelta);
       slots[idx].insert(t);
+      occupied[idx >>> 6] |= 1L << idx;
     }
 
   }
@@ -69,6 +69,11 @@ public abstract class Timing<K, V> implements NeedsClose {
       return h;
     }
     if (realDuration(cfg.getExpireAfterWrite()) || !cfg.isEternal()) {
+      Duration sweepTime = ctx.internalConfig().getExpirySweepTime();
+      boolean refreshAhead = cfg.isRefreshAhead() || cfg.getRefreshAheadPolicy() != null;
+      if (sweepTime != null && !refreshAhead) {
+        return new SweepTiming<>(ctx, resiliencePolicy, ctx.getTimeReference().toTicks(sweepTime));
+      }
       StaticTiming<K, V> h = new StaticTiming<>(ctx, resiliencePolicy);
       return h;
     }
@@ -136,6 +141,20 @@ public abstract class Timing<K, V> implements NeedsClose {
    */
   public void cancelExpiryTimer(Entry<K, V> e) { }
 
+  /**
+   * Collect the timer tasks started by the current thread, instead of scheduling each
+   * task separately. Used by bulk operations, so the timer is locked once for many
+   * entries. Collected tasks are scheduled by {@link #scheduleCollected()}, which
+   * needs to be called in any case.
+   */
+  public void startCollecting() { }
+
+  /**
+   * Schedule the timer tasks collected since {@link #startCollecting()} and stop
+   * collecting.
+   */
+  public void scheduleCollected() { }
+
   public long getExpiryAfterWriteTicks() { return ExpiryPolicy.ETERNAL; }
 
   public long limitExpiryTime(long now, long expiryTime) { return expiryTime; }
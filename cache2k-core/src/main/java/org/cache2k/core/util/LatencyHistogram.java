@@ -0,0 +1,207 @@
+package org.cache2k.core.util;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram for durations with logarithmic buckets, which are linearly
+ * subdivided. Values below {@value #SUB_BUCKETS} have a bucket each. Larger values
+ * are recorded with a relative error of at most 1/{@value #SUB_BUCKETS}. The whole
+ * range of positive long values is covered by {@value #BUCKET_COUNT} buckets, so
+ * there is no configuration needed.
+ *
+ * <p>Recording is one atomic increment, so it is suitable for the load
+ * statistics. Reading a percentile scans all buckets and is intended for monitoring.
+ * Concurrent recording may not be reflected consistently in a percentile.
+ *
+ * <p>A histogram constructed with more than one stripe starts with a single bucket array,
+ * like the default. When an increment collides with another thread, a further array
+ * is added, up to the number of stripes. A thread records to the array selected by its hash
+ * code. As with a {@link java.util.concurrent.atomic.LongAdder}, the memory is only
+ * spent when updates are contended. Reading sums up the arrays.
+ *
+ * @author Jens Wilke
+ */
+public final class LatencyHistogram {
+
+  static final int SUB_BUCKET_BITS = 3;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  /**
+   * Empty histogram, used if statistics are disabled.
+   */
+  public static final LatencyHistogram EMPTY = new LatencyHistogram();
+
+  private static final int STRIPE_MIX = 0x9E3779B9;
+
+  private final int maxStripes;
+  private volatile AtomicLongArray[] stripes;
+
+  /**
+   * Histogram with a single bucket array.
+   */
+  public LatencyHistogram() {
+    this(1);
+  }
+
+  /**
+   * @param maxStripes maximum number of bucket arrays, a power of two
+   */
+  public LatencyHistogram(int maxStripes) {
+    if (maxStripes <= 0 || Integer.bitCount(maxStripes) != 1) {
+      throw new IllegalArgumentException("maxStripes must be a power of two");
+    }
+    this.maxStripes = maxStripes;
+    stripes = new AtomicLongArray[]{new AtomicLongArray(BUCKET_COUNT)};
+  }
+
+  /**
+   * Record a value. Negative values, e.g. because of a clock adjustment, count as 0.
+   */
+  public void record(long value) {
+    int index = bucketIndex(Math.max(0, value));
+    AtomicLongArray[] arrays = stripes;
+    AtomicLongArray counts = arrays.length == 1 ? arrays[0] : arrays[stripe(arrays.length)];
+    if (arrays.length >= maxStripes) {
+      counts.incrementAndGet(index);
+      return;
+    }
+    long v = counts.get(index);
+    if (!counts.compareAndSet(index, v, v + 1)) {
+      expand(arrays);
+      counts.incrementAndGet(index);
+    }
+  }
+
+  /**
+   * Stripe of the current thread, selected by the upper bits of the mixed hash code.
+   */
+  private static int stripe(int length) {
+    return (Thread.currentThread().hashCode() * STRIPE_MIX)
+      >>> Integer.numberOfLeadingZeros(length - 1);
+  }
+
+  /**
+   * Double the number of bucket arrays, if not done by another thread already
+   * and the maximum is not reached.
+   */
+  private synchronized void expand(AtomicLongArray[] arrays) {
+    if (stripes != arrays || arrays.length >= maxStripes) {
+      return;
+    }
+    AtomicLongArray[] expanded = new AtomicLongArray[arrays.length * 2];
+    System.arraycopy(arrays, 0, expanded, 0, arrays.length);
+    for (int i = arrays.length; i < expanded.length; i++) {
+      expanded[i] = new AtomicLongArray(BUCKET_COUNT);
+    }
+    stripes = expanded;
+  }
+
+  /**
+   * Current number of bucket arrays.
+   */
+  public int getStripeCount() {
+    return stripes.length;
+  }
+
+  /**
+   * Total number of recorded values.
+   */
+  public long getCount() {
+    long sum = 0;
+    for (AtomicLongArray counts : stripes) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        sum += counts.get(i);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Value below or equal to which the percentage of the recorded values lies. The
+   * upper bound of the bucket is returned, so the value is never underestimated.
+   *
+   * @param percentile percentile between 0 and 100, e.g. 99.9
+   * @return the upper bound of the bucket, or 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    long[] snapshot = new long[BUCKET_COUNT];
+    long total = 0;
+    for (AtomicLongArray counts : stripes) {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        long v = counts.get(i);
+        snapshot[i] += v;
+        total += v;
+      }
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long sum = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      sum += snapshot[i];
+      if (sum >= target) {
+        return upperBound(i);
+      }
+    }
+    return upperBound(BUCKET_COUNT - 1);
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  static long lowerBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+  }
+
+  static long upperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    return lowerBound(index) + (1L << shift) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyHistogram{count=" + getCount() +
+      ", p50=" + getValueAtPercentile(50) +
+      ", p99=" + getValueAtPercentile(99) +
+      ", max=" + getValueAtPercentile(100) + '}';
+  }
+
+}
@@ -138,4 +138,16 @@ public class EntryTest {
     assertThat(e.getScanRound()).isEqualTo(15);
   }
 
+  @Test
+  public void slimEntryWithoutMiscSlot() {
+    Entry e = new Entry();
+    assertThat(e).isNotInstanceOf(MiscSlot.class);
+    assertThat(MiscSlot.taskOf(e)).isNull();
+    FullEntry full = new FullEntry();
+    full.setRefreshPolicyData(4711);
+    assertThat(full.getRefreshPolicyData()).isEqualTo(4711);
+    assertThat(MiscSlot.taskOf(full)).isNull();
+    assertThat(new FullLongEntry<>(1, 1)).isInstanceOf(MiscSlot.class);
+  }
+
 }
@@ -22,8 +22,20 @@ package org.cache2k.core;
 
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
+import org.cache2k.CacheEntry;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.event.CacheEntryCreatedListener;
+import org.cache2k.io.CacheLoaderException;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 
 /**
@@ -42,4 +54,180 @@ public class HeapCacheTest {
     ).isInstanceOf(UnsupportedOperationException.class);
   }
 
+  @Test
+  public void expectedEntryCount() {
+    Cache<Integer, Integer> c = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(100_000)
+      .expectedEntryCount(50_000)
+      .build();
+    StampedHash<Integer, Integer> hash = c.requestInterface(HeapCache.class).hash;
+    long capacity = hash.getEntryCapacity();
+    assertThat(capacity).isGreaterThanOrEqualTo(50_000);
+    for (int i = 0; i < 50_000; i++) {
+      c.put(i, i);
+    }
+    assertThat(hash.getEntryCapacity()).isEqualTo(capacity);
+    c.close();
+  }
+
+  @Test
+  public void expectedEntryCountLimitedByCapacity() {
+    Cache<Integer, Integer> c = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(1_000)
+      .expectedEntryCount(5_000_000)
+      .build();
+    StampedHash<Integer, Integer> hash = c.requestInterface(HeapCache.class).hash;
+    assertThat(hash.getEntryCapacity()).isLessThan(5_000);
+    c.close();
+  }
+
+  @Test
+  public void slimEntries() {
+    assertThat(entryType(Cache2kBuilder.of(Integer.class, Integer.class)
+      .eternal(true).build(), 1))
+      .isEqualTo(Entry.class);
+    assertThat(entryType(Cache2kBuilder.of(Long.class, Integer.class)
+      .eternal(true).build(), 1L))
+      .isEqualTo(LongEntry.class);
+    assertThat(entryType(Cache2kBuilder.of(Integer.class, Integer.class).build(), 1))
+      .as("expireAt() possible")
+      .isEqualTo(FullEntry.class);
+    assertThat(entryType(Cache2kBuilder.of(Integer.class, Integer.class)
+      .expireAfterWrite(5, TimeUnit.MINUTES).build(), 1))
+      .isEqualTo(FullEntry.class);
+    assertThat(entryType(Cache2kBuilder.of(Long.class, Integer.class)
+      .eternal(true).loader(key -> 1).build(), 1L))
+      .isEqualTo(FullLongEntry.class);
+    assertThat(entryType(Cache2kBuilder.of(Integer.class, Integer.class)
+      .eternal(true)
+      .addListener((CacheEntryCreatedListener<Integer, Integer>) (cache, entry) -> { })
+      .build(), 1))
+      .isEqualTo(FullEntry.class);
+  }
+
+  private static <K> Class<?> entryType(Cache<K, Integer> c, K key) {
+    c.put(key, 1);
+    InternalCache<?, ?> ic = c.requestInterface(InternalCache.class);
+    HeapCache<?, ?> hc =
+      ic instanceof WiredCache ? ((WiredCache<?, ?>) ic).getHeapCache() : (HeapCache<?, ?>) ic;
+    Class<?> type = hc.iterateAllHeapEntries().next().getClass();
+    c.close();
+    return type;
+  }
+
+  @Test
+  public void getAllIntoArray() {
+    Cache<Integer, Integer> c = Cache2kBuilder.of(Integer.class, Integer.class)
+      .build();
+    int count = 1000;
+    for (int i = 0; i < count; i += 2) {
+      c.put(i, i);
+    }
+    Integer[] keys = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = i;
+    }
+    Integer[] values = new Integer[count];
+    Arrays.fill(values, -1);
+    assertThat(c.peekAll(keys, values)).isEqualTo(count / 2);
+    for (int i = 0; i < count; i++) {
+      assertThat(values[i]).isEqualTo(i % 2 == 0 ? i : null);
+    }
+    assertThat(c.getAll(keys, values)).isEqualTo(count / 2);
+    assertThat(c.getAll(Arrays.asList(keys)))
+      .hasSize(count / 2)
+      .containsEntry(0, 0);
+    assertThat(c.peekAll(Arrays.asList(keys))).hasSize(count / 2);
+    assertThatCode(() -> c.getAll(keys, new Integer[count - 1]))
+      .isInstanceOf(IllegalArgumentException.class);
+    c.close();
+  }
+
+  @Test
+  public void getAllIntoArrayLoads() {
+    AtomicInteger loads = new AtomicInteger();
+    Cache<Long, Long> c = Cache2kBuilder.of(Long.class, Long.class)
+      .loader(key -> {
+        loads.incrementAndGet();
+        if (key == 99) {
+          throw new IllegalStateException();
+        }
+        return key;
+      })
+      .build();
+    c.put(1L, 11L);
+    Long[] keys = {1L, 2L, 3L};
+    Long[] values = new Long[3];
+    assertThat(c.peekAll(keys, values)).isEqualTo(1);
+    assertThat(values).containsExactly(11L, null, null);
+    assertThat(c.getAll(keys, values)).isEqualTo(3);
+    assertThat(values).containsExactly(11L, 2L, 3L);
+    assertThat(loads.get()).isEqualTo(2);
+    assertThatCode(() -> c.getAll(new Long[]{1L, 99L}, values))
+      .as("exception is thrown immediately")
+      .isInstanceOf(CacheLoaderException.class);
+    c.close();
+  }
+
+  /**
+   * Bulk insert spans more than one chunk, updates existing entries and triggers eviction.
+   */
+  @Test
+  public void putAll() {
+    int count = 10_000;
+    Cache<Long, Long> c = Cache2kBuilder.of(Long.class, Long.class)
+      .entryCapacity(count / 2)
+      .build();
+    c.put(7L, 1L);
+    Map<Long, Long> map = new HashMap<>();
+    for (long i = 0; i < count; i++) {
+      map.put(i, i);
+    }
+    c.putAll(map);
+    assertThat(c.asMap().size()).isLessThanOrEqualTo(count / 2);
+    for (CacheEntry<Long, Long> e : c.entries()) {
+      assertThat(e.getValue()).isEqualTo(e.getKey());
+    }
+    c.requestInterface(InternalCache.class).checkIntegrity();
+    c.close();
+    c = Cache2kBuilder.of(Long.class, Long.class)
+      .entryCapacity(100)
+      .build();
+    c.putAll(map);
+    assertThat(c.asMap().size())
+      .as("bulk insert larger than capacity")
+      .isLessThanOrEqualTo(100);
+    c.requestInterface(InternalCache.class).checkIntegrity();
+    c.close();
+    Cache<String, Integer> objectKeyCache = Cache2kBuilder.of(String.class, Integer.class)
+      .entryCapacity(count)
+      .build();
+    Map<String, Integer> objectMap = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      objectMap.put(Integer.toString(i), i);
+    }
+    objectKeyCache.putAll(objectMap);
+    objectKeyCache.putAll(objectMap);
+    assertThat(objectKeyCache.asMap()).isEqualTo(objectMap);
+    objectKeyCache.requestInterface(InternalCache.class).checkIntegrity();
+    objectKeyCache.close();
+  }
+
+  @Test
+  public void putAllOpenAddressingHash() {
+    int count = 5_000;
+    Cache<Integer, Integer> c = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(count)
+      .with(InternalConfig.class, b -> b.openAddressingHash(true))
+      .build();
+    Map<Integer, Integer> map = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      map.put(i, i);
+    }
+    c.putAll(map);
+    assertThat(c.asMap()).isEqualTo(map);
+    c.requestInterface(InternalCache.class).checkIntegrity();
+    c.close();
+  }
+
 }
@@ -24,14 +24,21 @@ import org.assertj.core.api.Assertions;
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
 import org.cache2k.core.api.CommonMetrics;
+import org.cache2k.core.api.InternalCache;
 import org.cache2k.core.api.InternalConfig;
 import org.cache2k.core.concurrency.ThreadFactoryProvider;
+import org.cache2k.event.CacheEntryExpiredListener;
 import org.cache2k.operation.CacheControl;
+import org.cache2k.operation.CacheStatistics;
+import org.cache2k.testing.SimulatedClock;
 import org.junit.Test;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -60,6 +67,228 @@ public class InternalConfigTest {
     cache.close();
   }
 
+  @Test
+  public void incrementalHashExpansion() {
+    int count = 12_345;
+    Cache<Integer, Integer> cache =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .entryCapacity(count)
+        .with(InternalConfig.class, b -> b
+          .incrementalHashExpansion(true))
+        .build();
+    for (int i = 0; i < count; i++) {
+      cache.put(i, i);
+    }
+    for (int i = 0; i < count; i++) {
+      assertThat(cache.peek(i)).isEqualTo(i);
+    }
+    assertThat(cache.asMap().size()).isEqualTo(count);
+    cache.requestInterface(InternalCache.class).checkIntegrity();
+    cache.close();
+  }
+
+  @Test
+  public void openAddressingHash() {
+    int count = 12_345;
+    Cache<Integer, Integer> cache =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .entryCapacity(count)
+        .with(InternalConfig.class, b -> b
+          .openAddressingHash(true))
+        .build();
+    checkOpenAddressingHash(cache, count);
+    Cache<String, Integer> objectKeyCache =
+      Cache2kBuilder.of(String.class, Integer.class)
+        .entryCapacity(count)
+        .with(InternalConfig.class, b -> b
+          .openAddressingHash(true))
+        .build();
+    for (int i = 0; i < count; i++) {
+      objectKeyCache.put(Integer.toString(i), i);
+    }
+    for (int i = 0; i < count; i++) {
+      assertThat(objectKeyCache.peek(Integer.toString(i))).isEqualTo(i);
+    }
+    objectKeyCache.requestInterface(InternalCache.class).checkIntegrity();
+    objectKeyCache.close();
+  }
+
+  private static void checkOpenAddressingHash(Cache<Integer, Integer> cache, int count) {
+    for (int i = 0; i < count; i++) {
+      cache.put(i, i);
+    }
+    for (int i = 0; i < count; i++) {
+      assertThat(cache.peek(i)).isEqualTo(i);
+    }
+    for (int i = 0; i < count; i += 3) {
+      cache.remove(i);
+    }
+    int expected = count - (count + 2) / 3;
+    assertThat(cache.keys()).hasSize(expected);
+    assertThat(cache.asMap().size()).isEqualTo(expected);
+    cache.requestInterface(InternalCache.class).checkIntegrity();
+    cache.clear();
+    assertThat(cache.keys()).isEmpty();
+    cache.close();
+  }
+
+  @Test
+  public void hitSampling() {
+    Cache<Integer, Integer> cache =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .with(InternalConfig.class, b -> b
+          .hitSampling(16))
+        .build();
+    cache.put(1, 1);
+    cache.put(2, 2);
+    int count = 100_000;
+    for (int i = 0; i < count; i++) {
+      cache.get(1);
+    }
+    cache.get(2);
+    HeapCache<Integer, Integer> heapCache = cache.requestInterface(HeapCache.class);
+    assertThat(heapCache.lookupEntryNoHitRecord(2).hitCnt)
+      .as("first hit always recorded")
+      .isEqualTo(1);
+    assertThat(heapCache.lookupEntryNoHitRecord(1).hitCnt)
+      .isBetween(count / 2L, count * 2L);
+    assertThat(CacheControl.of(cache).sampleStatistics().getGetCount())
+      .as("statistics are exact")
+      .isEqualTo(count + 1);
+    cache.close();
+  }
+
+  @Test
+  public void evictionWriteBuffer() throws Exception {
+    int capacity = 1000;
+    Cache<Integer, Integer> cache =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .entryCapacity(capacity)
+        .with(InternalConfig.class, b -> b
+          .evictionWriteBuffer(16))
+        .build();
+    int threadCount = 4;
+    int count = 10_000;
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      int offset = t * count;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < count; i++) {
+          cache.put(offset + i, i);
+          if ((i & 7) == 0) {
+            cache.remove(offset + i);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    cache.requestInterface(InternalCache.class).checkIntegrity();
+    assertThat(cache.asMap().size()).isLessThanOrEqualTo(capacity);
+    cache.close();
+  }
+
+  @Test
+  public void timerShards() throws Exception {
+    SimulatedClock clock = new SimulatedClock(true, 1000);
+    Cache<Integer, Integer> cache =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .timeReference(clock)
+        .scheduler(clock)
+        .executor(clock.wrapExecutor(Runnable::run))
+        .expireAfterWrite(5, TimeUnit.MILLISECONDS)
+        .timerLag(1, TimeUnit.MILLISECONDS)
+        .with(InternalConfig.class, b -> b
+          .timerShards(4))
+        .build();
+    for (int i = 0; i < 1000; i++) {
+      cache.put(i, i);
+    }
+    assertThat(cache.asMap()).hasSize(1000);
+    clock.sleep(10);
+    assertThat(cache.asMap()).isEmpty();
+    cache.close();
+  }
+
+  @Test
+  public void expirySweepTime() throws Exception {
+    SimulatedClock clock = new SimulatedClock(true, 1000);
+    AtomicInteger expiredEvents = new AtomicInteger();
+    Cache<Integer, Integer> cache =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .timeReference(clock)
+        .scheduler(clock)
+        .executor(clock.wrapExecutor(Runnable::run))
+        .expireAfterWrite(5, TimeUnit.MILLISECONDS)
+        .with(InternalConfig.class, b -> b
+          .expirySweepTime(Duration.ofMillis(20)))
+        .build();
+    Cache<Integer, Integer> cacheWithListener =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .timeReference(clock)
+        .scheduler(clock)
+        .executor(clock.wrapExecutor(Runnable::run))
+        .expireAfterWrite(5, TimeUnit.MILLISECONDS)
+        .addListener((CacheEntryExpiredListener<Integer, Integer>)
+          (c, entry) -> expiredEvents.incrementAndGet())
+        .with(InternalConfig.class, b -> b
+          .expirySweepTime(Duration.ofMillis(20)))
+        .build();
+    int count = 1000;
+    for (int i = 0; i < count; i++) {
+      cache.put(i, i);
+      cacheWithListener.put(i, i);
+    }
+    HeapCache<Integer, Integer> heapCache = cache.requestInterface(HeapCache.class);
+    assertThat(MiscSlot.taskOf(heapCache.lookupEntryNoHitRecord(1)))
+      .as("no timer task")
+      .isNull();
+    assertThat(heapCache.getTotalEntryCount()).isEqualTo(count);
+    clock.sleep(10);
+    assertThat(cache.peek(1))
+      .as("expired on access")
+      .isNull();
+    clock.sleep(50);
+    assertThat(heapCache.getTotalEntryCount())
+      .as("removed by sweep")
+      .isEqualTo(0);
+    assertThat(expiredEvents.get()).isEqualTo(count);
+    cache.close();
+    cacheWithListener.close();
+  }
+
+  @Test
+  public void refreshPipeline() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    Cache<Integer, Integer> cache =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .expireAfterWrite(50, TimeUnit.MILLISECONDS)
+        .refreshAhead(true)
+        .loader(key -> {
+          loads.incrementAndGet();
+          return key;
+        })
+        .with(InternalConfig.class, b -> b
+          .refreshJitterPercent(20)
+          .maximumRefreshConcurrency(2)
+          .refreshQueueCapacity(10))
+        .build();
+    HeapCache<Integer, Integer> heapCache = cache.requestInterface(HeapCache.class);
+    assertThat(heapCache.getRefreshPipeline()).isNotNull();
+    int count = 100;
+    for (int i = 0; i < count; i++) {
+      cache.get(i);
+    }
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (loads.get() < count + 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(loads.get()).as("refreshed").isGreaterThan(count);
+    cache.close();
+  }
+
   @Test
   public void threadFactoryProvider() {
     AtomicBoolean executed = new AtomicBoolean();
@@ -92,4 +321,59 @@ public class InternalConfigTest {
     cache.close();
   }
 
+  @Test
+  public void defaultCommonMetrics() {
+    Cache<Object, Object> cache = Cache2kBuilder.forUnknownTypes().build();
+    CommonMetrics metrics = cache.requestInterface(InternalCache.class).getCommonMetrics();
+    if (StripedCommonMetrics.isBeneficial(Runtime.getRuntime().availableProcessors())) {
+      assertThat(metrics).isInstanceOf(StripedCommonMetrics.class);
+    } else {
+      assertThat(metrics).isInstanceOf(StandardCommonMetrics.class);
+    }
+    cache.close();
+    cache = Cache2kBuilder.forUnknownTypes().disableStatistics(true).build();
+    metrics = cache.requestInterface(InternalCache.class).getCommonMetrics();
+    assertThat(metrics.isDisabled()).isTrue();
+    cache.close();
+  }
+
+  @Test
+  public void stripedCommonMetrics() throws Exception {
+    Cache<Integer, Integer> cache =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .loader(key -> key)
+        .with(InternalConfig.class, b -> b
+          .commonMetrics(new StripedCommonMetrics())
+        )
+        .build();
+    cache.put(1, 1);
+    cache.put(1, 2);
+    cache.get(2);
+    cache.peek(3);
+    int threadCount = 4;
+    int hitsPerThread = 1000;
+    Thread[] threads = new Thread[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < hitsPerThread; j++) {
+          cache.get(1);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    CommonMetrics metrics = cache.requestInterface(InternalCache.class).getCommonMetrics();
+    assertThat(metrics).isInstanceOf(StripedCommonMetrics.class);
+    assertThat(metrics.getReadThroughCount()).isEqualTo(1);
+    assertThat(metrics.getPeekMissCount()).isEqualTo(1);
+    assertThat(metrics.getLoadHistogram().getCount()).isEqualTo(1);
+    assertThat(metrics.getHeapHitCount()).isGreaterThanOrEqualTo(threadCount * hitsPerThread);
+    CacheStatistics statistics = CacheControl.of(cache).sampleStatistics();
+    assertThat(statistics.getPutCount()).isEqualTo(2);
+    assertThat(statistics.getGetCount()).isEqualTo(threadCount * hitsPerThread + 2);
+    cache.close();
+  }
+
 }
@@ -0,0 +1,116 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+public class LongHeapCacheTest {
+
+  /**
+   * Both keys have the same hash code, {@link Long#hashCode(long)}
+   */
+  private static final long KEY_1 = 0;
+  private static final long KEY_2 = 0x100000001L;
+
+  @Test
+  public void selectedForLongKeys() {
+    Cache<Long, String> c = Cache2kBuilder.of(Long.class, String.class).build();
+    assertThat(c).isInstanceOf(LongHeapCache.class);
+    c.close();
+  }
+
+  @Test
+  public void sameHashCode() {
+    checkSameHashCode(Cache2kBuilder.of(Long.class, String.class).build());
+    checkSameHashCode(Cache2kBuilder.of(Long.class, String.class)
+      .with(InternalConfig.class, b -> b.openAddressingHash(true))
+      .build());
+  }
+
+  private static void checkSameHashCode(Cache<Long, String> c) {
+    assertThat(Long.hashCode(KEY_1)).isEqualTo(Long.hashCode(KEY_2));
+    LongHeapCache<String> lc = c.requestInterface(LongHeapCache.class);
+    lc.put(KEY_1, "one");
+    assertThat(lc.get(KEY_2)).isNull();
+    c.put(KEY_2, "two");
+    assertThat(lc.get(KEY_1)).isEqualTo("one");
+    assertThat(lc.get(KEY_2)).isEqualTo("two");
+    assertThat(c.peek(KEY_1)).isEqualTo("one");
+    assertThat(c.peek(KEY_2)).isEqualTo("two");
+    assertThat(c.asMap()).hasSize(2);
+    c.remove(KEY_1);
+    assertThat(lc.get(KEY_1)).isNull();
+    assertThat(lc.get(KEY_2)).isEqualTo("two");
+    c.close();
+  }
+
+  @Test
+  public void primitiveAndObjectAccess() {
+    Cache<Long, Long> c = Cache2kBuilder.of(Long.class, Long.class)
+      .entryCapacity(10_000)
+      .build();
+    LongHeapCache<Long> lc = c.requestInterface(LongHeapCache.class);
+    long offset = Long.MAX_VALUE - 20_000;
+    for (long i = 0; i < 10_000; i++) {
+      if ((i & 1) == 0) {
+        lc.put(offset + i, (Long) i);
+      } else {
+        c.put(offset + i, i);
+      }
+    }
+    Set<Long> keys = new HashSet<>();
+    for (Long k : c.keys()) {
+      keys.add(k);
+    }
+    assertThat(keys).hasSize(10_000);
+    for (long i = 0; i < 10_000; i++) {
+      assertThat(lc.get(offset + i)).isEqualTo(i);
+      assertThat(c.get(offset + i)).isEqualTo(i);
+      assertThat(keys).contains(offset + i);
+    }
+    c.requestInterface(InternalCache.class).checkIntegrity();
+    c.close();
+  }
+
+  @Test
+  public void loader() {
+    Cache<Long, Long> c = Cache2kBuilder.of(Long.class, Long.class)
+      .loader(k -> k * 2)
+      .build();
+    LongHeapCache<Long> lc = c.requestInterface(LongHeapCache.class);
+    assertThat(lc.get(4711L)).isEqualTo(4711L * 2);
+    assertThat(c.containsKey(4711L)).isTrue();
+    c.close();
+  }
+
+}
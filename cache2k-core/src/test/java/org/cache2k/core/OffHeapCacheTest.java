@@ -0,0 +1,223 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.core.offheap.OffHeapStore;
+import org.cache2k.core.offheap.SlabAllocator;
+import org.cache2k.core.offheap.ValueSerializer;
+import org.cache2k.event.CacheEntryUpdatedListener;
+import org.cache2k.io.CacheWriter;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * Cache operations with values stored off heap.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class OffHeapCacheTest {
+
+  private static Cache<Integer, String> build(long maximumWeight) {
+    return Cache2kBuilder.of(Integer.class, String.class)
+      .maximumWeight(maximumWeight)
+      .with(InternalConfig.class, b -> b
+        .offHeap(ValueSerializer.JAVA)
+        .offHeapSlabSize(64 * 1024))
+      .build();
+  }
+
+  private static OffHeapStore<?> store(Cache<?, ?> cache) {
+    return ((WiredCache<?, ?>) cache.requestInterface(InternalCache.class)).getHeapCache().offHeapStore;
+  }
+
+  @Test
+  public void putGetUpdateRemove() {
+    Cache<Integer, String> cache = build(1_000_000);
+    cache.put(1, "one");
+    cache.put(2, "two");
+    assertThat(cache.get(1)).isEqualTo("one");
+    assertThat(cache.peekEntry(2).getValue()).isEqualTo("two");
+    assertThat(store(cache).getAllocatedBytes()).isGreaterThan(0);
+    long allocated = store(cache).getAllocatedBytes();
+    cache.put(1, "uno");
+    assertThat(cache.get(1)).isEqualTo("uno");
+    assertThat(store(cache).getAllocatedBytes()).isEqualTo(allocated);
+    assertThat(cache.asMap()).containsEntry(1, "uno").containsEntry(2, "two");
+    cache.remove(1);
+    cache.remove(2);
+    assertThat(cache.containsKey(1)).isFalse();
+    assertThat(store(cache).getAllocatedBytes()).isEqualTo(0);
+    cache.requestInterface(InternalCache.class).checkIntegrity();
+    cache.close();
+  }
+
+  @Test
+  public void invokeAndNull() {
+    Cache<Integer, String> cache = build(1_000_000);
+    cache.invoke(1, entry -> entry.setValue("x"));
+    String result = cache.invoke(1, entry -> entry.getValue() + "y");
+    assertThat(result).isEqualTo("xy");
+    cache.close();
+  }
+
+  @Test
+  public void evictByBytes() {
+    int maximumWeight = 10_000;
+    Cache<Integer, String> cache = build(maximumWeight);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append('x');
+    }
+    String value = sb.toString();
+    for (int i = 0; i < 1000; i++) {
+      cache.put(i, value);
+    }
+    InternalCache<?, ?> internalCache = cache.requestInterface(InternalCache.class);
+    long totalWeight = internalCache.getInfo().getTotalWeight();
+    assertThat(totalWeight).isLessThanOrEqualTo(maximumWeight);
+    assertThat(store(cache).getAllocatedBytes()).isLessThan(totalWeight);
+    assertThat(store(cache).getReservedBytes()).isLessThanOrEqualTo(maximumWeight);
+    List<String> values = new ArrayList<>(cache.asMap().values());
+    assertThat(values).isNotEmpty().allMatch(value::equals);
+    internalCache.checkIntegrity();
+    long reserved = store(cache).getReservedBytes();
+    cache.clear();
+    assertThat(store(cache).getAllocatedBytes()).isEqualTo(0);
+    assertThat(store(cache).getReservedBytes())
+      .as("slabs are kept and reused after clear")
+      .isEqualTo(reserved);
+    cache.put(1, value);
+    assertThat(cache.get(1)).isEqualTo(value);
+    for (int i = 0; i < 1000; i++) {
+      cache.put(i, value);
+    }
+    assertThat(store(cache).getReservedBytes()).isLessThanOrEqualTo(maximumWeight);
+    cache.close();
+  }
+
+  /**
+   * The value is serialized before the writer and listeners are called. If this fails,
+   * the operation fails and the entry keeps its previous value.
+   */
+  @Test
+  public void serializerFailureKeepsValue() {
+    List<String> events = new ArrayList<>();
+    ValueSerializer<String> failForEmpty = new ValueSerializer<String>() {
+      @Override
+      public byte[] serialize(String value) {
+        if (value.isEmpty()) {
+          throw new IllegalStateException("empty");
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+      }
+
+      @Override
+      public String deserialize(byte[] data) {
+        return new String(data, StandardCharsets.UTF_8);
+      }
+    };
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .maximumWeight(1_000_000)
+      .addListener((CacheEntryUpdatedListener<Integer, String>) (c, previous, entry) ->
+        events.add("updated " + entry.getValue()))
+      .writer(new CacheWriter<Integer, String>() {
+        @Override
+        public void write(Integer key, String value) {
+          events.add("write " + value);
+        }
+
+        @Override
+        public void delete(Integer key) {
+          events.add("delete");
+        }
+      })
+      .with(InternalConfig.class, b -> b
+        .offHeap(failForEmpty)
+        .offHeapSlabSize(64 * 1024))
+      .build();
+    cache.put(1, "one");
+    events.clear();
+    assertThatCode(() -> cache.put(1, ""))
+      .isInstanceOf(IllegalStateException.class);
+    assertThat(events).isEmpty();
+    assertThat(cache.get(1)).isEqualTo("one");
+    assertThatCode(() -> cache.put(2, ""))
+      .isInstanceOf(IllegalStateException.class);
+    assertThat(cache.containsKey(2)).isFalse();
+    assertThat(store(cache).getAllocatedBytes()).isEqualTo(SlabAllocator.chunkSize(3));
+    cache.requestInterface(InternalCache.class).checkIntegrity();
+    cache.close();
+  }
+
+  /**
+   * The off heap memory is split into multiple allocators which stay within the
+   * maximum weight.
+   */
+  @Test
+  public void reservedWithinMaximumWeight() {
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .maximumWeight(1_000_000)
+      .with(InternalConfig.class, b -> b
+        .offHeap(ValueSerializer.JAVA)
+        .offHeapSlabSize(1024))
+      .build();
+    for (int i = 0; i < 100_000; i++) {
+      cache.put(i, Integer.toString(i));
+    }
+    assertThat(store(cache).getAllocatorCount())
+      .isEqualTo(Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+    assertThat(store(cache).getReservedBytes()).isLessThanOrEqualTo(1_000_000);
+    cache.requestInterface(InternalCache.class).checkIntegrity();
+    cache.close();
+  }
+
+  @Test
+  public void maximumWeightMissing() {
+    assertThatCode(() -> Cache2kBuilder.of(Integer.class, String.class)
+      .with(InternalConfig.class, b -> b.offHeap(ValueSerializer.JAVA))
+      .build())
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void valueExceedsSlab() {
+    Cache<Integer, String> cache = build(1_000_000);
+    char[] chars = new char[100_000];
+    assertThatCode(() -> cache.put(1, new String(chars)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThat(cache.containsKey(1)).isFalse();
+    cache.close();
+  }
+
+}
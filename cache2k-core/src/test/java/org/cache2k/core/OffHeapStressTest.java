@@ -0,0 +1,144 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.core.offheap.OffHeapStore;
+import org.cache2k.core.offheap.ValueSerializer;
+import org.cache2k.pinpoint.stress.ThreadingStressTester;
+import org.cache2k.testing.category.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrent reads, updates, removes and evictions of values stored off heap.
+ * Readers racing with a release of the value chunk retry with the current value
+ * or start over via the loader. A read never returns {@code null} or a wrong value.
+ *
+ * @author Jens Wilke
+ */
+@Category(SlowTests.class)
+public class OffHeapStressTest {
+
+  private static final int KEY_SPACE = 500;
+  private static final long MAXIMUM_WEIGHT = 20_000;
+
+  private static String value(int key) {
+    char[] padding = new char[key % 50];
+    Arrays.fill(padding, 'x');
+    return key + "-" + new String(padding);
+  }
+
+  private static Cache<Integer, String> build() {
+    return Cache2kBuilder.of(Integer.class, String.class)
+      .maximumWeight(MAXIMUM_WEIGHT)
+      .loader(OffHeapStressTest::value)
+      .with(InternalConfig.class, b -> b
+        .offHeap(ValueSerializer.JAVA)
+        .offHeapSlabSize(4096))
+      .build();
+  }
+
+  private static OffHeapStore<?> store(Cache<?, ?> cache) {
+    return ((WiredCache<?, ?>) cache.requestInterface(InternalCache.class))
+      .getHeapCache().offHeapStore;
+  }
+
+  @Test
+  public void test() {
+    Cache<Integer, String> cache = build();
+    Runnable get = () -> {
+      int key = ThreadLocalRandom.current().nextInt(KEY_SPACE);
+      assertThat(cache.get(key)).isEqualTo(value(key));
+    };
+    Runnable getAll = () -> {
+      int key = ThreadLocalRandom.current().nextInt(KEY_SPACE - 2);
+      Map<Integer, String> map = cache.getAll(Arrays.asList(key, key + 1, key + 2));
+      assertThat(map).containsEntry(key, value(key)).containsEntry(key + 2, value(key + 2));
+    };
+    Runnable put = () -> {
+      int key = ThreadLocalRandom.current().nextInt(KEY_SPACE);
+      cache.put(key, value(key));
+    };
+    Runnable remove = () -> cache.remove(ThreadLocalRandom.current().nextInt(KEY_SPACE));
+    ThreadingStressTester tst = new ThreadingStressTester();
+    tst.addTask(2, get);
+    tst.addTask(getAll);
+    tst.addTask(put);
+    tst.addTask(remove);
+    tst.setTestTimeMillis(2000);
+    tst.setDoNotInterrupt(true);
+    tst.run();
+    InternalCache<?, ?> internalCache = cache.requestInterface(InternalCache.class);
+    internalCache.checkIntegrity();
+    OffHeapStore<?> store = store(cache);
+    assertThat(store.getReservedBytes()).isLessThanOrEqualTo(MAXIMUM_WEIGHT);
+    assertThat(store.getAllocatedBytes())
+      .isLessThanOrEqualTo(internalCache.getInfo().getTotalWeight());
+    cache.close();
+  }
+
+  /**
+   * Clears racing with loads and updates. The slabs are kept on clear, so the reserved
+   * memory stays within the limit. Values stored in entries the clear has dropped
+   * already are released as well.
+   */
+  @Test
+  public void clear() {
+    Cache<Integer, String> cache = build();
+    Runnable get = () -> {
+      int key = ThreadLocalRandom.current().nextInt(KEY_SPACE);
+      assertThat(cache.get(key)).isEqualTo(value(key));
+    };
+    Runnable put = () -> {
+      int key = ThreadLocalRandom.current().nextInt(KEY_SPACE);
+      cache.put(key, value(key));
+    };
+    Runnable clear = () -> {
+      if (ThreadLocalRandom.current().nextInt(100) == 0) {
+        cache.clear();
+      }
+    };
+    ThreadingStressTester tst = new ThreadingStressTester();
+    tst.addTask(2, get);
+    tst.addTask(put);
+    tst.addTask(clear);
+    tst.setTestTimeMillis(2000);
+    tst.setDoNotInterrupt(true);
+    tst.run();
+    cache.requestInterface(InternalCache.class).checkIntegrity();
+    OffHeapStore<?> store = store(cache);
+    assertThat(store.getReservedBytes()).isLessThanOrEqualTo(MAXIMUM_WEIGHT);
+    cache.clear();
+    assertThat(store.getAllocatedBytes()).isEqualTo(0);
+    cache.close();
+  }
+
+}
@@ -0,0 +1,152 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class OpenAddressingHashTest {
+
+  /**
+   * Random keys, so probe sequences get longer and removal needs to shift entries.
+   */
+  @Test
+  public void insertLookupRemove() {
+    OpenAddressingHash<Integer, Integer> ht = new OpenAddressingHash<>(null);
+    long initialCapacity = ht.getEntryCapacity();
+    int count = 10_000;
+    int[] keys = new Random(1802).ints().distinct().limit(count).toArray();
+    for (int k : keys) {
+      insert(ht, k);
+    }
+    assertThat(ht.getEntryCapacity()).isGreaterThan(initialCapacity);
+    assertThat(ht.getSize()).isEqualTo(count);
+    for (int k : keys) {
+      assertThat(lookup(ht, k).getKey()).isEqualTo(k);
+    }
+    for (int i = 0; i < count; i += 2) {
+      assertThat(ht.remove(lookup(ht, keys[i]))).isTrue();
+    }
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(count / 2);
+    assertThat(ht.getRelocationCount()).isGreaterThan(0);
+    for (int i = 0; i < count; i++) {
+      assertThat(lookup(ht, keys[i]) != null).isEqualTo(i % 2 == 1);
+    }
+  }
+
+  @Test
+  public void insertExisting() {
+    OpenAddressingHash<Integer, Integer> ht = new OpenAddressingHash<>(null);
+    Entry<Integer, Integer> e = insert(ht, 123);
+    assertThat(insert(ht, 123)).isSameAs(e);
+    assertThat(ht.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void removeUnknown() {
+    OpenAddressingHash<Integer, Integer> ht = new OpenAddressingHash<>(null);
+    insert(ht, 1);
+    Integer k = 2;
+    int hc = HeapCache.spreadHash(k.hashCode());
+    assertThat(ht.remove(new Entry<>(k, hc))).isFalse();
+    assertThat(ht.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void tables() {
+    OpenAddressingHash<Integer, Integer> ht = new OpenAddressingHash<>(null);
+    int count = 1_000;
+    for (int i = 0; i < count; i++) {
+      insert(ht, i);
+    }
+    Set<Integer> keys = new HashSet<>();
+    for (int i = 0; i < ht.getTableCount(); i++) {
+      for (Entry<Integer, Integer> e : ht.getTable(i)) {
+        if (e != null) {
+          keys.add(e.getKey());
+        }
+      }
+    }
+    assertThat(keys).hasSize(count);
+    keys.clear();
+    for (Entry<Integer, Integer> e : ht.getEntries()) {
+      if (e != null) {
+        keys.add(e.getKey());
+      }
+    }
+    assertThat(keys).hasSize(count);
+  }
+
+  @Test
+  public void presize() {
+    OpenAddressingHash<Integer, Integer> ht = new OpenAddressingHash<>(null);
+    int count = 100_000;
+    ht.presize(count);
+    long capacity = ht.getEntryCapacity();
+    assertThat(capacity).isGreaterThanOrEqualTo(count);
+    for (int i = 0; i < count; i++) {
+      insert(ht, i);
+    }
+    assertThat(ht.getEntryCapacity())
+      .as("no expansion")
+      .isEqualTo(capacity);
+    ht.runTotalLocked(() -> {
+      ht.clearWhenLocked();
+      return null;
+    });
+    assertThat(ht.getSize()).isEqualTo(0);
+    assertThat(lookup(ht, 1)).isNull();
+    assertThat(ht.getEntryCapacity())
+      .as("size kept after clear")
+      .isEqualTo(capacity);
+  }
+
+  private static Entry<Integer, Integer> lookup(StampedHash<Integer, Integer> ht, int key) {
+    Integer k = key;
+    int hc = HeapCache.spreadHash(k.hashCode());
+    return ht.lookup(k, hc, hc);
+  }
+
+  private static Entry<Integer, Integer> insert(StampedHash<Integer, Integer> ht, int key) {
+    Integer k = key;
+    int hc = HeapCache.spreadHash(k.hashCode());
+    StampedLock l = ht.getSegmentLock(hc);
+    long stamp = l.writeLock();
+    try {
+      return ht.insertWithinLock(new Entry<>(k, hc), hc, hc);
+    } finally {
+      l.unlockWrite(stamp);
+    }
+  }
+
+}
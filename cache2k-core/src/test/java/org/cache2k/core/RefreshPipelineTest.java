@@ -0,0 +1,111 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+@Category(FastTests.class)
+public class RefreshPipelineTest {
+
+  final List<Runnable> executed = new ArrayList<>();
+  final List<String> refreshed = new ArrayList<>();
+  final List<String> rejected = new ArrayList<>();
+
+  private void submit(RefreshPipeline pipeline, String name, long hits) {
+    Entry e = new Entry();
+    e.hitCnt = hits;
+    pipeline.submit(e, () -> refreshed.add(name), () -> rejected.add(name));
+  }
+
+  private void runNext() {
+    executed.remove(0).run();
+  }
+
+  @Test
+  public void limitPrioritizeAndDrop() {
+    RefreshPipeline pipeline = new RefreshPipeline(executed::add, 2, 2);
+    submit(pipeline, "a", 1);
+    submit(pipeline, "b", 5);
+    submit(pipeline, "c", 3);
+    submit(pipeline, "d", 4);
+    assertThat(executed).hasSize(2);
+    assertThat(pipeline.getQueueSize()).isEqualTo(2);
+    submit(pipeline, "e", 2);
+    assertThat(rejected).containsExactly("e");
+    submit(pipeline, "f", 6);
+    assertThat(rejected).containsExactly("e", "c");
+    runNext();
+    runNext();
+    runNext();
+    runNext();
+    assertThat(refreshed).containsExactly("a", "b", "f", "d");
+    assertThat(executed).isEmpty();
+    assertThat(pipeline.getRunningCount()).isEqualTo(0);
+    assertThat(pipeline.getDroppedCount()).isEqualTo(2);
+  }
+
+  /**
+   * An entry that was not accessed as required does not load, so the
+   * refresh is executed directly.
+   */
+  @Test
+  public void notAccessedBypassesLimit() {
+    RefreshPipeline pipeline = new RefreshPipeline(executed::add, 1, 0);
+    submit(pipeline, "a", 1);
+    Entry e = new Entry();
+    e.setValueOrWrapper(AccessWrapper.of(e, "value", 1));
+    pipeline.submit(e, () -> refreshed.add("x"), () -> rejected.add("x"));
+    assertThat(executed).hasSize(2);
+    assertThat(pipeline.getRunningCount()).isEqualTo(1);
+    assertThat(rejected).isEmpty();
+  }
+
+  @Test
+  public void rejectedByExecutor() {
+    boolean[] reject = {true};
+    RefreshPipeline pipeline = new RefreshPipeline(command -> {
+      if (reject[0]) {
+        throw new RejectedExecutionException();
+      }
+      executed.add(command);
+    }, 1, 10);
+    submit(pipeline, "a", 1);
+    assertThat(rejected).containsExactly("a");
+    assertThat(pipeline.getRunningCount()).isEqualTo(0);
+    reject[0] = false;
+    submit(pipeline, "b", 1);
+    runNext();
+    assertThat(refreshed).containsExactly("b");
+  }
+
+}
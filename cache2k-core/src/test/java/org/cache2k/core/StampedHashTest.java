@@ -26,10 +26,12 @@ import org.cache2k.testing.category.FastTests;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.concurrent.locks.StampedLock;
+
 /**
  * @author Jens Wilke
  */
-@SuppressWarnings("rawtypes")
+@SuppressWarnings({"rawtypes", "unchecked"})
 @Category(FastTests.class)
 public class StampedHashTest {
 
@@ -50,4 +52,105 @@ public class StampedHashTest {
     }
   }
 
+  @Test
+  public void incrementalExpansion() {
+    StampedHash<Integer, Integer> ht = new StampedHash<>(null);
+    ht.setIncrementalExpansion(true);
+    long initialCapacity = ht.getEntryCapacity();
+    int count = 10_000;
+    boolean expansionSeen = false;
+    for (int i = 0; i < count; i++) {
+      insert(ht, i);
+      expansionSeen |= ht.isExpansionInProgress();
+      for (int j = 0; j <= i; j += 97) {
+        assertThat(lookup(ht, j)).isNotNull();
+      }
+    }
+    assertThat(expansionSeen).isTrue();
+    assertThat(ht.getEntryCapacity()).isGreaterThan(initialCapacity);
+    assertThat(ht.getSize()).isEqualTo(count);
+    for (int i = 0; i < count; i++) {
+      assertThat(lookup(ht, i).getKey()).isEqualTo(i);
+    }
+    for (int i = 0; i < count; i += 2) {
+      assertThat(ht.remove(lookup(ht, i))).isTrue();
+    }
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(count / 2);
+    assertThat(ht.isExpansionInProgress()).isFalse();
+    for (int i = 0; i < count; i++) {
+      assertThat(lookup(ht, i) != null).isEqualTo(i % 2 == 1);
+    }
+  }
+
+  @Test
+  public void presize() {
+    StampedHash<Integer, Integer> ht = new StampedHash<>(null);
+    int count = 100_000;
+    ht.presize(count);
+    long capacity = ht.getEntryCapacity();
+    assertThat(capacity).isGreaterThanOrEqualTo(count);
+    for (int i = 0; i < count; i++) {
+      insert(ht, i);
+    }
+    assertThat(ht.getEntryCapacity())
+      .as("no expansion")
+      .isEqualTo(capacity);
+    ht.runTotalLocked(() -> {
+      ht.clearWhenLocked();
+      return null;
+    });
+    assertThat(ht.getEntryCapacity())
+      .as("size kept after clear")
+      .isEqualTo(capacity);
+  }
+
+  @Test
+  public void lookupAll() {
+    StampedHash<Integer, Integer> ht = new StampedHash<>(null);
+    ht.setIncrementalExpansion(true);
+    checkLookupAll(ht);
+    checkLookupAll(new OpenAddressingHash<>(null));
+  }
+
+  private static void checkLookupAll(StampedHash<Integer, Integer> ht) {
+    int count = 5_000;
+    for (int i = 0; i < count; i += 2) {
+      insert(ht, i);
+    }
+    Integer[] keys = new Integer[count];
+    int[] hashes = new int[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = i;
+      hashes[i] = HeapCache.spreadHash(keys[i].hashCode());
+    }
+    Entry<Integer, Integer>[] result = new Entry[count];
+    ht.lookupAll(keys, hashes, hashes, result);
+    for (int i = 0; i < count; i++) {
+      if (i % 2 == 0) {
+        assertThat(result[i].getKey()).isEqualTo(i);
+      } else {
+        assertThat(result[i]).isNull();
+      }
+    }
+  }
+
+  private static Entry<Integer, Integer> lookup(StampedHash<Integer, Integer> ht, int key) {
+    Integer k = key;
+    int hc = HeapCache.spreadHash(k.hashCode());
+    return ht.lookup(k, hc, hc);
+  }
+
+  private static void insert(StampedHash<Integer, Integer> ht, int key) {
+    Integer k = key;
+    int hc = HeapCache.spreadHash(k.hashCode());
+    StampedLock l = ht.getSegmentLock(hc);
+    long stamp = l.writeLock();
+    try {
+      ht.insertWithinLock(new Entry<>(k, hc), hc, hc);
+    } finally {
+      l.unlockWrite(stamp);
+    }
+    ht.checkExpand(hc);
+  }
+
 }
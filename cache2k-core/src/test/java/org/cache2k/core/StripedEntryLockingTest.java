@@ -0,0 +1,154 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the entry lock and waiting for entry processing without entry monitor.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("rawtypes")
+@Category(FastTests.class)
+public class StripedEntryLockingTest {
+
+  /**
+   * Entries are locked by synchronizing on the entry, unless selected
+   */
+  @Test
+  public void monitorByDefault() {
+    Cache<Integer, Integer> c = Cache2kBuilder.of(Integer.class, Integer.class).build();
+    assertThat(c.requestInterface(HeapCache.class).stripedLocking).isNull();
+    c.close();
+    c = Cache2kBuilder.of(Integer.class, Integer.class)
+      .stripedEntryLocks(true)
+      .build();
+    assertThat(c.requestInterface(HeapCache.class).stripedLocking).isNotNull();
+    c.put(1, 2);
+    assertThat(c.get(1)).isEqualTo(2);
+    assertThat(c.containsAndRemove(1)).isTrue();
+    c.close();
+  }
+
+  @Test
+  public void lockBits() {
+    StripedEntryLocking locking = new StripedEntryLocking();
+    Entry e = new Entry();
+    e.enableStripedLocking();
+    e.setModificationTime(4711);
+    locking.lock(e);
+    assertThat(e.tryLock()).isFalse();
+    locking.unlock(e);
+    assertThat(e.tryLock()).isTrue();
+    assertThat(e.unlock()).isFalse();
+    assertThat(e.getModificationTime())
+      .as("lock bits are independent of modification time")
+      .isEqualTo(4711);
+    assertThat(e.getProcessingState()).isEqualTo(Entry.ProcessingState.DONE);
+  }
+
+  @Test
+  public void mutualExclusion() throws Exception {
+    StripedEntryLocking locking = new StripedEntryLocking();
+    Entry e = new Entry();
+    e.enableStripedLocking();
+    int threadCount = 8;
+    int incrementsPerThread = 10_000;
+    int[] counter = new int[1];
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      Thread t = new Thread(() -> {
+        for (int j = 0; j < incrementsPerThread; j++) {
+          locking.lock(e);
+          try {
+            counter[0]++;
+          } finally {
+            locking.unlock(e);
+          }
+        }
+      });
+      threads.add(t);
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertThat(counter[0]).isEqualTo(threadCount * incrementsPerThread);
+  }
+
+  /**
+   * A thread waits for the processing, while other threads lock the entry.
+   * The lock is released while waiting and held again afterwards.
+   */
+  @Test
+  public void waitForProcessing() throws Exception {
+    StripedEntryLocking locking = new StripedEntryLocking();
+    Entry e = new Entry();
+    e.enableStripedLocking();
+    locking.lock(e);
+    e.startProcessing(Entry.ProcessingState.LOAD, null);
+    locking.unlock(e);
+    CountDownLatch waiting = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    Thread waiter = new Thread(() -> {
+      locking.lock(e);
+      waiting.countDown();
+      locking.waitForProcessing(e);
+      assertThat(e.isProcessing()).isFalse();
+      assertThat(e.tryLock()).isFalse();
+      locking.unlock(e);
+      done.countDown();
+    });
+    waiter.start();
+    waiting.await();
+    for (int i = 0; i < 100; i++) {
+      locking.lock(e);
+      locking.unlock(e);
+    }
+    assertThat(done.getCount()).isEqualTo(1);
+    locking.lock(e);
+    e.processingDoneWithoutNotify();
+    locking.unlock(e);
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    waiter.join();
+  }
+
+  @Test
+  public void stripes() {
+    StripedEntryLocking locking = new StripedEntryLocking(33);
+    assertThat(locking.getStripeCount()).isEqualTo(64);
+    assertThat(locking.toString()).isEqualTo("striped(64)");
+  }
+
+}
@@ -0,0 +1,144 @@
+package org.cache2k.core.concurrency;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.event.CacheEntryCreatedListener;
+import org.cache2k.testing.category.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Test the virtual threads option. Tests requiring virtual threads are skipped
+ * on runtimes before Java 21. The CI runs the tests on Java 21, see
+ * {@code .circleci/config.yml}.
+ *
+ * @author Jens Wilke
+ */
+public class VirtualThreadsTest {
+
+  static final int SLOW_LOAD_COUNT = 10_000;
+  static final long SLOW_LOAD_MILLIS = 100;
+
+  /**
+   * The jdk21 build profile sets the property, so the tests below are not skipped
+   * when running on Java 21.
+   */
+  @Test
+  public void supportedWhenRequested() {
+    assumeTrue(Boolean.getBoolean("org.cache2k.test.virtualThreads"));
+    assertThat(VirtualThreads.isSupported()).isTrue();
+  }
+
+  @Test
+  public void unsupported() {
+    assumeFalse(VirtualThreads.isSupported());
+    assertThatCode(() -> Cache2kBuilder.of(Integer.class, Integer.class)
+      .virtualThreads(true)
+      .build())
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessageContaining("Java 21");
+  }
+
+  /**
+   * Load 10k entries with a loader that blocks. The platform thread pool would run
+   * the loads in chunks of the available processors, with virtual threads all loads
+   * are waiting at the same time.
+   */
+  @Test
+  @Category(SlowTests.class)
+  public void concurrentSlowLoads() {
+    assumeTrue(VirtualThreads.isSupported());
+    AtomicInteger concurrentLoads = new AtomicInteger();
+    AtomicInteger maxConcurrentLoads = new AtomicInteger();
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .virtualThreads(true)
+      .loader(key -> {
+        int count = concurrentLoads.incrementAndGet();
+        maxConcurrentLoads.accumulateAndGet(count, Math::max);
+        Thread.sleep(SLOW_LOAD_MILLIS);
+        concurrentLoads.decrementAndGet();
+        return key;
+      })
+      .build();
+    List<Integer> keys = new ArrayList<>();
+    for (int i = 0; i < SLOW_LOAD_COUNT; i++) {
+      keys.add(i);
+    }
+    long t0 = System.currentTimeMillis();
+    cache.loadAll(keys).join();
+    long millis = System.currentTimeMillis() - t0;
+    assertThat(cache.asMap().size()).isEqualTo(SLOW_LOAD_COUNT);
+    assertThat(maxConcurrentLoads.get())
+      .as("loads are not limited by processor count")
+      .isGreaterThan(Runtime.getRuntime().availableProcessors() * 2);
+    assertThat(millis)
+      .as("10k loads of %sms within 100 sequential load times, throughput %s loads/s",
+        SLOW_LOAD_MILLIS, SLOW_LOAD_COUNT * 1000L / Math.max(1, millis))
+      .isLessThan(SLOW_LOAD_MILLIS * 100);
+    cache.close();
+  }
+
+  @Test
+  public void loadAndListenerThreads() throws Exception {
+    assumeTrue(VirtualThreads.isSupported());
+    CountDownLatch listenerCalled = new CountDownLatch(1);
+    List<String> threadNames = new ArrayList<>();
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .name(VirtualThreadsTest.class, "loadAndListenerThreads")
+      .virtualThreads(true)
+      .loader(key -> {
+        synchronized (threadNames) {
+          threadNames.add(Thread.currentThread().getName());
+        }
+        return key;
+      })
+      .addAsyncListener((CacheEntryCreatedListener<Integer, Integer>) (c, entry) -> {
+        synchronized (threadNames) {
+          threadNames.add(Thread.currentThread().getName());
+        }
+        listenerCalled.countDown();
+      })
+      .build();
+    cache.loadAll(Collections.singleton(1)).join();
+    assertThat(listenerCalled.await(5, TimeUnit.SECONDS)).isTrue();
+    synchronized (threadNames) {
+      assertThat(threadNames).hasSize(2);
+      assertThat(threadNames.get(0)).startsWith("cache2k-loader-");
+      assertThat(threadNames.get(1)).startsWith("cache2k-listener-");
+    }
+    cache.close();
+  }
+
+}
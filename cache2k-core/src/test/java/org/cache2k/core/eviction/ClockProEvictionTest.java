@@ -21,6 +21,7 @@ package org.cache2k.core.eviction;
  */
 
 import org.cache2k.Cache;
+import org.cache2k.core.Entry;
 import org.cache2k.test.util.TestingBase;
 import org.cache2k.testing.category.FastTests;
 import org.junit.Test;
@@ -46,6 +47,16 @@ public class ClockProEvictionTest extends TestingBase {
       .build();
   }
 
+  @Test
+  public void presizeGhosts() {
+    ClockProPlusEviction eviction = new ClockProPlusEviction(
+      null, InternalEvictionListener.NO_OPERATION, 1_000_000, null, -1, false);
+    eviction.presize(1_000_000);
+    assertThat(eviction.getGhosts().getTableLength() * GhostSet.LOAD_PERCENT / 100)
+      .as("ghosts scale with size")
+      .isGreaterThanOrEqualTo(1_000_000 * ClockProPlusEviction.GHOST_MAX_PERCENTAGE / 100);
+  }
+
   @Test
   public void testChunking() {
     final int maxSize = 10000;
@@ -190,4 +201,42 @@ public class ClockProEvictionTest extends TestingBase {
     assertThat(countEntriesViaIteration()).isEqualTo(size);
   }
 
+  /**
+   * The hot maximum only adapts on a ghost hit. Ghosts removed from the history without
+   * a hit are counted and increase the hot maximum on the next ghost hit.
+   */
+  @Test
+  public void hotMaxAdaptsOnGhostHitOnly() {
+    ClockProPlusEviction eviction = new ClockProPlusEviction(
+      null, InternalEvictionListener.NO_OPERATION, 100, null, -1, false);
+    for (int i = 0; i < 100; i++) {
+      eviction.insertIntoReplacementList(new Entry<>(i, i));
+    }
+    eviction.updateHotMax();
+    long hotMaxUpper = eviction.getHotMax();
+    long ghostMax = eviction.getGhostMax();
+    insertAndEvictCold(eviction, 1000, 1);
+    eviction.insertIntoReplacementList(new Entry<>(1000, 1000));
+    assertThat(eviction.getHotMax())
+      .as("ghost hit decreases hot max")
+      .isEqualTo(hotMaxUpper - 1);
+    insertAndEvictCold(eviction, 2000, (int) ghostMax + 10);
+    assertThat(eviction.getHotMax())
+      .as("no adaption without ghost hit")
+      .isEqualTo(hotMaxUpper - 1);
+    eviction.insertIntoReplacementList(new Entry<>(2000 + ghostMax, 2000 + (int) ghostMax));
+    assertThat(eviction.getHotMax())
+      .as("removed ghosts increase hot max on next ghost hit")
+      .isEqualTo(hotMaxUpper);
+  }
+
+  private static void insertAndEvictCold(ClockProPlusEviction eviction, int start, int count) {
+    for (int i = start; i < start + count; i++) {
+      Entry e = new Entry<>(i, i);
+      eviction.insertIntoReplacementList(e);
+      assertThat(e.isHot()).isFalse();
+      eviction.removeFromReplacementListOnEvict(e);
+    }
+  }
+
 }
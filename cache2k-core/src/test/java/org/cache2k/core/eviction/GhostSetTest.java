@@ -0,0 +1,77 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+public class GhostSetTest {
+
+  @Test
+  public void removesOldestWhenFull() {
+    GhostSet ghosts = new GhostSet(3);
+    assertThat(ghosts.add(1)).isFalse();
+    assertThat(ghosts.add(2)).isFalse();
+    assertThat(ghosts.add(3)).isFalse();
+    assertThat(ghosts.add(3))
+      .as("already present")
+      .isFalse();
+    assertThat(ghosts.add(4))
+      .as("oldest removed")
+      .isTrue();
+    assertThat(ghosts.contains(1)).isFalse();
+    assertThat(ghosts.contains(2)).isTrue();
+    assertThat(ghosts.contains(4)).isTrue();
+    assertThat(ghosts.size()).isEqualTo(3);
+    ghosts.setMaxSize(1);
+    assertThat(ghosts.size()).isEqualTo(1);
+    assertThat(ghosts.contains(4)).isTrue();
+  }
+
+  @Test
+  public void zeroHash() {
+    GhostSet ghosts = new GhostSet(10);
+    ghosts.add(0);
+    assertThat(ghosts.contains(0)).isTrue();
+  }
+
+  @Test
+  public void manyWithCollisions() {
+    int count = 10_000;
+    GhostSet ghosts = new GhostSet(count);
+    for (int i = 0; i < count * 3; i++) {
+      ghosts.add(i << 16);
+    }
+    assertThat(ghosts.countInTable()).isEqualTo(ghosts.size());
+    assertThat(ghosts.size()).isEqualTo(count);
+    for (int i = 0; i < count * 2; i++) {
+      assertThat(ghosts.contains(i << 16)).isFalse();
+    }
+    for (int i = count * 2; i < count * 3; i++) {
+      assertThat(ghosts.contains(i << 16)).isTrue();
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Run the clock pro access patterns on the TinyLFU eviction and check
+ * the frequency based admission.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class TinyLfuEvictionTest extends ClockProEvictionTest {
+
+  protected Cache<Integer, Integer> provideCache(long size) {
+    return builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(size)
+      .with(InternalConfig.class, b -> b
+        .evictionPolicy(EvictionPolicy.TINY_LFU))
+      .build();
+  }
+
+  @Test
+  public void sketchCountsAndAges() {
+    FrequencySketch sketch = new FrequencySketch(100);
+    assertThat(sketch.frequency(4711)).isEqualTo(0);
+    for (int i = 0; i < 5; i++) {
+      sketch.add(4711, 1);
+    }
+    assertThat(sketch.frequency(4711)).isEqualTo(5);
+    sketch.add(4712, 100);
+    assertThat(sketch.frequency(4712)).isEqualTo(FrequencySketch.MAX_COUNT);
+    int additions = sketch.getTableSize() * FrequencySketch.SAMPLE_FACTOR;
+    for (int i = 0; i < additions; i++) {
+      sketch.add(i + 100_000, 1);
+    }
+    assertThat(sketch.getResetCount()).isGreaterThan(0);
+    assertThat(sketch.frequency(4711)).isLessThan(5);
+  }
+
+  /**
+   * Frequently accessed entries stay in the cache while a scan of
+   * one time accessed keys passes through.
+   */
+  @Test
+  public void scanResistance() {
+    final int size = 1000;
+    Cache<Integer, Integer> c = provideCache(size);
+    int hotCount = size / 2;
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < hotCount; i++) {
+        c.put(i, i);
+        c.get(i);
+      }
+    }
+    for (int i = 0; i < size * 10; i++) {
+      c.put(1_000_000 + i, i);
+    }
+    int hits = 0;
+    for (int i = 0; i < hotCount; i++) {
+      if (c.containsKey(i)) {
+        hits++;
+      }
+    }
+    assertThat(hits).isGreaterThan(hotCount * 9 / 10);
+    assertThat(countEntriesViaIteration()).isEqualTo(size);
+    c.requestInterface(InternalCache.class).checkIntegrity();
+  }
+
+}
@@ -0,0 +1,64 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+@SuppressWarnings("rawtypes")
+public class WriteBufferTest {
+
+  @Test
+  public void fillAndDrainInOrder() {
+    WriteBuffer buffer = new WriteBuffer(3);
+    Entry[] entries = new Entry[4];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = new Entry();
+      assertThat(buffer.offer(entries[i])).isTrue();
+    }
+    assertThat(buffer.offer(new Entry()))
+      .as("rounded up to 4, full")
+      .isFalse();
+    assertThat(buffer.size()).isEqualTo(4);
+    for (Entry e : entries) {
+      assertThat(buffer.poll()).isSameAs(e);
+    }
+    assertThat(buffer.poll()).isNull();
+    assertThat(buffer.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void wrapAround() {
+    WriteBuffer buffer = new WriteBuffer(2);
+    for (int i = 0; i < 10; i++) {
+      Entry e = new Entry();
+      assertThat(buffer.offer(e)).isTrue();
+      assertThat(buffer.poll()).isSameAs(e);
+    }
+    assertThat(buffer.isEmpty()).isTrue();
+  }
+
+}
@@ -0,0 +1,143 @@
+package org.cache2k.core.offheap;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class SlabAllocatorTest {
+
+  @Test
+  public void chunkSize() {
+    assertThat(SlabAllocator.chunkSize(0)).isEqualTo(16);
+    assertThat(SlabAllocator.chunkSize(16)).isEqualTo(16);
+    assertThat(SlabAllocator.chunkSize(17)).isEqualTo(20);
+    assertThat(SlabAllocator.chunkSize(33)).isEqualTo(40);
+    assertThat(SlabAllocator.chunkSize(1000)).isEqualTo(1024);
+    assertThat(SlabAllocator.chunkSize(1025)).isEqualTo(1280);
+  }
+
+  /**
+   * Size classes are unique and ascending with the chunk size.
+   */
+  @Test
+  public void sizeClass() {
+    int previousChunk = 0;
+    int previousClass = -1;
+    for (int i = 1; i < 1 << 20; i++) {
+      int chunk = SlabAllocator.chunkSize(i);
+      assertThat(chunk).isGreaterThanOrEqualTo(i);
+      assertThat(chunk - i).isLessThanOrEqualTo(Math.max(16, i / 4));
+      if (chunk != previousChunk) {
+        int sizeClass = SlabAllocator.sizeClass(chunk);
+        assertThat(sizeClass).isEqualTo(previousClass + 1);
+        assertThat(SlabAllocator.classChunkSize(sizeClass)).isEqualTo(chunk);
+        previousClass = sizeClass;
+        previousChunk = chunk;
+      }
+    }
+  }
+
+  @Test
+  public void allocateWriteReadFree() {
+    SlabAllocator allocator = new SlabAllocator(1024);
+    long h1 = allocator.allocate(100);
+    long h2 = allocator.allocate(100);
+    assertThat(h1).isNotEqualTo(h2);
+    byte[] data = new byte[100];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    allocator.write(h2, data);
+    byte[] target = new byte[100];
+    allocator.read(h2, target);
+    assertThat(target).isEqualTo(data);
+    assertThat(allocator.getAllocatedBytes()).isEqualTo(2 * 112);
+    allocator.free(h1, 100);
+    assertThat(allocator.getAllocatedBytes()).isEqualTo(112);
+    assertThat(allocator.allocate(99)).isEqualTo(h1);
+  }
+
+  @Test
+  public void newSlabWhenFull() {
+    SlabAllocator allocator = new SlabAllocator(1024);
+    long h1 = allocator.allocate(1000);
+    long h2 = allocator.allocate(1000);
+    assertThat(h1 >>> 32).isEqualTo(0);
+    assertThat(h2 >>> 32).isEqualTo(1);
+    assertThat(allocator.getReservedBytes()).isEqualTo(2048);
+  }
+
+  /**
+   * The rest of a slab is kept as free chunks when the next slab is started.
+   */
+  @Test
+  public void slabTailIsReused() {
+    SlabAllocator allocator = new SlabAllocator(1024);
+    allocator.allocate(600);
+    long h2 = allocator.allocate(600);
+    assertThat(h2 >>> 32).isEqualTo(1);
+    long h3 = allocator.allocate(384);
+    assertThat(h3).isEqualTo(640);
+    assertThat(allocator.getReservedBytes()).isEqualTo(2048);
+  }
+
+  @Test
+  public void reservedBytesLimit() {
+    SlabAllocator allocator = new SlabAllocator(1024, 1500);
+    assertThat(allocator.allocate(1000) >>> 32).isEqualTo(0);
+    assertThat(allocator.allocate(400) >>> 32).isEqualTo(1);
+    assertThat(allocator.allocate(100)).isEqualTo(SlabAllocator.EXHAUSTED);
+    assertThat(allocator.getReservedBytes()).isEqualTo(1500);
+  }
+
+  /**
+   * When no more slab can be reserved, a larger free chunk is split.
+   */
+  @Test
+  public void splitLargerChunk() {
+    SlabAllocator allocator = new SlabAllocator(1024, 1024);
+    long h = allocator.allocate(1000);
+    allocator.free(h, 1000);
+    assertThat(allocator.allocate(100)).isEqualTo(h);
+    assertThat(allocator.allocate(800)).isEqualTo(h + 112);
+    assertThat(allocator.allocate(10)).isEqualTo(h + 112 + 896);
+    assertThat(allocator.allocate(10)).isEqualTo(SlabAllocator.EXHAUSTED);
+    assertThat(allocator.getAllocatedBytes()).isEqualTo(1024);
+    assertThat(allocator.getReservedBytes()).isEqualTo(1024);
+  }
+
+  @Test
+  public void tooLarge() {
+    SlabAllocator allocator = new SlabAllocator(1024);
+    assertThatCode(() -> allocator.allocate(1025))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
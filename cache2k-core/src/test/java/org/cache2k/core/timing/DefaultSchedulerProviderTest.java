@@ -117,6 +117,11 @@ public class DefaultSchedulerProviderTest {
       return null;
     }
 
+    @Override
+    public Scheduler createScheduler() {
+      return null;
+    }
+
     @Override
     public Cache2kConfig getConfig() {
       return null;
@@ -25,6 +25,11 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.assertj.core.api.Condition;
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.Entry;
+import org.cache2k.core.HeapCache;
+import org.cache2k.core.MiscSlot;
 import org.cache2k.operation.TimeReference;
 import org.cache2k.operation.Scheduler;
 import org.cache2k.testing.SimulatedClock;
@@ -34,9 +39,13 @@ import org.junit.experimental.categories.Category;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.assertj.core.api.Assertions.fail;
@@ -340,6 +349,202 @@ public class TimerTest {
     schedule(clock.ticks() + 100L * 1000 * 60 * 60 * 24 * 365);
   }
 
+  /**
+   * Run many tasks through wheels with small slot counts and different counts
+   * per level, so tasks are cascaded through several levels.
+   */
+  @Test
+  public void wheelsCascadeThroughLevels() {
+    long startTime = 1000;
+    TimerWheels wheels = new TimerWheels(startTime, 3, 5, 2);
+    Random random = new Random(1802);
+    List<MyTimerTask> scheduled = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      MyTimerTask t = new MyTimerTask();
+      t.scheduleTime = startTime + 1 + random.nextInt(100_000);
+      assertThat(wheels.schedule(t, t.scheduleTime)).isGreaterThanOrEqualTo(t.scheduleTime);
+      scheduled.add(t);
+    }
+    MyTimerTask cancelled = scheduled.remove(0);
+    assertThat(cancelled.cancel()).isTrue();
+    assertThat(wheels.getLevelCount()).isGreaterThan(3);
+    int count = 0;
+    long time = startTime;
+    while (wheels.nextRun() != MAX_VALUE) {
+      time = Math.max(time, wheels.nextRun());
+      TimerTask t;
+      while ((t = wheels.removeNextToRun(time)) != null) {
+        assertThat(((MyTimerTask) t).scheduleTime).isLessThanOrEqualTo(time);
+        assertThat(((MyTimerTask) t).scheduleTime).isGreaterThan(time - 3);
+        count++;
+      }
+    }
+    assertThat(count).isEqualTo(scheduled.size());
+  }
+
+  @Test
+  public void wheelsScheduleMaxMinus1() {
+    TimerWheels wheels = new TimerWheels(2, 1, 4, 2);
+    MyTimerTask t = new MyTimerTask();
+    assertThat(wheels.schedule(t, MAX_VALUE - 1)).isEqualTo(MAX_VALUE - 1);
+    assertThat(wheels.nextRun()).isLessThan(MAX_VALUE);
+  }
+
+  @Test
+  public void scheduleBatch() {
+    init(100, 10, 10);
+    long[] times = {0, 50, 140, 150, 987654};
+    MyTimerTask[] tasks = new MyTimerTask[times.length];
+    for (int i = 0; i < tasks.length; i++) {
+      tasks[i] = new MyTimerTask();
+      tasks[i].scheduleTime = times[i];
+    }
+    timer.schedule(tasks, times, tasks.length);
+    assertThat(tasks[0].executed).isTrue();
+    assertThat(tasks[1].executed).isTrue();
+    assertThat(tasks[2].isScheduled()).isTrue();
+    clock.run(160);
+    assertThat(tasks[2].executed).isTrue();
+    assertThat(tasks[3].executed).isTrue();
+    assertThat(tasks[4].executed).isFalse();
+    clock.run(987654 + 10);
+    assertThat(tasks[4].executed).isTrue();
+  }
+
+  /**
+   * Many tasks in the same slot are removed in chunks, full chunks are passed
+   * to the executor.
+   */
+  @Test
+  public void executeInChunks() {
+    init(100, 10);
+    int count = DefaultTimer.EXECUTION_CHUNK_SIZE * 3 + 7;
+    long[] times = new long[count];
+    MyTimerTask[] tasks = new MyTimerTask[count];
+    for (int i = 0; i < count; i++) {
+      tasks[i] = new MyTimerTask();
+      times[i] = 150;
+    }
+    timer.schedule(tasks, times, count);
+    clock.run(170);
+    assertThat(executed).hasSize(count);
+  }
+
+  @Test
+  public void wheelsRemoveAllToRun() {
+    TimerWheels wheels = new TimerWheels(100, 10, 4);
+    for (int i = 0; i < 7; i++) {
+      wheels.schedule(new MyTimerTask(), 105 + i * 10);
+    }
+    TimerTask[] buffer = new TimerTask[3];
+    assertThat(wheels.removeNextToRun(120, buffer)).isEqualTo(2);
+    assertThat(wheels.removeNextToRun(200, buffer)).isEqualTo(3);
+    assertThat(wheels.removeNextToRun(200, buffer)).isEqualTo(2);
+    assertThat(wheels.removeNextToRun(200, buffer)).isEqualTo(0);
+    assertThat(wheels.nextRun()).isEqualTo(MAX_VALUE);
+  }
+
+  @Test
+  public void shardedTimer() {
+    MyClock clock = new MyClock(100);
+    List<Runnable> wakeups = new ArrayList<>();
+    Scheduler scheduler = new Scheduler() {
+      @Override
+      public void schedule(Runnable runnable, long delayMillis) {
+        wakeups.add(runnable);
+      }
+      @Override
+      public void execute(Runnable command) {
+        command.run();
+      }
+    };
+    ShardedTimer st = new ShardedTimer(clock, scheduler, 10, 3);
+    assertThat(st.getShardCount()).isEqualTo(4);
+    assertThat(st.getLagTicks()).isEqualTo(10);
+    timer = st;
+    List<MyTimerTask> tasks = schedule(150, 160, 170, 180, 190, 200, 50);
+    assertThat(tasks.get(6).executed).isTrue();
+    MyTimerTask[] batch = {new MyTimerTask(), new MyTimerTask(), new MyTimerTask()};
+    timer.schedule(batch, new long[]{210, 220, 230}, batch.length);
+    tasks.addAll(Arrays.asList(batch));
+    timer.cancel(tasks.get(0));
+    assertThat(tasks.get(0).isCancelled()).isTrue();
+    clock.moveTo(300);
+    while (!wakeups.isEmpty()) {
+      wakeups.remove(0).run();
+    }
+    assertThat(tasks.get(0).executed).isFalse();
+    for (MyTimerTask t : tasks.subList(1, tasks.size())) {
+      assertThat(t.executed).isTrue();
+    }
+  }
+
+  /**
+   * The executor is called outside the timer lock. Another thread can cancel a task
+   * while the immediate tasks are handed to the executor.
+   */
+  @Test
+  public void immediateExecutionOutsideLock() {
+    MyClock clock = new MyClock(100);
+    MyTimerTask other = new MyTimerTask();
+    Scheduler scheduler = new Scheduler() {
+      @Override
+      public void schedule(Runnable runnable, long delayMillis) { }
+      @Override
+      public void execute(Runnable command) {
+        Thread t = new Thread(() -> timer.cancel(other));
+        t.start();
+        try {
+          t.join(10_000);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        assertThat(t.isAlive()).as("cancel not blocked by timer lock").isFalse();
+        command.run();
+      }
+    };
+    timer = new DefaultTimer(clock, scheduler, 10);
+    timer.schedule(other, 500);
+    MyTimerTask task = new MyTimerTask();
+    timer.schedule(task, 50);
+    assertThat(task.executed).isTrue();
+    MyTimerTask[] batch = {new MyTimerTask(), new MyTimerTask()};
+    timer.schedule(batch, new long[]{60, 70}, batch.length);
+    assertThat(batch[0].executed).isTrue();
+    assertThat(batch[1].executed).isTrue();
+    assertThat(other.isCancelled()).isTrue();
+  }
+
+  /**
+   * A bulk put schedules the timer tasks of a chunk together.
+   */
+  @Test
+  public void putAllExpiry() throws InterruptedException {
+    SimulatedClock clock = new SimulatedClock(true, 1000);
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .timeReference(clock)
+      .scheduler(clock)
+      .executor(clock.wrapExecutor(Runnable::run))
+      .expireAfterWrite(5, MILLISECONDS)
+      .timerLag(1, MILLISECONDS)
+      .build();
+    Map<Integer, Integer> map = new HashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      map.put(i, i);
+    }
+    cache.putAll(map);
+    HeapCache<Integer, Integer> heapCache = cache.requestInterface(HeapCache.class);
+    int count = 0;
+    for (Iterator<Entry<Integer, Integer>> it = heapCache.iterateAllHeapEntries();
+         it.hasNext(); count++) {
+      assertThat(MiscSlot.taskOf(it.next()).isScheduled()).isTrue();
+    }
+    assertThat(count).isEqualTo(1000);
+    clock.sleep(10);
+    assertThat(cache.asMap()).isEmpty();
+    cache.close();
+  }
+
   @Test
   public void config() {
     long lag = hashCode();
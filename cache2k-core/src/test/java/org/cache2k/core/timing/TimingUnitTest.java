@@ -24,6 +24,7 @@ import org.cache2k.CacheManager;
 import org.cache2k.config.Cache2kConfig;
 import org.cache2k.config.CustomizationSupplier;
 import org.cache2k.core.api.InternalCacheBuildContext;
+import org.cache2k.core.api.InternalConfig;
 import org.cache2k.core.Entry;
 import org.cache2k.operation.Scheduler;
 import org.cache2k.operation.TimeReference;
@@ -285,4 +286,38 @@ public class TimingUnitTest {
     assertThat(abs(t)).isLessThan(sharpPointInTime);
   }
 
+  @Test
+  public void refreshJitter() {
+    StaticTiming h = (StaticTiming) create(
+      CLOCK,
+      forUnknownTypes()
+        .expireAfterWrite(1, MINUTES)
+        .refreshAhead(true)
+        .with(InternalConfig.class, b -> b.refreshJitterPercent(50))
+        .config()
+    );
+    long min = MAX_VALUE;
+    long max = 0;
+    for (int i = 0; i < 1000; i++) {
+      long t = h.spreadRefreshTime(NOW, NOW + 1000);
+      min = Math.min(min, t);
+      max = Math.max(max, t);
+    }
+    assertThat(min).isGreaterThanOrEqualTo(NOW + 500);
+    assertThat(max).isLessThanOrEqualTo(NOW + 1000);
+    assertThat(max - min).as("spread").isGreaterThan(100);
+  }
+
+  @Test
+  public void noRefreshJitter() {
+    StaticTiming h = (StaticTiming) create(
+      CLOCK,
+      forUnknownTypes()
+        .expireAfterWrite(1, MINUTES)
+        .refreshAhead(true)
+        .config()
+    );
+    assertThat(h.spreadRefreshTime(NOW, NOW + 1000)).isEqualTo(NOW + 1000);
+  }
+
 }
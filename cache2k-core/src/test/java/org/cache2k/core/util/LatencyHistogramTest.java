@@ -0,0 +1,108 @@
+package org.cache2k.core.util;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.cache2k.core.util.LatencyHistogram.*;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketsAreContinuous() {
+    assertThat(lowerBound(0)).isEqualTo(0);
+    for (int i = 1; i < BUCKET_COUNT; i++) {
+      assertThat(lowerBound(i)).isEqualTo(upperBound(i - 1) + 1);
+      assertThat(bucketIndex(lowerBound(i))).isEqualTo(i);
+      assertThat(bucketIndex(upperBound(i))).isEqualTo(i);
+    }
+    assertThat(upperBound(BUCKET_COUNT - 1)).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void relativeError() {
+    for (long v = 1; v < 1_000_000; v = v * 3 + 1) {
+      int idx = bucketIndex(v);
+      assertThat((double) (upperBound(idx) - lowerBound(idx)) / lowerBound(idx))
+        .isLessThanOrEqualTo(1D / SUB_BUCKETS);
+    }
+  }
+
+  @Test
+  public void percentiles() {
+    LatencyHistogram h = new LatencyHistogram();
+    assertThat(h.getValueAtPercentile(99)).isEqualTo(0);
+    for (int i = 1; i <= 98; i++) {
+      h.record(5);
+    }
+    h.record(2000);
+    h.record(-1);
+    assertThat(h.getCount()).isEqualTo(100);
+    assertThat(h.getValueAtPercentile(0)).isEqualTo(0);
+    assertThat(h.getValueAtPercentile(50)).isEqualTo(5);
+    assertThat(h.getValueAtPercentile(99)).isEqualTo(5);
+    assertThat(h.getValueAtPercentile(100))
+      .as("tail, not underestimated")
+      .isBetween(2000L, 2000L + 2000L / SUB_BUCKETS);
+    assertThatCode(() -> h.getValueAtPercentile(101))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /**
+   * Contended recording adds bucket arrays, no value is lost and percentiles
+   * are computed over all arrays.
+   */
+  @Test
+  public void striped() throws Exception {
+    int threadCount = 4;
+    int valuesPerThread = 100_000;
+    LatencyHistogram h = new LatencyHistogram(8);
+    assertThat(h.getStripeCount()).isEqualTo(1);
+    Thread[] threads = new Thread[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < valuesPerThread; j++) {
+          h.record(5);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    h.record(2000);
+    assertThat(h.getStripeCount()).isBetween(1, 8);
+    assertThat(h.getCount()).isEqualTo(threadCount * valuesPerThread + 1);
+    assertThat(h.getValueAtPercentile(50)).isEqualTo(5);
+    assertThat(h.getValueAtPercentile(100)).isGreaterThanOrEqualTo(2000);
+    assertThatCode(() -> new LatencyHistogram(3))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
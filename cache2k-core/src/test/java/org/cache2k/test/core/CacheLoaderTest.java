@@ -25,10 +25,14 @@ import static java.util.Collections.EMPTY_LIST;
 import static java.util.Collections.EMPTY_SET;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 
+import org.cache2k.core.api.CommonMetrics;
+import org.cache2k.core.api.InternalCache;
 import org.cache2k.expiry.ExpiryTimeValues;
 import org.cache2k.io.AsyncBulkCacheLoader;
 import org.cache2k.io.AsyncCacheLoader;
 import org.cache2k.io.CacheLoaderException;
+import org.cache2k.operation.CacheControl;
+import org.cache2k.operation.CacheStatistics;
 import org.cache2k.pinpoint.CaughtInterruptedExceptionError;
 import org.cache2k.pinpoint.PinpointParameters;
 import org.cache2k.pinpoint.TaskSuccessGuardian;
@@ -1471,4 +1475,32 @@ public class CacheLoaderTest extends TestingBase {
     c.get(123);
   }
 
+  @Test
+  public void loadLatencyHistogram() {
+    Cache<Integer, Integer> c = target.cache(b -> b
+      .bulkLoader(keys -> {
+        Map<Integer, Integer> map = new HashMap<>();
+        for (Integer key : keys) {
+          map.put(key, key);
+        }
+        return map;
+      }));
+    c.get(1);
+    c.get(2);
+    c.getAll(asList(3, 4, 5));
+    CommonMetrics metrics = c.requestInterface(InternalCache.class).getCommonMetrics();
+    assertThat(metrics.getLoadHistogram().getCount())
+      .as("every load is recorded")
+      .isEqualTo(5);
+    assertThat(metrics.getBulkLoadHistogram().getCount())
+      .as("one bulk request")
+      .isEqualTo(1);
+    assertThat(metrics.getRefreshHistogram().getCount()).isEqualTo(0);
+    CacheStatistics statistics = CacheControl.of(c).sampleStatistics();
+    assertThat(statistics.getLoadMillisPercentile(99))
+      .isGreaterThanOrEqualTo(0)
+      .isLessThanOrEqualTo(statistics.getLoadMillisPercentile(100));
+    assertThat(statistics.getRefreshMillisPercentile(99)).isEqualTo(0);
+  }
+
 }
@@ -24,15 +24,20 @@ import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
 import org.cache2k.CacheEntry;
 import org.cache2k.CacheClosedException;
+import org.cache2k.core.api.InternalConfig;
 import org.cache2k.testing.category.FastTests;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -140,4 +145,79 @@ public class IteratorTest {
     assertThat(e).isNotNull();
   }
 
+  @Test
+  public void parallelStream() {
+    checkParallel(cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(100_000)
+      .build());
+  }
+
+  @Test
+  public void parallelStreamOpenAddressingHash() {
+    checkParallel(cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(100_000)
+      .with(InternalConfig.class, b -> b.openAddressingHash(true))
+      .build());
+  }
+
+  private static void checkParallel(Cache<Integer, Integer> c) {
+    int count = 100_000;
+    for (int i = 0; i < count; i++) {
+      c.put(i, i);
+    }
+    Spliterator<CacheEntry<Integer, Integer>> spliterator = c.entries().spliterator();
+    assertThat(spliterator.trySplit())
+      .as("splits")
+      .isNotNull();
+    assertThat(c.entries().parallelStream().mapToInt(CacheEntry::getKey).distinct().count())
+      .isEqualTo(count);
+    assertThat(c.keys().parallelStream().count()).isEqualTo(count);
+    LongAdder sum = new LongAdder();
+    c.forEachParallel(e -> sum.add(e.getValue()));
+    assertThat(sum.sum()).isEqualTo((long) count * (count - 1) / 2);
+  }
+
+  /**
+   * Entries of both splits are iterated exactly once, after a hash expansion.
+   */
+  @Test
+  public void spliteratorExpansion() {
+    Cache<Integer, Integer> c = createCacheWith20Entries();
+    Spliterator<CacheEntry<Integer, Integer>> s1 = c.entries().spliterator();
+    Spliterator<CacheEntry<Integer, Integer>> s2 = s1.trySplit();
+    assertThat(s2).isNotNull();
+    List<Integer> keysSeen = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      s1.tryAdvance(e -> keysSeen.add(e.getKey()));
+    }
+    for (int i = 20; i < 5555; i++) {
+      c.put(i, i);
+    }
+    s1.forEachRemaining(e -> keysSeen.add(e.getKey()));
+    s2.forEachRemaining(e -> keysSeen.add(e.getKey()));
+    assertThat(keysSeen).doesNotHaveDuplicates();
+    for (int i = 0; i < 20; i++) {
+      assertThat(keysSeen).contains(i);
+    }
+  }
+
+  @Test
+  public void spliteratorClear() {
+    Cache<Integer, Integer> c = createCacheWith20Entries();
+    Spliterator<CacheEntry<Integer, Integer>> s = c.entries().spliterator();
+    assertThat(s.tryAdvance(e -> { })).isTrue();
+    c.clear();
+    c.put(1, 1);
+    assertThat(s.tryAdvance(e -> { })).isFalse();
+  }
+
+  @Test(expected = CacheClosedException.class)
+  public void spliteratorClose() {
+    Cache<Integer, Integer> c = createCacheWith20Entries();
+    Spliterator<CacheEntry<Integer, Integer>> s = c.entries().spliterator();
+    assertThat(s.tryAdvance(e -> { })).isTrue();
+    c.close();
+    s.tryAdvance(e -> { });
+  }
+
 }
@@ -23,9 +23,22 @@ package org.cache2k.extra.jmx;
 import org.cache2k.operation.CacheStatistics;
 
 /**
- * The JMX bean is identical to the {@link CacheStatistics} in the API.
+ * The JMX bean is identical to the {@link CacheStatistics} in the API. The
+ * latency percentiles are available as operations with an arbitrary percentile and
+ * for the commonly monitored percentiles as attributes.
  *
  * @author Jens Wilke
  */
 public interface CacheStatisticsMXBean extends CacheStatistics {
+
+  default double getLoadMillisPercentile50() { return getLoadMillisPercentile(50); }
+
+  default double getLoadMillisPercentile95() { return getLoadMillisPercentile(95); }
+
+  default double getLoadMillisPercentile99() { return getLoadMillisPercentile(99); }
+
+  default double getRefreshMillisPercentile99() { return getRefreshMillisPercentile(99); }
+
+  default double getBulkLoadMillisPercentile99() { return getBulkLoadMillisPercentile(99); }
+
 }
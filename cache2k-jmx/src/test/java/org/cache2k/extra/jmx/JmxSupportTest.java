@@ -100,6 +100,28 @@ public class JmxSupportTest {
     }).isInstanceOf(InstanceNotFoundException.class);
   }
 
+  /**
+   * Integer and Long keys are stored inline in specialized implementations.
+   */
+  @Test
+  public void implementationByKeyType() throws Exception {
+    checkImplementation(String.class, "HeapCache");
+    checkImplementation(Integer.class, "IntHeapCache");
+    checkImplementation(Long.class, "LongHeapCache");
+  }
+
+  private void checkImplementation(Class<?> keyType, String expected) throws Exception {
+    String name = getClass().getName() + ".implementationByKeyType" + keyType.getSimpleName();
+    Cache c = of(keyType, Object.class)
+      .name(name)
+      .eternal(true)
+      .setup(JmxSupport::enable)
+      .build();
+    objectName = constructCacheObjectName(name);
+    checkAttribute("Implementation", expected);
+    c.close();
+  }
+
   @Test
   public void testInitialProperties() throws Exception {
     Date beforeCreation = new Date();
@@ -121,7 +143,7 @@ public class JmxSupportTest {
     checkAttribute("CapacityLimit", 1802L);
     checkAttribute("MaximumWeight", -1L);
     checkAttribute("TotalWeight", 0L);
-    checkAttribute("Implementation", "HeapCache");
+    checkAttribute("Implementation", "LongHeapCache");
     checkAttribute("ClearedTime", null);
     checkAttribute("LoaderPresent", false);
     checkAttribute("WeigherPresent", false);
@@ -146,6 +168,8 @@ public class JmxSupportTest {
     checkAttribute("HitRate", 0.0);
     checkAttribute("MillisPerLoad", 0.0);
     checkAttribute("TotalLoadMillis", 0L);
+    checkAttribute("LoadMillisPercentile99", 0.0);
+    checkAttribute("BulkLoadMillisPercentile99", 0.0);
     objectName = constructCacheObjectName(name);
     invoke("clear");
     assertThat(((Date) retrieve("ClearedTime")).compareTo(beforeCreation) >= 0)
@@ -20,6 +20,7 @@ package org.cache2k.extra.micrometer;
  * #L%
  */
 
+import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -34,6 +35,7 @@ import org.cache2k.operation.CacheControl;
 import org.cache2k.operation.CacheStatistics;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleBiFunction;
 
 /**
  * Micrometer support for cache2k. Metrics will be bound automatically upon
@@ -44,6 +46,27 @@ import java.util.concurrent.TimeUnit;
  */
 public class Cache2kCacheMetrics extends CacheMeterBinder {
 
+  /**
+   * Exported percentiles of the load durations, same notation as the
+   * {@code phi} tag of Micrometer percentiles.
+   */
+  static final double[] PERCENTILES = {0.5, 0.95, 0.99, 0.999};
+
+  /**
+   * Time a statistics sample is used for the percentile gauges. The gauges of one
+   * scrape are read within this time, so one scrape takes one sample.
+   */
+  static final long PERCENTILE_SAMPLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /** Histograms exported as percentiles, index as used in {@link PercentileSample} */
+  @SuppressWarnings("unchecked")
+  private static final ToDoubleBiFunction<CacheStatistics, Double>[] HISTOGRAMS =
+    new ToDoubleBiFunction[] {
+      (ToDoubleBiFunction<CacheStatistics, Double>) CacheStatistics::getLoadMillisPercentile,
+      (ToDoubleBiFunction<CacheStatistics, Double>) CacheStatistics::getRefreshMillisPercentile,
+      (ToDoubleBiFunction<CacheStatistics, Double>) CacheStatistics::getBulkLoadMillisPercentile
+    };
+
   private final CacheControl control;
 
   /**
@@ -163,6 +186,71 @@ public class Cache2kCacheMetrics extends CacheMeterBinder {
         .description(
           "The number of times cache lookup methods threw an exception while loading a new value")
         .register(registry);
+
+      PercentileSample sample = new PercentileSample(control, registry.config().clock());
+      registerPercentiles(registry, sample, 0, "cache.load.duration.percentile",
+        "Duration percentile of loads for a missing entry or an explicit load");
+      registerPercentiles(registry, sample, 1, "cache.refresh.duration.percentile",
+        "Duration percentile of loads for a refresh");
+      registerPercentiles(registry, sample, 2, "cache.bulkLoad.duration.percentile",
+        "Duration percentile of requests to the bulk loader");
+    }
+
+  }
+
+  /**
+   * The durations are recorded by the cache in a histogram, so percentiles are
+   * exported as gauges with the {@code phi} tag, like Micrometer does for a timer with
+   * client side percentiles.
+   */
+  private void registerPercentiles(MeterRegistry registry, PercentileSample sample,
+                                   int histogram, String name, String description) {
+    for (int i = 0; i < PERCENTILES.length; i++) {
+      int index = histogram * PERCENTILES.length + i;
+      TimeGauge.builder(name, sample, TimeUnit.MILLISECONDS, s -> s.get(index))
+        .tags(getTagsWithCacheName()).tags("phi", Double.toString(PERCENTILES[i]))
+        .description(description)
+        .register(registry);
+    }
+  }
+
+  /**
+   * Percentiles of all histograms, computed from one statistics sample. Sampling the
+   * statistics is expensive, so the gauges share a sample which is taken again after
+   * {@link #PERCENTILE_SAMPLE_NANOS}.
+   */
+  static final class PercentileSample {
+
+    private final CacheControl control;
+    private final Clock clock;
+    private double[] values;
+    private long sampleTime;
+
+    PercentileSample(CacheControl control, Clock clock) {
+      this.control = control;
+      this.clock = clock;
+    }
+
+    synchronized double get(int index) {
+      long now = clock.monotonicTime();
+      if (values == null || now - sampleTime >= PERCENTILE_SAMPLE_NANOS) {
+        values = sample();
+        sampleTime = now;
+      }
+      return values[index];
+    }
+
+    private double[] sample() {
+      double[] array = new double[HISTOGRAMS.length * PERCENTILES.length];
+      CacheStatistics stats = control.sampleStatistics();
+      if (stats == null) {
+        return array;
+      }
+      for (int i = 0; i < array.length; i++) {
+        array[i] = HISTOGRAMS[i / PERCENTILES.length]
+          .applyAsDouble(stats, PERCENTILES[i % PERCENTILES.length] * 100);
+      }
+      return array;
     }
 
   }
@@ -19,11 +19,16 @@
  */
 
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.search.MeterNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleConfig;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
 
+import java.util.concurrent.TimeUnit;
+
 import static io.micrometer.core.instrument.Metrics.globalRegistry;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
@@ -164,6 +169,39 @@ public class MicroMeterTest {
       .tag("result", "success").functionCounter().count()).isEqualTo(3);
     assertThat((int) registry.get("cache.load")
       .tag("result", "failure").functionCounter().count()).isEqualTo(0);
+    assertThat(registry.get("cache.load.duration.percentile").gauges())
+      .hasSize(4);
+    assertThat(registry.get("cache.load.duration.percentile").tag("phi", "0.99")
+      .timeGauge().value()).isGreaterThanOrEqualTo(0.0);
+    assertThat(registry.get("cache.refresh.duration.percentile").tag("phi", "0.5")
+      .timeGauge().value()).isEqualTo(0.0);
+    cache.close();
+  }
+
+  /**
+   * All percentile gauges of one scrape read from one statistics sample.
+   */
+  @Test
+  public void percentilesFromOneSample() {
+    MockClock clock = new MockClock();
+    MeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+    Cache cache = forUnknownTypes()
+      .loader(key -> {
+        Thread.sleep(20);
+        return key;
+      })
+      .build();
+    monitor(registry, cache);
+    TimeGauge load99 = registry.get("cache.load.duration.percentile")
+      .tag("phi", "0.99").timeGauge();
+    assertThat(load99.value()).isEqualTo(0.0);
+    cache.get(1);
+    assertThat(registry.get("cache.load.duration.percentile")
+      .tag("phi", "0.5").timeGauge().value())
+      .as("same sample")
+      .isEqualTo(0.0);
+    clock.add(1, TimeUnit.SECONDS);
+    assertThat(load99.value(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20.0);
     cache.close();
   }
 
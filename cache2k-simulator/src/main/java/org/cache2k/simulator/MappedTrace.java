@@ -0,0 +1,113 @@
+package org.cache2k.simulator;
+
+/*-
+ * #%L
+ * cache2k simulator
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Access trace read from a memory mapped file. The trace is streamed region by region
+ * on every pass, so traces larger than the heap can be replayed and repeated passes
+ * with different cache sizes are served from the page cache.
+ *
+ * @author Jens Wilke
+ */
+public class MappedTrace implements Closeable {
+
+  /**
+   * Maximum size of one mapped region. A mapping is limited to 2GB, this
+   * is a multiple of every access size.
+   */
+  static final long MAXIMUM_REGION_BYTES = 1L << 30;
+
+  private final FileChannel channel;
+  private final TraceFormat format;
+  private final long accessCount;
+  private final long regionBytes;
+
+  MappedTrace(FileChannel channel, TraceFormat format, long regionBytes) throws IOException {
+    this.channel = channel;
+    this.format = format;
+    this.accessCount = channel.size() / format.getBytesPerAccess();
+    this.regionBytes = regionBytes - regionBytes % format.getBytesPerAccess();
+  }
+
+  /**
+   * Open a trace file. Incomplete trailing bytes are ignored.
+   */
+  public static MappedTrace open(Path file, TraceFormat format) throws IOException {
+    return new MappedTrace(FileChannel.open(file, StandardOpenOption.READ), format,
+      MAXIMUM_REGION_BYTES);
+  }
+
+  /**
+   * Decompress a gzipped trace into a temporary file, which can be mapped.
+   * The file is deleted when the VM exits.
+   */
+  public static Path decompress(Path gzipFile) throws IOException {
+    Path file = Files.createTempFile("cache2k-trace", ".trace");
+    file.toFile().deleteOnExit();
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(gzipFile))) {
+      Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return file;
+  }
+
+  public TraceFormat getFormat() {
+    return format;
+  }
+
+  public long getAccessCount() {
+    return accessCount;
+  }
+
+  /**
+   * Pass every requested key of the trace, in trace order, to the consumer.
+   */
+  public void forEachKey(IntConsumer consumer) throws IOException {
+    long size = accessCount * format.getBytesPerAccess();
+    int stride = format.getIntsPerAccess();
+    for (long position = 0; position < size; position += regionBytes) {
+      IntBuffer ints =
+        channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionBytes, size - position))
+          .asIntBuffer();
+      int limit = ints.limit();
+      for (int i = format.getKeyOffset(); i < limit; i += stride) {
+        consumer.accept(ints.get(i));
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+}
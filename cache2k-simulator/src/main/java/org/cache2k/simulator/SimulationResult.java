@@ -0,0 +1,119 @@
+package org.cache2k.simulator;
+
+/*-
+ * #%L
+ * cache2k simulator
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Locale;
+
+/**
+ * Result of replaying a trace with one eviction policy and cache size. One line
+ * of the CSV output.
+ *
+ * @author Jens Wilke
+ */
+public class SimulationResult {
+
+  public static final String CSV_HEADER =
+    "policy,size,accesses,hits,hitRate,evictions,scans,scansPerEviction,nanosPerAccess";
+
+  private final String policy;
+  private final long size;
+  private final long accessCount;
+  private final long hitCount;
+  private final long evictionCount;
+  private final long scanCount;
+  private final long nanos;
+
+  public SimulationResult(String policy, long size, long accessCount, long hitCount,
+                          long evictionCount, long scanCount, long nanos) {
+    this.policy = policy;
+    this.size = size;
+    this.accessCount = accessCount;
+    this.hitCount = hitCount;
+    this.evictionCount = evictionCount;
+    this.scanCount = scanCount;
+    this.nanos = nanos;
+  }
+
+  public String getPolicy() {
+    return policy;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public long getAccessCount() {
+    return accessCount;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Entries the eviction visited to find eviction candidates.
+   */
+  public long getScanCount() {
+    return scanCount;
+  }
+
+  /**
+   * Hit rate in percent.
+   */
+  public double getHitRate() {
+    return accessCount == 0 ? 0 : hitCount * 100D / accessCount;
+  }
+
+  public double getScansPerEviction() {
+    return evictionCount == 0 ? 0 : scanCount * 1D / evictionCount;
+  }
+
+  /**
+   * Time per access including the lookup, the insert on a miss and the eviction.
+   */
+  public double getNanosPerAccess() {
+    return accessCount == 0 ? 0 : nanos * 1D / accessCount;
+  }
+
+  public String toCsv() {
+    return String.format(Locale.ROOT, "%s,%d,%d,%d,%.4f,%d,%d,%.3f,%.1f",
+      policy, size, accessCount, hitCount, getHitRate(), evictionCount, scanCount,
+      getScansPerEviction(), getNanosPerAccess());
+  }
+
+  @Override
+  public String toString() {
+    return "SimulationResult{" +
+      "policy=" + policy +
+      ", size=" + size +
+      ", accessCount=" + accessCount +
+      ", hitCount=" + hitCount +
+      ", hitRate=" + String.format(Locale.ROOT, "%.2f", getHitRate()) +
+      ", evictionCount=" + evictionCount +
+      ", scanCount=" + scanCount +
+      '}';
+  }
+
+}
@@ -0,0 +1,188 @@
+package org.cache2k.simulator;
+
+/*-
+ * #%L
+ * cache2k simulator
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalCacheInfo;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.core.eviction.EvictionPolicy;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Replays an access trace through a cache with each eviction policy and cache size and
+ * reports the hit rate curve and the eviction cost as CSV. The cache is built with strict
+ * eviction, so there is only one eviction segment and the capacity is exact.
+ *
+ * <p>Command line arguments:
+ * <dl>
+ *   <dt>{@code --trace <file>}</dt><dd>Trace file, gzipped traces are decompressed first</dd>
+ *   <dt>{@code --format KEYS|TIME_AND_KEYS}</dt><dd>see {@link TraceFormat},
+ *     default is {@code KEYS}</dd>
+ *   <dt>{@code --sizes <n>,<n>,...}</dt><dd>Cache sizes in entries</dd>
+ *   <dt>{@code --policies <policy>,...}</dt><dd>see {@link EvictionPolicy},
+ *     default is all policies</dd>
+ *   <dt>{@code --output <file>}</dt><dd>CSV output, default is standard out</dd>
+ * </dl>
+ *
+ * @author Jens Wilke
+ */
+public class Simulator {
+
+  private final MappedTrace trace;
+
+  public Simulator(MappedTrace trace) {
+    this.trace = trace;
+  }
+
+  /**
+   * Replay the trace with one policy and cache size. A hit is a get that returns a value,
+   * on a miss the key is inserted.
+   */
+  public SimulationResult run(EvictionPolicy policy, long size) throws IOException {
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .name(Simulator.class, policy.name() + "-" + size)
+      .entryCapacity(size)
+      .strictEviction(true)
+      .eternal(true)
+      .with(InternalConfig.class, b -> b.evictionPolicy(policy))
+      .build();
+    try {
+      Replay replay = new Replay(cache);
+      long t0 = System.nanoTime();
+      trace.forEachKey(replay);
+      long nanos = System.nanoTime() - t0;
+      InternalCacheInfo info = cache.requestInterface(InternalCache.class).getInfo();
+      return new SimulationResult(policy.name(), size, trace.getAccessCount(), replay.hitCount,
+        info.getEvictedCount(), info.getScanCount(), nanos);
+    } finally {
+      cache.close();
+    }
+  }
+
+  /**
+   * Replay with every combination of policy and size. The sizes are the inner loop,
+   * so the results of a policy form one hit rate curve.
+   */
+  public List<SimulationResult> run(List<EvictionPolicy> policies, long[] sizes)
+    throws IOException {
+    List<SimulationResult> results = new ArrayList<>();
+    for (EvictionPolicy policy : policies) {
+      for (long size : sizes) {
+        results.add(run(policy, size));
+      }
+    }
+    return results;
+  }
+
+  public static void writeCsv(List<SimulationResult> results, PrintStream out) {
+    out.println(SimulationResult.CSV_HEADER);
+    for (SimulationResult result : results) {
+      out.println(result.toCsv());
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path traceFile = null;
+    Path output = null;
+    TraceFormat format = TraceFormat.KEYS;
+    long[] sizes = null;
+    List<EvictionPolicy> policies = Arrays.asList(EvictionPolicy.values());
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String value = i + 1 < args.length ? args[i + 1] : null;
+        if (value == null) {
+          throw new IllegalArgumentException("Missing value for " + args[i]);
+        }
+        switch (args[i]) {
+          case "--trace": traceFile = Paths.get(value); break;
+          case "--format": format = TraceFormat.valueOf(value); break;
+          case "--sizes":
+            sizes = Arrays.stream(value.split(",")).mapToLong(Long::parseLong).toArray();
+            break;
+          case "--policies":
+            policies = new ArrayList<>();
+            for (String s : value.split(",")) {
+              policies.add(EvictionPolicy.valueOf(s));
+            }
+            break;
+          case "--output": output = Paths.get(value); break;
+          default: throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+        i++;
+      }
+      if (traceFile == null || sizes == null) {
+        throw new IllegalArgumentException("Trace file and sizes are required");
+      }
+    } catch (IllegalArgumentException ex) {
+      System.err.println(ex.getMessage());
+      System.err.println("Usage: --trace <file> --sizes <n>,<n>,... " +
+        "[--format KEYS|TIME_AND_KEYS] [--policies <policy>,...] [--output <file>]");
+      System.exit(1);
+      return;
+    }
+    if (traceFile.toString().endsWith(".gz")) {
+      traceFile = MappedTrace.decompress(traceFile);
+    }
+    List<SimulationResult> results;
+    try (MappedTrace trace = MappedTrace.open(traceFile, format)) {
+      results = new Simulator(trace).run(policies, sizes);
+    }
+    if (output == null) {
+      writeCsv(results, System.out);
+      return;
+    }
+    try (PrintStream out = new PrintStream(Files.newOutputStream(output), false, "UTF-8")) {
+      writeCsv(results, out);
+    }
+  }
+
+  static class Replay implements IntConsumer {
+
+    private final Cache<Integer, Integer> cache;
+    long hitCount;
+
+    Replay(Cache<Integer, Integer> cache) {
+      this.cache = cache;
+    }
+
+    @Override
+    public void accept(int key) {
+      if (cache.get(key) != null) {
+        hitCount++;
+      } else {
+        cache.put(key, key);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,62 @@
+package org.cache2k.simulator;
+
+/*-
+ * #%L
+ * cache2k simulator
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Layout of a trace file. A trace file is a sequence of 32 bit big endian integers.
+ *
+ * @author Jens Wilke
+ */
+public enum TraceFormat {
+
+  /**
+   * One integer per access, which is the requested key.
+   */
+  KEYS(1),
+
+  /**
+   * Two integers per access, the time in seconds and the requested key. This
+   * is the format of the weblog traces in the test suite.
+   */
+  TIME_AND_KEYS(2);
+
+  private final int intsPerAccess;
+
+  TraceFormat(int intsPerAccess) {
+    this.intsPerAccess = intsPerAccess;
+  }
+
+  public int getIntsPerAccess() {
+    return intsPerAccess;
+  }
+
+  public int getBytesPerAccess() {
+    return intsPerAccess * Integer.BYTES;
+  }
+
+  /**
+   * Position of the key within the integers of one access.
+   */
+  public int getKeyOffset() {
+    return intsPerAccess - 1;
+  }
+
+}
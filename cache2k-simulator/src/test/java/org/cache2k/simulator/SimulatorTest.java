@@ -0,0 +1,132 @@
+package org.cache2k.simulator;
+
+/*-
+ * #%L
+ * cache2k simulator
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.eviction.EvictionPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+public class SimulatorTest {
+
+  @TempDir
+  Path tempDir;
+
+  /**
+   * Small regions, so the trace is read from several mappings.
+   */
+  @Test
+  public void readAcrossRegions() throws IOException {
+    int[] ints = new int[1000];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = i;
+    }
+    Path file = write(ints, "time-and-keys.trace");
+    List<Integer> keys = new ArrayList<>();
+    try (MappedTrace trace = new MappedTrace(
+      FileChannel.open(file, StandardOpenOption.READ), TraceFormat.TIME_AND_KEYS, 100)) {
+      assertThat(trace.getAccessCount()).isEqualTo(500);
+      trace.forEachKey(keys::add);
+    }
+    assertThat(keys).hasSize(500);
+    for (int i = 0; i < keys.size(); i++) {
+      assertThat(keys.get(i)).isEqualTo(i * 2 + 1);
+    }
+  }
+
+  @Test
+  public void decompress() throws IOException {
+    Path file = tempDir.resolve("keys.trace.gz");
+    try (DataOutputStream out =
+           new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(4711);
+      out.writeInt(1802);
+    }
+    List<Integer> keys = new ArrayList<>();
+    try (MappedTrace trace = MappedTrace.open(MappedTrace.decompress(file), TraceFormat.KEYS)) {
+      trace.forEachKey(keys::add);
+    }
+    assertThat(keys).containsExactly(4711, 1802);
+  }
+
+  /**
+   * Loop over 100 keys three times. If the cache holds all keys, only the first
+   * round misses. LRU like policies would not have any hit with a smaller cache,
+   * the policies of cache2k keep a part of the keys.
+   */
+  @Test
+  public void hitRateCurve() throws IOException {
+    int[] ints = new int[300];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = i % 100;
+    }
+    List<SimulationResult> results;
+    try (MappedTrace trace = MappedTrace.open(write(ints, "keys.trace"), TraceFormat.KEYS)) {
+      results = new Simulator(trace).run(
+        Arrays.asList(EvictionPolicy.values()), new long[]{50, 100});
+    }
+    assertThat(results).hasSize(EvictionPolicy.values().length * 2);
+    for (SimulationResult result : results) {
+      assertThat(result.getAccessCount()).isEqualTo(300);
+      if (result.getSize() == 100) {
+        assertThat(result.getHitCount()).isEqualTo(200);
+        assertThat(result.getEvictionCount()).isEqualTo(0);
+      } else {
+        assertThat(result.getHitCount()).isLessThan(200);
+        assertThat(result.getEvictionCount()).isGreaterThan(0);
+      }
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Simulator.writeCsv(results, new PrintStream(bos, true, "UTF-8"));
+    String[] lines = bos.toString("UTF-8").split("\\R");
+    assertThat(lines).hasSize(results.size() + 1);
+    assertThat(lines[0]).isEqualTo(SimulationResult.CSV_HEADER);
+    assertThat(lines[2]).startsWith(EvictionPolicy.values()[0].name() + ",100,300,200,66.6667,0,");
+  }
+
+  private Path write(int[] ints, String name) throws IOException {
+    Path file = tempDir.resolve(name);
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+      for (int v : ints) {
+        out.writeInt(v);
+      }
+    }
+    return file;
+  }
+
+}
@@ -0,0 +1,143 @@
+package org.cache2k.simulator;
+
+
+/*-
+ * #%L
+ * cache2k simulator
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.eviction.EvictionPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays traces with Clock-Pro+ and TinyLFU and checks the hit rates of TinyLFU
+ * compared to Clock-Pro+.
+ *
+ * @author Jens Wilke
+ */
+public class TraceHitRateTest {
+
+  static final List<EvictionPolicy> POLICIES =
+    Arrays.asList(EvictionPolicy.CLOCK_PRO_PLUS, EvictionPolicy.TINY_LFU);
+
+  @TempDir
+  Path tempDir;
+
+  /**
+   * Zipfian accesses which are polluted with scans over keys that are used only once.
+   * The frequency sketch keeps the scanned keys out of the cache, so TinyLFU has a better
+   * hit rate than Clock-Pro+.
+   */
+  @Test
+  public void scanPollutedZipf() throws IOException {
+    // results of all sizes for Clock-Pro+ come first, see Simulator.run
+    Path file = writeScanPollutedZipf(tempDir.resolve("zipf.trace"));
+    List<SimulationResult> results;
+    try (MappedTrace trace = MappedTrace.open(file, TraceFormat.KEYS)) {
+      results = new Simulator(trace).run(POLICIES, new long[]{5000, 10000, 20000});
+    }
+    int sizeCount = results.size() / 2;
+    for (int i = 0; i < sizeCount; i++) {
+      SimulationResult clockPro = results.get(i);
+      SimulationResult tinyLfu = results.get(i + sizeCount);
+      assertThat(tinyLfu.getHitRate())
+        .as("TinyLFU better than Clock-Pro+ at size " + tinyLfu.getSize())
+        .isGreaterThan(clockPro.getHitRate());
+    }
+  }
+
+  /**
+   * The weblog traces have little frequency skew. TinyLFU stays close to Clock-Pro+.
+   */
+  @Test
+  public void weblog() throws IOException {
+    checkClose("weblog-424.slt.gz");
+    checkClose("weblog-424-norobots.slt.gz");
+  }
+
+  private void checkClose(String resource) throws IOException {
+    Path file = tempDir.resolve(resource);
+    try (InputStream in = getClass().getResourceAsStream(
+      "/org/cache2k/testsuite/eviction/" + resource)) {
+      assertThat(in).as("trace from the testsuite " + resource).isNotNull();
+      Files.copy(in, file);
+    }
+    List<SimulationResult> results;
+    try (MappedTrace trace =
+           MappedTrace.open(MappedTrace.decompress(file), TraceFormat.TIME_AND_KEYS)) {
+      results = new Simulator(trace).run(POLICIES, new long[]{500, 1000, 2000});
+    }
+    int sizeCount = results.size() / 2;
+    for (int i = 0; i < sizeCount; i++) {
+      SimulationResult clockPro = results.get(i);
+      SimulationResult tinyLfu = results.get(i + sizeCount);
+      assertThat(tinyLfu.getHitRate())
+        .as(resource + " TinyLFU close to Clock-Pro+ at size " + tinyLfu.getSize())
+        .isGreaterThan(clockPro.getHitRate() - 2);
+    }
+  }
+
+  /**
+   * 1 million accesses. A quarter of the blocks is a scan of 1000 new keys, the other
+   * blocks are 3000 zipfian accesses with skew 0.9 over 200000 keys.
+   */
+  static Path writeScanPollutedZipf(Path file) throws IOException {
+    int keySpace = 200_000;
+    double[] cumulative = new double[keySpace];
+    double sum = 0;
+    for (int i = 0; i < keySpace; i++) {
+      sum += 1 / Math.pow(i + 1, 0.9);
+      cumulative[i] = sum;
+    }
+    Random random = new Random(1802);
+    int scanKey = keySpace;
+    int count = 0;
+    try (DataOutputStream out =
+           new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      while (count < 1_000_000) {
+        if (random.nextInt(100) < 25) {
+          for (int i = 0; i < 1000; i++) {
+            out.writeInt(scanKey++);
+          }
+          count += 1000;
+        } else {
+          for (int i = 0; i < 3000; i++) {
+            int idx = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            out.writeInt(idx < 0 ? -idx - 1 : idx);
+          }
+          count += 3000;
+        }
+      }
+    }
+    return file;
+  }
+
+}
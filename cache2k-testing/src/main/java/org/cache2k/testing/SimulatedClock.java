@@ -384,10 +384,12 @@ public class SimulatedClock extends TimeReference.Milliseconds implements Schedu
       tasksWaitingForExecution.incrementAndGet();
       try {
         executor.execute(() -> {
+          boolean previous = EXECUTOR_CONTEXT.get();
           EXECUTOR_CONTEXT.set(true);
           try {
             r.run();
           } finally {
+            EXECUTOR_CONTEXT.set(previous);
             taskFinished();
           }
         });
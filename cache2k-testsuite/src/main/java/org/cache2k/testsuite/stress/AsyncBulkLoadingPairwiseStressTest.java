@@ -84,7 +84,7 @@ public class AsyncBulkLoadingPairwiseStressTest extends PairwiseTestingBase {
         });
       }
     } });
-    return l;
+    return withStripedEntryLocks(l);
   }
 
   static class GetAndLoad1 extends CacheKeyActorPair<Integer, Integer, Integer> {
@@ -65,7 +65,7 @@ public class AtomicOperationsPairwiseStressTest extends PairwiseTestingBase {
         StaticUtil.enforceWiredCache(b); return b;
       }
     } });
-    return l;
+    return withStripedEntryLocks(l);
   }
 
   static class ReplaceIfEquals1 extends CacheKeyActorPair<Boolean, Integer, Integer> {
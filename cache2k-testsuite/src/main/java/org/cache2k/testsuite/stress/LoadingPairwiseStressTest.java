@@ -82,7 +82,7 @@ public class LoadingPairwiseStressTest extends PairwiseTestingBase {
         StaticUtil.enforceWiredCache(b); return b;
       }
     } });
-    return l;
+    return withStripedEntryLocks(l);
   }
 
   static class GetAndLoad1 extends CacheKeyActorPair<Integer, Integer, Integer> {
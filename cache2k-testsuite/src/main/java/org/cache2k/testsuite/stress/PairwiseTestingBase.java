@@ -82,6 +82,23 @@ public class PairwiseTestingBase {
     return l;
   }
 
+  /**
+   * Add a variant with striped entry locks for each builder augmenter.
+   */
+  static Iterable<Object[]> withStripedEntryLocks(List<Object[]> parameters) {
+    List<Object[]> l = new ArrayList<>(parameters);
+    for (Object[] p : parameters) {
+      BuilderAugmenter augmenter = (BuilderAugmenter) p[0];
+      l.add(new Object[]{new BuilderAugmenter() {
+        @Override
+        public <K, V> Cache2kBuilder<K, V> augment(Cache2kBuilder<K, V> b) {
+          return augmenter.augment(b).stripedEntryLocks(true);
+        }
+      } });
+    }
+    return l;
+  }
+
   interface BuilderAugmenter {
     <K, V> Cache2kBuilder<K, V> augment(Cache2kBuilder<K, V> b);
   }